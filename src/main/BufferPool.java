@@ -0,0 +1,97 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The BufferPool class hands out byte buffers of a fixed size and takes them back once they are no longer
+ * needed, so that sending and receiving datagrams does not allocate a new buffer every time. The pool is lock-free
+ * and can be shared by any number of threads. At most a fixed number of idle buffers are kept; buffers released
+ * beyond that are left to the garbage collector.
+ *
+ * Two shared pools are used for receiving: direct buffers for datagram channels, which can read into them without
+ * an extra copy, and heap buffers for datagram sockets, which need a backing array.
+ */
+public class BufferPool {
+
+    public static final int DATAGRAM_SIZE = 2048;  // Fits any datagram, since larger messages are fragmented at 1400 bytes
+    public static final BufferPool RECEIVE = new BufferPool(DATAGRAM_SIZE, 64, true);         // Shared by every datagram channel
+    public static final BufferPool SOCKET_RECEIVE = new BufferPool(DATAGRAM_SIZE, 64, false); // Shared by every datagram socket
+
+    private final int bufferSize;                                        // Capacity of every buffer in the pool
+    private final int maxIdle;                                           // Maximum number of idle buffers kept
+    private final boolean direct;                                        // Whether the buffers are direct or backed by an array
+    private final ConcurrentLinkedQueue<ByteBuffer> idle = new ConcurrentLinkedQueue<>(); // Buffers ready to be handed out
+    private final AtomicInteger idleCount = new AtomicInteger();         // Number of buffers in the idle queue
+
+    /**
+     * Constructs a BufferPool.
+     *
+     * @param bufferSize The capacity of every buffer in bytes.
+     * @param maxIdle    The maximum number of idle buffers that are kept for reuse.
+     * @param direct     True for direct buffers, false for buffers backed by an array.
+     */
+    public BufferPool(int bufferSize, int maxIdle, boolean direct) {
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+        this.direct = direct;
+    }
+
+    /**
+     * Constructs a BufferPool of direct buffers.
+     *
+     * @param bufferSize The capacity of every buffer in bytes.
+     * @param maxIdle    The maximum number of idle buffers that are kept for reuse.
+     */
+    public BufferPool(int bufferSize, int maxIdle) {
+        this(bufferSize, maxIdle, true);
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating a new one if the pool is empty.
+     *
+     * @return a buffer with its position at zero and its limit at its capacity.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        if (buffer == null) {
+            return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        }
+        idleCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool. The buffer must not be used by the caller afterwards.
+     *
+     * @param buffer the buffer being given back, which is ignored if it did not come from a pool of this kind and size.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isDirect() != direct || buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(buffer);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the capacity of the buffers in the pool.
+     *
+     * @return the buffer size in bytes.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Gets the number of idle buffers that are ready to be handed out.
+     *
+     * @return the number of idle buffers.
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+}
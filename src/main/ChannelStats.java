@@ -0,0 +1,271 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ChannelStats class counts the traffic of one port: packets and bytes sent to it and received on it, datagrams
+ * that could not be decoded, were truncated or failed their checksum, datagrams retransmitted after a NACK, receives
+ * that timed out, and how long messages took to encode and
+ * decode. There is one ChannelStats per port in the process, shared by every transport, publisher and subscriber that
+ * uses the port, so a port pair such as 5000 and 7000 shows the same traffic from both ends. The counters can be read
+ * at any time, and every port is printed when the process shuts down, which tells whether time is spent in the
+ * network layer or in the subsystems themselves.
+ */
+public class ChannelStats {
+
+    private static final Map<Integer, ChannelStats> BY_PORT = new ConcurrentSkipListMap<>(); // Stats of each port, by port number
+    private static final AtomicBoolean DUMP_REGISTERED = new AtomicBoolean(false);
+
+    private final int port;
+    private final LongAdder packetsSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder packetsReceived = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder decodeFailures = new LongAdder();     // Datagrams dropped because they were malformed
+    private final LongAdder receiveTimeouts = new LongAdder();    // Receives that gave up before a message arrived
+    private final LongAdder truncatedDatagrams = new LongAdder(); // Datagrams that filled the whole receive buffer
+    private final LongAdder checksumFailures = new LongAdder();   // Sealed datagrams whose checksum did not match
+    private final LongAdder retransmits = new LongAdder();        // Datagrams sent again after a NACK
+    private final LatencyHistogram encodeTimes = new LatencyHistogram();
+    private final LatencyHistogram decodeTimes = new LatencyHistogram();
+
+    /**
+     * Constructs a ChannelStats. Use {@link #forPort(int)} to get the shared stats of a port.
+     *
+     * @param port The port being counted.
+     */
+    ChannelStats(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Gets the stats of a port, creating them the first time the port is used. The stats of every port are printed
+     * when the process shuts down.
+     *
+     * @param port the port.
+     * @return the stats of the port.
+     */
+    public static ChannelStats forPort(int port) {
+        ChannelStats stats = BY_PORT.get(port);
+        if (stats == null) {
+            stats = BY_PORT.computeIfAbsent(port, ChannelStats::new);
+            if (DUMP_REGISTERED.compareAndSet(false, true)) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(report()), "ChannelStats dump"));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Gets the stats of every port used so far in this process.
+     *
+     * @return the stats, ordered by port.
+     */
+    public static Iterable<ChannelStats> getAll() {
+        return BY_PORT.values();
+    }
+
+    /**
+     * Describes the stats of every port used so far in this process, one port per line.
+     *
+     * @return the report.
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder("[ChannelStats] Traffic by port:\n");
+        for (ChannelStats stats : BY_PORT.values()) {
+            report.append("  ").append(stats).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Counts a datagram sent to the port.
+     *
+     * @param bytes the size of the datagram.
+     */
+    public void recordSent(int bytes) {
+        packetsSent.increment();
+        bytesSent.add(bytes);
+    }
+
+    /**
+     * Counts a datagram received on the port.
+     *
+     * @param bytes the size of the datagram.
+     */
+    public void recordReceived(int bytes) {
+        packetsReceived.increment();
+        bytesReceived.add(bytes);
+    }
+
+    /**
+     * Counts a datagram that could not be decoded.
+     */
+    public void recordDecodeFailure() {
+        decodeFailures.increment();
+    }
+
+    /**
+     * Counts a receive that timed out.
+     */
+    public void recordTimeout() {
+        receiveTimeouts.increment();
+    }
+
+    /**
+     * Counts a datagram that filled the whole receive buffer, so its end may have been cut off.
+     */
+    public void recordTruncated() {
+        truncatedDatagrams.increment();
+    }
+
+    /**
+     * Counts a sealed datagram received on the port whose checksum did not match.
+     */
+    public void recordChecksumFailure() {
+        checksumFailures.increment();
+    }
+
+    /**
+     * Counts a datagram sent to the port again because it arrived corrupted.
+     */
+    public void recordRetransmit() {
+        retransmits.increment();
+    }
+
+    /**
+     * Records how long a message took to encode.
+     *
+     * @param nanos the encoding time in nanoseconds.
+     */
+    public void recordEncodeTime(long nanos) {
+        encodeTimes.record(nanos);
+    }
+
+    /**
+     * Records how long a message took to decode.
+     *
+     * @param nanos the decoding time in nanoseconds.
+     */
+    public void recordDecodeTime(long nanos) {
+        decodeTimes.record(nanos);
+    }
+
+    /**
+     * Gets the port being counted.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Gets the number of datagrams sent to the port.
+     *
+     * @return the number of packets sent.
+     */
+    public long getPacketsSent() {
+        return packetsSent.sum();
+    }
+
+    /**
+     * Gets the number of bytes sent to the port.
+     *
+     * @return the number of bytes sent.
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * Gets the number of datagrams received on the port.
+     *
+     * @return the number of packets received.
+     */
+    public long getPacketsReceived() {
+        return packetsReceived.sum();
+    }
+
+    /**
+     * Gets the number of bytes received on the port.
+     *
+     * @return the number of bytes received.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * Gets the number of datagrams received on the port that could not be decoded.
+     *
+     * @return the number of decode failures.
+     */
+    public long getDecodeFailures() {
+        return decodeFailures.sum();
+    }
+
+    /**
+     * Gets the number of receives on the port that timed out.
+     *
+     * @return the number of timeouts.
+     */
+    public long getReceiveTimeouts() {
+        return receiveTimeouts.sum();
+    }
+
+    /**
+     * Gets the number of datagrams received on the port that may have been truncated.
+     *
+     * @return the number of truncated datagrams.
+     */
+    public long getTruncatedDatagrams() {
+        return truncatedDatagrams.sum();
+    }
+
+    /**
+     * Gets the number of sealed datagrams received on the port whose checksum did not match.
+     *
+     * @return the number of checksum failures.
+     */
+    public long getChecksumFailures() {
+        return checksumFailures.sum();
+    }
+
+    /**
+     * Gets the number of datagrams sent to the port again because they arrived corrupted.
+     *
+     * @return the number of retransmits.
+     */
+    public long getRetransmits() {
+        return retransmits.sum();
+    }
+
+    /**
+     * Gets the encoding times of the messages sent to the port.
+     *
+     * @return the encoding time histogram.
+     */
+    public LatencyHistogram getEncodeTimes() {
+        return encodeTimes;
+    }
+
+    /**
+     * Gets the decoding times of the messages received on the port.
+     *
+     * @return the decoding time histogram.
+     */
+    public LatencyHistogram getDecodeTimes() {
+        return decodeTimes;
+    }
+
+    @Override
+    public String toString() {
+        return "Port " + port + ": sent " + getPacketsSent() + " (" + getBytesSent() + " B), received "
+                + getPacketsReceived() + " (" + getBytesReceived() + " B), decode failures " + getDecodeFailures()
+                + ", timeouts " + getReceiveTimeouts() + ", truncated " + getTruncatedDatagrams()
+                + ", checksum failures " + getChecksumFailures() + ", retransmits " + getRetransmits()
+                + ", encode [" + encodeTimes + "], decode [" + decodeTimes + "]";
+    }
+}
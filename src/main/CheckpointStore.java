@@ -0,0 +1,197 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The CheckpointStore class keeps the latest checkpoint of the state of a process that also keeps a
+ * {@link WriteAheadLog}, so that a restart loads the checkpoint and only replays the records logged after it, however
+ * long the process has been running.
+ *
+ * A checkpoint is a list of records in the same form as the records of the log, a type and a payload, along with the
+ * position the log was at when the state was taken. It is written to a file of its own under a temporary name, forced
+ * to disk, renamed and read back, and only then are the checkpoints before it deleted. The previous whole checkpoint is
+ * kept as well, so a checkpoint damaged later on can be replaced by the one before it; the owner must only drop the
+ * part of the log before the oldest checkpoint kept. The file starts with a header holding the position, the number
+ * of records, the length of the records and their CRC32C; a checkpoint that fails its checksum is ignored.
+ */
+public class CheckpointStore {
+
+    private static final int MAGIC = 0x434b5054;   // "CKPT"
+    private static final int HEADER_SIZE = 24;     // magic + log position + record count + length + CRC32C
+    private static final String SUFFIX = ".ckpt";
+
+    /**
+     * The records of a checkpoint being built, in the order they are to be replayed.
+     */
+    public static class Builder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int records = 0;
+
+        /**
+         * Adds a record to the checkpoint.
+         *
+         * @param type    the type of the record.
+         * @param payload the payload of the record.
+         */
+        public void add(byte type, byte[] payload) {
+            try {
+                out.writeByte(type);
+                out.writeInt(payload.length);
+                out.write(payload);
+                records++;
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // Never thrown by a stream in memory
+            }
+        }
+
+        /**
+         * Gets the number of records added to the checkpoint.
+         *
+         * @return the number of records.
+         */
+        public int getRecordCount() {
+            return records;
+        }
+    }
+
+    private final String name;
+    private final Path directory;
+
+    /**
+     * Constructs a CheckpointStore, creating its directory if needed.
+     *
+     * @param name      The name of the store, used when printing.
+     * @param directory The directory holding the checkpoint file, which may be the directory of the log.
+     * @throws IOException If the directory could not be created.
+     */
+    public CheckpointStore(String name, Path directory) throws IOException {
+        this.name = name;
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Saves a checkpoint and, once it is on disk and reads back whole, deletes the checkpoints before it except the
+     * latest whole one.
+     *
+     * @param logPosition the position of the log when the state was taken, as returned by
+     *                    {@link WriteAheadLog#getPosition}.
+     * @param state       the records of the state.
+     * @return the log position of the oldest checkpoint kept, before which the log is no longer needed.
+     * @throws IOException if the checkpoint could not be written or did not read back whole, in which case the
+     *                     checkpoints before it are kept.
+     */
+    public long save(long logPosition, Builder state) throws IOException {
+        byte[] records = state.bytes.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(records);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(logPosition).putInt(state.records).putInt(records.length).putInt((int) crc.getValue()).flip();
+
+        Path file = directory.resolve(String.format("%020d", logPosition) + SUFFIX);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer body = ByteBuffer.wrap(records);
+            while (header.hasRemaining() || body.hasRemaining()) {
+                channel.write(new ByteBuffer[]{header, body});
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (!isWhole(ByteBuffer.wrap(Files.readAllBytes(file)))) {
+            Files.deleteIfExists(file);
+            throw new IOException("Checkpoint " + file.getFileName() + " did not read back whole");
+        }
+
+        long keptPosition = logPosition;
+        boolean keptPrevious = false;
+        List<Path> checkpoints = listCheckpoints();
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            Path previous = checkpoints.get(i);
+            if (previous.equals(file)) {
+                continue;
+            }
+            ByteBuffer checkpoint;
+            if (!keptPrevious && previous.compareTo(file) < 0 && isWhole(checkpoint = ByteBuffer.wrap(Files.readAllBytes(previous)))) {
+                keptPrevious = true; // Stands in for the new checkpoint if that one is damaged later on
+                keptPosition = checkpoint.getLong(4);
+                continue;
+            }
+            Files.deleteIfExists(previous);
+        }
+        return keptPosition;
+    }
+
+    /**
+     * Loads the latest whole checkpoint the log can be replayed from, then hands its records over in order.
+     *
+     * @param usable  tells if the log still holds every record from the position of a checkpoint on, such as
+     *                {@link WriteAheadLog#holds}.
+     * @param handler handles each record, with its payload between the position and the limit of the buffer.
+     * @return the position of the log when the state was taken, or 0 if no checkpoint is usable. The whole log then
+     *         has to be replayed, which only rebuilds the state if the log was never truncated, see
+     *         {@link WriteAheadLog#holdsEverything}.
+     * @throws IOException if the checkpoint could not be read or the handler failed.
+     */
+    public long load(LongPredicate usable, WriteAheadLog.RecordHandler handler) throws IOException {
+        List<Path> checkpoints = listCheckpoints();
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            ByteBuffer checkpoint = ByteBuffer.wrap(Files.readAllBytes(checkpoints.get(i)));
+            if (!isWhole(checkpoint)) {
+                System.out.println("[" + name + "] IGNORED DAMAGED CHECKPOINT " + checkpoints.get(i).getFileName());
+                continue;
+            }
+            long logPosition = checkpoint.getLong(4);
+            if (!usable.test(logPosition)) {
+                System.out.println("[" + name + "] IGNORED CHECKPOINT " + checkpoints.get(i).getFileName() + ", THE LOG NO LONGER GOES ON FROM IT");
+                continue;
+            }
+            int records = checkpoint.getInt(12);
+            checkpoint.position(HEADER_SIZE);
+            for (int record = 0; record < records; record++) {
+                byte type = checkpoint.get();
+                int length = checkpoint.getInt();
+                ByteBuffer payload = checkpoint.slice().limit(length).asReadOnlyBuffer();
+                checkpoint.position(checkpoint.position() + length);
+                handler.accept(type, payload);
+            }
+            return logPosition;
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the directory of the store.
+     *
+     * @return the directory holding the checkpoint file.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private static boolean isWhole(ByteBuffer checkpoint) {
+        if (checkpoint.remaining() < HEADER_SIZE || checkpoint.getInt(0) != MAGIC
+                || checkpoint.getInt(16) != checkpoint.remaining() - HEADER_SIZE) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(checkpoint.duplicate().position(HEADER_SIZE));
+        return (int) crc.getValue() == checkpoint.getInt(20);
+    }
+
+    private List<Path> listCheckpoints() throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.filter(file -> file.getFileName().toString().matches("\\d{20}\\" + SUFFIX)).sorted().collect(Collectors.toList());
+        }
+    }
+}
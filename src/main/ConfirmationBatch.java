@@ -0,0 +1,58 @@
+import java.util.Arrays;
+
+/**
+ * The ConfirmationBatch class carries the confirmations of many events from the Scheduler back to the
+ * FireIncidentSubsystem in one frame. It only lists the IDs of the events that were completed and of the events that
+ * failed because of a fault, since the FireIncidentSubsystem still knows every event it sent. The IDs are written as
+ * ranges of consecutive IDs, so a burst of confirmations takes a few bytes whatever its size.
+ */
+public class ConfirmationBatch {
+
+    private final int[] completedIDs; // IDs of the events the drones completed, in ascending order
+    private final int[] faultedIDs;   // IDs of the events that failed because of a fault, in ascending order
+
+    /**
+     * Constructs a ConfirmationBatch.
+     *
+     * @param completedIDs The IDs of the events the drones completed, in any order.
+     * @param faultedIDs   The IDs of the events that failed because of a fault, in any order.
+     */
+    public ConfirmationBatch(int[] completedIDs, int[] faultedIDs) {
+        this.completedIDs = completedIDs.clone();
+        this.faultedIDs = faultedIDs.clone();
+        Arrays.sort(this.completedIDs);
+        Arrays.sort(this.faultedIDs);
+    }
+
+    /**
+     * Returns the IDs of the events the drones completed.
+     *
+     * @return The event IDs in ascending order.
+     */
+    public int[] getCompletedIDs() {
+        return completedIDs;
+    }
+
+    /**
+     * Returns the IDs of the events that failed because of a fault and have to be sent again.
+     *
+     * @return The event IDs in ascending order.
+     */
+    public int[] getFaultedIDs() {
+        return faultedIDs;
+    }
+
+    /**
+     * Returns the number of events confirmed by the batch.
+     *
+     * @return The number of completed and faulted events.
+     */
+    public int size() {
+        return completedIDs.length + faultedIDs.length;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfirmationBatch[completed=" + Arrays.toString(completedIDs) + ", faulted=" + Arrays.toString(faultedIDs) + "]";
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * The CreditGrant class is how the DroneSubsystem tells the Scheduler how many events it can take. Rather than a
+ * number of free drones, which would count events that are still on their way twice, a grant holds a limit on the
+ * total number of events the Scheduler may have sent: the number of events the DroneSubsystem received so far plus
+ * the number it can take on top of those. The Scheduler may send while it has sent fewer events than the limit.
+ * Every grant replaces the previous one, so a lost grant is corrected by the next.
+ *
+ * The session identifies one run of the DroneSubsystem, whose event count starts again at zero when it restarts.
+ */
+public class CreditGrant {
+
+    private final int session;  // Identifies the run of the DroneSubsystem that issued the grant
+    private final long limit;   // Total number of events the Scheduler may have sent in this session
+
+    /**
+     * Constructs a CreditGrant.
+     *
+     * @param session The session of the DroneSubsystem.
+     * @param limit   The total number of events the Scheduler may have sent in the session.
+     */
+    public CreditGrant(int session, long limit) {
+        this.session = session;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the session of the DroneSubsystem that issued the grant.
+     *
+     * @return The session.
+     */
+    public int getSession() {
+        return session;
+    }
+
+    /**
+     * Returns the total number of events the Scheduler may have sent in the session.
+     *
+     * @return The limit.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "CreditGrant[session=" + Integer.toHexString(session) + ", limit=" + limit + "]";
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * The DeadlineQueue class dispatches the input events waiting in the Scheduler earliest deadline first. The deadline
+ * of an event is the time it was first queued plus the response budget of its severity (see
+ * {@link EventQueue#getResponseBudget}), so a Moderate event that has waited long enough goes ahead of a High event
+ * that just arrived, instead of waiting behind every High event. Events with the same deadline leave in the order they
+ * were added.
+ *
+ * The deadlines are kept in a binary heap, so adding and taking an event take logarithmic time. An event queued again,
+ * such as one whose acknowledgement was lost, keeps the deadline of its first report. The queue counts, for each
+ * severity, the events dispatched after their deadline. It is not thread-safe, like the rest of the Scheduler state.
+ */
+public class DeadlineQueue extends AbstractQueue<InputEvent> implements EventQueue {
+
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>();
+    private final Map<InputEvent, Long> firstQueued = new WeakHashMap<>(); // When each event still held by the Scheduler was first queued
+    private final Map<Severity, QueueStats> stats = new EnumMap<>(Severity.class);
+    private final LongSupplier clock;                                     // Current time in nanoseconds
+    private long nextSequence = 0;                                        // Breaks ties between equal deadlines in arrival order
+
+    /**
+     * An event waiting in the queue, with its deadline.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final InputEvent event;
+        private final long addedTime;
+        private final long sequence;
+        private long deadline;
+
+        private Entry(InputEvent event, long addedTime, long deadline, long sequence) {
+            this.event = event;
+            this.addedTime = addedTime;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byDeadline = Long.compare(deadline, other.deadline);
+            return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Constructs a DeadlineQueue.
+     */
+    public DeadlineQueue() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * Constructs a DeadlineQueue with its own clock. FOR TESTING PURPOSES.
+     *
+     * @param clock The current time in nanoseconds.
+     */
+    DeadlineQueue(LongSupplier clock) {
+        this.clock = clock;
+        for (Severity severity : SEVERITIES) {
+            stats.put(severity, new QueueStats());
+        }
+    }
+
+    @Override
+    public boolean offer(InputEvent event) {
+        Objects.requireNonNull(event);
+        long now = clock.getAsLong();
+        long reported = firstQueued.computeIfAbsent(event, queued -> now);
+        heap.add(new Entry(event, now, deadlineOf(reported, event.getSeverity()), nextSequence++));
+        stats.get(event.getSeverity()).recordAdded();
+        return true;
+    }
+
+    @Override
+    public InputEvent poll() {
+        Entry entry = heap.poll();
+        if (entry == null) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        stats.get(entry.event.getSeverity()).recordTaken(now - entry.addedTime, now > entry.deadline);
+        return entry.event;
+    }
+
+    @Override
+    public InputEvent peek() {
+        Entry entry = heap.peek();
+        return entry == null ? null : entry.event;
+    }
+
+    @Override
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Iterates over the waiting events earliest deadline first. Removing an event through the iterator is not
+     * supported.
+     */
+    @Override
+    public Iterator<InputEvent> iterator() {
+        List<Entry> entries = new ArrayList<>(heap);
+        Collections.sort(entries);
+        List<InputEvent> events = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            events.add(entry.event);
+        }
+        return Collections.unmodifiableList(events).iterator();
+    }
+
+    @Override
+    public void clear() {
+        for (Entry entry : heap) {
+            stats.get(entry.event.getSeverity()).recordCleared();
+        }
+        heap.clear();
+    }
+
+    /**
+     * Removes a waiting event. The event counts as dropped, not taken.
+     */
+    @Override
+    public boolean remove(Object event) {
+        for (Entry entry : heap) {
+            if (entry.event == event) {
+                heap.remove(entry);
+                stats.get(entry.event.getSeverity()).recordCleared();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Raises the severity of a waiting event, which brings its deadline forward to the budget of the new severity
+     * unless it is already earlier.
+     */
+    @Override
+    public boolean raiseSeverity(InputEvent event, Severity severity) {
+        if (severity.compareTo(event.getSeverity()) >= 0) { // Severities are declared highest first
+            return false;
+        }
+        for (Entry entry : heap) {
+            if (entry.event != event) {
+                continue;
+            }
+            heap.remove(entry);
+            stats.get(event.getSeverity()).moveTo(stats.get(severity));
+            event.setSeverity(severity);
+            entry.deadline = Math.min(entry.deadline, deadlineOf(firstQueued.getOrDefault(event, entry.addedTime), severity));
+            heap.add(entry);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public QueueStats getStats(Severity severity) {
+        return stats.get(severity);
+    }
+
+    @Override
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Severity severity : SEVERITIES) {
+            report.append("  ").append(severity).append(": ").append(stats.get(severity)).append('\n');
+        }
+        return report.toString();
+    }
+
+    private static long deadlineOf(long reported, Severity severity) {
+        return reported + EventQueue.getResponseBudget(severity) * 1_000_000;
+    }
+}
@@ -21,7 +21,7 @@ public class Drone implements Runnable{
     public static final double BATTERY_DRAIN_RATE = 0.1; // battery % drained per second
 
     private String name; // This will be the name of teh drone based on its ID
-    private int portID = 8000;
+    private int portID;
 
     private static int nextID = 1; // Will be used to uniquely increment the ID
     private LocalTime localTime; // Will have the local time start of the event
@@ -33,18 +33,32 @@ public class Drone implements Runnable{
     private Coordinate currentCoordinates;
     private InputEvent assignedEvent;
     //private InputEvent currentEvent;
-    private DatagramSocket sendReceiveSocket; // A socket for the drone to send to receive
+    private Transport transport; // Bound to the port of the drone, used to receive events and send them back
+    private DatagramSocket sendReceiveSocket; // The socket of the drone's port when the transport is UDP, otherwise null
+    private static final int SUBSYSTEM_PORT = Endpoints.getPort(Endpoints.DSS_DRONES); // Port the drone subsystem receives drone messages on
 
     /**
      * The constructor of the done system assigns a new ID and the state as available to start.
      */
     public Drone() {
+        this(null);
+    }
+
+    /**
+     * Constructs a drone that communicates over the given transport.
+     * @param transport the transport to bind the drone's port on, or null to open the one picked by the "transport" system property.
+     */
+    public Drone(Transport transport) {
 
         try {
             this.ID = nextID++;
-            this.portID += nextID;
-            sendReceiveSocket = new DatagramSocket(portID); // Creates a new socket
-            this.name = "Drone" + ID;
+            this.portID = Endpoints.getDronePort(ID);
+            this.transport = transport != null ? transport : Transport.open("Drone" + ID);
+            this.transport.bind(portID);
+            if (this.transport instanceof UdpTransport) {
+                sendReceiveSocket = ((UdpTransport) this.transport).getSocket(portID);
+            }
+            this.name = ShardMap.get().getShardCount() > 1 ? "Drone" + ID + "-S" + ShardMap.getLocalShard() : "Drone" + ID; // Drones of every shard share the GUI
             this.localTime = null;
             this.droneState = new AvailableState();
             this.currentCoordinates = new Coordinate(0, 0);
@@ -97,7 +111,7 @@ public class Drone implements Runnable{
 
     /**
      * Gets the socket for the drone.
-     * @return the socket for the drone.
+     * @return the socket for the drone, or null if the drone does not communicate over UDP.
      */
     public DatagramSocket getSendReceiveSocket() {
         return sendReceiveSocket;
@@ -117,10 +131,29 @@ public class Drone implements Runnable{
      * @return the serialized events.
      */
     public byte[] serializeEvent(InputEvent event) throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(bos);
-        oos.writeObject(event);
-        return bos.toByteArray();
+        return WireCodec.encodeEvent(event);
+    }
+
+    /**
+     * Waits for an event from the drone subsystem.
+     * @return the event that was received.
+     */
+    public InputEvent receiveEvent() throws IOException {
+        while (true) {
+            Object message = transport.receive(-1).getMessage();
+            if (message instanceof InputEvent) {
+                return (InputEvent) message;
+            }
+            System.out.println("[" + name + "] DROPPED UNEXPECTED MESSAGE");
+        }
+    }
+
+    /**
+     * Sends an event back to the drone subsystem, once it is completed or could not be completed.
+     * @param event the event being sent.
+     */
+    public void sendToSubsystem(InputEvent event) throws IOException {
+        transport.send(event, SUBSYSTEM_PORT);
     }
 
     /**
@@ -128,10 +161,8 @@ public class Drone implements Runnable{
      * @param data the event that was received
      * @return deserialized event.
      */
-    public InputEvent deserializeEvent(byte[] data) throws IOException, ClassNotFoundException {
-        ByteArrayInputStream bis = new ByteArrayInputStream(data);
-        ObjectInputStream ois = new ObjectInputStream(bis);
-        return (InputEvent) ois.readObject();
+    public InputEvent deserializeEvent(byte[] data) throws IOException {
+        return WireCodec.decodeEvent(data, 0, data.length);
     }
 
     /**
@@ -1,18 +1,23 @@
 import javax.swing.*;
 import java.io.*;
 import java.net.*;
-import java.util.List;
-import java.util.Map;
+import java.nio.channels.AsynchronousCloseException;
+import java.util.*;
 
 /**
  * The controller class that listens for both drone updates (List<DroneStatus>)
- * and zone updates (List<Zone>) on a UDP port, then tells the DroneMapView to refresh.
+ * and zone updates (List<Zone>) on a UDP port, then tells the DroneMapView to refresh. When telemetry is multicast,
+ * the controller is one of any number of subscribers to the telemetry group. When the zones are split between several
+ * Scheduler shards, every shard sends its own zones, drones and metrics, and the controller puts them together.
  */
 public class DroneMapController {
 
     private DroneMapView view;
-    private DatagramSocket socket;
+    private TelemetrySubscriber subscriber;
     private boolean running = true;
+    private final DroneTelemetryDecoder telemetryDecoder = new DroneTelemetryDecoder(); // Rebuilds drone statuses from keyframes and deltas
+    private final Map<Integer, Zone> zones = new TreeMap<>();                 // Zones of every shard by ID, as each shard only sends its own
+    private final Map<String, Object> utilizations = new TreeMap<>();         // Utilization of the drones of every shard by drone name
 
 
     /**
@@ -20,12 +25,11 @@ public class DroneMapController {
      *
      * @param view The {@link DroneMapView} instance that will be updated with new data.
      * @param port The UDP port on which the controller listens for incoming packets.
-     * @throws SocketException If the socket could not be opened or the socket could not
-     *                         bind to the specified port.
+     * @throws IOException If the channel could not be opened, could not bind to the specified port or could not join the telemetry group.
      */
-    public DroneMapController(DroneMapView view, int port) throws SocketException {
+    public DroneMapController(DroneMapView view, int port) throws IOException {
         this.view = view;
-        this.socket = new DatagramSocket(port);
+        this.subscriber = new TelemetrySubscriber("DroneMapController", new InetSocketAddress(TelemetryPublisher.getDefaultTarget().getAddress(), port));
     }
 
     /**
@@ -34,15 +38,10 @@ public class DroneMapController {
      */
     public void start() {
         new Thread(() -> {
-            System.out.println("[DroneMapController] Listening on port " + socket.getLocalPort());
+            System.out.println("[DroneMapController] Listening on port " + subscriber.getLocalPort());
             while (running) {
                 try {
-                    byte[] buffer = new byte[4096];
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                    socket.receive(packet); // blocks until a packet is received
-
-                    // Deserialize the object
-                    Object receivedObject = deserialize(packet.getData());
+                    Object receivedObject = subscriber.receive(); // blocks until an update is received
 
                     // Update the UI based on the type of the received object
                     if (receivedObject instanceof List) {
@@ -51,19 +50,37 @@ public class DroneMapController {
                             if (list.get(0) instanceof DroneStatus) {
                                 SwingUtilities.invokeLater(() -> view.updateDisplay((List<DroneStatus>) list));
                             } else if (list.get(0) instanceof Zone) {
-                                SwingUtilities.invokeLater(() -> view.setZones((List<Zone>) list));
+                                for (Object zone : list) {
+                                    zones.put(((Zone) zone).getZoneID(), (Zone) zone);
+                                }
+                                List<Zone> allZones = new ArrayList<>(zones.values());
+                                SwingUtilities.invokeLater(() -> view.setZones(allZones));
                             }
                         }
                     }
+                    else if (receivedObject instanceof DroneTelemetryFrame) {
+                        List<DroneStatus> statuses = telemetryDecoder.apply((DroneTelemetryFrame) receivedObject);
+                        if (statuses != null) {
+                            SwingUtilities.invokeLater(() -> view.updateDisplay(statuses));
+                        }
+                    }
                     else if (receivedObject instanceof InputEvent){
                         SwingUtilities.invokeLater(()-> view.displayEvent((InputEvent) receivedObject));
                     }
                     else if (receivedObject instanceof Map){
                         Map<?, ?> map = (Map<?, ?>) receivedObject;
                         if (!map.isEmpty()) {
-                            SwingUtilities.invokeLater(()->view.updateMetrics(map));
+                            // Averages are those of the shard that reported last, but the drones of every shard are listed
+                            Map<Object, Object> metrics = new HashMap<>(map);
+                            if (map.get("utilizations") instanceof Map) {
+                                ((Map<?, ?>) map.get("utilizations")).forEach((name, utilization) -> utilizations.put((String) name, utilization));
+                                metrics.put("utilizations", new TreeMap<>(utilizations));
+                            }
+                            SwingUtilities.invokeLater(()->view.updateMetrics(metrics));
                         }
                     }
+                } catch (AsynchronousCloseException e) {
+                    return; // The controller was stopped
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
@@ -72,26 +89,14 @@ public class DroneMapController {
     }
 
     /**
-     * Stops the controller from listening for further packets and closes the socket.
+     * Stops the controller from listening for further packets and closes the channel.
      */
     public void stop() {
         running = false;
-        socket.close();
-    }
-
-    /**
-     * Deserializes a byte array into an Object using standard Java serialization.
-     *
-     * @param data The byte array containing the serialized object data.
-     * @return The deserialized {@link Object}, or {@code null} if an error occurred.
-     */
-    private Object deserialize(byte[] data) {
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(data);
-             ObjectInputStream ois = new ObjectInputStream(bis)) {
-            return ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+        try {
+            subscriber.close();
+        } catch (IOException e) {
             e.printStackTrace();
-            return null;
         }
     }
 }
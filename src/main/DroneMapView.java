@@ -396,7 +396,10 @@ public class DroneMapView extends JPanel {
         // Group fires by zone
         Map<Integer, List<InputEvent>> firesByZone = new HashMap<>();
         for (InputEvent fireEvent : fireEvents.values()) {
-            int zoneId = fireEvent.getZone().getZoneID();
+            if (fireEvent.getZone() == null) {
+                continue; // The zones have not been received yet
+            }
+            int zoneId = fireEvent.getZoneId();
             firesByZone.computeIfAbsent(zoneId, k -> new ArrayList<>()).add(fireEvent);
         }
 
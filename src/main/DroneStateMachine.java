@@ -1,6 +1,4 @@
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.InetAddress;
 
 /**
  * Interface representing the state of a drone in the state machine.
@@ -44,12 +42,7 @@ class AvailableState extends InBaseState {
         MetricAnalysisLogger.logEvent(MetricAnalysisLogger.EventStatus.WAITING_FOR_TASK, null, context.getName());
 
         try{
-            byte[] buffer = new byte[6000];
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-
-            context.getSendReceiveSocket().receive(packet); // Gets the event
-
-            InputEvent event = context.deserializeEvent(packet.getData()); // Deserializes the data
+            InputEvent event = context.receiveEvent(); // Gets the event and decodes it from a pooled buffer
 
             context.setAssignedEvent(event); // Sets the assigned event of the drone from the one it received
             MetricAnalysisLogger.logEvent(MetricAnalysisLogger.EventStatus.ASSIGNED_EVENT, event, context.getName());
@@ -62,7 +55,7 @@ class AvailableState extends InBaseState {
             context.sleepFor(context.ACCELERATION_TIME); // Simulates the acceleration time
             context.setDroneState(new AscendingState()); // The drone becomes on route to the fire zone
         }
-        catch (IOException | ClassNotFoundException e){
+        catch (IOException e){
             e.printStackTrace();
         }
 
@@ -148,11 +141,7 @@ class StuckState extends InFieldState {
             System.out.println("["+context.getName() + "] GOT STUCK MID-FLIGHT AND IS GOING OFFLINE."); // Prints a message that the drone got stuck and will be set to offline
             Thread.sleep(2000);
             System.out.println("[" + context.getName() + "] NOW OFFLINE."); // Makes the drone offline
-            byte[] data = context.serializeEvent(context.getAssignedEvent()); // Serializes the event
-            // Sends the event back to be rescheduled
-            DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getLocalHost(), 6001);
-
-            context.getSendReceiveSocket().send(packet);
+            context.sendToSubsystem(context.getAssignedEvent()); // Sends the event back to be rescheduled
             context.setAssignedEvent(null); // Sets the assigned event as null
 
             Thread.sleep(900000000); // Thread goes offline similar by sleeping for a long time
@@ -181,11 +170,7 @@ class JammedState extends InFieldState {
             Thread.sleep(2000);
             System.out.println("[" + context.getName() + "] NOW OFFLINE."); // Makes the drone offline
             MetricAnalysisLogger.logEvent(MetricAnalysisLogger.EventStatus.OFFLINE, context.getAssignedEvent(), context.getName());
-            byte[] data = context.serializeEvent(context.getAssignedEvent()); // Serializes the event
-            // Resends the packet to be sent back and rescheduled
-            DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getLocalHost(), 6001);
-
-            context.getSendReceiveSocket().send(packet);
+            context.sendToSubsystem(context.getAssignedEvent()); // Resends the event to be sent back and rescheduled
 
             context.setAssignedEvent(null); // Sets the assigned event as null
 
@@ -204,16 +189,16 @@ class JammedState extends InFieldState {
 }
 
 /**
- * State where the drone received a corrupted message.
+ * State where the drone received a corrupted message. Over UDP a corrupted datagram fails its checksum and is
+ * retransmitted before the drone ever sees it, so this state is only reached when the fault cannot be played out on
+ * the wire. The drone drops the message and hands the event straight back to be sent again, without restarting.
  */
 class CorruptState extends InFieldState {
     @Override
     public void handle(Drone context) {
         try {
             System.out.println("[" + context.getName() + "] MESSAGE RECEIVED IS CORRUPTED.");
-            System.out.println("[" + context.getName() + "] RESTARTING DRONE...");
-            Thread.sleep(10000);
-            System.out.println("[" + context.getName() + "] DRONE RESTARTED.");
+            System.out.println("[" + context.getName() + "] DROPPED THE MESSAGE, ASKING FOR IT AGAIN.");
 
             context.getAssignedEvent().setHandlingDrone(context.getName());
             // Clear fault and transition to AvailableState
@@ -221,10 +206,7 @@ class CorruptState extends InFieldState {
             context.setDroneState(new AvailableState());
 
             // Send updated event back to DSS
-            byte[] data = context.serializeEvent(context.getAssignedEvent());
-            // DSS's drone socket
-            DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getLocalHost(), 6001);
-            context.getSendReceiveSocket().send(packet);
+            context.sendToSubsystem(context.getAssignedEvent());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -318,10 +300,8 @@ class DropAgentState extends InFieldState {
         context.setDropCompleted(true);
 
         try{
-            byte[] data = context.serializeEvent(context.getAssignedEvent()); // Serializes the event
-            // Sends the data as a confirmation that it was correctly completed
-            DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getLocalHost(), 6001);
-            context.getSendReceiveSocket().send(packet); // Snd it to the drone subsystems
+            // Sends the event as a confirmation that it was correctly completed
+            context.sendToSubsystem(context.getAssignedEvent()); // Snd it to the drone subsystems
 
         }catch (IOException e){
             e.printStackTrace();
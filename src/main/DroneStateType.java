@@ -0,0 +1,57 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents the states a drone can be in when its status is sent to the GUI. Only the ordinal of the state is
+ * written in a telemetry frame, so new states must only be added at the end.
+ */
+public enum DroneStateType {
+    AVAILABLE("AvailableState"),
+    ASCENDING("AscendingState"),
+    CRUISING("CruisingState"),
+    DROP_AGENT("DropAgentState"),
+    RETURNING_TO_BASE("ReturningToBaseState"),
+    REFILL("RefillState"),
+    BATTERY_RECHARGING("BatteryRechargingState"),
+    STUCK("StuckState"),
+    JAMMED("JammedState"),
+    CORRUPT("CorruptState");
+
+    private static final Map<String, DroneStateType> BY_STATE_NAME = new HashMap<>();
+
+    static {
+        for (DroneStateType type : values()) {
+            BY_STATE_NAME.put(type.stateName, type);
+        }
+    }
+
+    private final String stateName;
+
+    /**
+     * Constructs a DroneStateType enum with the name of its state class.
+     *
+     * @param stateName The simple name of the state class.
+     */
+    DroneStateType(String stateName) {
+        this.stateName = stateName;
+    }
+
+    /**
+     * Gets the simple name of the state class, which is what the GUI uses to pick the colour of a drone.
+     *
+     * @return the name of the state.
+     */
+    public String getStateName() {
+        return stateName;
+    }
+
+    /**
+     * Gets the state type with the given state class name.
+     *
+     * @param stateName the simple name of the state class.
+     * @return the matching state type, or null if there is none.
+     */
+    public static DroneStateType fromStateName(String stateName) {
+        return BY_STATE_NAME.get(stateName);
+    }
+}
@@ -12,48 +12,98 @@ import java.util.concurrent.*;
 public class DroneSubsystem implements Runnable {
 
     private final String name;
-    private final DatagramSocket schedulerSocket; // For Scheduler on port 6000
-    private final DatagramSocket droneSocket;     // For Drones on port 6001
+    private final Transport schedulerTransport;   // For Scheduler on port 6000 by default
+    private final Transport droneTransport;       // For Drones on port 6001 by default
+    private static final int PORT = Endpoints.getPort(Endpoints.DSS_SCHEDULER);           // Port the Scheduler sends to
+    private static final int DRONE_PORT = Endpoints.getPort(Endpoints.DSS_DRONES);        // Port the drones send to
+    private static final int SCHEDULER_PORT = Endpoints.getPort(Endpoints.SCHEDULER_DSS); // Port the Scheduler receives drone subsystem messages on
+    private static final long RECEIVE_TIMEOUT = 2000; // How long a single receive waits in milliseconds
+    private static final long CREDIT_REFRESH_INTERVAL = 1000; // Time after which an unchanged credit grant is sent again, in case it was lost
+
+    // Credit flow control, see CreditGrant
+    private final int creditSession = new Random().nextInt(); // Identifies this run to the Scheduler
+    private long eventsReceived = 0;             // Events received from the Scheduler in this session
+    private long advertisedLimit = -1;           // Limit of the last credit grant sent
+    private int advertisedCapacity = -1;         // Capacity behind the last credit grant sent, only used when printing
+    private long lastCreditTime = 0;             // When the last credit grant was sent
     private DroneSubsystemState currentState = DroneSubsystemState.WAITING;
+    private ZoneRegistry zoneRegistry = null;    // Registry received from the Scheduler, null until it arrives
 
     // Drone management
     private final List<Drone> drones = new CopyOnWriteArrayList<>();
     private List<InputEvent> pendingEvents = new ArrayList<>();
+    private final Set<Integer> completedEvents = new LinkedHashSet<>(); // IDs of the events completed lately, oldest first, so a copy sent again is not flown twice
+    private static final int COMPLETED_EVENTS_KEPT = 1024; // How many completed event IDs are remembered
     private DroneModel droneModel;
+    private final TelemetryPublisher guiPublisher; // Sends drone statuses and metrics to the GUI endpoint, or to the telemetry multicast group
+    private final DroneTelemetryEncoder telemetryEncoder = new DroneTelemetryEncoder(); // Turns drone statuses into keyframes and deltas
+    private static final long MOVING_UPDATE_INTERVAL = 250; // Time between drone updates while any drone is moving
+    private static final long IDLE_UPDATE_INTERVAL = 1000;  // Time between drone updates while every drone is still
+    private static final long METRICS_INTERVAL = 2000;      // Time between metrics updates
 
 
     /**
      * Constructs a DroneSubsystem with the given name and number of drones.
-     * Initializes the drone fleet, starts the drone model thread, and sets up UDP sockets.
+     * Initializes the drone fleet, starts the drone model thread, and sets up the transports picked by the
+     * "transport" system property.
      *
      * @param name      The name of this DroneSubsystem.
      * @param numDrones The number of drones to initialize.
-     * @throws RuntimeException if UDP sockets cannot be initialized.
+     * @throws RuntimeException if the transports cannot be initialized.
      */
     public DroneSubsystem(String name, int numDrones) {
+        this(name, numDrones, null);
+    }
+
+    /**
+     * Constructs a DroneSubsystem with the given name and number of drones.
+     * Initializes the drone fleet, starts the drone model thread, and sets up the transports.
+     *
+     * @param name      The name of this DroneSubsystem.
+     * @param numDrones The number of drones to initialize.
+     * @param transport The transport to communicate with the Scheduler on, or null to open the one picked by the
+     *                  "transport" system property. The drones get new transports of the same kind.
+     * @throws RuntimeException if the transports cannot be initialized.
+     */
+    public DroneSubsystem(String name, int numDrones, Transport transport) {
         MetricAnalysisLogger.logEvent(MetricAnalysisLogger.EventStatus.STARTING, null, null);
 
         this.name = name;
-        // Initialize drone fleet
-        for(int i = 0; i < numDrones; i++) {
-            Drone drone = new Drone();
-            drones.add(drone);
-            new Thread(drone).start();
+        try {
+            this.schedulerTransport = transport != null ? transport : Transport.open(name + "-Scdlr");
+            this.schedulerTransport.bind(PORT);
+            this.droneTransport = schedulerTransport.newTransport(name + "-Drones");
+            this.droneTransport.bind(DRONE_PORT);
+            this.guiPublisher = new TelemetryPublisher(name + "-GUI", TelemetryPublisher.getDefaultTarget());
+
+            // Initialize drone fleet
+            for(int i = 0; i < numDrones; i++) {
+                Drone drone = new Drone(schedulerTransport.newTransport(name + "-Drone"));
+                drones.add(drone);
+                new Thread(drone).start();
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to initialize transport", e);
         }
 
         //start drone model thread after its given the
         droneModel = new DroneModel(drones);
         new Thread(droneModel).start();
+        advertiseCredit(); // The Scheduler sends nothing before the first grant
+    }
 
+    /**
+     * Closes the transports to the Scheduler and the drones and the GUI publisher.
+     */
+    public void close() {
         try {
-            this.schedulerSocket = new DatagramSocket(6000);
-            this.schedulerSocket.setSoTimeout(2000);
-            this.droneSocket = new DatagramSocket(6001);
-            this.droneSocket.setSoTimeout(2000);
-
+            schedulerTransport.close();
+            droneTransport.close();
         } catch (IOException e) {
-            throw new RuntimeException("Failed to initialize UDP socket", e);
+            e.printStackTrace();
         }
+        guiPublisher.close();
     }
 
     /**
@@ -65,6 +115,7 @@ public class DroneSubsystem implements Runnable {
         System.out.println("["+this.name + "] SUBSYSTEM STARTED WITH " + drones.size() + " DRONES.");
 
         while(true) {
+            advertiseCredit();
             switch(currentState) {
                 case WAITING:
                     handleWaitingState();
@@ -84,44 +135,144 @@ public class DroneSubsystem implements Runnable {
     /**
      * Handles the waiting state by listening for an incoming event from the Scheduler.
      * Upon receiving an event, the event is deserialized, added to pending events, and the state changes.
+     * Every message already waiting behind the first one is taken as well, and a batch of events is taken as a whole,
+     * so every event that arrived goes through the same assignment pass. Each event of a batch is acknowledged to
+     * the Scheduler.
+     * The Scheduler may also send the zone registry, which is installed and acknowledged.
      */
     public void handleWaitingState() {
 
         try {
-            byte[] buffer = new byte[6000];
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-            schedulerSocket.receive(packet); // Receives a packet from the Scheduler
-            InputEvent event = deserializeEvent(packet.getData()); // Deserializes the data
-            System.out.println("["+this.name + "] RECEIVED EVENT --> " + "INPUT_EVENT_" + event.getEventID() + " (" +  event + ")" + " FROM: " + "SCHEDULER"); // Prints a message that it has received the data
-            pendingEvents.add(event);
-            MetricAnalysisLogger.logEvent(MetricAnalysisLogger.EventStatus.RECEIVED_EVENT, event, null);
-            currentState = DroneSubsystemState.RECEIVED_EVENT_FROM_SCHEDULER;
-
-        }catch (SocketTimeoutException e) {
+            Transport.Delivery delivery = schedulerTransport.receive(RECEIVE_TIMEOUT); // Receives an event or the zone registry from the Scheduler
+            while (delivery != null) { // Null once nothing else arrived
+                handleSchedulerMessage(delivery.getMessage());
+                delivery = schedulerTransport.receive(0);
+            }
             currentState = DroneSubsystemState.RECEIVED_EVENT_FROM_SCHEDULER;
 
-        }catch (IOException | ClassNotFoundException e) {
+        }catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Handles one message from the Scheduler, which holds the zone registry, a batch of events or a single event.
+     *
+     * @param message The message received from the Scheduler.
+     * @throws IOException If an acknowledgement could not be sent.
+     */
+    private void handleSchedulerMessage(Object message) throws IOException {
+        if (message instanceof ZoneRegistry) {
+            ZoneRegistry registry = (ZoneRegistry) message;
+            zoneRegistry = registry;
+            schedulerTransport.setZoneRegistry(registry); // Shared with the transports of the drones
+            for (InputEvent event : pendingEvents) {
+                resolveZone(event);
+            }
+            System.out.println("["+this.name + "] INSTALLED ZONE REGISTRY " + Integer.toHexString(registry.getHash()) + " (" + registry.getZones().size() + " zones) FROM: " + "SCHEDULER");
+            sendZoneRegistryAck(registry.getHash());
+        } else if (message instanceof EventBatch) {
+            EventBatch batch = (EventBatch) message;
+            boolean missingZone = false;
+            int[] taken = new int[batch.getEvents().size()];
+            for (int i = 0; i < taken.length; i++) {
+                InputEvent event = batch.getEvents().get(i);
+                acceptEvent(event);
+                missingZone |= event.getZone() == null;
+                taken[i] = event.getEventID();
+            }
+            schedulerTransport.send(new EventBatch.Ack(batch.getBatchID(), taken), SCHEDULER_PORT);
+            if (missingZone) { // This subsystem is missing the registry, so tell the Scheduler which one it has
+                sendZoneRegistryAck(zoneRegistry == null ? 0 : zoneRegistry.getHash());
+            }
+        } else if (message instanceof InputEvent) {
+            InputEvent event = (InputEvent) message;
+            acceptEvent(event);
+            if (event.getZone() == null) { // This subsystem is missing the registry, so tell the Scheduler which one it has
+                sendZoneRegistryAck(zoneRegistry == null ? 0 : zoneRegistry.getHash());
+            }
+        }
+    }
+
+    /**
+     * Adds an event received from the Scheduler to the pending events. An event this subsystem already holds or
+     * completed lately, which the Scheduler sent again because its acknowledgement was lost, is not added twice; it is
+     * still acknowledged with the rest of its batch. It is not counted as received again either, since the Scheduler
+     * counts a copy it sends again only once against the credit.
+     *
+     * @param event The event received from the Scheduler.
+     */
+    private void acceptEvent(InputEvent event) {
+        resolveZone(event);
+        if (isHoldingEvent(event.getEventID())) {
+            System.out.println("["+this.name + "] ALREADY HOLDING INPUT_EVENT_" + event.getEventID() + ", IGNORED THE COPY FROM: " + "SCHEDULER");
+            return;
+        }
+        if (completedEvents.contains(event.getEventID())) {
+            System.out.println("["+this.name + "] ALREADY COMPLETED INPUT_EVENT_" + event.getEventID() + ", IGNORED THE COPY FROM: " + "SCHEDULER");
+            return;
+        }
+        System.out.println("["+this.name + "] RECEIVED EVENT --> " + "INPUT_EVENT_" + event.getEventID() + " (" +  event + ")" + " FROM: " + "SCHEDULER"); // Prints a message that it has received the data
+        pendingEvents.add(event);
+        eventsReceived++;
+        MetricAnalysisLogger.logEvent(MetricAnalysisLogger.EventStatus.RECEIVED_EVENT, event, null);
+    }
+
+    /**
+     * Looks up the zone of an event that arrived without one in the registry this subsystem holds, by zone ID.
+     *
+     * @param event The event received from the Scheduler.
+     */
+    private void resolveZone(InputEvent event) {
+        if (event.getZone() == null && zoneRegistry != null) {
+            event.setZone(zoneRegistry.getZone(event.getZoneId()));
+        }
+    }
+
+    /**
+     * Checks if an event is pending or assigned to a drone.
+     *
+     * @param eventID The ID of the event.
+     * @return true if this subsystem holds the event.
+     */
+    private boolean isHoldingEvent(int eventID) {
+        for (InputEvent event : pendingEvents) {
+            if (event.getEventID() == eventID) {
+                return true;
+            }
+        }
+        for (Drone drone : drones) {
+            InputEvent assigned = drone.getAssignedEvent();
+            if (assigned != null && assigned.getEventID() == eventID) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Processes all pending events by assigning each event to an available drone based on a selection algorithm.
      * After processing, transitions the state to SENDING_EVENT_TO_SCHEDULER.
      */
     public void handleReceivedEventState() {
         //iterate the pending events and send them out
+        Set<Drone> assignedThisPass = new HashSet<>(); // Drones stay available until they pick up their event, so each is only chosen once per pass
         for (int i=0; i < pendingEvents.size(); i++) {
             InputEvent currentEvent = pendingEvents.get(i);
+            if (currentEvent.getZone() == null) {
+                continue; // Assigned once the zone registry holding its zone is installed
+            }
             try {
-                Drone selectedDrone = chooseDroneAlgorithm(currentEvent);
+                Drone selectedDrone = chooseDroneAlgorithm(currentEvent, assignedThisPass);
                 if (selectedDrone != null ) {
-                    byte[] data = serializeEvent(currentEvent); // Serializes the event
-                    // Sends it to that specific drone
-                    DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getLocalHost(), selectedDrone.getPortID());
-                    droneSocket.send(packet); // Sends the damn packet
+                    if (currentEvent.getFaultType() == FaultType.CORRUPT && droneTransport.corruptNextMessage()) {
+                        currentEvent.setFaultType(null); // The fault is played out on the wire, where the checksum catches it; otherwise the drone plays it out
+                        System.out.println("[" + this.name + "] CORRUPTING THE MESSAGE OF INPUT_EVENT_" + currentEvent.getEventID() + " ON ITS WAY TO: " + selectedDrone.getName());
+                    }
+                    droneTransport.send(currentEvent, selectedDrone.getPortID()); // Sends it to that specific drone
                     selectedDrone.setAssignedEvent(currentEvent);
-                    pendingEvents.remove(currentEvent);
+                    assignedThisPass.add(selectedDrone);
+                    pendingEvents.remove(i--); // The next event moved into this index
                     System.out.println("[" + this.name + "] ASSIGNED INPUT_EVENT_" + currentEvent.getEventID() + " TO: " + selectedDrone.getName()); // Prints the name of the drone that was assigned the event
                 }
             }catch (IOException e) {
@@ -141,15 +292,17 @@ public class DroneSubsystem implements Runnable {
     public void handleSendingConfirmationState() {
         boolean reQueueEvent = false;
         try {
-            byte[] buffer = new byte[6000];
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-
-            droneSocket.receive(packet); // Gets the event from the drone
-            InputEvent receivedEvent = deserializeEvent(packet.getData()); // Deserializes the data
+            Transport.Delivery delivery = droneTransport.receive(RECEIVE_TIMEOUT); // Gets the event from the drone
+            if (delivery == null || !(delivery.getMessage() instanceof InputEvent)) {
+                currentState = DroneSubsystemState.WAITING;
+                return;
+            }
+            InputEvent receivedEvent = (InputEvent) delivery.getMessage();
             if (receivedEvent.getFaultType() == null) {
 
                 if(receivedEvent.getRemainingAgentNeeded() <= 0) {
                     System.out.println("[" + this.name + "]" + " COMPLETED INPUT_EVENT_" + receivedEvent.getEventID() + " (" + receivedEvent.toString() + ")");
+                    rememberCompleted(receivedEvent.getEventID());
 
                 } else if (receivedEvent.getRemainingAgentNeeded() > 0 ) {
                     System.out.println("[" + name + "] RE-QUEUED EVENT " + receivedEvent.getEventID() + " (" + receivedEvent.getRemainingAgentNeeded() + "L remaining)");
@@ -167,13 +320,26 @@ public class DroneSubsystem implements Runnable {
 
             currentState = DroneSubsystemState.WAITING;
 
-        } catch (SocketTimeoutException e){
-            currentState = DroneSubsystemState.WAITING;
-        } catch (ClassNotFoundException | IOException e) {
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Remembers that an event was completed, forgetting the oldest completed event once too many are kept. Faulted
+     * events are not remembered, since the FireIncidentSubsystem sends them again to be rescheduled.
+     *
+     * @param eventID The ID of the completed event.
+     */
+    private void rememberCompleted(int eventID) {
+        completedEvents.add(eventID);
+        if (completedEvents.size() > COMPLETED_EVENTS_KEPT) {
+            Iterator<Integer> oldestFirst = completedEvents.iterator();
+            oldestFirst.next();
+            oldestFirst.remove();
+        }
+    }
+
     /**
      * Chooses the best available drone for the given event based on the shortest Euclidean distance
      * between the drone's current coordinates and the event's zone center.
@@ -182,6 +348,18 @@ public class DroneSubsystem implements Runnable {
      * @return The closest available {@link Drone}, or null if no drone is available.
      */
     public Drone chooseDroneAlgorithm(InputEvent event) {
+        return chooseDroneAlgorithm(event, Collections.emptySet());
+    }
+
+    /**
+     * Chooses the closest available drone for the given event, leaving out drones that were already given an event
+     * they have not picked up yet.
+     *
+     * @param event   The {@link InputEvent} for which a drone is needed.
+     * @param exclude The drones that must not be chosen.
+     * @return The closest available {@link Drone} that is not excluded, or null if there is none.
+     */
+    public Drone chooseDroneAlgorithm(InputEvent event, Set<Drone> exclude) {
 
         Coordinate eventCoords = event.getZone().getZoneCenter();
         Drone closestDrone = null;
@@ -189,6 +367,9 @@ public class DroneSubsystem implements Runnable {
 
         // Iterate over ACTUALLY available drones from DroneModel
         for (Drone drone : droneModel.getAvailableDrones()) {
+            if (exclude.contains(drone)) {
+                continue;
+            }
             Coordinate droneCoords = drone.getCurrentCoordinates();
             double distance = calculateDistance(eventCoords, droneCoords);
 
@@ -200,6 +381,47 @@ public class DroneSubsystem implements Runnable {
         return closestDrone;
     }
 
+    /**
+     * Counts the events this subsystem can take on top of the ones it holds. Drones that are available, or that are
+     * on their way back and will be available soon, each count for one event, less the events still waiting for a
+     * drone.
+     *
+     * @return the number of events that can be taken, which is never negative.
+     */
+    public int getCapacity() {
+        int drones = 0;
+        for (Drone drone : this.drones) {
+            DroneStateMachine state = drone.getDroneState();
+            if (state instanceof AvailableState || state instanceof ReturningToBaseState || state instanceof RefillState) {
+                drones++;
+            }
+        }
+        return Math.max(0, drones - pendingEvents.size());
+    }
+
+    /**
+     * Sends a credit grant to the Scheduler when the capacity changed, or when the last grant is due to be refreshed.
+     */
+    private void advertiseCredit() {
+        int capacity = getCapacity();
+        long limit = eventsReceived + capacity;
+        long now = System.currentTimeMillis();
+        if (limit == advertisedLimit && now - lastCreditTime < CREDIT_REFRESH_INTERVAL) {
+            return;
+        }
+        try {
+            schedulerTransport.send(new CreditGrant(creditSession, limit), SCHEDULER_PORT);
+            if (capacity != advertisedCapacity) {
+                System.out.println("["+this.name + "] CAN TAKE " + capacity + " MORE EVENTS FROM: SCHEDULER");
+            }
+            advertisedCapacity = capacity;
+            advertisedLimit = limit;
+            lastCreditTime = now;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Calculates the Euclidean distance between two coordinates.
      *
@@ -219,9 +441,7 @@ public class DroneSubsystem implements Runnable {
      */
     private void sendConfirmation(InputEvent event) {
         try {
-            byte[] data = serializeEvent(event);
-            DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getLocalHost(), 5001);
-            schedulerSocket.send(packet);
+            schedulerTransport.send(event, SCHEDULER_PORT);
             System.out.println("["+this.name + "] SENDING EVENT TO SCHEDULER --> " + "INPUT_EVENT_" + event.getEventID() + " (" +event.toString() + ")"); // Sends the message back to the Scheduler
         } catch (IOException e) {
             System.err.println("Failed to send confirmation: " + e.getMessage());
@@ -230,41 +450,51 @@ public class DroneSubsystem implements Runnable {
 
 
     /**
-     * Serializes an {@link InputEvent} into a byte array.
+     * Tells the Scheduler which zone registry this subsystem holds.
+     *
+     * @param hash The hash of the installed registry, or 0 if none is installed.
+     */
+    private void sendZoneRegistryAck(int hash) {
+        try {
+            schedulerTransport.send(new ZoneRegistry.Ack(hash), SCHEDULER_PORT);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Serializes an {@link InputEvent} into a compact binary frame.
      *
      * @param event The {@link InputEvent} to serialize.
      * @return A byte array representing the serialized event.
      * @throws IOException If an I/O error occurs during serialization.
      */
     public byte[] serializeEvent(InputEvent event) throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(bos);
-        oos.writeObject(event);
-        return bos.toByteArray();
+        return WireCodec.encodeEvent(event);
     }
 
 
     /**
-     * Deserializes a byte array into an {@link InputEvent}.
+     * Deserializes a binary frame into an {@link InputEvent}.
      *
      * @param data The byte array containing the serialized event.
      * @return The deserialized {@link InputEvent}.
-     * @throws IOException            If an I/O error occurs during deserialization.
-     * @throws ClassNotFoundException If the class of the serialized object cannot be found.
+     * @throws IOException If the data is not a valid event frame.
      */
-    public InputEvent deserializeEvent(byte[] data) throws IOException, ClassNotFoundException {
-        ByteArrayInputStream bis = new ByteArrayInputStream(data);
-        ObjectInputStream ois = new ObjectInputStream(bis);
-        return (InputEvent) ois.readObject();
+    public InputEvent deserializeEvent(byte[] data) throws IOException {
+        return WireCodec.decodeEvent(data, 0, data.length);
     }
 
     /**
      * Starts a separate thread that periodically gathers drone statuses and metrics from the drone model,
-     * then sends these updates to the GUI via UDP packets.
+     * then queues these updates on the telemetry publisher, which sends them to the GUI. Drone statuses are sent as
+     * keyframes and deltas, more often while drones are moving.
      */
     public void startGUIUpdates() {
+        guiPublisher.start();
         new Thread(() -> {
-            try (DatagramSocket guisocket = new DatagramSocket()) {
+            try {
+                long nextMetricsTime = 0;
                 while (true) {
                     // Gather statuses from droneModel
                     List<DroneStatus> statuses = new ArrayList<>();
@@ -278,52 +508,31 @@ public class DroneSubsystem implements Runnable {
                         String stateName = stateMachine.getClass().getSimpleName();
                         statuses.add(new DroneStatus(droneName, stateName, coord.getX(), coord.getY()));
                     }
-                    // Send to GUI
-                    byte[] data = serialize(statuses);
-                    DatagramPacket statusPacket = new DatagramPacket(
-                            data, data.length,
-                            InetAddress.getLocalHost(), 8000
-                    );
-                    guisocket.send(statusPacket);
-
+                    // Send only what changed to GUI
+                    for (DroneTelemetryFrame frame : telemetryEncoder.update(statuses)) {
+                        guiPublisher.publishDroneTelemetry(frame);
+                    }
 
                     // Gather and send metrics
+                    if (System.currentTimeMillis() >= nextMetricsTime) {
+                        Map<String, Object> metrics = new HashMap<>();
+                        metrics.put("droneResponseTime", MetricAnalysisLogger.getDroneResponseTime());
+                        metrics.put("fireExtinguishedResponseTime", MetricAnalysisLogger.getFireExtinguishedResponseTime());
+                        metrics.put("throughput", MetricAnalysisLogger.getThroughput());
+                        metrics.put("utilizations", MetricAnalysisLogger.getDronesUtilization());
+
+                        guiPublisher.publishMetrics(metrics);
+                        nextMetricsTime = System.currentTimeMillis() + METRICS_INTERVAL;
+                    }
 
-                    Map<String, Object> metrics = new HashMap<>();
-                    metrics.put("droneResponseTime", MetricAnalysisLogger.getDroneResponseTime());
-                    metrics.put("fireExtinguishedResponseTime", MetricAnalysisLogger.getFireExtinguishedResponseTime());
-                    metrics.put("throughput", MetricAnalysisLogger.getThroughput());
-                    metrics.put("utilizations", MetricAnalysisLogger.getDronesUtilization());
-
-                    byte[] metricsData = serialize(metrics);
-                    DatagramPacket metricsPacket = new DatagramPacket(
-                            metricsData, metricsData.length, InetAddress.getLocalHost(), 8000
-                    );
-                    guisocket.send(metricsPacket);
-
-                    Thread.sleep(2000);
+                    Thread.sleep(telemetryEncoder.hasMovingDrones() ? MOVING_UPDATE_INTERVAL : IDLE_UPDATE_INTERVAL);
                 }
-            } catch (IOException | InterruptedException e) {
+            } catch (InterruptedException e) {
                 e.printStackTrace();
             }
         }).start();
     }
 
-    /**
-     * Serializes an object into a byte array using Java serialization.
-     *
-     * @param obj The object to serialize.
-     * @return A byte array representing the serialized object.
-     * @throws IOException If an I/O error occurs during serialization.
-     */
-    private byte[] serialize(Object obj) throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(bos);
-        oos.writeObject(obj);
-        oos.flush();
-        return bos.toByteArray();
-    }
-
     /**
      * The entry point for the DroneSubsystem application.
      * Initializes the subsystem with a specified number of drones and starts GUI updates.
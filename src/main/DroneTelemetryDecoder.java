@@ -0,0 +1,72 @@
+import java.util.*;
+
+/**
+ * The DroneTelemetryDecoder class rebuilds the status of every drone from the frames of the drone telemetry streams
+ * received by the GUI. Each Scheduler shard has a DroneSubsystem sending a stream of its own, and the stream of every
+ * shard is followed on its own: frames older than the last one applied from that shard are dropped, and delta frames
+ * are ignored until a keyframe of the current stream of their shard has been received.
+ */
+public class DroneTelemetryDecoder {
+
+    /**
+     * What is known of the stream of one shard.
+     */
+    private static class Stream {
+        private Integer streamId = null;                                   // Stream being followed, null until the first keyframe
+        private int lastSequence;                                          // Sequence number of the last frame applied
+        private final Map<Integer, String> names = new HashMap<>();       // Name of each drone index, learned from keyframes
+        private final TreeMap<Integer, DroneStatus> statuses = new TreeMap<>(); // Latest status of each drone index
+    }
+
+    private final TreeMap<Integer, Stream> streams = new TreeMap<>(); // Stream of each shard, so the drones of a shard are keyed by shard and index
+    private int droppedFrames = 0;
+
+    /**
+     * Applies a frame to the drone statuses of its shard.
+     *
+     * @param frame the frame received.
+     * @return the status of every known drone of every shard after applying the frame, or null if the frame was dropped.
+     */
+    public List<DroneStatus> apply(DroneTelemetryFrame frame) {
+        Stream stream = streams.computeIfAbsent(frame.getShard(), shard -> new Stream());
+        if (stream.streamId == null || stream.streamId != frame.getStreamId()) {
+            if (!frame.isKeyframe()) {
+                droppedFrames++;
+                return null; // Cannot interpret a delta without the keyframe it refers to
+            }
+            stream.streamId = frame.getStreamId(); // The DroneSubsystem of the shard restarted, and its old drones are gone
+            stream.names.clear();
+            stream.statuses.clear();
+        } else if (frame.getSequence() - stream.lastSequence < 0) {
+            droppedFrames++;
+            return null; // Stale frame that arrived after a newer one
+        }
+        stream.lastSequence = frame.getSequence();
+
+        for (DroneTelemetryFrame.Entry entry : frame.getEntries()) {
+            if (frame.isKeyframe()) {
+                stream.names.put(entry.getIndex(), entry.getDroneName());
+            }
+            String name = stream.names.get(entry.getIndex());
+            if (name == null) {
+                continue; // The keyframe naming this drone was lost
+            }
+            String state = entry.getState() == null ? "Unknown" : entry.getState().getStateName();
+            stream.statuses.put(entry.getIndex(), new DroneStatus(name, state, entry.getX(), entry.getY()));
+        }
+        List<DroneStatus> all = new ArrayList<>();
+        for (Stream shardStream : streams.values()) {
+            all.addAll(shardStream.statuses.values());
+        }
+        return all;
+    }
+
+    /**
+     * Gets the number of frames that were dropped because they were stale or arrived before a keyframe.
+     *
+     * @return the number of dropped frames.
+     */
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+}
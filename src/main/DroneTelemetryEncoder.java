@@ -0,0 +1,142 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The DroneTelemetryEncoder class turns the drone statuses gathered by the DroneSubsystem into the frames of the
+ * drone telemetry stream. A keyframe holding every drone is produced periodically and whenever a new drone appears;
+ * in between, only the drones whose state or position changed since the last frame are sent. Frames are kept below
+ * a fixed size so that a large fleet never overflows the receive buffer of the GUI.
+ */
+public class DroneTelemetryEncoder {
+
+    public static final long DEFAULT_KEYFRAME_INTERVAL = 5000; // Milliseconds between keyframes
+    public static final int MAX_FRAME_SIZE = 1400;            // Largest frame produced, kept below a typical MTU
+
+    private static final int FRAME_OVERHEAD = WireCodec.HEADER_SIZE + 11; // Header + stream ID + sequence + flags + count
+    private static final int ENTRY_SIZE = 11;                             // index + state + x + y
+
+    private final long keyframeInterval;
+    private final int shard;                                              // Scheduler shard of this subsystem, which the GUI keeps apart
+    private final int streamId;                                           // Lets the GUI notice that this subsystem restarted
+    private int sequence = 0;                                             // Sequence number of the next frame
+    private final Map<String, Integer> indexes = new HashMap<>();        // Index of each drone in the stream
+    private final List<DroneTelemetryFrame.Entry> lastSent = new ArrayList<>(); // Last state sent for each index
+    private long lastKeyframeTime = 0;
+    private boolean keyframeRequested = true;
+    private boolean moving = false;
+
+    /**
+     * Constructs a DroneTelemetryEncoder.
+     *
+     * @param shard            The Scheduler shard of the DroneSubsystem.
+     * @param keyframeInterval The time between keyframes in milliseconds.
+     */
+    public DroneTelemetryEncoder(int shard, long keyframeInterval) {
+        this.shard = shard;
+        this.keyframeInterval = keyframeInterval;
+        this.streamId = new Random().nextInt();
+    }
+
+    /**
+     * Constructs a DroneTelemetryEncoder for the shard this process runs.
+     *
+     * @param keyframeInterval The time between keyframes in milliseconds.
+     */
+    public DroneTelemetryEncoder(long keyframeInterval) {
+        this(ShardMap.getLocalShard(), keyframeInterval);
+    }
+
+    /**
+     * Constructs a DroneTelemetryEncoder that sends a keyframe every {@link #DEFAULT_KEYFRAME_INTERVAL} milliseconds.
+     */
+    public DroneTelemetryEncoder() {
+        this(DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Compares the given statuses with what was last sent and builds the frames to send.
+     *
+     * @param statuses the current status of every drone.
+     * @return the frames to send, which is empty if nothing changed and no keyframe is due.
+     */
+    public List<DroneTelemetryFrame> update(List<DroneStatus> statuses) {
+        long now = System.currentTimeMillis();
+        boolean keyframe = keyframeRequested || now - lastKeyframeTime >= keyframeInterval;
+        List<DroneTelemetryFrame.Entry> changed = new ArrayList<>();
+        moving = false;
+
+        for (DroneStatus status : statuses) {
+            Integer index = indexes.get(status.getDroneName());
+            if (index == null) {
+                index = lastSent.size();
+                indexes.put(status.getDroneName(), index);
+                lastSent.add(null);
+                keyframe = true; // The GUI needs the name of the new drone
+            }
+            DroneTelemetryFrame.Entry entry = new DroneTelemetryFrame.Entry(index, status.getDroneName(),
+                    DroneStateType.fromStateName(status.getState()), (float) status.getX(), (float) status.getY());
+            DroneTelemetryFrame.Entry previous = lastSent.get(index);
+            boolean moved = previous != null && (previous.getX() != entry.getX() || previous.getY() != entry.getY());
+            if (previous == null || moved || previous.getState() != entry.getState()) {
+                changed.add(entry);
+            }
+            moving |= moved;
+            lastSent.set(index, entry);
+        }
+
+        if (keyframe) {
+            keyframeRequested = false;
+            lastKeyframeTime = now;
+            List<DroneTelemetryFrame.Entry> all = new ArrayList<>();
+            for (DroneTelemetryFrame.Entry entry : lastSent) {
+                if (entry != null) {
+                    all.add(entry);
+                }
+            }
+            return split(all, true);
+        }
+        return changed.isEmpty() ? Collections.emptyList() : split(changed, false);
+    }
+
+    /**
+     * Makes the next call to {@link #update} produce a keyframe.
+     */
+    public void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    /**
+     * Checks if any drone moved in the last update, in which case updates should be sent more often.
+     *
+     * @return true if a drone changed position in the last update.
+     */
+    public boolean hasMovingDrones() {
+        return moving;
+    }
+
+    /**
+     * Splits the entries into frames that each fit in {@link #MAX_FRAME_SIZE} bytes. All of the frames share one
+     * sequence number.
+     */
+    private List<DroneTelemetryFrame> split(List<DroneTelemetryFrame.Entry> entries, boolean keyframe) {
+        int frameSequence = sequence++;
+        List<DroneTelemetryFrame> frames = new ArrayList<>();
+        DroneTelemetryFrame frame = new DroneTelemetryFrame(shard, streamId, frameSequence, keyframe);
+        int size = FRAME_OVERHEAD;
+        for (DroneTelemetryFrame.Entry entry : entries) {
+            int entrySize = ENTRY_SIZE;
+            if (keyframe) {
+                entrySize += 2 + entry.getDroneName().getBytes(StandardCharsets.UTF_8).length;
+            }
+            if (size + entrySize > MAX_FRAME_SIZE && !frame.getEntries().isEmpty()) {
+                frames.add(frame);
+                frame = new DroneTelemetryFrame(shard, streamId, frameSequence, keyframe);
+                size = FRAME_OVERHEAD;
+            }
+            frame.getEntries().add(entry);
+            size += entrySize;
+        }
+        frames.add(frame);
+        return frames;
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The DroneTelemetryFrame class holds one frame of the drone telemetry stream sent to the GUI. A keyframe carries
+ * every drone along with its name, while a delta frame only carries the drones whose state or position changed and
+ * refers to them by the index assigned in the keyframe. Every frame carries the ID of the stream and a sequence
+ * number so that the receiver can drop stale frames and notice when the sender restarts, and the Scheduler shard of
+ * the sender so that the receiver follows the stream of every shard on its own. A keyframe or delta that does not fit
+ * in one datagram is split into several frames with the same sequence number.
+ */
+public class DroneTelemetryFrame {
+
+    /**
+     * The state and position of one drone.
+     */
+    public static class Entry {
+        private final int index;
+        private final String droneName;
+        private final DroneStateType state;
+        private final float x;
+        private final float y;
+
+        /**
+         * Constructs an Entry.
+         *
+         * @param index     The index of the drone in the stream.
+         * @param droneName The name of the drone, or null in a delta frame.
+         * @param state     The state of the drone.
+         * @param x         The x-coordinate of the drone.
+         * @param y         The y-coordinate of the drone.
+         */
+        public Entry(int index, String droneName, DroneStateType state, float x, float y) {
+            this.index = index;
+            this.droneName = droneName;
+            this.state = state;
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * Returns the index of the drone in the stream.
+         *
+         * @return The drone index.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the name of the drone, which is only carried in keyframes.
+         *
+         * @return The drone name, or null in a delta frame.
+         */
+        public String getDroneName() {
+            return droneName;
+        }
+
+        /**
+         * Returns the state of the drone.
+         *
+         * @return The drone state.
+         */
+        public DroneStateType getState() {
+            return state;
+        }
+
+        /**
+         * Returns the x-coordinate of the drone.
+         *
+         * @return The x-coordinate.
+         */
+        public float getX() {
+            return x;
+        }
+
+        /**
+         * Returns the y-coordinate of the drone.
+         *
+         * @return The y-coordinate.
+         */
+        public float getY() {
+            return y;
+        }
+    }
+
+    private final int shard;
+    private final int streamId;
+    private final int sequence;
+    private final boolean keyframe;
+    private final List<Entry> entries;
+
+    /**
+     * Constructs a DroneTelemetryFrame.
+     *
+     * @param shard    The Scheduler shard of the DroneSubsystem sending the stream.
+     * @param streamId The ID of the stream, which changes whenever the sender restarts.
+     * @param sequence The sequence number of the frame.
+     * @param keyframe True if the frame is part of a keyframe.
+     * @param entries  The drones carried in the frame.
+     */
+    public DroneTelemetryFrame(int shard, int streamId, int sequence, boolean keyframe, List<Entry> entries) {
+        if (shard < 0 || shard >= ShardMap.MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard must be between 0 and " + (ShardMap.MAX_SHARDS - 1) + ": " + shard);
+        }
+        this.shard = shard;
+        this.streamId = streamId;
+        this.sequence = sequence;
+        this.keyframe = keyframe;
+        this.entries = entries;
+    }
+
+    /**
+     * Constructs a DroneTelemetryFrame of shard 0.
+     *
+     * @param streamId The ID of the stream, which changes whenever the sender restarts.
+     * @param sequence The sequence number of the frame.
+     * @param keyframe True if the frame is part of a keyframe.
+     * @param entries  The drones carried in the frame.
+     */
+    public DroneTelemetryFrame(int streamId, int sequence, boolean keyframe, List<Entry> entries) {
+        this(0, streamId, sequence, keyframe, entries);
+    }
+
+    /**
+     * Constructs an empty DroneTelemetryFrame that entries are added to.
+     *
+     * @param shard    The Scheduler shard of the sender.
+     * @param streamId The ID of the stream.
+     * @param sequence The sequence number of the frame.
+     * @param keyframe True if the frame is part of a keyframe.
+     */
+    public DroneTelemetryFrame(int shard, int streamId, int sequence, boolean keyframe) {
+        this(shard, streamId, sequence, keyframe, new ArrayList<>());
+    }
+
+    /**
+     * Returns the Scheduler shard of the DroneSubsystem sending the stream.
+     *
+     * @return The shard, counted from 0.
+     */
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * Returns the ID of the stream the frame belongs to.
+     *
+     * @return The stream ID.
+     */
+    public int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * Returns the sequence number of the frame.
+     *
+     * @return The sequence number.
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns whether the frame is part of a keyframe.
+     *
+     * @return True if the frame is part of a keyframe.
+     */
+    public boolean isKeyframe() {
+        return keyframe;
+    }
+
+    /**
+     * Returns the drones carried in the frame.
+     *
+     * @return The entries of the frame.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+}
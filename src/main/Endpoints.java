@@ -0,0 +1,366 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * The Endpoints class tells every subsystem which ports it binds and on which host the ports of the other subsystems
+ * are, so the subsystems can be spread across machines. Each endpoint has a name and a "host:port" address:
+ *
+ * <pre>
+ * scheduler.fis=localhost:5000   Port the Scheduler receives packages from the FireIncidentSubsystem on
+ * scheduler.dss=localhost:5001   Port the Scheduler receives drone subsystem messages on
+ * dss.scheduler=localhost:6000   Port the DroneSubsystem receives Scheduler messages on
+ * dss.drones=localhost:6001      Port the DroneSubsystem receives drone messages on
+ * fis=localhost:7000             Port of the FireIncidentSubsystem
+ * gui=localhost:8000             Port the GUI receives telemetry on
+ * drones=localhost:8002          Port of the first drone; the next drones take the ports after it
+ * </pre>
+ *
+ * The addresses are read from the file named by the "endpoints.file" system property, or from "endpoints.properties"
+ * in the working directory if it exists, and a system property such as "-Dendpoint.fis=10.0.0.7:7000" overrides a
+ * single endpoint. "localhost" is the host the subsystem runs on.
+ *
+ * With several Scheduler shards (see {@link ShardMap}), every shard has its own Scheduler, DroneSubsystem, drones
+ * and FireIncidentSubsystem port. Shard k uses the endpoint named with a ".k" suffix, such as "scheduler.fis.2", which
+ * by default is on the host of shard 0 with the port moved up by 10 times k, or by k times the drone ports for the
+ * drones. The GUI endpoint is shared by every shard. A process looks up the endpoints of the shard it runs.
+ *
+ * The transports still address messages by port, and look up the host of a port here. Every endpoint must therefore
+ * have a port of its own, even on different hosts, and the ports kept for the drones must not overlap any other
+ * endpoint. A configuration that breaks this is rejected when it is loaded.
+ */
+public class Endpoints {
+
+    public static final String SCHEDULER_FIS = "scheduler.fis";
+    public static final String SCHEDULER_DSS = "scheduler.dss";
+    public static final String DSS_SCHEDULER = "dss.scheduler";
+    public static final String DSS_DRONES = "dss.drones";
+    public static final String FIS = "fis";
+    public static final String GUI = "gui";
+    public static final String DRONES = "drones";
+    public static final int MAX_DRONES = 100;                      // Ports kept for drones, from the port of the first drone
+    public static final int SHARD_PORT_STRIDE = 10;                // Distance between the ports of an endpoint on consecutive shards
+    private static final Set<String> SHARDED = new HashSet<>(Arrays.asList(SCHEDULER_FIS, SCHEDULER_DSS, DSS_SCHEDULER, DSS_DRONES, FIS, DRONES)); // Endpoints each shard has its own of
+    private static final String DEFAULT_FILE = "endpoints.properties";
+    private static final String PROPERTY_PREFIX = "endpoint.";     // Prefix of the system properties that override an endpoint
+    private static final String LOCAL_HOST = "localhost";
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put(SCHEDULER_FIS, "localhost:5000");
+        DEFAULTS.put(SCHEDULER_DSS, "localhost:5001");
+        DEFAULTS.put(DSS_SCHEDULER, "localhost:6000");
+        DEFAULTS.put(DSS_DRONES, "localhost:6001");
+        DEFAULTS.put(FIS, "localhost:7000");
+        DEFAULTS.put(GUI, "localhost:8000");
+        DEFAULTS.put(DRONES, "localhost:8002");
+    }
+
+    private static Endpoints configured = null; // Loaded on first use
+
+    private final Map<String, InetSocketAddress> endpoints = new LinkedHashMap<>(); // Unresolved address of each endpoint
+    private final Map<Integer, String> hosts = new HashMap<>();                     // Host of each port, drone ports excluded
+    private final Map<String, InetAddress> resolved = new HashMap<>();               // Resolved address of each host
+    private final List<InetSocketAddress> drones = new ArrayList<>();                // Address of the first drone of each shard
+
+    /**
+     * Constructs Endpoints from the given addresses, for a single shard. Endpoints that are not given keep their
+     * default address.
+     *
+     * @param addresses The "host:port" address of some endpoints, by name.
+     * @throws IllegalArgumentException If an address is malformed, a name is unknown or two endpoints share a port.
+     */
+    public Endpoints(Map<String, String> addresses) {
+        this(addresses, 1);
+    }
+
+    /**
+     * Constructs Endpoints from the given addresses. Endpoints that are not given keep their default address, and the
+     * endpoints of a shard other than 0 that are not given are placed next to the ones of shard 0.
+     *
+     * @param addresses The "host:port" address of some endpoints, by name.
+     * @param shards    The number of Scheduler shards.
+     * @throws IllegalArgumentException If an address is malformed, a name is unknown or two endpoints share a port.
+     */
+    public Endpoints(Map<String, String> addresses, int shards) {
+        Map<String, String> given = new HashMap<>();
+        for (Map.Entry<String, String> entry : addresses.entrySet()) {
+            if (!DEFAULTS.containsKey(entry.getKey()) && shardOf(entry.getKey(), shards) < 0) {
+                throw new IllegalArgumentException("Unknown endpoint: " + entry.getKey());
+            }
+            given.put(entry.getKey(), entry.getValue().trim());
+        }
+
+        Map<Integer, String> owners = new HashMap<>();
+        for (int shard = 0; shard < shards; shard++) {
+            for (String name : DEFAULTS.keySet()) {
+                if (shard > 0 && !SHARDED.contains(name)) {
+                    continue;
+                }
+                String key = nameOf(name, shard);
+                InetSocketAddress address;
+                if (given.containsKey(key)) {
+                    address = parse(key, given.get(key));
+                } else if (shard == 0) {
+                    address = parse(key, DEFAULTS.get(name));
+                } else { // Next to the endpoint of shard 0
+                    InetSocketAddress first = endpoints.get(name);
+                    int offset = shard * (name.equals(DRONES) ? MAX_DRONES : SHARD_PORT_STRIDE);
+                    address = InetSocketAddress.createUnresolved(first.getHostString(), first.getPort() + offset);
+                }
+                endpoints.put(key, address);
+                if (name.equals(DRONES)) {
+                    drones.add(address);
+                    continue;
+                }
+                String owner = owners.putIfAbsent(address.getPort(), key);
+                if (owner != null) {
+                    throw new IllegalArgumentException("Endpoints " + owner + " and " + key + " share port " + address.getPort());
+                }
+                hosts.put(address.getPort(), address.getHostString());
+            }
+        }
+
+        for (int shard = 0; shard < drones.size(); shard++) {
+            int firstDronePort = drones.get(shard).getPort();
+            for (Map.Entry<Integer, String> owner : owners.entrySet()) {
+                if (owner.getKey() >= firstDronePort && owner.getKey() < firstDronePort + MAX_DRONES) {
+                    throw new IllegalArgumentException("Endpoint " + owner.getValue() + " on port " + owner.getKey()
+                            + " collides with the drone ports " + firstDronePort + "-" + (firstDronePort + MAX_DRONES - 1));
+                }
+            }
+            for (int other = 0; other < shard; other++) {
+                if (Math.abs(drones.get(other).getPort() - firstDronePort) < MAX_DRONES) {
+                    throw new IllegalArgumentException("The drone ports of shards " + other + " and " + shard + " overlap");
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the endpoints of this process, loading them from the configuration file and the system properties the
+     * first time.
+     *
+     * @return the endpoints.
+     * @throws IllegalArgumentException If the configuration is malformed or two endpoints share a port.
+     */
+    public static synchronized Endpoints get() {
+        if (configured == null) {
+            configured = new Endpoints(loadConfiguration(), ShardMap.get().getShardCount());
+        }
+        return configured;
+    }
+
+    /**
+     * Gets the port of an endpoint of the shard this process runs.
+     *
+     * @param name the name of the endpoint.
+     * @return the port.
+     */
+    public static int getPort(String name) {
+        return getPort(name, ShardMap.getLocalShard());
+    }
+
+    /**
+     * Gets the port of an endpoint of a shard.
+     *
+     * @param name  the name of the endpoint.
+     * @param shard the shard, counted from 0. It is ignored for the endpoints every shard shares.
+     * @return the port.
+     */
+    public static int getPort(String name, int shard) {
+        return get().getEndpoint(name, shard).getPort();
+    }
+
+    /**
+     * Gets the port of a drone of the shard this process runs.
+     *
+     * @param droneID the ID of the drone, starting at 1.
+     * @return the port.
+     */
+    public static int getDronePort(int droneID) {
+        return get().getDronePortOf(droneID, ShardMap.getLocalShard());
+    }
+
+    /**
+     * Gets the address messages sent to a port of this process go to.
+     *
+     * @param port the destination port.
+     * @return the address of the host of the port, which is the local host for ports that are not configured.
+     * @throws UnknownHostException if the host could not be resolved.
+     */
+    public static InetSocketAddress getAddress(int port) throws UnknownHostException {
+        return get().resolve(port);
+    }
+
+    /**
+     * Gets the unresolved address of an endpoint.
+     *
+     * @param name the name of the endpoint.
+     * @return the address.
+     * @throws IllegalArgumentException If the name is unknown.
+     */
+    public InetSocketAddress getEndpoint(String name) {
+        return getEndpoint(name, 0);
+    }
+
+    /**
+     * Gets the unresolved address of an endpoint of a shard.
+     *
+     * @param name  the name of the endpoint.
+     * @param shard the shard, counted from 0. It is ignored for the endpoints every shard shares.
+     * @return the address.
+     * @throws IllegalArgumentException If the name or the shard is unknown.
+     */
+    public InetSocketAddress getEndpoint(String name, int shard) {
+        InetSocketAddress address = endpoints.get(SHARDED.contains(name) ? nameOf(name, shard) : name);
+        if (address == null) {
+            throw new IllegalArgumentException("Unknown endpoint: " + name + (shard > 0 ? " of shard " + shard : ""));
+        }
+        return address;
+    }
+
+    /**
+     * Gets the port of a drone of shard 0.
+     *
+     * @param droneID the ID of the drone, starting at 1.
+     * @return the port.
+     * @throws IllegalArgumentException If there are more drones than ports kept for them.
+     */
+    public int getDronePortOf(int droneID) {
+        return getDronePortOf(droneID, 0);
+    }
+
+    /**
+     * Gets the port of a drone of a shard.
+     *
+     * @param droneID the ID of the drone, starting at 1.
+     * @param shard   the shard, counted from 0.
+     * @return the port.
+     * @throws IllegalArgumentException If there are more drones than ports kept for them, or the shard is unknown.
+     */
+    public int getDronePortOf(int droneID, int shard) {
+        if (droneID < 1 || droneID > MAX_DRONES) {
+            throw new IllegalArgumentException("No port kept for drone " + droneID + ", at most " + MAX_DRONES + " drones are supported");
+        }
+        return getEndpoint(DRONES, shard).getPort() + droneID - 1;
+    }
+
+    /**
+     * Gets the address messages sent to a port go to.
+     *
+     * @param port the destination port.
+     * @return the address of the host of the port, which is the local host for ports that are not configured.
+     * @throws UnknownHostException if the host could not be resolved.
+     */
+    public synchronized InetSocketAddress resolve(int port) throws UnknownHostException {
+        String host = hosts.get(port);
+        for (int shard = 0; host == null && shard < drones.size(); shard++) {
+            int firstDronePort = drones.get(shard).getPort();
+            if (port >= firstDronePort && port < firstDronePort + MAX_DRONES) {
+                host = drones.get(shard).getHostString();
+            }
+        }
+        if (host == null) {
+            host = LOCAL_HOST;
+        }
+        InetAddress address = resolved.get(host);
+        if (address == null) {
+            address = LOCAL_HOST.equalsIgnoreCase(host) ? InetAddress.getLocalHost() : InetAddress.getByName(host);
+            resolved.put(host, address);
+        }
+        return new InetSocketAddress(address, port);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Endpoints{");
+        for (Map.Entry<String, InetSocketAddress> entry : endpoints.entrySet()) {
+            builder.append(entry.getKey()).append('=').append(entry.getValue().getHostString())
+                    .append(':').append(entry.getValue().getPort()).append(", ");
+        }
+        builder.setLength(builder.length() - 2);
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Reads the configuration file, if there is one, and the system properties that override it.
+     */
+    private static Map<String, String> loadConfiguration() {
+        Map<String, String> addresses = new LinkedHashMap<>();
+        Path file = Paths.get(System.getProperty("endpoints.file", DEFAULT_FILE));
+        if (Files.exists(file)) {
+            Properties properties = new Properties();
+            try (Reader reader = new FileReader(file.toFile())) {
+                properties.load(reader);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            for (String name : properties.stringPropertyNames()) {
+                addresses.put(name, properties.getProperty(name));
+            }
+            System.out.println("[Endpoints] LOADED " + addresses.size() + " ENDPOINTS FROM " + file);
+        } else if (System.getProperty("endpoints.file") != null) {
+            System.out.println("[Endpoints] NO FILE " + file + ", USING THE DEFAULT ENDPOINTS");
+        }
+        for (String property : System.getProperties().stringPropertyNames()) {
+            if (property.startsWith(PROPERTY_PREFIX)) {
+                addresses.put(property.substring(PROPERTY_PREFIX.length()), System.getProperty(property));
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Gets the name of an endpoint of a shard, which has the number of the shard as a suffix after shard 0.
+     */
+    private static String nameOf(String name, int shard) {
+        return shard == 0 ? name : name + "." + shard;
+    }
+
+    /**
+     * Gets the shard of an endpoint name with a shard suffix.
+     *
+     * @return the shard, or -1 if the name is not an endpoint of one of the shards after shard 0.
+     */
+    private static int shardOf(String key, int shards) {
+        int dot = key.lastIndexOf('.');
+        if (dot < 0 || !SHARDED.contains(key.substring(0, dot))) {
+            return -1;
+        }
+        try {
+            int shard = Integer.parseInt(key.substring(dot + 1));
+            return shard > 0 && shard < shards ? shard : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a "host:port" address, where the host may be left out for the local host.
+     */
+    private static InetSocketAddress parse(String name, String value) {
+        int colon = value.lastIndexOf(':');
+        String host = colon < 0 ? LOCAL_HOST : value.substring(0, colon);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1); // IPv6 literal
+        }
+        int port;
+        try {
+            port = Integer.parseInt(value.substring(colon + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed address of endpoint " + name + ": " + value);
+        }
+        if (port <= 0 || port > 65535 || host.isEmpty()) {
+            throw new IllegalArgumentException("Malformed address of endpoint " + name + ": " + value);
+        }
+        return InetSocketAddress.createUnresolved(host, port);
+    }
+}
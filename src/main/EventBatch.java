@@ -0,0 +1,85 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The EventBatch class carries several events from the Scheduler to the DroneSubsystem in one frame, highest priority
+ * first, so a burst of fire reports reaches the DroneSubsystem in one message instead of one message per event.
+ * The DroneSubsystem answers every batch with an {@link Ack} listing the events it took. The Scheduler sends the
+ * events that were not acknowledged again, so a lost batch only delays its events.
+ */
+public class EventBatch {
+
+    /**
+     * Acknowledgement sent back by the DroneSubsystem for the events of a batch it took.
+     */
+    public static class Ack {
+        private final int batchID;
+        private final int[] eventIDs;
+
+        /**
+         * Constructs an Ack.
+         *
+         * @param batchID  The ID of the batch being acknowledged.
+         * @param eventIDs The IDs of the events of the batch that were taken.
+         */
+        public Ack(int batchID, int[] eventIDs) {
+            this.batchID = batchID;
+            this.eventIDs = eventIDs;
+        }
+
+        /**
+         * Returns the ID of the batch being acknowledged.
+         *
+         * @return The batch ID.
+         */
+        public int getBatchID() {
+            return batchID;
+        }
+
+        /**
+         * Returns the IDs of the events of the batch that were taken.
+         *
+         * @return The event IDs.
+         */
+        public int[] getEventIDs() {
+            return eventIDs;
+        }
+    }
+
+    private final int batchID;             // Identifies the batch in its acknowledgement
+    private final List<InputEvent> events; // Events ordered by priority, highest first
+
+    /**
+     * Constructs an EventBatch.
+     *
+     * @param batchID The ID of the batch.
+     * @param events  The events of the batch, highest priority first.
+     */
+    public EventBatch(int batchID, List<InputEvent> events) {
+        this.batchID = batchID;
+        this.events = Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Returns the ID of the batch.
+     *
+     * @return The batch ID.
+     */
+    public int getBatchID() {
+        return batchID;
+    }
+
+    /**
+     * Returns the events of the batch, highest priority first.
+     *
+     * @return The events.
+     */
+    public List<InputEvent> getEvents() {
+        return events;
+    }
+
+    @Override
+    public String toString() {
+        return "EventBatch[id=" + batchID + ", events=" + events.size() + "]";
+    }
+}
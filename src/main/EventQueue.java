@@ -0,0 +1,72 @@
+import java.util.Queue;
+
+/**
+ * The EventQueue interface is the queue of input events waiting in the Scheduler for the drone subsystem. Its
+ * implementations decide the order in which the events are dispatched:
+ *
+ * <pre>
+ * severity  SeverityQueue: highest severity first, FIFO within a severity, with aging (the default)
+ * edf       DeadlineQueue: earliest response deadline first
+ * </pre>
+ *
+ * Every event has a response deadline, the time it was first queued plus the response budget of its severity, and
+ * both queues count the events dispatched after their deadline, so the policies can be compared on the same load.
+ */
+public interface EventQueue extends Queue<InputEvent> {
+
+    long HIGH_RESPONSE_BUDGET = 5000;      // Default milliseconds to dispatch a High event, unless "scheduler.deadline.high" is set
+    long MODERATE_RESPONSE_BUDGET = 15000; // Default milliseconds to dispatch a Moderate event, unless "scheduler.deadline.moderate" is set
+    long LOW_RESPONSE_BUDGET = 30000;      // Default milliseconds to dispatch a Low event, unless "scheduler.deadline.low" is set
+
+    /**
+     * Raises the severity of a waiting event, which moves it ahead in the queue.
+     *
+     * @param event    the waiting event.
+     * @param severity the new severity, which must be higher than the current one.
+     * @return true if the event was waiting and its severity was raised.
+     */
+    boolean raiseSeverity(InputEvent event, Severity severity);
+
+    /**
+     * Gets the counters of a severity.
+     *
+     * @param severity the severity.
+     * @return the stats of the events of that severity.
+     */
+    QueueStats getStats(Severity severity);
+
+    /**
+     * Describes the counters of every severity, one severity per line.
+     *
+     * @return the report.
+     */
+    String report();
+
+    /**
+     * Gets how long an event of a severity may wait before it is dispatched.
+     *
+     * @param severity the severity of the event.
+     * @return the response budget in milliseconds.
+     */
+    static long getResponseBudget(Severity severity) {
+        switch (severity) {
+            case High: return Long.getLong("scheduler.deadline.high", HIGH_RESPONSE_BUDGET);
+            case Moderate: return Long.getLong("scheduler.deadline.moderate", MODERATE_RESPONSE_BUDGET);
+            case Low: return Long.getLong("scheduler.deadline.low", LOW_RESPONSE_BUDGET);
+            default: throw new IllegalArgumentException("Unknown priority level");
+        }
+    }
+
+    /**
+     * Creates the queue of the policy selected by the "scheduler.policy" system property, which is "severity" by
+     * default.
+     *
+     * @return the new queue.
+     */
+    static EventQueue create() {
+        if ("edf".equalsIgnoreCase(System.getProperty("scheduler.policy", "severity"))) {
+            return new DeadlineQueue();
+        }
+        return new SeverityQueue();
+    }
+}
@@ -1,5 +1,6 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.time.LocalTime;
 import java.time.Duration;
 import java.util.*;
@@ -13,12 +14,20 @@ public class FireIncidentSubsystem implements Runnable {
     private String name;
     private Systems systemType;
     private Queue<InputEvent> inputEvents;
+    private final Map<Integer, InputEvent> sentEvents = new HashMap<>(); // Events sent to the scheduler and not confirmed yet, by event ID
     private ArrayList<Zone> zonesList;
     private LocalTime current_time;
-    private DatagramSocket sendReceiveSocket;
+    private Transport transport; // Bound to the port of the subsystem for every scheduler shard, 7000 for shard 0 by default
+    private final ShardMap shardMap = ShardMap.get(); // Shard of each zone, which the zones and events of the zone are sent to
+    private final int[] ports;          // Port of the subsystem for each shard, which the scheduler of the shard sends to
+    private final int[] schedulerPorts; // Port the scheduler of each shard receives packages on
+    private ReliableChannel[] schedulerLinks; // Sequenced, acknowledged link to the scheduler of each shard, null if the transport is already reliable
+    private final Fragmenter fragmenter = new Fragmenter(); // Splits packages larger than one datagram, such as a large zone map
+    private final Reassembler reassembler = new Reassembler("FIS");
     private FireIncidentSubsystemState currentState = FireIncidentSubsystemState.SENDING_DATA;
     private boolean zonesSent = false;
-    private long lastSendTime = 0;
+
+    private static final int IDLE_TIMEOUT = 4000; // How long to wait for a late confirmation when there is nothing to send
 
     /**
      * Constructs a FireIncidentSubsystem object.
@@ -28,14 +37,56 @@ public class FireIncidentSubsystem implements Runnable {
      * @param inputZoneFileName  The name of the file containing zone information.
      */
     public FireIncidentSubsystem(String name, String inputEventFileName, String inputZoneFileName) {
+        this(name, inputEventFileName, inputZoneFileName, ReliableChannel.DEFAULT_WINDOW);
+    }
+
+    /**
+     * Constructs a FireIncidentSubsystem object.
+     *
+     * @param name               The name of the subsystem.
+     * @param inputEventFileName The name of the file containing input events.
+     * @param inputZoneFileName  The name of the file containing zone information.
+     * @param windowSize         The number of unacknowledged packages allowed in flight to the scheduler.
+     */
+    public FireIncidentSubsystem(String name, String inputEventFileName, String inputZoneFileName, int windowSize) {
+        this(name, inputEventFileName, inputZoneFileName, windowSize, null);
+    }
+
+    /**
+     * Constructs a FireIncidentSubsystem object.
+     *
+     * @param name               The name of the subsystem.
+     * @param inputEventFileName The name of the file containing input events.
+     * @param inputZoneFileName  The name of the file containing zone information.
+     * @param windowSize         The number of unacknowledged packages allowed in flight to the scheduler.
+     * @param transport          The transport to send and receive on, or null to open the one picked by the "transport" system property.
+     */
+    public FireIncidentSubsystem(String name, String inputEventFileName, String inputZoneFileName, int windowSize, Transport transport) {
+        int shards = shardMap.getShardCount();
+        this.ports = new int[shards];
+        this.schedulerPorts = new int[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            this.ports[shard] = Endpoints.getPort(Endpoints.FIS, shard);
+            this.schedulerPorts[shard] = Endpoints.getPort(Endpoints.SCHEDULER_FIS, shard);
+        }
         try {
             this.name = name;
             this.systemType = Systems.FireIncidentSubsystem;
             this.inputEvents = readInputEvents(inputEventFileName);
             this.zonesList = readZones(inputZoneFileName);
             this.current_time = null;
-            this.sendReceiveSocket = new DatagramSocket(7000);
-            this.sendReceiveSocket.setSoTimeout(4000); // 4-second timeout
+            this.transport = transport != null ? transport : Transport.open(name);
+            for (int port : ports) {
+                this.transport.bind(port);
+            }
+            if (!this.transport.isReliable()) {
+                Transport link = this.transport;
+                this.schedulerLinks = new ReliableChannel[shards];
+                for (int shard = 0; shard < shards; shard++) {
+                    int schedulerPort = schedulerPorts[shard];
+                    this.schedulerLinks[shard] = new ReliableChannel(name + "-Scdlr" + (shard == 0 ? "" : shard), windowSize, datagram -> link.send(datagram, schedulerPort));
+                }
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -123,43 +174,53 @@ public class FireIncidentSubsystem implements Runnable {
      * and its attributes.
      *
      * @param relayPackage the relay package being serialized.
+     * @param shard the shard of the scheduler it is sent to.
      * @return the array of bytes for the serialized relay package
      */
 
-    private byte[] serializeRelayPackage(RelayPackage relayPackage) throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(); // Creates a byte aray object
-        try (ObjectOutputStream objectStream = new ObjectOutputStream(byteStream)) { // Wraps it around an output object
-            objectStream.writeObject(relayPackage);  // Write the RelayPackage object to the stream
-            objectStream.flush(); // Flushes after it writes the serialized array of bytes
-        }
-        return byteStream.toByteArray();  // Return the byte array
+    private byte[] serializeRelayPackage(RelayPackage relayPackage, int shard) throws IOException {
+        long start = System.nanoTime();
+        byte[] frame = WireCodec.encodeRelayPackage(relayPackage);  // Encodes the relay package into a compact binary frame
+        ChannelStats.forPort(schedulerPorts[shard]).recordEncodeTime(System.nanoTime() - start);
+        return frame;
     }
 
     /**
-     * This is a method used to deserialize a relay package from the Scheduler. This is again helpful in keeping the
-     * object and its attributes that was sent.
-     * @param receivePacket The packets to be received and deserialized into an InputEvent object.
-     * @return the relay package that was received from scheduler.
+     * This is a method used to deserialize a message from the Scheduler, which is a batch of confirmations.
+     * @param frame The frame to be deserialized.
+     * @param port The port the frame was received on.
+     * @return the message that was received from scheduler.
      *
      */
-    private RelayPackage deserializeRelayPackage(DatagramPacket receivePacket) throws IOException, ClassNotFoundException {
-        ByteArrayInputStream byteStream = new ByteArrayInputStream(receivePacket.getData(), 0, receivePacket.getLength());
-        try (ObjectInputStream objectStream = new ObjectInputStream(byteStream)) {
-            return (RelayPackage) objectStream.readObject();  // Read the object from the byte array
+    private Object deserializeMessage(byte[] frame, int port) throws IOException {
+        ChannelStats stats = ChannelStats.forPort(port);
+        long start = System.nanoTime();
+        try {
+            Object message = WireCodec.decode(frame, 0, frame.length);  // Decode the frame from the byte array
+            stats.recordDecodeTime(System.nanoTime() - start);
+            return message;
+        } catch (StreamCorruptedException e) {
+            stats.recordDecodeFailure();
+            throw e;
         }
     }
 
     /**
      * A method that is used to handle sending a package to the Scheduler that has been polled.
      * @param inputEventPackage The relay package being sent to the Scheduler.
+     * @param shard The shard of the scheduler the package is sent to.
      */
-    private void sendUDPMessage(RelayPackage inputEventPackage){
+    private void sendUDPMessage(RelayPackage inputEventPackage, int shard){
         try{
-            byte[] message = serializeRelayPackage(inputEventPackage);  // Serializes the RelayPackage by passing it to the method
-
-            DatagramPacket sendPacket = new DatagramPacket(message, message.length, InetAddress.getLocalHost(), 5000); // The packet that will be sent to the scheduler which has a port of 5000
-            System.out.println("["+this.name + "] SENDING --> " + inputEventPackage.getRelayPackageID() + " TO: " + Systems.Scheduler);
-            sendReceiveSocket.send(sendPacket); // Sends the packet to the scheduler
+            System.out.println("["+this.name + "] SENDING --> " + inputEventPackage.getRelayPackageID() + " TO: " + Systems.Scheduler + (shardMap.getShardCount() > 1 ? " SHARD " + shard : ""));
+            if (schedulerLinks == null) {
+                transport.send(inputEventPackage, schedulerPorts[shard]); // The transport already delivers in order
+                return;
+            }
+            byte[] message = serializeRelayPackage(inputEventPackage, shard);  // Serializes the RelayPackage by passing it to the method
+            for (byte[] fragment : fragmenter.fragment(message)) {
+                schedulerLinks[shard].send(fragment); // Sends the package to the scheduler, which is resent until it is acknowledged
+            }
         }catch(IOException e){
             e.printStackTrace();
         }
@@ -195,90 +256,184 @@ public class FireIncidentSubsystem implements Runnable {
         }
     }
 
+    /**
+     * Sends every scheduler shard the zones it owns.
+     */
     private void sendZonePackage() {
-        RelayPackage zonePackage = new RelayPackage(
-                "ZONE_PKG_1",
-                Systems.Scheduler,
-                null,
-                zonesList
-        );
-        sendUDPMessage(zonePackage);
+        List<ArrayList<Zone>> partitions = shardMap.partition(zonesList);
+        for (int shard = 0; shard < partitions.size(); shard++) {
+            RelayPackage zonePackage = new RelayPackage(
+                    "ZONE_PKG_1",
+                    Systems.Scheduler,
+                    null,
+                    partitions.get(shard)
+            );
+            sendUDPMessage(zonePackage, shard);
+        }
         zonesSent = true;
     }
 
+    /**
+     * Sends the zones if they have not been sent yet, otherwise sends the next event to the scheduler shard that owns
+     * its zone, as long as the window of unacknowledged packages to that shard has room. Events are pipelined rather
+     * than waiting a round trip for each one.
+     */
     public void handleSendingState() {
         if (!zonesSent) {
             sendZonePackage();
-        } else if (!inputEvents.isEmpty()) {
+        } else if (hasWindowSpace()) {
             InputEvent event = inputEvents.remove();
+            sentEvents.put(event.getEventID(), event); // Kept until the scheduler confirms it, since confirmations only carry its ID
             RelayPackage pkg = new RelayPackage(
                     "INPUT_EVENT_" + event.getEventID(),
                     Systems.Scheduler,
                     event,
                     null
             );
-            sendUDPMessage(pkg);
+            sendUDPMessage(pkg, shardMap.getShard(event.getZoneId()));
             simulateTimeDelay(event);
         }
 
-        lastSendTime = System.currentTimeMillis();
         currentState = FireIncidentSubsystemState.WAITING_CONFIRMATION;
     }
 
+    /**
+     * Handles acknowledgements and confirmations while packages are in flight. Moves back to sending as soon as the
+     * window has room for the next event, and to idle once every event was sent and acknowledged.
+     */
     private void handleWaitingState() {
-        try {
-            byte[] buffer = new byte[6000];
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-            sendReceiveSocket.receive(packet);
+        receiveFromScheduler(hasWindowSpace() ? 1 : IDLE_TIMEOUT); // Only block when there is nothing that could be sent
 
-            RelayPackage received = deserializeRelayPackage(packet);
+        if (hasWindowSpace()) {
+            currentState = FireIncidentSubsystemState.SENDING_DATA;
+        } else if (inputEvents.isEmpty() && isLinkIdle()) {
+            currentState = FireIncidentSubsystemState.IDLE;
+        }
+    }
 
-            if (received.getEvent().getFaultType() != null){
-                System.out.println("["+this.name + "] RECEIVED FAULT CONFIRMATION: " + received.getRelayPackageID() + " FOR INPUT_EVENT_" + received.getEvent().getEventID() + " WILL RESEND FOR RESCHEDULING TO: " + Systems.Scheduler);
-                received.getEvent().setFaultType(null); // Sets the fault type to null and attempts to resend it
-                inputEvents.add(received.getEvent()); // Adds the input event again to be sent out after resolving the error
+    /**
+     * Still listens for potential late confirmations once every event has been sent.
+     */
+    public void handleIdleState() {
+        receiveFromScheduler(IDLE_TIMEOUT);
+        currentState = inputEvents.isEmpty() ? FireIncidentSubsystemState.IDLE : FireIncidentSubsystemState.SENDING_DATA;
+    }
+
+    /**
+     * Checks if the next event can be sent without being queued behind a full window to the shard that owns its zone.
+     * @return true if there is an event to send and the window has room, which it always does over a reliable transport.
+     */
+    private boolean hasWindowSpace() {
+        if (inputEvents.isEmpty()) {
+            return false;
+        }
+        return schedulerLinks == null || schedulerLinks[shardMap.getShard(inputEvents.peek().getZoneId())].hasWindowSpace();
+    }
+
+    /**
+     * Checks if every package that was sent has been acknowledged.
+     * @return true if nothing is waiting to be acknowledged, which is always the case over a reliable transport.
+     */
+    private boolean isLinkIdle() {
+        if (schedulerLinks != null) {
+            for (ReliableChannel link : schedulerLinks) {
+                if (!link.isIdle()) {
+                    return false;
+                }
             }
-            else {
-                System.out.println("["+this.name + "] RECEIVED COMPLETED CONFIRMATION: " + received.getRelayPackageID() + " FOR INPUT_EVENT_" + received.getEvent().getEventID());
+        }
+        return true;
+    }
+
+    /**
+     * Gets the shard whose scheduler sends to a port of the subsystem.
+     * @param port the port a message was received on.
+     * @return the shard.
+     */
+    private int shardOfPort(int port) {
+        for (int shard = 0; shard < ports.length; shard++) {
+            if (ports[shard] == port) {
+                return shard;
             }
+        }
+        return 0;
+    }
 
-            // Only switch to sending if we have more events
-            currentState = inputEvents.isEmpty() ? FireIncidentSubsystemState.IDLE : FireIncidentSubsystemState.SENDING_DATA;
+    /**
+     * Waits for a message from a scheduler shard, then receives every other message that is already waiting, and
+     * handles every batch of confirmations that they make deliverable. The wait is cut short when an unacknowledged
+     * package is due to be resent, and any such package is resent afterwards.
+     * @param maxWait the maximum time to wait in milliseconds.
+     */
+    private void receiveFromScheduler(int maxWait) {
+        try {
+            long wait = maxWait;
+            if (schedulerLinks != null) {
+                for (ReliableChannel link : schedulerLinks) {
+                    long retransmitTimeout = link.getTimeUntilNextRetransmit();
+                    wait = retransmitTimeout < 0 ? wait : Math.min(wait, retransmitTimeout);
+                }
+            }
 
-        } catch (SocketTimeoutException e) {
-            // Resend if we have pending events and 4 seconds have passed
-            if (!inputEvents.isEmpty() && (System.currentTimeMillis() - lastSendTime) > 4000) {
-                currentState = FireIncidentSubsystemState.SENDING_DATA;
+            Transport.Delivery delivery = transport.receive(Math.max(1, wait));
+            while (delivery != null) { // Null when nothing arrives before the timeout
+                Object message = delivery.getMessage();
+                if (message instanceof ConfirmationBatch) { // Already delivered in order by the transport
+                    handleConfirmations((ConfirmationBatch) message);
+                } else if (schedulerLinks != null && message instanceof byte[]) {
+                    ReliableChannel schedulerLink = schedulerLinks[shardOfPort(delivery.getPort())]; // Each shard has a sequence of its own
+                    for (byte[] frame : schedulerLink.receive(ByteBuffer.wrap((byte[]) message))) {
+                        if (Fragmenter.isFragment(frame)) {
+                            frame = reassembler.accept(delivery.getSource(), ByteBuffer.wrap(frame));
+                            if (frame == null) {
+                                continue; // Waiting for the rest of the package
+                            }
+                        }
+                        Object decoded = deserializeMessage(frame, delivery.getPort());
+                        if (decoded instanceof ConfirmationBatch) {
+                            handleConfirmations((ConfirmationBatch) decoded);
+                        }
+                    }
+                }
+                delivery = transport.receive(0);
             }
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
-    }
 
-    public void handleIdleState() {
         try {
-            // Still listen for potential late confirmations
-            byte[] buffer = new byte[6000];
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-            sendReceiveSocket.receive(packet);
-
-            RelayPackage received = deserializeRelayPackage(packet);
+            if (schedulerLinks != null) {
+                for (ReliableChannel schedulerLink : schedulerLinks) {
+                    schedulerLink.poll(); // Resends any package whose acknowledgement is overdue
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            if (received.getEvent().getFaultType() == null){
-                System.out.println("["+this.name + "] RECEIVED COMPLETED CONFIRMATION: " + received.getRelayPackageID() + " FOR INPUT_EVENT_" + received.getEvent().getEventID());
+    /**
+     * Handles a batch of confirmations from the scheduler. Events that failed because of a fault are queued to be
+     * resent.
+     * @param received the batch of confirmations that was received.
+     */
+    private void handleConfirmations(ConfirmationBatch received) {
+        for (int eventID : received.getCompletedIDs()) {
+            if (sentEvents.remove(eventID) == null) {
+                System.out.println("["+this.name + "] IGNORED CONFIRMATION FOR UNKNOWN INPUT_EVENT_" + eventID);
+                continue;
             }
-            else {
-                System.out.println("["+this.name + "] RECEIVED FAULT CONFIRMATION: " + received.getRelayPackageID() + " FOR INPUT_EVENT_" + received.getEvent().getEventID() + " WILL RESEND FOR RESCHEDULING TO: " + Systems.Scheduler);
-                received.getEvent().setFaultType(null); // Sets the fault type to null and attempts to resend it
-                inputEvents.add(received.getEvent()); // Adds the input event again to be sent out after resolving the error
+            System.out.println("["+this.name + "] RECEIVED COMPLETED CONFIRMATION: DRONE_CONFIRMATION FOR INPUT_EVENT_" + eventID);
+        }
+        for (int eventID : received.getFaultedIDs()) {
+            InputEvent event = sentEvents.remove(eventID);
+            if (event == null) {
+                System.out.println("["+this.name + "] IGNORED CONFIRMATION FOR UNKNOWN INPUT_EVENT_" + eventID);
+                continue;
             }
-
-            currentState = inputEvents.isEmpty() ? FireIncidentSubsystemState.IDLE : FireIncidentSubsystemState.SENDING_DATA;
-
-        } catch (SocketTimeoutException e) {
-            // Expected in idle state
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
+            System.out.println("["+this.name + "] RECEIVED FAULT CONFIRMATION: FAULT_CONFIRMATION FOR INPUT_EVENT_" + eventID + " WILL RESEND FOR RESCHEDULING TO: " + Systems.Scheduler);
+            event.setFaultType(null); // Sets the fault type to null and attempts to resend it
+            inputEvents.add(event); // Adds the input event again to be sent out after resolving the error
         }
     }
 
@@ -0,0 +1,93 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Fragmenter class splits a message that is too large for one datagram into fragments that each fit below the
+ * MTU. Every fragment starts with a small header holding the fragment marker, the ID of the message, the index of
+ * the fragment and the number of fragments, and is put back together by a {@link Reassembler} on the other side.
+ * Messages that already fit are sent as they are, so small messages cost nothing extra. The marker byte never
+ * starts a {@link WireCodec} frame, which lets a receiver tell fragments and whole messages apart.
+ */
+public class Fragmenter {
+
+    public static final byte FRAGMENT = 0x20;        // First byte of every fragment
+    public static final int HEADER_SIZE = 9;         // marker + message ID + fragment index + fragment count
+    public static final int DEFAULT_MAX_DATAGRAM = 1400; // Largest datagram produced, kept below a typical MTU
+    public static final int MAX_FRAGMENTS = 0xFFFF;  // Most fragments a message can be split into
+
+    private final int maxDatagram;
+    private final AtomicInteger nextMessageId = new AtomicInteger(new Random().nextInt()); // Random start so a restart does not reuse recent IDs
+
+    /**
+     * Constructs a Fragmenter.
+     *
+     * @param maxDatagram The largest datagram to produce in bytes, including the fragment header.
+     */
+    public Fragmenter(int maxDatagram) {
+        if (maxDatagram <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Datagram size must be larger than the fragment header");
+        }
+        this.maxDatagram = maxDatagram;
+    }
+
+    /**
+     * Constructs a Fragmenter that produces datagrams of at most {@link #DEFAULT_MAX_DATAGRAM} bytes.
+     */
+    public Fragmenter() {
+        this(DEFAULT_MAX_DATAGRAM);
+    }
+
+    /**
+     * Splits a message into datagrams.
+     *
+     * @param message the encoded message.
+     * @return the message itself if it fits in one datagram, otherwise its fragments in order.
+     * @throws IllegalArgumentException if the message needs more than {@link #MAX_FRAGMENTS} fragments.
+     */
+    public List<byte[]> fragment(byte[] message) {
+        if (message.length <= maxDatagram) {
+            return Collections.singletonList(message);
+        }
+        int payloadSize = maxDatagram - HEADER_SIZE;
+        int count = (message.length + payloadSize - 1) / payloadSize;
+        if (count > MAX_FRAGMENTS) {
+            throw new IllegalArgumentException("Message of " + message.length + " bytes is too large to fragment");
+        }
+
+        int messageId = nextMessageId.getAndIncrement();
+        List<byte[]> fragments = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            int offset = index * payloadSize;
+            int length = Math.min(payloadSize, message.length - offset);
+            ByteBuffer fragment = ByteBuffer.allocate(HEADER_SIZE + length);
+            fragment.put(FRAGMENT).putInt(messageId).putShort((short) index).putShort((short) count);
+            fragment.put(message, offset, length);
+            fragments.add(fragment.array());
+        }
+        return fragments;
+    }
+
+    /**
+     * Checks if a datagram is a fragment without moving the position of the buffer.
+     *
+     * @param datagram the buffer holding the datagram, positioned at its start.
+     * @return true if the datagram is a fragment.
+     */
+    public static boolean isFragment(ByteBuffer datagram) {
+        return datagram.hasRemaining() && datagram.get(datagram.position()) == FRAGMENT;
+    }
+
+    /**
+     * Checks if a datagram is a fragment.
+     *
+     * @param datagram the datagram.
+     * @return true if the datagram is a fragment.
+     */
+    public static boolean isFragment(byte[] datagram) {
+        return datagram.length > 0 && datagram[0] == FRAGMENT;
+    }
+}
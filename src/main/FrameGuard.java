@@ -0,0 +1,251 @@
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+/**
+ * The FrameGuard class protects datagrams against corruption. Every datagram is sealed with a header holding a
+ * sequence number and a CRC32C of the sequence number and the payload. The sender keeps the last datagrams it sealed
+ * in a short retention buffer. A receiver that finds a checksum mismatch answers straight away with a NACK for that
+ * sequence number, and the sender retransmits the intact copy it retained, so a corrupted datagram costs one extra
+ * round trip instead of a lost message. Receivers also drop datagrams they already delivered, so a retransmission
+ * that crosses the original never delivers a message twice.
+ *
+ * The marker bytes never start a {@link WireCodec} frame, a fragment or a {@link ReliableChannel} frame, so
+ * datagrams that were not sealed are still told apart and passed through.
+ */
+public class FrameGuard {
+
+    public static final byte SEALED = 0x30;         // First byte of every sealed datagram
+    public static final byte NACK = 0x31;           // First byte of a request to retransmit a corrupted datagram
+    public static final int HEADER_SIZE = 9;        // marker + sequence number + CRC32C
+    public static final int DEFAULT_RETENTION = 256; // Datagrams kept for retransmission
+    private static final int WINDOW_SIZE = 64;      // Sequence numbers behind the highest one that are still tracked per sender
+    private static final int RESTART_GAP = 1 << 16; // A jump this large means the sender restarted with new sequence numbers
+
+    /**
+     * Outcome of checking a sealed datagram.
+     */
+    public enum Verdict {
+        INTACT, DUPLICATE, CORRUPT
+    }
+
+    /**
+     * Sequence numbers recently delivered from one sender, kept as a bitmap behind the highest one.
+     */
+    private static class Window {
+        private int highest;
+        private long delivered; // Bit i is set if highest - i was delivered
+    }
+
+    private final String name;
+    private final byte[][] retained;   // Sealed datagrams by sequence number modulo the retention
+    private final int[] retainedSequences;
+    private final Map<SocketAddress, Window> windows = new HashMap<>(); // Delivered sequence numbers of each sender
+    private final CRC32C crc = new CRC32C();
+    private int nextSequence = new Random().nextInt(); // Random start so a restarted sender is not taken for a duplicate
+    private int corruptionsPending = 0;
+
+    /**
+     * Constructs a FrameGuard.
+     *
+     * @param name      The name of the guard, used when printing.
+     * @param retention The number of sealed datagrams kept for retransmission.
+     */
+    public FrameGuard(String name, int retention) {
+        this.name = name;
+        this.retained = new byte[retention][];
+        this.retainedSequences = new int[retention];
+    }
+
+    /**
+     * Constructs a FrameGuard that keeps {@link #DEFAULT_RETENTION} datagrams for retransmission.
+     *
+     * @param name The name of the guard, used when printing.
+     */
+    public FrameGuard(String name) {
+        this(name, DEFAULT_RETENTION);
+    }
+
+    /**
+     * Checks if a datagram starts with the marker of a sealed datagram.
+     *
+     * @param datagram the datagram, which is not consumed.
+     * @return true if the datagram is sealed.
+     */
+    public static boolean isSealed(ByteBuffer datagram) {
+        return datagram.hasRemaining() && datagram.get(datagram.position()) == SEALED;
+    }
+
+    /**
+     * Checks if a datagram starts with the marker of a NACK.
+     *
+     * @param datagram the datagram, which is not consumed.
+     * @return true if the datagram is a NACK.
+     */
+    public static boolean isNack(ByteBuffer datagram) {
+        return datagram.hasRemaining() && datagram.get(datagram.position()) == NACK;
+    }
+
+    /**
+     * Seals a datagram and retains it for retransmission.
+     *
+     * @param payload the datagram to seal.
+     * @return the sealed datagram to send, which is damaged on purpose if {@link #corruptNext()} was called.
+     */
+    public synchronized byte[] seal(byte[] payload) {
+        int sequence = nextSequence++;
+        ByteBuffer datagram = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        datagram.put(SEALED).putInt(sequence).putInt(0).put(payload);
+        byte[] sealed = datagram.array();
+        datagram.putInt(5, checksum(sealed, payload.length));
+
+        int slot = Math.floorMod(sequence, retained.length);
+        retained[slot] = sealed;
+        retainedSequences[slot] = sequence;
+
+        if (corruptionsPending > 0) {
+            corruptionsPending--;
+            byte[] damaged = sealed.clone();
+            damaged[damaged.length - 1] ^= 0x01; // The retained copy stays intact
+            return damaged;
+        }
+        return sealed;
+    }
+
+    /**
+     * Damages the next sealed datagram on purpose, to simulate a message corrupted on the way.
+     */
+    public synchronized void corruptNext() {
+        corruptionsPending++;
+    }
+
+    /**
+     * Checks a sealed datagram received from a sender. An intact datagram that was not delivered before is recorded
+     * as delivered.
+     *
+     * @param source   the address the datagram came from.
+     * @param datagram the sealed datagram. Its position is moved past the header if it is intact, and is left as it is
+     *                 otherwise.
+     * @return whether the datagram is intact, a duplicate or corrupted.
+     */
+    public synchronized Verdict open(SocketAddress source, ByteBuffer datagram) {
+        if (datagram.remaining() < HEADER_SIZE || checksum(datagram) != datagram.getInt(datagram.position() + 5)) {
+            return Verdict.CORRUPT;
+        }
+        int sequence = datagram.getInt(datagram.position() + 1);
+        if (!markDelivered(source, sequence)) {
+            return Verdict.DUPLICATE;
+        }
+        datagram.position(datagram.position() + HEADER_SIZE);
+        return Verdict.INTACT;
+    }
+
+    /**
+     * Creates the NACK asking the sender of a corrupted datagram to retransmit it.
+     *
+     * @param source   the address the datagram came from.
+     * @param datagram the corrupted datagram, which is not consumed.
+     * @return the NACK, or null if the datagram is too short to hold a sequence number or was already delivered.
+     */
+    public synchronized byte[] createNack(SocketAddress source, ByteBuffer datagram) {
+        if (datagram.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int sequence = datagram.getInt(datagram.position() + 1);
+        if (isDelivered(source, sequence)) {
+            return null; // The sequence number itself may be damaged, and this one needs nothing resent
+        }
+        ByteBuffer nack = ByteBuffer.allocate(HEADER_SIZE);
+        nack.put(NACK).putInt(sequence).putInt(0);
+        nack.putInt(5, checksum(nack.array(), 0));
+        return nack.array();
+    }
+
+    /**
+     * Finds the retained datagram a NACK asks for.
+     *
+     * @param nack the NACK that was received, which is not consumed.
+     * @return the intact datagram to send again, or null if the NACK is damaged or the datagram is no longer retained.
+     */
+    public synchronized byte[] retransmit(ByteBuffer nack) {
+        if (nack.remaining() < HEADER_SIZE || checksum(nack) != nack.getInt(nack.position() + 5)) {
+            return null;
+        }
+        int sequence = nack.getInt(nack.position() + 1);
+        int slot = Math.floorMod(sequence, retained.length);
+        if (retained[slot] == null || retainedSequences[slot] != sequence) {
+            System.out.println("[" + name + "] CANNOT RETRANSMIT DATAGRAM " + sequence + ", NO LONGER RETAINED");
+            return null;
+        }
+        return retained[slot];
+    }
+
+    /**
+     * Records a sequence number from a sender as delivered.
+     *
+     * @return false if it was already delivered or is too old to tell.
+     */
+    private boolean markDelivered(SocketAddress source, int sequence) {
+        Window window = windows.get(source);
+        if (window == null) {
+            window = new Window();
+            window.highest = sequence;
+            window.delivered = 1;
+            windows.put(source, window);
+            return true;
+        }
+        int ahead = sequence - window.highest; // Wraps around like the sequence numbers do
+        if (ahead > 0 || -ahead >= RESTART_GAP) {
+            window.delivered = ahead >= WINDOW_SIZE || ahead <= 0 ? 1 : (window.delivered << ahead) | 1;
+            window.highest = sequence;
+            return true;
+        }
+        if (-ahead >= WINDOW_SIZE) {
+            return false;
+        }
+        long bit = 1L << -ahead;
+        if ((window.delivered & bit) != 0) {
+            return false;
+        }
+        window.delivered |= bit;
+        return true;
+    }
+
+    /**
+     * Checks if a sequence number from a sender was already delivered.
+     */
+    private boolean isDelivered(SocketAddress source, int sequence) {
+        Window window = windows.get(source);
+        if (window == null) {
+            return false;
+        }
+        int behind = window.highest - sequence;
+        return behind >= 0 && behind < WINDOW_SIZE && (window.delivered & (1L << behind)) != 0;
+    }
+
+    /**
+     * Computes the checksum of a datagram held in an array, covering the sequence number and the payload.
+     */
+    private int checksum(byte[] datagram, int payloadLength) {
+        crc.reset();
+        crc.update(datagram, 1, 4);
+        crc.update(datagram, HEADER_SIZE, payloadLength);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Computes the checksum of a datagram held in a buffer, covering the sequence number and the payload.
+     */
+    private int checksum(ByteBuffer datagram) {
+        crc.reset();
+        ByteBuffer view = datagram.duplicate();
+        view.position(datagram.position() + 1).limit(datagram.position() + 5);
+        crc.update(view);
+        view.limit(datagram.limit()).position(datagram.position() + HEADER_SIZE);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
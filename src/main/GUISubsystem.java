@@ -1,9 +1,9 @@
 import javax.swing.*;
 import java.awt.*;
-import java.net.SocketException;
+import java.io.IOException;
 
 public class GUISubsystem {
-    private static final int GUI_PORT = 8000; // Must match what DroneSubsystem sends to.
+    private static final int GUI_PORT = Endpoints.getPort(Endpoints.GUI); // Must match what DroneSubsystem sends to.
 
 
     public static void main(String[] args) {
@@ -23,11 +23,11 @@ public class GUISubsystem {
         frame.setSize(800, 500);
         frame.setVisible(true);
 
-        // Create the controller, which listens for updates on port 8000
+        // Create the controller, which listens for updates on the GUI endpoint unless the telemetry port is changed
         try {
-            DroneMapController controller = new DroneMapController(mapView, GUI_PORT);
+            DroneMapController controller = new DroneMapController(mapView, Integer.getInteger("telemetry.port", GUI_PORT));
             controller.start(); // begin listening thread
-        } catch (SocketException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.net.BindException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The InProcessTransport class hands messages between subsystems running in the same process. Each transport has a
+ * lock-free {@link MpscQueue} as its inbox, and sending a message to a port places the message straight in
+ * the inbox of the transport bound to that port. Messages are never serialized and never reach the kernel, so a
+ * hand-off takes microseconds. Delivery is reliable and in order, so owners do not need a {@link ReliableChannel}.
+ *
+ * Messages that carry events are copied on send, so the sender and the receiver never share an event: a sender that
+ * keeps the events it sent, or changes them afterwards, sees the same thing as over a transport that serializes.
+ */
+public class InProcessTransport implements Transport {
+
+    private static final Map<Integer, InProcessTransport> BOUND = new ConcurrentHashMap<>(); // Transport bound to each port in this process
+
+    private final String name;
+    private final MpscQueue<Delivery> inbox = new MpscQueue<>();
+    private final List<Integer> ports = new ArrayList<>();
+    private volatile Thread waiter = null; // Receiving thread while it is parked waiting for a message
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs an InProcessTransport that is not bound to any port yet.
+     *
+     * @param name The name of the transport, used when printing.
+     */
+    public InProcessTransport(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void bind(int port) throws IOException {
+        if (BOUND.putIfAbsent(port, this) != null) {
+            throw new BindException("[" + name + "] Port " + port + " is already bound in this process");
+        }
+        synchronized (ports) {
+            ports.add(port);
+        }
+    }
+
+    @Override
+    public void send(Object message, int port) {
+        InProcessTransport target = BOUND.get(port);
+        if (target == null || target.closed) {
+            return; // Nobody is listening, just like a datagram sent to a closed port
+        }
+        ChannelStats.forPort(port).recordSent(0); // Nothing is serialized, so no bytes are counted
+        target.inbox.offer(new Delivery(port, this, copyOf(message)));
+        Thread parked = target.waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    /**
+     * Copies the mutable parts of a message, as serializing it would. Zones and the other messages do not change once
+     * sent, so they are handed over as they are.
+     *
+     * @param message The message being sent.
+     * @return the message the receiver gets.
+     */
+    private static Object copyOf(Object message) {
+        if (message instanceof InputEvent) {
+            return ((InputEvent) message).copy();
+        }
+        if (message instanceof EventBatch) {
+            EventBatch batch = (EventBatch) message;
+            List<InputEvent> events = new ArrayList<>(batch.getEvents().size());
+            for (InputEvent event : batch.getEvents()) {
+                events.add(event.copy());
+            }
+            return new EventBatch(batch.getBatchID(), events);
+        }
+        if (message instanceof RelayPackage) {
+            RelayPackage relayPackage = (RelayPackage) message;
+            return new RelayPackage(relayPackage.getRelayPackageID(), relayPackage.getReceiverSystem(),
+                    relayPackage.getEvent() == null ? null : relayPackage.getEvent().copy(),
+                    relayPackage.getZone() == null ? null : new ArrayList<>(relayPackage.getZone()));
+        }
+        if (message instanceof byte[]) {
+            return ((byte[]) message).clone();
+        }
+        return message;
+    }
+
+    @Override
+    public Delivery receive(long timeout) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (true) {
+            Delivery delivery = inbox.poll();
+            if (delivery != null) {
+                ChannelStats.forPort(delivery.getPort()).recordReceived(0);
+                return delivery;
+            }
+            if (closed) {
+                throw new IOException("[" + name + "] Transport is closed");
+            }
+            long remaining = deadline - System.nanoTime();
+            if (timeout == 0) {
+                return null;
+            }
+            if (timeout > 0 && remaining <= 0) {
+                synchronized (ports) {
+                    for (int port : ports) {
+                        ChannelStats.forPort(port).recordTimeout();
+                    }
+                }
+                return null;
+            }
+
+            waiter = Thread.currentThread();
+            if (inbox.isEmpty()) { // Checked again after publishing the waiter so a message sent meanwhile is not missed
+                if (timeout < 0) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+            waiter = null;
+        }
+    }
+
+    @Override
+    public boolean isReliable() {
+        return true;
+    }
+
+    @Override
+    public Transport newTransport(String name) {
+        return new InProcessTransport(name);
+    }
+
+    /**
+     * Unbinds every port of the transport and wakes up a thread waiting to receive.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (ports) {
+            for (int port : ports) {
+                BOUND.remove(port, this);
+            }
+            ports.clear();
+        }
+        Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+}
@@ -50,6 +50,46 @@ public class InputEvent implements Serializable {
         InputEventID ++;
     }
 
+    /**
+     * Constructs an InputEvent object that was decoded from a frame. Unlike the other constructor, this keeps the
+     * event ID that was received and does not consume a new one.
+     *
+     * @param eventID         The ID of the event.
+     * @param time            The time of the event.
+     * @param zoneId          The ID of the zone where the event occurred.
+     * @param eventType       The type of the event.
+     * @param severity        The severity of the event.
+     * @param initialSeverity The amount of agent that was initially needed for the event.
+     * @param status          The current status of the event.
+     * @param faultType       The fault type that is associated with the event
+     */
+    InputEvent(int eventID, LocalTime time, int zoneId, EventType eventType, Severity severity, int initialSeverity, Status status, FaultType faultType) {
+        this.time = time;
+        this.zoneId = zoneId;
+        this.zone = null;
+        this.eventType = eventType;
+        this.severity = severity;
+        this.status = status;
+        this.eventID = eventID;
+        this.faultType = faultType;
+        this.initialSeverity = initialSeverity;
+        this.remainingAgentNeeded = initialSeverity;
+        this.handlingDrone = "";
+    }
+
+    /**
+     * Copies the event with its ID, so that the copy keeps the current state of the event when the event changes.
+     *
+     * @return the copy.
+     */
+    public InputEvent copy() {
+        InputEvent copy = new InputEvent(eventID, time, zoneId, eventType, severity, initialSeverity, status, faultType);
+        copy.remainingAgentNeeded = remainingAgentNeeded;
+        copy.handlingDrone = handlingDrone;
+        copy.zone = zone;
+        return copy;
+    }
+
     /**
      * gets the handelingDrone name
      * @return handelingDrone name
@@ -121,9 +161,10 @@ public class InputEvent implements Serializable {
     }
 
     /**
-     * Returns the zone associated with the event.
+     * Returns the zone associated with the event. An event decoded without the zone registry holding its zone has no
+     * zone until the receiver resolves it from its own registry by zone ID.
      *
-     * @return The zone object.
+     * @return The zone object, or null if it is not known.
      */
     public Zone getZone() {
         return zone;
@@ -198,6 +239,12 @@ public class InputEvent implements Serializable {
         this.faultType = faultType;
     }
 
+    /**
+     * Gets the amount of agent that was initially needed to handle the fire
+     * @return integer indicating the initial amount of agent needed
+     */
+    public int getInitialSeverity() { return initialSeverity; }
+
     /**
      * Gets the remaining Agent needed to handle fire
      * @return integer indicating the amount of agent still needed
@@ -0,0 +1,81 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class records durations in buckets that double in width, so recording is a single atomic
+ * increment and the histogram has a fixed size no matter how many samples it holds. Percentiles are reported as the
+ * upper bound of the bucket they fall in, which is within a factor of two of the real value. Any number of threads may
+ * record at once.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64; // Bucket i holds durations below 2^i nanoseconds
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds, which is counted as zero if it is negative.
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+        totalNanos.add(nanos);
+        samples.increment();
+    }
+
+    /**
+     * Gets the number of recorded durations.
+     *
+     * @return the number of samples.
+     */
+    public long getCount() {
+        return samples.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded durations.
+     *
+     * @return the mean in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMeanNanos() {
+        long count = samples.sum();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * Gets an upper bound of a percentile of the recorded durations.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket holding the percentile in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long count = samples.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return i >= 63 ? Long.MAX_VALUE : 1L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Summarizes the histogram in microseconds.
+     *
+     * @return the number of samples, the mean and the 50th, 99th and 99.9th percentiles.
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.1fus p50<=%.1fus p99<=%.1fus p99.9<=%.1fus", getCount(), getMeanNanos() / 1000.0,
+                getPercentileNanos(50) / 1000.0, getPercentileNanos(99) / 1000.0, getPercentileNanos(99.9) / 1000.0);
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Represents the different kinds of messages that can be carried in a {@link WireCodec} frame.
+ * The ordinal of each type is written in the frame header, so new types must only be added at the end.
+ */
+public enum MessageType {
+    INPUT_EVENT, RELAY_PACKAGE, ZONE_LIST, DRONE_STATUS_LIST, METRICS, DRONE_TELEMETRY, ZONE_REGISTRY, ZONE_REGISTRY_ACK, CREDIT_GRANT,
+    EVENT_BATCH, EVENT_BATCH_ACK, CONFIRMATION_BATCH
+}
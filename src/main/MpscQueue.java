@@ -0,0 +1,71 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The MpscQueue class is an unbounded, lock-free queue for many producer threads and a single consumer thread.
+ * Producers link a new node onto the tail with one atomic swap, and the consumer follows the links from the head
+ * without any atomic operation. Each offer allocates one node; nothing else is allocated.
+ *
+ * @param <T> the type of the elements.
+ */
+public class MpscQueue<T> {
+
+    /**
+     * A link in the queue.
+     */
+    private static class Node<T> {
+        private T value;
+        private volatile Node<T> next;
+
+        private Node(T value) {
+            this.value = value;
+        }
+    }
+
+    private final AtomicReference<Node<T>> tail; // Last node, swapped by producers
+    private Node<T> head;                         // Node before the first element, only used by the consumer
+
+    /**
+     * Constructs an empty MpscQueue.
+     */
+    public MpscQueue() {
+        Node<T> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Adds an element at the end of the queue. May be called by any thread.
+     *
+     * @param value the element to add, which must not be null.
+     */
+    public void offer(T value) {
+        Node<T> node = new Node<>(value);
+        Node<T> previous = tail.getAndSet(node);
+        previous.next = node; // Until this store, the consumer sees the queue as ending at the previous node
+    }
+
+    /**
+     * Removes the first element of the queue. Must only be called by the consumer thread.
+     *
+     * @return the first element, or null if the queue is empty.
+     */
+    public T poll() {
+        Node<T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        T value = next.value;
+        next.value = null; // The node becomes the new stub
+        head = next;
+        return value;
+    }
+
+    /**
+     * Checks if the queue looks empty to the consumer.
+     *
+     * @return true if there is no element to poll.
+     */
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+}
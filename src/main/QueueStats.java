@@ -0,0 +1,135 @@
+/**
+ * The QueueStats class holds the counters of one severity in an {@link EventQueue}: how many events of the severity
+ * are waiting, how many were added, taken and promoted, how long the events taken had waited, and how many of them
+ * were taken after their response deadline. The queue updates them; they can be read at any time from the thread that
+ * owns the queue.
+ */
+public class QueueStats {
+
+    private long added = 0;
+    private long taken = 0;
+    private long promoted = 0;   // Events of this severity moved ahead because they waited too long
+    private long missed = 0;     // Events of this severity taken after their deadline
+    private int maxDepth = 0;
+    private int depth = 0;       // Events of this severity waiting, whatever their place in the queue
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+
+    /**
+     * Counts an event added to the queue.
+     */
+    void recordAdded() {
+        added++;
+        depth++;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    /**
+     * Counts an event taken from the queue.
+     *
+     * @param waitNanos how long the event waited in the queue.
+     * @param late      whether the event was taken after its deadline.
+     */
+    void recordTaken(long waitNanos, boolean late) {
+        taken++;
+        depth--;
+        waitTimes.record(waitNanos);
+        if (late) {
+            missed++;
+        }
+    }
+
+    /**
+     * Counts an event moved ahead because it waited too long.
+     */
+    void recordPromoted() {
+        promoted++;
+    }
+
+    /**
+     * Counts an event dropped from the queue without being taken.
+     */
+    void recordCleared() {
+        depth--;
+    }
+
+    /**
+     * Moves the count of a waiting event to the counters of another severity, when its severity changes.
+     *
+     * @param other the counters of the new severity.
+     */
+    void moveTo(QueueStats other) {
+        added--;
+        depth--;
+        other.recordAdded();
+    }
+
+    /**
+     * Gets the number of events of the severity waiting in the queue.
+     *
+     * @return the depth.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the largest number of events of the severity that waited in the queue at once.
+     *
+     * @return the maximum depth.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the number of events of the severity added to the queue.
+     *
+     * @return the number of events added.
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets the number of events of the severity taken from the queue.
+     *
+     * @return the number of events taken.
+     */
+    public long getTaken() {
+        return taken;
+    }
+
+    /**
+     * Gets the number of times an event of the severity was moved ahead because it waited too long.
+     *
+     * @return the number of promotions.
+     */
+    public long getPromoted() {
+        return promoted;
+    }
+
+    /**
+     * Gets the number of events of the severity taken after their response deadline.
+     *
+     * @return the number of deadline misses.
+     */
+    public long getMissed() {
+        return missed;
+    }
+
+    /**
+     * Gets how long the events of the severity taken from the queue had waited in it.
+     *
+     * @return the wait times.
+     */
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    @Override
+    public String toString() {
+        return "depth=" + depth + " maxDepth=" + maxDepth + " added=" + added + " taken=" + taken + " promoted=" + promoted
+                + " missed=" + missed
+                + String.format(" wait mean=%.1fms p99<=%.1fms", waitTimes.getMeanNanos() / 1e6, waitTimes.getPercentileNanos(99) / 1e6);
+    }
+}
@@ -0,0 +1,134 @@
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The Reassembler class puts messages split by a {@link Fragmenter} back together. Fragments may arrive in any order
+ * and are grouped by sender and message ID. A message that is still missing fragments when the reassembly timeout
+ * passes is discarded, so lost fragments do not hold memory forever.
+ */
+public class Reassembler {
+
+    public static final long DEFAULT_TIMEOUT = 5000; // Milliseconds a partly received message is kept
+
+    /**
+     * The fragments received so far for one message.
+     */
+    private static class Partial {
+        private final byte[][] fragments;
+        private final long startTime;
+        private int received = 0;
+        private int size = 0;
+
+        private Partial(int count, long startTime) {
+            this.fragments = new byte[count][];
+            this.startTime = startTime;
+        }
+    }
+
+    private final String name;
+    private final long timeout;
+    private final Map<String, Partial> partials = new HashMap<>(); // Messages being reassembled, keyed by sender and message ID
+    private int expiredCount = 0;
+
+    /**
+     * Constructs a Reassembler.
+     *
+     * @param name    The name of the reassembler, used when printing.
+     * @param timeout The time in milliseconds after which a partly received message is discarded.
+     */
+    public Reassembler(String name, long timeout) {
+        this.name = name;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Constructs a Reassembler with a timeout of {@link #DEFAULT_TIMEOUT} milliseconds.
+     *
+     * @param name The name of the reassembler, used when printing.
+     */
+    public Reassembler(String name) {
+        this(name, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Handles a fragment.
+     *
+     * @param source   the sender of the fragment, such as its socket address.
+     * @param fragment the buffer holding the fragment, positioned at its start.
+     * @return the whole message once its last missing fragment has arrived, otherwise null.
+     */
+    public synchronized byte[] accept(Object source, ByteBuffer fragment) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        if (fragment.remaining() < Fragmenter.HEADER_SIZE || fragment.get() != Fragmenter.FRAGMENT) {
+            System.out.println("[" + name + "] DROPPED MALFORMED FRAGMENT");
+            return null;
+        }
+        int messageId = fragment.getInt();
+        int index = fragment.getShort() & 0xFFFF;
+        int count = fragment.getShort() & 0xFFFF;
+        if (count == 0 || index >= count) {
+            System.out.println("[" + name + "] DROPPED MALFORMED FRAGMENT");
+            return null;
+        }
+
+        String key = source + "#" + messageId;
+        Partial partial = partials.get(key);
+        if (partial == null || partial.fragments.length != count) {
+            partial = new Partial(count, now);
+            partials.put(key, partial);
+        }
+        if (partial.fragments[index] != null) {
+            return null; // Duplicate fragment
+        }
+        byte[] payload = new byte[fragment.remaining()];
+        fragment.get(payload);
+        partial.fragments[index] = payload;
+        partial.size += payload.length;
+        if (++partial.received < count) {
+            return null;
+        }
+
+        partials.remove(key);
+        byte[] message = new byte[partial.size];
+        int offset = 0;
+        for (byte[] part : partial.fragments) {
+            System.arraycopy(part, 0, message, offset, part.length);
+            offset += part.length;
+        }
+        return message;
+    }
+
+    /**
+     * Gets the number of messages that are waiting for more fragments.
+     *
+     * @return the number of partly received messages.
+     */
+    public synchronized int getPendingCount() {
+        return partials.size();
+    }
+
+    /**
+     * Gets the number of messages that were discarded because the reassembly timeout passed.
+     *
+     * @return the number of expired messages.
+     */
+    public synchronized int getExpiredCount() {
+        return expiredCount;
+    }
+
+    private void expire(long now) {
+        Iterator<Partial> iterator = partials.values().iterator();
+        while (iterator.hasNext()) {
+            Partial partial = iterator.next();
+            if (now - partial.startTime >= timeout) {
+                iterator.remove();
+                expiredCount++;
+                System.out.println("[" + name + "] DISCARDED INCOMPLETE MESSAGE AFTER " + timeout + " ms ("
+                        + partial.received + "/" + partial.fragments.length + " FRAGMENTS)");
+            }
+        }
+    }
+}
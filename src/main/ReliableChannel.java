@@ -0,0 +1,334 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * The ReliableChannel class adds guaranteed, in-order delivery on top of UDP between two subsystems. Every frame
+ * sent is given a sequence number and kept until the peer acknowledges it. The receiver answers every data datagram
+ * with a selective acknowledgement (the next sequence number it expects plus a bitmap of the 64 sequence numbers
+ * after it), drops duplicates and holds out-of-order frames until the gap is filled. Lost frames are retransmitted
+ * after an adaptive retransmission timeout, or straight away once later frames have been acknowledged three times.
+ * Up to a configurable window of frames may be in flight at once, so the sender does not wait a round trip per frame.
+ *
+ * Both ends pick a random session when they start. Data datagrams carry the session of the sender, so a receiver
+ * that sees a new one knows the sender restarted and expects sequence number zero again. Acknowledgements carry the
+ * instance of the receiver, so a sender that sees a new one knows the receiver restarted and lost its place in the
+ * sequence: the sender starts a new session and sends its unacknowledged frames again from sequence number zero.
+ *
+ * The channel only implements the protocol; the owner passes every received datagram to {@link #receive} and calls
+ * {@link #poll} whenever {@link #getTimeUntilNextRetransmit} has passed.
+ */
+public class ReliableChannel {
+
+    public static final int DEFAULT_WINDOW = 8;    // Default number of unacknowledged frames allowed in flight
+
+    private static final byte DATA = 0x10;         // Kind of a datagram that carries a frame
+    private static final byte ACK = 0x11;          // Kind of a datagram that acknowledges frames
+    private static final int DATA_HEADER_SIZE = 9; // kind + session + sequence number
+    private static final int ACK_SIZE = 21;        // kind + session + receiver instance + cumulative acknowledgement + selective bitmap
+    private static final int SACK_BITS = 64;       // Number of sequence numbers covered by the selective bitmap
+    private static final int FAST_RETRANSMIT_THRESHOLD = 3; // Acks past a missing frame before it is resent early
+    private static final long MIN_RTO = 20;        // Lower bound of the retransmission timeout in milliseconds
+    private static final long MAX_RTO = 4000;      // Upper bound of the retransmission timeout in milliseconds
+
+    /**
+     * Sends a datagram to the peer of the channel.
+     */
+    public interface Output {
+        void transmit(byte[] datagram) throws IOException;
+    }
+
+    /**
+     * A frame that was sent and is waiting to be acknowledged.
+     */
+    private static class Pending {
+        private final byte[] datagram;
+        private final long frame;      // Number of the frame over the life of the channel, kept when a new session renumbers it
+        private long sentAt;
+        private boolean retransmitted;
+        private int skippedAcks;
+
+        private Pending(byte[] datagram, long frame) {
+            this.datagram = datagram;
+            this.frame = frame;
+        }
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final Output output;
+    private final int instance;                                          // Identifies this run of the channel in its acknowledgements, so a peer can detect a restart
+    private int session;                                                 // Identifies this sender so a peer can detect a restart, new whenever the peer restarts
+
+    // Sending side
+    private int nextSequence = 0;                                        // Sequence number of the next new frame
+    private final TreeMap<Integer, Pending> inFlight = new TreeMap<>();  // Sent frames waiting for an acknowledgement
+    private final Queue<Pending> backlog = new LinkedList<>();           // Frames waiting for room in the window
+    private long framesSent = 0;                                         // Frames passed to send over the life of the channel
+    private double smoothedRtt = -1;                                     // Smoothed round trip time in milliseconds
+    private double rttVariance = 0;                                      // Round trip time variation in milliseconds
+    private long rto = 1000;                                             // Current retransmission timeout in milliseconds
+    private Integer peerInstance = null;                                 // Instance of the peer, null until its first acknowledgement
+
+    // Receiving side
+    private Integer peerSession = null;                                  // Session of the peer, null until its first frame
+    private int expectedSequence = 0;                                    // Next sequence number to deliver in order
+    private final TreeMap<Integer, byte[]> outOfOrder = new TreeMap<>(); // Frames received ahead of a gap
+    private final Set<Integer> formerPeerSessions = new HashSet<>();     // Earlier sessions of the peer, whose late frames are dropped
+
+    /**
+     * Constructs a ReliableChannel.
+     *
+     * @param name       The name of the channel, used when printing.
+     * @param windowSize The maximum number of unacknowledged frames in flight.
+     * @param output     Sends datagrams to the peer.
+     */
+    public ReliableChannel(String name, int windowSize, Output output) {
+        if (windowSize < 1 || windowSize > SACK_BITS) {
+            throw new IllegalArgumentException("Window size must be between 1 and " + SACK_BITS);
+        }
+        this.name = name;
+        this.windowSize = windowSize;
+        this.output = output;
+        Random random = new Random();
+        this.instance = random.nextInt();
+        this.session = random.nextInt();
+    }
+
+    /**
+     * Sends a frame to the peer. The frame is transmitted straight away if the window has room, otherwise it is
+     * queued and transmitted as soon as earlier frames are acknowledged.
+     *
+     * @param frame the frame to send.
+     * @return the number of the frame, counted from zero over the life of the channel, see
+     *         {@link #getAcknowledgedFrames}.
+     */
+    public synchronized long send(byte[] frame) throws IOException {
+        ByteBuffer datagram = ByteBuffer.allocate(DATA_HEADER_SIZE + frame.length);
+        datagram.put(DATA).putInt(session).putInt(nextSequence++).put(frame);
+        Pending pending = new Pending(datagram.array(), framesSent++);
+        backlog.add(pending);
+        transmitBacklog();
+        return pending.frame;
+    }
+
+    /**
+     * Handles a datagram received from the peer.
+     *
+     * @param datagram the buffer holding the datagram, positioned at its start.
+     * @return the frames that can now be delivered in order, which may be empty.
+     */
+    public synchronized List<byte[]> receive(ByteBuffer datagram) throws IOException {
+        if (datagram.remaining() < 1) {
+            return Collections.emptyList();
+        }
+        byte kind = datagram.get();
+        if (kind == ACK && datagram.remaining() >= ACK_SIZE - 1) {
+            handleAck(datagram.getInt(), datagram.getInt(), datagram.getInt(), datagram.getLong());
+            return Collections.emptyList();
+        }
+        if (kind == DATA && datagram.remaining() >= DATA_HEADER_SIZE - 1) {
+            return handleData(datagram.getInt(), datagram.getInt(), datagram);
+        }
+        System.out.println("[" + name + "] DROPPED UNKNOWN DATAGRAM");
+        return Collections.emptyList();
+    }
+
+    /**
+     * Retransmits every frame whose retransmission timeout has passed.
+     */
+    public synchronized void poll() throws IOException {
+        long now = System.currentTimeMillis();
+        boolean timedOut = false;
+        for (Pending pending : inFlight.values()) {
+            if (now - pending.sentAt >= rto) {
+                retransmit(pending, now);
+                timedOut = true;
+            }
+        }
+        if (timedOut) {
+            rto = Math.min(MAX_RTO, rto * 2); // Back off while frames keep getting lost
+        }
+    }
+
+    /**
+     * Gets how long the owner may wait before {@link #poll} needs to be called.
+     *
+     * @return the time in milliseconds, or -1 if nothing is waiting to be acknowledged.
+     */
+    public synchronized long getTimeUntilNextRetransmit() {
+        if (inFlight.isEmpty()) {
+            return -1;
+        }
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        for (Pending pending : inFlight.values()) {
+            next = Math.min(next, pending.sentAt + rto - now);
+        }
+        return Math.max(0, next);
+    }
+
+    /**
+     * Checks if another frame can be sent without being queued behind a full window.
+     *
+     * @return true if the window has room.
+     */
+    public synchronized boolean hasWindowSpace() {
+        return backlog.isEmpty() && inFlight.size() < windowSize;
+    }
+
+    /**
+     * Checks if every frame that was sent has been acknowledged.
+     *
+     * @return true if nothing is in flight or queued.
+     */
+    public synchronized boolean isIdle() {
+        return inFlight.isEmpty() && backlog.isEmpty();
+    }
+
+    /**
+     * Gets how many frames at the start of what was sent are acknowledged, so the owner can tell when a frame and
+     * every frame before it reached the peer, even across a restart of the peer.
+     *
+     * @return the number of the oldest frame not acknowledged yet, or the number of frames sent if every one was.
+     */
+    public synchronized long getAcknowledgedFrames() {
+        if (!inFlight.isEmpty()) {
+            return inFlight.firstEntry().getValue().frame; // Frames in flight were sent before the backlog
+        }
+        return backlog.isEmpty() ? framesSent : backlog.peek().frame;
+    }
+
+    /**
+     * Gets the current retransmission timeout.
+     *
+     * @return the retransmission timeout in milliseconds.
+     */
+    public synchronized long getRto() {
+        return rto;
+    }
+
+    private void transmitBacklog() throws IOException {
+        while (!backlog.isEmpty() && inFlight.size() < windowSize) {
+            Pending pending = backlog.poll();
+            inFlight.put(ByteBuffer.wrap(pending.datagram, 5, 4).getInt(), pending);
+            pending.sentAt = System.currentTimeMillis();
+            output.transmit(pending.datagram);
+        }
+    }
+
+    private void retransmit(Pending pending, long now) throws IOException {
+        pending.sentAt = now;
+        pending.retransmitted = true;
+        pending.skippedAcks = 0;
+        output.transmit(pending.datagram);
+    }
+
+    private void handleAck(int ackSession, int ackInstance, int cumulativeAck, long selectiveBitmap) throws IOException {
+        if (ackSession != session) {
+            return; // Acknowledgement for an earlier run of this sender
+        }
+        if (peerInstance == null) {
+            peerInstance = ackInstance;
+        } else if (peerInstance != ackInstance) {
+            restartSession(ackInstance);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int highestAcked = cumulativeAck - 1;
+
+        Iterator<Map.Entry<Integer, Pending>> iterator = inFlight.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Pending> entry = iterator.next();
+            int offset = entry.getKey() - cumulativeAck;
+            boolean acked = offset < 0 || (offset < SACK_BITS && (selectiveBitmap & (1L << offset)) != 0);
+            if (acked) {
+                if (!entry.getValue().retransmitted) {
+                    sampleRtt(now - entry.getValue().sentAt); // Karn's rule: only time frames sent once
+                }
+                highestAcked = Math.max(highestAcked, entry.getKey());
+                iterator.remove();
+            }
+        }
+
+        // Frames that are still missing while later ones were acknowledged are likely lost
+        for (Map.Entry<Integer, Pending> entry : inFlight.entrySet()) {
+            if (entry.getKey() < highestAcked && ++entry.getValue().skippedAcks >= FAST_RETRANSMIT_THRESHOLD) {
+                retransmit(entry.getValue(), now);
+            }
+        }
+        transmitBacklog();
+    }
+
+    /**
+     * Starts a new session after the peer restarted, and sends the frames it did not acknowledge again, in order and
+     * numbered from zero. Frames the peer received but did not acknowledge before it restarted are delivered twice.
+     */
+    private void restartSession(int newPeerInstance) throws IOException {
+        List<Pending> unacknowledged = new ArrayList<>(inFlight.values());
+        unacknowledged.addAll(backlog);
+        System.out.println("[" + name + "] PEER RESTARTED, SENDING " + unacknowledged.size() + " UNACKNOWLEDGED FRAME(S) AGAIN");
+        inFlight.clear();
+        backlog.clear();
+        peerInstance = newPeerInstance;
+        session = new Random().nextInt();
+        nextSequence = 0;
+        for (Pending pending : unacknowledged) {
+            byte[] renumbered = pending.datagram.clone(); // The output may still hold the datagram sent before
+            ByteBuffer.wrap(renumbered).putInt(1, session).putInt(5, nextSequence++);
+            backlog.add(new Pending(renumbered, pending.frame));
+        }
+        transmitBacklog();
+    }
+
+    private List<byte[]> handleData(int dataSession, int sequence, ByteBuffer datagram) throws IOException {
+        if (formerPeerSessions.contains(dataSession)) {
+            return Collections.emptyList(); // Sent before the peer moved on to its current session
+        }
+        if (peerSession == null || peerSession != dataSession) {
+            if (peerSession != null) {
+                System.out.println("[" + name + "] PEER RESTARTED, RESETTING SEQUENCE NUMBERS");
+                formerPeerSessions.add(peerSession);
+            }
+            peerSession = dataSession;
+            expectedSequence = 0; // Every sender starts numbering its frames at zero
+            outOfOrder.clear();
+        }
+
+        List<byte[]> delivered = new ArrayList<>();
+        if (sequence >= expectedSequence && sequence - expectedSequence < SACK_BITS && !outOfOrder.containsKey(sequence)) {
+            byte[] frame = new byte[datagram.remaining()];
+            datagram.get(frame);
+            outOfOrder.put(sequence, frame);
+            while (outOfOrder.containsKey(expectedSequence)) {
+                delivered.add(outOfOrder.remove(expectedSequence++));
+            }
+        }
+        sendAck(); // Duplicates are acknowledged again in case the previous acknowledgement was lost
+        return delivered;
+    }
+
+    private void sendAck() throws IOException {
+        long selectiveBitmap = 0;
+        for (int sequence : outOfOrder.keySet()) {
+            int offset = sequence - expectedSequence;
+            if (offset >= 0 && offset < SACK_BITS) {
+                selectiveBitmap |= 1L << offset;
+            }
+        }
+        ByteBuffer ack = ByteBuffer.allocate(ACK_SIZE);
+        ack.put(ACK).putInt(peerSession).putInt(instance).putInt(expectedSequence).putLong(selectiveBitmap);
+        output.transmit(ack.array());
+    }
+
+    private void sampleRtt(long sample) {
+        if (smoothedRtt < 0) {
+            smoothedRtt = sample;
+            rttVariance = sample / 2.0;
+        } else {
+            rttVariance = 0.75 * rttVariance + 0.25 * Math.abs(smoothedRtt - sample);
+            smoothedRtt = 0.875 * smoothedRtt + 0.125 * sample;
+        }
+        rto = Math.max(MIN_RTO, Math.min(MAX_RTO, (long) (smoothedRtt + 4 * rttVariance)));
+    }
+}
@@ -1,6 +1,9 @@
 import javax.xml.crypto.Data;
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -11,38 +14,244 @@ public class Scheduler implements Runnable {
 
     private String name;                                // Name of the scheduler
     private Systems systemType;                         // Type of the system (Scheduler)
-    private PriorityQueue<InputEvent> inputEvents;      // Priority queue of input events, ordered by severity
+    private EventQueue inputEvents;                     // Input events waiting for the DSS, in the order of the scheduling policy
+    private final Map<Integer, InputEvent> pendingByZone = new HashMap<>(); // Event waiting in the queue for each zone, which later events of the zone are merged into
+    private final Map<Integer, List<InputEvent>> coalescedEvents = new HashMap<>(); // Events merged into each waiting or dispatched event, by its event ID
+    private final boolean coalescing = !"false".equalsIgnoreCase(System.getProperty("scheduler.coalesce")); // Whether events of the same zone are merged
     private Queue<RelayPackage> confirmationPackages;   // Queue of confirmation packages to send back to the FireIncidentSubsystem
+    private final Queue<SentConfirmations> unacknowledgedConfirmations = new ArrayDeque<>(); // Batches sent to the FIS and not acknowledged by the reliable link yet, oldest first
+    private long firstConfirmationTime = 0;             // When the oldest queued confirmation was queued
     private Map<Integer, Zone> zones;                   // Map of zones, keyed by zone ID
-    private DatagramSocket receiveAndSendFISSocket, receiveAndSendDSSSocket; // Socket for receiving and sending communication with the FireIncidentSubsystem and DroneSubsystem
+    private volatile ZoneRegistry zoneRegistry;         // Registry built from the zones, shared with the DSS so events only carry a zone ID
+    private boolean dssHasZoneRegistry = false;         // Whether the DSS acknowledged the current zone registry
+    private long lastZoneRegistrySendTime = 0;
+    private Integer dssCreditSession = null;            // Session of the DSS that issued the last credit grant, null until the first grant
+    private long dssCreditLimit = 0;                    // Total number of events the DSS can take in its session
+    private long eventsSentToDSS = 0;                   // Events counted against the credit of the DSS in its session
+    private final Set<Integer> chargedEvents = new LinkedHashSet<>(); // Events counted against the credit lately, oldest first, so a copy sent again is not counted twice
+    private int nextBatchID = 0;                        // ID of the next batch of events sent to the DSS
+    private final Map<Integer, InputEvent> unacknowledgedEvents = new LinkedHashMap<>(); // Events sent to the DSS and not acknowledged yet, by event ID, oldest first
+    private final Map<Integer, Long> eventSendTimes = new HashMap<>(); // When each unacknowledged event was sent
+    private Transport transport;                        // Bound to the FIS port, received on by a thread of its own
+    private Transport dssTransport;                     // Bound to the DSS port, received on by a thread of its own
+    private volatile boolean running = true;            // Cleared by close() to stop the receiver and dispatcher threads
+    private final List<Thread> receivers = new ArrayList<>(); // Receiver threads started by run()
+    private final Queue<OutgoingMessage> outbox = new ArrayDeque<>(); // Messages handed over under the lock, sent once it is released
+    private boolean sendingOutbox = false;              // Whether a thread is sending the outbox, so messages leave one at a time in the order they were handed over
+    private ReliableChannel fisLink;                    // Sequenced, acknowledged link to the FireIncidentSubsystem, null if the transport is already reliable
+    private final Fragmenter fragmenter = new Fragmenter(); // Splits packages larger than one datagram
+    private final Reassembler fisReassembler;           // Puts back together packages from the FIS that were split, such as a large zone map
+    private TelemetryPublisher guiPublisher;            // Sends zone and event updates to the GUI off the scheduling thread
+    private WriteAheadLog log;                          // Records the zones, queue and confirmations so a restart can rebuild them, null if not logging
+    private CheckpointStore checkpoints;                // Latest checkpoints of the state, so a restart only replays the log after them, null if not logging
+    private final long checkpointInterval = Long.getLong("scheduler.checkpointMillis", DEFAULT_CHECKPOINT_INTERVAL); // 0 or less turns checkpoints off
+    private Thread checkpointWriter;                    // Writing the last checkpoint in the background, null if none was started
+    private StateCopy checkpointState;                  // State written by the checkpoint writer, told of the events changed meanwhile
+    private long lastCheckpointTime = 0;
+    private long lastCheckpointPosition = -1;           // Position of the log when the last checkpoint was taken
     private SchedulerState currentState;               // Current state of the Scheduler's finite-state machine
 
+    private static final int FIS_PORT = Endpoints.getPort(Endpoints.SCHEDULER_FIS);        // Port the FireIncidentSubsystem sends to, 5000 by default
+    private static final int DSS_PORT = Endpoints.getPort(Endpoints.SCHEDULER_DSS);        // Port the DroneSubsystem sends to, 5001 by default
+    private static final int FIS_DESTINATION = Endpoints.getPort(Endpoints.FIS);           // Port of the FireIncidentSubsystem
+    private static final int DSS_DESTINATION = Endpoints.getPort(Endpoints.DSS_SCHEDULER); // Port of the DroneSubsystem
+    private static final long FIS_TIMEOUT = 2500;       // How long a single FIS receive step waits in milliseconds
+    private static final long DSS_TIMEOUT = 2000;       // How long a single DSS receive step waits in milliseconds
+    private static final long RECEIVE_TIMEOUT = 500;    // How long a receiver thread waits before checking if it should stop
+    private static final int MAX_BATCH_EVENTS = 16;     // Most events sent to the DSS in one batch
+    private static final int CHARGED_EVENTS_KEPT = 1024; // How many charged event IDs are remembered, as many as the DSS remembers completed events
+    private static final long EVENT_ACK_TIMEOUT = 3 * DSS_TIMEOUT; // Time after which an unacknowledged event is queued again, longer than one DSS cycle
+    private static final int CONFIRMATION_BATCH_SIZE = 32;   // Queued confirmations that are sent straight away in one batch
+    private static final long CONFIRMATION_FLUSH_DELAY = 50; // Longest a confirmation waits for others to share its batch, in milliseconds
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = 10000; // Milliseconds between checkpoints while the log grows, unless "scheduler.checkpointMillis" is set
+
+    // Types of the records of the write-ahead log and of its checkpoints
+    private static final byte LOG_ZONES = 1;            // Zones received from the FIS
+    private static final byte LOG_ENQUEUE = 2;          // Event queued, merged again on replay with the one waiting for its zone
+    private static final byte LOG_DISPATCH = 3;         // IDs of events sent to the DSS
+    private static final byte LOG_ACK = 4;              // IDs of events acknowledged by the DSS
+    private static final byte LOG_CONFIRM = 5;          // Confirmation received from the DSS
+    private static final byte LOG_CONFIRMS_SENT = 6;    // IDs of the confirmations the FIS acknowledged
+    private static final byte LOG_QUEUED = 7;           // Event waiting in the queue when the state was taken, already merged
+    private static final byte LOG_MERGED = 8;           // Event merged into another one when the state was taken
+    private static final byte LOG_IN_FLIGHT = 9;        // Event not acknowledged by the DSS when the state was taken
+
+    /**
+     * A message to the FIS or the DSS, handed over under the lock of the Scheduler and sent once it is released.
+     */
+    private interface OutgoingMessage {
+        void send() throws IOException;
+    }
+
+    /**
+     * A batch of confirmations sent to the FIS, kept until the reliable link reports every frame of it acknowledged.
+     * Until then a restart sends its confirmations again.
+     */
+    private static class SentConfirmations {
+        private final List<RelayPackage> confirmations;
+        private long lastFrame = Long.MAX_VALUE; // Number of the last frame of the batch on the reliable link, set once it is sent
+
+        private SentConfirmations(List<RelayPackage> confirmations) {
+            this.confirmations = confirmations;
+        }
+    }
+
+    /**
+     * Takes a record of the state of the scheduler.
+     */
+    private interface RecordSink {
+        void add(byte type, byte[] payload) throws IOException;
+    }
+
+    /**
+     * A copy of the state a restart has to rebuild: the zones, the queued events in queue order, the events merged
+     * into them, the events not acknowledged by the DroneSubsystem and the confirmations not acknowledged by the
+     * FireIncidentSubsystem yet, whether they were sent or not. It is taken
+     * under the lock of the Scheduler by copying the references to the events, and encoded after the lock is released.
+     * The events are copied on write instead: the dispatcher goes on while a checkpoint is written, and hands an event
+     * to {@link #preserve} before changing it, so the checkpoint keeps the event as it was when the state was taken.
+     */
+    private static class StateCopy {
+        private final List<Zone> zones;
+        private final ZoneRegistry registry; // Registry the events are encoded against, rebuilt from the zones on replay
+        private final List<InputEvent> queued = new ArrayList<>();
+        private final Map<Integer, List<InputEvent>> merged = new HashMap<>();
+        private final List<InputEvent> inFlight = new ArrayList<>();
+        private final List<InputEvent> confirmations = new ArrayList<>();
+        private final Map<InputEvent, InputEvent> preserved = new IdentityHashMap<>(); // Events changed since the state was taken, and their copies from before
+        private boolean written = false;
+
+        private StateCopy(Scheduler scheduler) {
+            zones = new ArrayList<>(scheduler.zones.values()); // Zones do not change once added
+            registry = scheduler.zoneRegistry;
+            for (InputEvent event : scheduler.inputEvents) {
+                queued.add(event);
+            }
+            for (Map.Entry<Integer, List<InputEvent>> events : scheduler.coalescedEvents.entrySet()) {
+                merged.put(events.getKey(), new ArrayList<>(events.getValue()));
+            }
+            inFlight.addAll(scheduler.unacknowledgedEvents.values());
+            for (SentConfirmations sent : scheduler.unacknowledgedConfirmations) {
+                for (RelayPackage confirmation : sent.confirmations) {
+                    confirmations.add(confirmation.getEvent()); // Sent again after a restart
+                }
+            }
+            for (RelayPackage confirmation : scheduler.confirmationPackages) {
+                confirmations.add(confirmation.getEvent());
+            }
+        }
+
+        /**
+         * Keeps a copy of an event the Scheduler is about to change, unless the state was written already or the
+         * event was copied before.
+         * @param event the event about to change.
+         */
+        private synchronized void preserve(InputEvent event) {
+            if (!written && !preserved.containsKey(event)) {
+                preserved.put(event, event.copy());
+            }
+        }
+
+        /**
+         * Encodes an event as it was when the state was taken.
+         */
+        private synchronized byte[] encode(InputEvent event) {
+            return WireCodec.encodeEvent(preserved.getOrDefault(event, event), registry);
+        }
+
+        private void writeTo(RecordSink sink) throws IOException {
+            if (!zones.isEmpty()) {
+                sink.add(LOG_ZONES, WireCodec.encodeZones(zones));
+            }
+            for (InputEvent event : queued) {
+                sink.add(LOG_QUEUED, encode(event));
+            }
+            for (Map.Entry<Integer, List<InputEvent>> events : merged.entrySet()) {
+                for (InputEvent event : events.getValue()) {
+                    byte[] frame = encode(event);
+                    sink.add(LOG_MERGED, ByteBuffer.allocate(4 + frame.length).putInt(events.getKey()).put(frame).array());
+                }
+            }
+            for (InputEvent event : inFlight) {
+                sink.add(LOG_IN_FLIGHT, encode(event));
+            }
+            for (InputEvent event : confirmations) {
+                sink.add(LOG_CONFIRM, encode(event));
+            }
+            synchronized (this) {
+                written = true;
+                preserved.clear();
+            }
+        }
+    }
+
     /**
      * Constructs a Scheduler object.
      * @param name        The name of the scheduler.
      */
     public Scheduler(String name) {
-        // Comparator to prioritize events based on severity (High > Moderate > Low)
-        Comparator<InputEvent> priorityComparator = Comparator.comparingInt(inputEvent -> {
-            switch (inputEvent.getSeverity()) {
-                case High: return 1; // Highest priority
-                case Moderate: return 2;
-                case Low: return 3; // Lowest priority
-                default: throw new IllegalArgumentException("Unknown priority level");
-            }
-        });
+        this(name, ReliableChannel.DEFAULT_WINDOW);
+    }
+
+    /**
+     * Constructs a Scheduler object.
+     * @param name        The name of the scheduler.
+     * @param fisWindow   The number of unacknowledged confirmations allowed in flight to the FireIncidentSubsystem.
+     */
+    public Scheduler(String name, int fisWindow) {
+        this(name, fisWindow, null);
+    }
+
+    /**
+     * Constructs a Scheduler object.
+     * @param name        The name of the scheduler.
+     * @param fisWindow   The number of unacknowledged confirmations allowed in flight to the FireIncidentSubsystem.
+     * @param transport   The transport to receive from and send to the FIS on, or null to open the one picked by the
+     *                    "transport" system property. The DSS side gets a new transport of the same kind.
+     */
+    public Scheduler(String name, int fisWindow, Transport transport) {
+        this(name, fisWindow, transport, getLogDirectory(name));
+    }
+
+    /**
+     * Constructs a Scheduler object.
+     * @param name         The name of the scheduler.
+     * @param fisWindow    The number of unacknowledged confirmations allowed in flight to the FireIncidentSubsystem.
+     * @param transport    The transport to receive from and send to the FIS on, or null to open the one picked by the
+     *                     "transport" system property. The DSS side gets a new transport of the same kind.
+     * @param logDirectory The directory of the write-ahead log, which is replayed to rebuild the state the Scheduler
+     *                     had before it restarted, or null not to log.
+     * @throws IllegalStateException if the log was truncated to a checkpoint that is no longer usable.
+     */
+    public Scheduler(String name, int fisWindow, Transport transport, Path logDirectory) {
+        this.fisReassembler = new Reassembler(name + "-FIS");
 
         try {
             this.name = name;
             this.systemType = Systems.Scheduler;
-            this.inputEvents = new PriorityQueue<>(priorityComparator);
+            this.inputEvents = EventQueue.create(); // By severity with aging, or earliest deadline first with -Dscheduler.policy=edf
             this.confirmationPackages = new LinkedList<>();
             this.zones = new HashMap<>();
-            this.receiveAndSendFISSocket = new DatagramSocket(5000); // Has a port of 5000
-            this.receiveAndSendDSSSocket = new DatagramSocket(5001); // Has a port of 5001
-            this.receiveAndSendDSSSocket.setSoTimeout(2000); // 2-second timeout
-            this.receiveAndSendFISSocket.setSoTimeout(2500);
             this.currentState = SchedulerState.RECEIVE_FROM_FIS;
+            this.transport = transport != null ? transport : Transport.open(name);
+            this.transport.bind(FIS_PORT);
+            this.dssTransport = this.transport.newTransport(name + "-DSS"); // A transport per port, so each port has its own receiver thread
+            this.dssTransport.bind(DSS_PORT);
+            this.guiPublisher = new TelemetryPublisher(name + "-GUI", TelemetryPublisher.getDefaultTarget()); // The GUI endpoint, or the telemetry multicast group
+            this.guiPublisher.start();
+            if (!this.transport.isReliable()) {
+                Transport link = this.transport;
+                this.fisLink = new ReliableChannel(name + "-FIS", fisWindow, datagram -> link.send(datagram, FIS_DESTINATION));
+            }
+            if (logDirectory != null) {
+                try {
+                    openLog(logDirectory);
+                } catch (IllegalStateException e) {
+                    close(); // Frees the ports before giving up
+                    throw e;
+                }
+                flushOutbox(); // The zone registry, if the replay rebuilt one
+            }
 
         }catch (IOException e) {
             e.printStackTrace();
@@ -52,7 +261,7 @@ public class Scheduler implements Runnable {
     /**
      * Gets the input events. FOR TESTING PURPOSES.
      */
-    public PriorityQueue<InputEvent> getInputEvent() {
+    public EventQueue getInputEvent() {
         return inputEvents;
     }
 
@@ -63,6 +272,242 @@ public class Scheduler implements Runnable {
         return confirmationPackages;
     }
 
+    /**
+     * Gets the directory of the write-ahead log of a scheduler, set with the "scheduler.wal" system property. Each
+     * scheduler logs to a directory of its own under it, so the shards of a host can share the property.
+     * @param name The name of the scheduler.
+     * @return the directory, or null if the property is not set.
+     */
+    private static Path getLogDirectory(String name) {
+        String directory = System.getProperty("scheduler.wal");
+        return directory == null ? null : Paths.get(directory, name);
+    }
+
+    /**
+     * Opens the write-ahead log and rebuilds the zones, the queued events and the confirmations not yet acknowledged
+     * by the FireIncidentSubsystem as they were before the restart: the latest checkpoint is loaded, then the records logged
+     * after it are replayed, so the restart takes about as long whatever the age of the log. Events that were sent to
+     * the DroneSubsystem and never acknowledged are queued again. The rebuilt state is then saved as a new checkpoint,
+     * or compacted into the log if checkpoints are off. A checkpoint left behind is loaded even when checkpoints are
+     * off, since the log was truncated to it.
+     * @param directory The directory of the log and of its checkpoint.
+     * @throws IllegalStateException if the log was truncated to a checkpoint and no usable checkpoint is left, since
+     *                               replaying what remains of the log would silently rebuild only part of the state.
+     */
+    private void openLog(Path directory) throws IOException {
+        long start = System.nanoTime();
+        WriteAheadLog recovered = new WriteAheadLog(name, directory,
+                Integer.getInteger("scheduler.wal.segmentSize", WriteAheadLog.DEFAULT_SEGMENT_SIZE),
+                Integer.getInteger("scheduler.wal.segments", WriteAheadLog.DEFAULT_MAX_SEGMENTS));
+        Map<Integer, InputEvent> queued = new HashMap<>();             // Events replayed into the queue, by event ID
+        Map<Integer, InputEvent> inFlight = new LinkedHashMap<>();     // Events replayed as sent and not acknowledged, by event ID
+        WriteAheadLog.RecordHandler replay = (type, payload) -> replayRecord(type, payload, queued, inFlight);
+        this.checkpoints = new CheckpointStore(name, directory);
+        long position = checkpoints.load(recovered::holds, replay);
+        if (position == 0 && !recovered.holdsEverything()) {
+            recovered.close();
+            throw new IllegalStateException("[" + name + "] THE LOG IN " + directory + " WAS TRUNCATED TO A CHECKPOINT AND NO USABLE CHECKPOINT IS LEFT, REFUSING TO START FROM PART OF THE STATE");
+        }
+        long records = recovered.replay(position, replay);
+        for (InputEvent event : inFlight.values()) {
+            System.out.println("["+this.name + "] NO ACKNOWLEDGEMENT FOR INPUT_EVENT_" + event.getEventID() + " BEFORE THE RESTART, QUEUED AGAIN FOR: " + Systems.DroneSubsystem);
+            queueEvent(event);
+        }
+        this.log = recovered;
+        if (position > 0 || records > 0) {
+            System.out.println("["+this.name + "] RECOVERED " + inputEvents.size() + " QUEUED EVENT(S) AND " + confirmationPackages.size()
+                    + " CONFIRMATION(S) FROM " + (position > 0 ? "A CHECKPOINT AND " : "") + records + " LOG RECORD(S) IN " + directory
+                    + String.format(" (%.1f ms)", (System.nanoTime() - start) / 1e6));
+        }
+        if (checkpointInterval > 0) {
+            checkpoint();
+        } else {
+            compactLog(); // The log now holds the whole state again, so it no longer goes on from the checkpoints
+        }
+    }
+
+    /**
+     * Applies a record of the write-ahead log to the state of the scheduler, the way the message it records was handled.
+     * @param type     The type of the record.
+     * @param payload  The payload of the record.
+     * @param queued   The events replayed into the queue so far, by event ID.
+     * @param inFlight The events replayed as sent to the DroneSubsystem and not acknowledged, by event ID.
+     */
+    @SuppressWarnings("unchecked")
+    private void replayRecord(byte type, ByteBuffer payload, Map<Integer, InputEvent> queued, Map<Integer, InputEvent> inFlight) throws IOException {
+        InputEvent event;
+        switch (type) {
+            case LOG_ZONES:
+                addZones((ArrayList<Zone>) WireCodec.decode(payload), systemType, name);
+                break;
+            case LOG_ENQUEUE:
+                event = readLoggedEvent(payload);
+                inFlight.remove(event.getEventID()); // Queued again after it was sent
+                queued.put(event.getEventID(), event);
+                queueEvent(event);
+                break;
+            case LOG_QUEUED:
+                event = readLoggedEvent(payload);
+                queued.put(event.getEventID(), event);
+                inputEvents.add(event);
+                pendingByZone.put(event.getZoneId(), event);
+                break;
+            case LOG_MERGED:
+                int eventID = payload.getInt();
+                coalescedEvents.computeIfAbsent(eventID, id -> new ArrayList<>()).add(readLoggedEvent(payload));
+                break;
+            case LOG_DISPATCH:
+                while (payload.hasRemaining()) {
+                    event = queued.remove(payload.getInt());
+                    if (event != null) {
+                        inputEvents.remove(event);
+                        pendingByZone.remove(event.getZoneId(), event);
+                        inFlight.put(event.getEventID(), event);
+                    }
+                }
+                break;
+            case LOG_IN_FLIGHT:
+                event = readLoggedEvent(payload);
+                inFlight.put(event.getEventID(), event);
+                break;
+            case LOG_ACK:
+                while (payload.hasRemaining()) {
+                    inFlight.remove(payload.getInt());
+                }
+                break;
+            case LOG_CONFIRM:
+                event = readLoggedEvent(payload);
+                inFlight.remove(event.getEventID()); // Handled by the drone subsystem, whether or not its acknowledgement arrived
+                queueConfirmation(event);
+                break;
+            case LOG_CONFIRMS_SENT:
+                Set<Integer> acknowledged = new HashSet<>();
+                while (payload.hasRemaining()) {
+                    acknowledged.add(payload.getInt());
+                }
+                confirmationPackages.removeIf(confirmation -> acknowledged.contains(confirmation.getEvent().getEventID()));
+                coalescedEvents.keySet().removeAll(acknowledged);
+                break;
+            default:
+                System.out.println("["+this.name + "] SKIPPED LOG RECORD OF UNKNOWN TYPE " + type);
+        }
+    }
+
+    /**
+     * Reads an event from a record of the write-ahead log, with its zone looked up in the current registry.
+     * @param payload The payload holding the event.
+     * @return the event.
+     */
+    private InputEvent readLoggedEvent(ByteBuffer payload) throws IOException {
+        InputEvent event = WireCodec.decodeEvent(payload, zoneRegistry);
+        if (event.getZone() == null && zoneRegistry != null) {
+            event.setZone(zoneRegistry.getZone(event.getZoneId()));
+        }
+        return event;
+    }
+
+    /**
+     * Appends a record to the write-ahead log, if the scheduler keeps one. The record reaches the disk with the next
+     * group commit, without waiting for it.
+     * @param type    The type of the record.
+     * @param payload The payload of the record.
+     */
+    private void appendToLog(byte type, byte[] payload) {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.append(type, payload);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replaces the write-ahead log with the current state of the scheduler, so it does not grow without bound. Used
+     * instead of checkpoints when they are turned off; dispatch waits while the state is written.
+     */
+    private void compactLog() {
+        try {
+            log.compact(target -> new StateCopy(this).writeTo(target::append));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves a checkpoint of the state of the scheduler from the calling thread, and drops the part of the write-ahead
+     * log before it. The dispatcher takes one in the background now and then, see {@link #startCheckpoint}.
+     */
+    public synchronized void checkpoint() {
+        lastCheckpointTime = System.currentTimeMillis();
+        lastCheckpointPosition = log.getPosition();
+        writeCheckpoint(new StateCopy(this), lastCheckpointPosition, log);
+    }
+
+    /**
+     * Checks if a checkpoint should be taken: the log grew since the last one, and either the checkpoint interval
+     * passed or the log has more segments than it should keep.
+     * @return true if a checkpoint is due and none is being written.
+     */
+    private boolean isCheckpointDue() {
+        if (log == null || checkpointInterval <= 0 || (checkpointWriter != null && checkpointWriter.isAlive()) || log.getPosition() == lastCheckpointPosition) {
+            return false;
+        }
+        return System.currentTimeMillis() - lastCheckpointTime >= checkpointInterval || log.needsCompaction();
+    }
+
+    /**
+     * Takes a copy of the state of the scheduler and writes it as a checkpoint on a thread of its own, so dispatch
+     * only waits for the references to the events to be copied. Called under the lock of the Scheduler.
+     */
+    private void startCheckpoint() {
+        lastCheckpointTime = System.currentTimeMillis();
+        lastCheckpointPosition = log.getPosition();
+        StateCopy state = new StateCopy(this);
+        checkpointState = state;
+        long position = lastCheckpointPosition;
+        WriteAheadLog target = log;
+        checkpointWriter = new Thread(() -> writeCheckpoint(state, position, target), name + "-checkpoint");
+        checkpointWriter.setDaemon(true);
+        checkpointWriter.start();
+    }
+
+    /**
+     * Encodes a copy of the state of the scheduler into a checkpoint, saves it and drops the log segments before the
+     * oldest checkpoint kept.
+     * @param state    The copy of the state.
+     * @param position The position of the log when the copy was taken.
+     * @param target   The log the checkpoint belongs to.
+     */
+    private void writeCheckpoint(StateCopy state, long position, WriteAheadLog target) {
+        try {
+            CheckpointStore.Builder builder = new CheckpointStore.Builder();
+            state.writeTo(builder::add);
+            target.truncate(checkpoints.save(position, builder));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lets the checkpoint being written in the background keep an event as it was, before the scheduler changes it.
+     * @param event the event about to change.
+     */
+    private void beforeChange(InputEvent event) {
+        if (checkpointState != null) {
+            checkpointState.preserve(event);
+        }
+    }
+
+    private static byte[] encodeIDs(int[] ids) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * ids.length);
+        for (int id : ids) {
+            buffer.putInt(id);
+        }
+        return buffer.array();
+    }
+
     /**
      * Adds zones to the scheduler's zone map.
      * @param zonesList   The list of zones to add.
@@ -74,6 +519,11 @@ public class Scheduler implements Runnable {
             this.zones.put(zone.getZoneID(), zone);
         }
         System.out.println("["+this.name + "] Added zones: " + this.zones);
+
+        // Every change to the zones is a new version of the registry, which the DSS has to acknowledge again
+        this.zoneRegistry = new ZoneRegistry(this.zones.values());
+        this.transport.setZoneRegistry(this.zoneRegistry); // Shared with the DSS transport
+        this.dssHasZoneRegistry = false;
     }
 
     /**
@@ -85,176 +535,522 @@ public class Scheduler implements Runnable {
     }
 
     /**
-     * This is a method used to serialize a relay package to be sent to the Scheduler. This will help in keeping the object
-     * and its attributes.
+     * This is a method used to serialize a batch of confirmations to be sent to the FireIncidentSubsystem.
      *
-     * @param relayPackage the relay package being serialized.
-     * @return the array of bytes for the serialized relay package
+     * @param batch the confirmations being serialized.
+     * @return the array of bytes for the serialized confirmations
+     */
+    private byte[] serializeConfirmationBatch(ConfirmationBatch batch) {
+        long start = System.nanoTime();
+        byte[] frame = WireCodec.encodeConfirmationBatch(batch);  // Encodes the event IDs as ranges into a compact binary frame
+        ChannelStats.forPort(FIS_DESTINATION).recordEncodeTime(System.nanoTime() - start);
+        return frame;
+    }
+
+    /**
+     * Sends the zone registry to the drone subsystem. It is resent until the drone subsystem acknowledges it, and no
+     * events are sent to the drone subsystem before then, since events only carry the ID of their zone.
+     */
+    private void sendZoneRegistryToDSS() {
+        System.out.println("["+this.name + "] SENDING ZONE REGISTRY " + Integer.toHexString(zoneRegistry.getHash()) + " (" + zoneRegistry.getZones().size() + " zones) TO: " + Systems.DroneSubsystem);
+        ZoneRegistry registry = zoneRegistry;
+        post(() -> dssTransport.send(registry, DSS_DESTINATION));
+        lastZoneRegistrySendTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Hands over a message to be sent once the lock of the Scheduler is released, after the messages handed over
+     * before it. Anything it changes in the state, and its record in the write-ahead log, is done by the caller
+     * beforehand, so the log keeps the order the messages were handed over in.
+     * @param message the message to send.
+     */
+    private synchronized void post(OutgoingMessage message) {
+        outbox.add(message);
+    }
+
+    /**
+     * Sends the messages handed over so far, in order. Called without the lock of the Scheduler, so receiving and
+     * dispatching go on while a message is sent. If another thread is already sending, it also sends the messages
+     * handed over since, and this thread goes back to its own work straight away.
      */
-    private byte[] serializeRelayPackage(RelayPackage relayPackage) throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(); // Creates a byte aray object
-        try (ObjectOutputStream objectStream = new ObjectOutputStream(byteStream)) { // Wraps it around an output object
-            objectStream.writeObject(relayPackage);  // Write the RelayPackage object to the stream
-            objectStream.flush(); // Flushes the object stream
+    private void flushOutbox() {
+        OutgoingMessage message;
+        synchronized (this) {
+            if (sendingOutbox || outbox.isEmpty()) {
+                return;
+            }
+            sendingOutbox = true;
+            message = outbox.poll();
+        }
+        try {
+            while (message != null) {
+                try {
+                    message.send();
+                } catch (IOException e) {
+                    e.printStackTrace(); // Lost like a datagram: events are queued again and confirmations resent by the reliable link
+                }
+                synchronized (this) {
+                    message = outbox.poll();
+                    sendingOutbox = message != null; // Cleared along with the last poll, so a message handed over after it is sent by its own thread
+                }
+            }
+        } finally {
+            if (message != null) { // A message failed with an unchecked exception
+                synchronized (this) {
+                    sendingOutbox = false;
+                }
+            }
         }
-        return byteStream.toByteArray();  // Return the byte array
     }
 
     /**
-     * This is a method used to serialize an input event to be sent to the drone subsystem. This will help in keeping the object
-     * and its attributes.
-     *
-     * @param inputEvent the input event being serialized.
-     * @return the array of bytes for the serialized input event
+     * Handles an acknowledgement of the zone registry from the drone subsystem. An acknowledgement of another version
+     * means the drone subsystem is missing the current registry, so it is sent again.
+     * @param ack the acknowledgement that was received.
      */
-    private byte[] serializeInputEvent(InputEvent inputEvent) throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(); // Creates a byte aray object
-        try (ObjectOutputStream objectStream = new ObjectOutputStream(byteStream)) { // Wraps it around an output object
-            objectStream.writeObject(inputEvent);  // Write the RelayPackage object to the stream
-            objectStream.flush(); // Flushes the object stream
+    private void handleZoneRegistryAck(ZoneRegistry.Ack ack) {
+        if (zoneRegistry == null) {
+            return;
+        }
+        if (ack.getHash() == zoneRegistry.getHash()) {
+            if (!dssHasZoneRegistry) {
+                System.out.println("["+this.name + "] ZONE REGISTRY " + Integer.toHexString(ack.getHash()) + " ACKNOWLEDGED BY: " + Systems.DroneSubsystem);
+            }
+            dssHasZoneRegistry = true;
+        } else {
+            dssHasZoneRegistry = false;
+            sendZoneRegistryToDSS();
         }
-        return byteStream.toByteArray();  // Return the byte array
     }
 
     /**
-     * This is a method used to deserialize an input event from the drone subsystem. This is again helpful in keeping the
-     * object and its attributes that was sent.
-     * @param receivePacket The packets to be received and deserialized into an InputEvent object
-     * @return InputEvent that was received from the drone subsystem.
+     * Handles a credit grant from the drone subsystem, which replaces the previous grant. A grant from a new session
+     * means the drone subsystem restarted, so the events sent to its previous run no longer count.
+     * @param grant the credit grant that was received.
      */
-    private InputEvent deserializeInputEvent(DatagramPacket receivePacket) throws IOException, ClassNotFoundException {
-        ByteArrayInputStream byteStream = new ByteArrayInputStream(receivePacket.getData(), 0, receivePacket.getLength());
-        try (ObjectInputStream objectStream = new ObjectInputStream(byteStream)) {
-            return (InputEvent) objectStream.readObject();  // Read the object from the byte array
+    private void handleCreditGrant(CreditGrant grant) {
+        if (dssCreditSession == null || dssCreditSession != grant.getSession()) {
+            if (dssCreditSession != null) {
+                requeueUnacknowledgedEvents(Long.MAX_VALUE); // The restarted DSS lost the events it did not acknowledge
+            }
+            dssCreditSession = grant.getSession();
+            eventsSentToDSS = 0;
+            chargedEvents.clear();
         }
+        dssCreditLimit = grant.getLimit();
     }
 
     /**
-     * This is a method used to deserialize a relay package from the Scheduler. This is again helpful in keeping the
-     * object and its attributes that was sent.
-     *  @param receivePacket The packets to be received and deserialized into a RelayPackage object
-     * @return relay package that was received from the FIS.
+     * Handles the acknowledgement of a batch of events by the drone subsystem.
+     * @param ack the acknowledgement that was received.
      */
-    private RelayPackage deserializeRelayPackage(DatagramPacket receivePacket) throws IOException, ClassNotFoundException {
-        ByteArrayInputStream byteStream = new ByteArrayInputStream(receivePacket.getData(), 0, receivePacket.getLength());
-        try (ObjectInputStream objectStream = new ObjectInputStream(byteStream)) {
-            return (RelayPackage) objectStream.readObject();  // Read the object from the byte array
+    private void handleEventBatchAck(EventBatch.Ack ack) {
+        acknowledgeEvents(ack.getEventIDs());
+    }
 
+    /**
+     * Forgets the events the drone subsystem acknowledged, so they are not queued again once their acknowledgement
+     * times out.
+     * @param eventIDs the IDs of the acknowledged events.
+     */
+    private void acknowledgeEvents(int[] eventIDs) {
+        appendToLog(LOG_ACK, encodeIDs(eventIDs));
+        for (int eventID : eventIDs) {
+            unacknowledgedEvents.remove(eventID);
+            eventSendTimes.remove(eventID);
         }
     }
 
     /**
-     * A method that deals with receiving a message from the FIS.
+     * Queues the events the drone subsystem did not acknowledge in time again, so they are sent in a later batch.
+     * They still count against the credit of the drone subsystem once, whether the copy sent again or the first one
+     * reaches it, since the drone subsystem only counts an event it does not hold yet.
+     * @param now the current time in milliseconds, or Long.MAX_VALUE to queue every unacknowledged event again.
      */
-    private boolean receiveUDPMessageFIS(){
-        try{
-            byte[] receiveData = new byte[6000];
-            DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length); // Receive a packet from the FireIncidentSubsystem
-            receiveAndSendFISSocket.receive(receivePacket); // Receives the packet from the FIS
+    private void requeueUnacknowledgedEvents(long now) {
+        Iterator<InputEvent> oldestFirst = unacknowledgedEvents.values().iterator();
+        while (oldestFirst.hasNext()) {
+            InputEvent event = oldestFirst.next();
+            if (now - eventSendTimes.get(event.getEventID()) < EVENT_ACK_TIMEOUT) {
+                break;
+            }
+            System.out.println("["+this.name + "] NO ACKNOWLEDGEMENT FOR INPUT_EVENT_" + event.getEventID() + ", QUEUED AGAIN FOR: " + Systems.DroneSubsystem);
+            oldestFirst.remove();
+            eventSendTimes.remove(event.getEventID());
+            queueEvent(event);
+        }
+    }
+
+    /**
+     * Gets the time until the oldest unacknowledged event is queued again.
+     * @return the time in milliseconds, or -1 if every event sent was acknowledged.
+     */
+    private long getTimeUntilEventAckTimeout() {
+        if (unacknowledgedEvents.isEmpty()) {
+            return -1;
+        }
+        long oldest = eventSendTimes.get(unacknowledgedEvents.keySet().iterator().next());
+        return Math.max(0, oldest + EVENT_ACK_TIMEOUT - System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the number of events the drone subsystem can take right now. Events beyond that stay in the priority
+     * queue, where a more severe event that arrives later can still go ahead of them.
+     * @return the number of events that can be sent to the drone subsystem.
+     */
+    public long getDssCredits() {
+        return Math.max(0, dssCreditLimit - eventsSentToDSS);
+    }
+
+    /**
+     * Checks if the zone registry still has to be acknowledged by the drone subsystem.
+     * @return true if events to the drone subsystem are held back until the registry is acknowledged.
+     */
+    private boolean isAwaitingZoneRegistryAck() {
+        return zoneRegistry != null && !dssHasZoneRegistry;
+    }
 
-            RelayPackage receivedPackage = deserializeRelayPackage(receivePacket);
+    /**
+     * This is a method used to deserialize a relay package from the Scheduler. This is again helpful in keeping the
+     * object and its attributes that was sent.
+     *  @param frame The frame to be deserialized into a RelayPackage object
+     * @return relay package that was received from the FIS.
+     */
+    private RelayPackage deserializeRelayPackage(byte[] frame) throws IOException {
+        ChannelStats stats = ChannelStats.forPort(FIS_PORT);
+        long start = System.nanoTime();
+        try {
+            RelayPackage relayPackage = WireCodec.decodeRelayPackage(frame, 0, frame.length, zoneRegistry);
+            stats.recordDecodeTime(System.nanoTime() - start);
+            return relayPackage;
+        } catch (StreamCorruptedException e) {
+            stats.recordDecodeFailure();
+            throw e;
+        }
+    }
 
-            // Check for RelayPackage from FireIncidentSubsystem
-            if (receivedPackage.getRelayPackageID().contains("ZONE_PKG")) { // If a zone package was received from the fire incident subsystem
-                this.addZones(receivedPackage.getZone(), this.systemType, this.name);
-                sendZoneInfoToGUI(new ArrayList<>(zones.values()));
+    /**
+     * Passes a message received on one of the ports to the handler of that port under the lock of the Scheduler, wakes
+     * up the dispatcher, then sends what the handler handed over once the lock is released. A message from the FIS is
+     * read through the reliable link and decoded before the lock is taken.
+     * @param delivery the message that was received.
+     */
+    private void handleDelivery(Transport.Delivery delivery) {
+        try {
+            if (delivery.getPort() == FIS_PORT) {
+                List<RelayPackage> packages = readRelayPackages(delivery);
+                synchronized (this) {
+                    for (RelayPackage relayPackage : packages) {
+                        handleRelayPackage(relayPackage);
+                    }
+                    handleConfirmationAcks(); // The datagram may have been an acknowledgement
+                    notifyAll();
+                }
+            } else {
+                synchronized (this) {
+                    receiveUDPMessageDSS(delivery.getMessage());
+                    notifyAll();
+                }
             }
-            else { // If we have received an event package
-                System.out.println("["+this.name + "] RECEIVED AN EVENT <-- " + receivedPackage.getRelayPackageID() + " (" + receivedPackage.getEvent().toString() + ")" + " FROM: " + Systems.FireIncidentSubsystem); // Prints out a message that the event was received
-                // Process the event and add it to the inputEvents queue
-                receivedPackage.getEvent().setZone(zones.get(receivedPackage.getEvent().getZoneId())); // Set the zone for the event
-                this.inputEvents.add(receivedPackage.getEvent()); // Adds the input events to the list of input events for the drone subsystem
-                receivedPackage.getEvent().setStatus(Status.UNRESOLVED);
-                sendEventToGUI(receivedPackage.getEvent());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        flushOutbox();
+    }
+
+    /**
+     * Waits until a message sent to the given port has been handled, or the timeout passes.
+     * @param port the port a message is waited for on.
+     * @param timeout the maximum time to wait in milliseconds.
+     * @return true if a message sent to the port was handled.
+     */
+    private boolean awaitMessage(int port, long timeout) {
+        try {
+            Transport.Delivery delivery = (port == FIS_PORT ? transport : dssTransport).receive(timeout);
+            if (delivery == null) {
+                return false;
             }
+            handleDelivery(delivery);
             return true;
-        }catch (SocketTimeoutException e) {
-            return false;
-        } catch (IOException | ClassNotFoundException e){
+        } catch (IOException e) {
             e.printStackTrace();
             return false;
         }
     }
 
     /**
-     * A method that is used to send a confirmation relay package back to the fire incident subsystem.
-     * @param relayPackage the relay package being sent back to the fire incident subsystem.
+     * Receives the messages sent to one port until the Scheduler is closed, handling each as it arrives. Messages are
+     * received and decoded before the lock of the Scheduler is taken and the replies are sent after it is released, so
+     * the FIS and the DSS ports are served in parallel with each other and with the dispatcher.
+     * @param source the transport bound to the port.
      */
-    private void sendUDPMessageFIS(RelayPackage relayPackage){
-        try {
-            byte[] message = serializeRelayPackage(relayPackage);  // Serializes the relay package by passing it to the method
-            DatagramPacket sendPacket = new DatagramPacket(message, message.length,InetAddress.getLocalHost(), 7000); // The packet that will be sent to the fire incident subsystem which has a port of 4000
-            System.out.println("["+this.name + "] SENDING CONFIRMATION FOR --> " + "INPUT_EVENT_" + relayPackage.getEvent().getEventID() + " (" +  relayPackage.getEvent().toString() + ")" + " TO: " + relayPackage.getReceiverSystem());
-            receiveAndSendFISSocket.send(sendPacket); // Send the relay package
-        }
-        catch (IOException e){
-            e.printStackTrace();
+    private void receiveLoop(Transport source) {
+        while (running) {
+            Transport.Delivery delivery;
+            try {
+                delivery = source.receive(RECEIVE_TIMEOUT);
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+                return;
+            }
+            if (delivery == null) {
+                continue;
+            }
+            handleDelivery(delivery);
         }
     }
 
     /**
-     * A method used to send an input event to the drone subsystem.
-     * @param inputEvent the input event being sent to the drone subsystem.
+     * Stops the receiver and dispatcher threads and closes the transports and the GUI publisher.
      */
-    private void sendUDPMessageDSS(InputEvent inputEvent){
-        try {
-            byte[] message = serializeInputEvent(inputEvent);  // Serializes the input event by passing it to the method
-            DatagramPacket sendPacket = new DatagramPacket(message, message.length,InetAddress.getLocalHost(), 6000); // The packet that will be sent to the drone subsystem which has a port of 6000
-            System.out.println("["+this.name + "] SENDING THE EVENT --> " + "INPUT_EVENT_" + inputEvent.getEventID() + " (" + inputEvent.toString() + ")" + " TO: " + Systems.DroneSubsystem); // Prints a message that its being sent
-            receiveAndSendDSSSocket.send(sendPacket); // Sends the input event
+    public void close() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
         }
-        catch (IOException e){
+        for (Thread receiver : receivers) {
+            try {
+                receiver.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            transport.close();
+            dssTransport.close();
+        } catch (IOException e) {
             e.printStackTrace();
         }
+        guiPublisher.close();
+        Thread writer;
+        synchronized (this) {
+            writer = checkpointWriter;
+        }
+        if (writer != null) {
+            try {
+                writer.join(); // Lets the checkpoint being written finish
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (log != null) {
+                log.close();
+                log = null;
+            }
+        }
     }
 
     /**
-     * A method that is used to receive the input event from the drone subsystem.
+     * A method that reads the relay packages out of a message received from the FIS. Over an unreliable transport the
+     * datagram is passed through the reliable link, which acknowledges it and hands back the frames that are now in
+     * order. It does not touch the scheduling state, so it runs without the lock of the Scheduler.
+     * @param delivery the message that was received.
+     * @return the relay packages that are now complete and in order, which may be none.
      */
-    private boolean receiveUDPMessageDSS() {
-        try {
-            byte[] receiveData = new byte[6000];
-            DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length); // The packet to be received from the drone subsystem
-            receiveAndSendDSSSocket.receive(receivePacket); // Receives the packet from the drone subsystem
+    private List<RelayPackage> readRelayPackages(Transport.Delivery delivery) throws IOException {
+        if (delivery.getMessage() instanceof RelayPackage) { // Already delivered in order by the transport
+            return List.of((RelayPackage) delivery.getMessage());
+        }
+        if (fisLink == null || !(delivery.getMessage() instanceof byte[])) {
+            System.out.println("["+this.name + "] DROPPED UNEXPECTED MESSAGE FROM: FireIncidentSubsystem");
+            return List.of();
+        }
+        List<RelayPackage> packages = new ArrayList<>();
+        for (byte[] frame : fisLink.receive(ByteBuffer.wrap((byte[]) delivery.getMessage()))) {
+            if (Fragmenter.isFragment(frame)) {
+                frame = fisReassembler.accept(delivery.getSource(), ByteBuffer.wrap(frame));
+                if (frame == null) {
+                    continue; // Waiting for the rest of the package
+                }
+            }
+            packages.add(deserializeRelayPackage(frame));
+        }
+        return packages;
+    }
 
-            // Deserialize the byte array into a InputEvent object
-            InputEvent receivedInput = deserializeInputEvent(receivePacket);
+    /**
+     * Queues an event for the drone subsystem. If an event of the same zone is still waiting, the two are merged into
+     * one mission instead: the waiting event takes the higher severity and the sum of the agent both need, and the new
+     * event is confirmed to the FireIncidentSubsystem along with it.
+     * @param event the event to queue.
+     */
+    private void queueEvent(InputEvent event) {
+        appendToLog(LOG_ENQUEUE, WireCodec.encodeEvent(event, zoneRegistry));
+        InputEvent pending = coalescing ? pendingByZone.get(event.getZoneId()) : null;
+        if (pending == null) {
+            inputEvents.add(event);
+            pendingByZone.put(event.getZoneId(), event);
+            return;
+        }
+        beforeChange(pending);
+        pending.setRemainingAgentNeeded(pending.getRemainingAgentNeeded() + event.getRemainingAgentNeeded());
+        if (event.getSeverity().compareTo(pending.getSeverity()) < 0) { // Severities are declared highest first
+            inputEvents.raiseSeverity(pending, event.getSeverity());
+        }
+        List<InputEvent> merged = coalescedEvents.computeIfAbsent(pending.getEventID(), id -> new ArrayList<>());
+        merged.add(event);
+        List<InputEvent> mergedIntoEvent = coalescedEvents.remove(event.getEventID()); // An event queued again may carry merged events of its own
+        if (mergedIntoEvent != null) {
+            merged.addAll(mergedIntoEvent);
+        }
+        System.out.println("["+this.name + "] MERGED INPUT_EVENT_" + event.getEventID() + " INTO INPUT_EVENT_" + pending.getEventID() + " FOR ZONE " + event.getZoneId()
+                + " (" + pending.getSeverity() + ", " + pending.getRemainingAgentNeeded() + "L needed)");
+    }
 
-            RelayPackage sendingPackage = new RelayPackage("", Systems.FireIncidentSubsystem, receivedInput, null);
+    /**
+     * Handles a relay package received from the FIS, which holds either the zones or a new event.
+     * @param receivedPackage the relay package that was received.
+     */
+    private void handleRelayPackage(RelayPackage receivedPackage) {
+        // Check for RelayPackage from FireIncidentSubsystem
+        if (receivedPackage.getRelayPackageID().contains("ZONE_PKG")) { // If a zone package was received from the fire incident subsystem
+            appendToLog(LOG_ZONES, WireCodec.encodeZones(receivedPackage.getZone()));
+            this.addZones(receivedPackage.getZone(), this.systemType, this.name);
+            sendZoneInfoToGUI(new ArrayList<>(zones.values()));
+            sendZoneRegistryToDSS();
+        }
+        else { // If we have received an event package
+            System.out.println("["+this.name + "] RECEIVED AN EVENT <-- " + receivedPackage.getRelayPackageID() + " (" + receivedPackage.getEvent().toString() + ")" + " FROM: " + Systems.FireIncidentSubsystem); // Prints out a message that the event was received
+            // Process the event and add it to the inputEvents queue
+            receivedPackage.getEvent().setZone(zoneRegistry == null ? null : zoneRegistry.getZone(receivedPackage.getEvent().getZoneId())); // Set the zone for the event
+            receivedPackage.getEvent().setStatus(Status.UNRESOLVED);
+            queueEvent(receivedPackage.getEvent()); // Adds the input event to the queue for the drone subsystem, merged with the one waiting for its zone
+            sendEventToGUI(receivedPackage.getEvent());
+        }
+    }
 
-            if(receivedInput.getFaultType() != null){
-                System.out.println("["+this.name + "] RECEIVED FAULT CONFIRMATION <-- " + "INPUT_EVENT_" + receivedInput.getEventID() + " (" + receivedInput + ")" + " FROM: DroneSubsystem");
-                sendingPackage.setRelayPackageID("FAULT_CONFIRMATION");
-                sendingPackage.getEvent().setStatus(Status.UNRESOLVED);
+    /**
+     * A method that is used to send a batch of confirmations back to the fire incident subsystem in one message. The
+     * batch is encoded straight away and sent once the lock of the Scheduler is released.
+     * @param batch the confirmations being sent back to the fire incident subsystem.
+     * @param sent  the confirmations of the batch, which are told the last frame they were sent in.
+     */
+    private void sendUDPMessageFIS(ConfirmationBatch batch, SentConfirmations sent){
+        System.out.println("["+this.name + "] SENDING " + batch.size() + " CONFIRMATION(S) FOR --> COMPLETED " + Arrays.toString(batch.getCompletedIDs()) + ", FAULTED " + Arrays.toString(batch.getFaultedIDs()) + " TO: " + Systems.FireIncidentSubsystem);
+        if (fisLink == null) {
+            post(() -> transport.send(batch, FIS_DESTINATION)); // The transport already delivers in order
+            return;
+        }
+        byte[] message = serializeConfirmationBatch(batch);  // Serializes the confirmations by passing them to the method
+        List<byte[]> fragments = fragmenter.fragment(message);
+        post(() -> {
+            long lastFrame = -1;
+            for (byte[] fragment : fragments) {
+                lastFrame = fisLink.send(fragment); // Send the relay package to the fire incident subsystem over the reliable link
             }
-            else {
-                System.out.println("["+this.name + "] RECEIVED COMPLETED CONFIRMATION <-- " + "INPUT_EVENT_" + receivedInput.getEventID()  + " (" + receivedInput + ")" + " FROM: DroneSubsystem");
-                sendingPackage.setRelayPackageID("DRONE_CONFIRMATION");
-                sendingPackage.getEvent().setStatus(Status.COMPLETE);
+            synchronized (this) {
+                sent.lastFrame = lastFrame;
+                handleConfirmationAcks(); // In case the acknowledgement came first
             }
+        });
+    }
 
-            // Create a confirmation package and place in confirmationPackages queue
-            confirmationPackages.add(sendingPackage);
-            sendEventToGUI(sendingPackage.getEvent());
-            return true;
+    /**
+     * A method used to send a batch of input events to the drone subsystem in one message. The events are kept until
+     * the drone subsystem acknowledges them.
+     * @param inputEvents the input events being sent to the drone subsystem, highest priority first.
+     */
+    private void sendUDPMessageDSS(List<InputEvent> inputEvents){
+        EventBatch batch = new EventBatch(nextBatchID++, inputEvents);
+        long now = System.currentTimeMillis();
+        for (InputEvent inputEvent : inputEvents) {
+            System.out.println("["+this.name + "] SENDING THE EVENT --> " + "INPUT_EVENT_" + inputEvent.getEventID() + " (" + inputEvent.toString() + ")" + " TO: " + Systems.DroneSubsystem); // Prints a message that its being sent
+            unacknowledgedEvents.put(inputEvent.getEventID(), inputEvent);
+            eventSendTimes.put(inputEvent.getEventID(), now);
+            if (chargedEvents.add(inputEvent.getEventID())) { // A copy sent again was already counted
+                eventsSentToDSS++;
+                if (chargedEvents.size() > CHARGED_EVENTS_KEPT) {
+                    Iterator<Integer> oldestFirst = chargedEvents.iterator();
+                    oldestFirst.next();
+                    oldestFirst.remove();
+                }
+            }
+        }
+        post(() -> dssTransport.send(batch, DSS_DESTINATION)); // Sends the whole batch to the drone subsystem, acknowledged event by event, or queued again once their acknowledgement times out
+    }
 
-        } catch (SocketTimeoutException e) {
-            return false;
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
-            return false;
+    /**
+     * A method that is used to handle a message received from the drone subsystem, which holds an event, a zone
+     * registry acknowledgement, a credit grant or the acknowledgement of a batch of events.
+     * @param message the message that was received.
+     */
+    private void receiveUDPMessageDSS(Object message) {
+        if (message instanceof ZoneRegistry.Ack) {
+            handleZoneRegistryAck((ZoneRegistry.Ack) message);
+            return;
+        }
+        if (message instanceof CreditGrant) {
+            handleCreditGrant((CreditGrant) message);
+            return;
+        }
+        if (message instanceof EventBatch.Ack) {
+            handleEventBatchAck((EventBatch.Ack) message);
+            return;
+        }
+        if (!(message instanceof InputEvent)) {
+            System.out.println("["+this.name + "] DROPPED UNEXPECTED MESSAGE FROM: DroneSubsystem");
+            return;
+        }
+        InputEvent receivedInput = (InputEvent) message;
+        if (unacknowledgedEvents.containsKey(receivedInput.getEventID())) {
+            acknowledgeEvents(new int[]{receivedInput.getEventID()}); // Its batch acknowledgement was lost, but the drone subsystem took the event
+        }
+        if (receivedInput.getFaultType() != null) {
+            chargedEvents.remove(receivedInput.getEventID()); // The drone subsystem forgets it too, so it is counted again if the FIS sends it to be rescheduled
+        }
+        appendToLog(LOG_CONFIRM, WireCodec.encodeEvent(receivedInput, zoneRegistry));
+
+        if(receivedInput.getFaultType() != null){
+            System.out.println("["+this.name + "] RECEIVED FAULT CONFIRMATION <-- " + "INPUT_EVENT_" + receivedInput.getEventID() + " (" + receivedInput + ")" + " FROM: DroneSubsystem");
+        }
+        else {
+            System.out.println("["+this.name + "] RECEIVED COMPLETED CONFIRMATION <-- " + "INPUT_EVENT_" + receivedInput.getEventID()  + " (" + receivedInput + ")" + " FROM: DroneSubsystem");
+        }
+        queueConfirmation(receivedInput);
+    }
+
+    /**
+     * Queues the confirmation of an event completed or faulted by the drone subsystem, to be sent back to the fire
+     * incident subsystem with the confirmations of the events merged into it.
+     * @param receivedInput the event the drone subsystem sent back.
+     */
+    private void queueConfirmation(InputEvent receivedInput) {
+        RelayPackage sendingPackage = new RelayPackage("", Systems.FireIncidentSubsystem, receivedInput, null);
+
+        if(receivedInput.getFaultType() != null){
+            sendingPackage.setRelayPackageID("FAULT_CONFIRMATION");
+            sendingPackage.getEvent().setStatus(Status.UNRESOLVED);
+        }
+        else {
+            sendingPackage.setRelayPackageID("DRONE_CONFIRMATION");
+            sendingPackage.getEvent().setStatus(Status.COMPLETE);
+        }
+
+        // Create a confirmation package and place in confirmationPackages queue, where it waits for others to share its batch
+        if (confirmationPackages.isEmpty()) {
+            firstConfirmationTime = System.currentTimeMillis();
+        }
+        confirmationPackages.add(sendingPackage);
+        sendEventToGUI(sendingPackage.getEvent());
+        for (InputEvent merged : coalescedEvents.getOrDefault(receivedInput.getEventID(), List.of())) {
+            beforeChange(merged);
+            merged.setStatus(receivedInput.getStatus());
+            sendEventToGUI(merged);
         }
     }
 
 
     /**
      * Handles the RECEIVE_FROM_FIS state of the scheduler state machine.
-     * - Receives messages from the FireIncidentSubsystem (blocking)
-     * - Transitions to SEND_TO_DSS state regardless of message reception
+     * - Waits up to the FIS timeout for a message from the FireIncidentSubsystem
+     * - Transitions to SEND_TO_DSS if a message was received, otherwise CHECK_DSS_RESPONSE
      * - Maintains FIS communication channel responsiveness
      */
     public void handleReceiveFromFIS() {
-        Boolean receiveEvent = receiveUDPMessageFIS();
+        boolean receiveEvent = awaitMessage(FIS_PORT, FIS_TIMEOUT);
         if (receiveEvent) {
             currentState = SchedulerState.SEND_TO_DSS;
         }else{
@@ -264,16 +1060,41 @@ public class Scheduler implements Runnable {
 
     /**
      * Handles the SEND_TO_DSS state of the scheduler state machine.
-     * - Sends highest priority event to DroneSubsystem if available
+     * - Sends the highest priority events to DroneSubsystem in one batch if available, as many as it has credit for
+     *   up to the batch limit, and none without credit
+     * - Handles the messages DroneSubsystem already sent first when no credit is left, since one may be a credit grant
      * - Transitions to:
-     *   • CHECK_DSS_RESPONSE if event was sent
-     *   • RECEIVE_FROM_FIS if no events available
+     *   • CHECK_DSS_RESPONSE if events were sent
+     *   • RECEIVE_FROM_FIS if no events available or no credit
      * - Ensures non-blocking operation when queue is empty
      */
     public void handleSendToDSS() {
-        if (!inputEvents.isEmpty()) {
-            InputEvent event = inputEvents.poll();
-            sendUDPMessageDSS(event);
+        boolean received = getDssCredits() == 0;
+        while (received) {
+            received = awaitMessage(DSS_PORT, 0);
+        }
+        synchronized (this) {
+            dispatchEventBatch();
+        }
+        flushOutbox();
+    }
+
+    /**
+     * Takes the next batch of events out of the queue and hands it over to be sent to the DroneSubsystem.
+     */
+    private void dispatchEventBatch() {
+        if (!inputEvents.isEmpty() && getDssCredits() > 0) {
+            long batchSize = Math.min(MAX_BATCH_EVENTS, getDssCredits());
+            List<InputEvent> batch = new ArrayList<>();
+            List<Integer> dispatched = new ArrayList<>();
+            while (batch.size() < batchSize && !inputEvents.isEmpty()) {
+                InputEvent event = inputEvents.poll();
+                pendingByZone.remove(event.getZoneId(), event); // Later events of the zone make a new mission
+                batch.add(event);
+                dispatched.add(event.getEventID());
+            }
+            appendToLog(LOG_DISPATCH, encodeIDs(toArray(dispatched)));
+            sendUDPMessageDSS(batch);
             currentState = SchedulerState.CHECK_DSS_RESPONSE;
         } else {
             currentState = SchedulerState.RECEIVE_FROM_FIS;
@@ -282,7 +1103,7 @@ public class Scheduler implements Runnable {
 
     /**
      * Handles the CHECK_DSS_RESPONSE state of the scheduler state machine.
-     * - Checks for DroneSubsystem confirmation with 2-second timeout
+     * - Waits up to the DSS timeout for a DroneSubsystem confirmation
      * - Transitions to:
      *   • SEND_CONFIRMATION if response received
      *   • RECEIVE_FROM_FIS if timeout occurs
@@ -290,96 +1111,212 @@ public class Scheduler implements Runnable {
      * @return void (state transition handled through currentState)
      */
     public void handleCheckDSSResponse() {
-        boolean receivedResponse = receiveUDPMessageDSS();
+        boolean receivedResponse = awaitMessage(DSS_PORT, DSS_TIMEOUT);
         currentState = receivedResponse ? SchedulerState.SEND_CONFIRMATION : SchedulerState.RECEIVE_FROM_FIS;
     }
 
     /**
      * Handles the SEND_CONFIRMATION state of the scheduler state machine.
-     * - Forwards completed event confirmations to FireIncidentSubsystem
+     * - Forwards every queued completed and faulted event confirmation to FireIncidentSubsystem in one batch
      * - Always transitions back to RECEIVE_FROM_FIS after processing
-     * - Ensures fire subsystem receives completion notifications
-     *   even if multiple confirmations are queued
      */
     public void handleSendConfirmation() {
+        synchronized (this) {
+            dispatchConfirmations();
+        }
+        flushOutbox();
+    }
+
+    /**
+     * Takes every queued confirmation and hands them over to be sent to the FireIncidentSubsystem in one batch.
+     */
+    private void dispatchConfirmations() {
         if (!confirmationPackages.isEmpty()) {
-            sendUDPMessageFIS(confirmationPackages.poll());
+            SentConfirmations sent = new SentConfirmations(new ArrayList<>(confirmationPackages));
+            sendUDPMessageFIS(takeConfirmationBatch(), sent);
+            if (fisLink == null) {
+                acknowledgeConfirmations(sent); // The transport already delivers
+            } else {
+                unacknowledgedConfirmations.add(sent);
+            }
         }
         currentState = SchedulerState.RECEIVE_FROM_FIS;
     }
-    private void sendZoneInfoToGUI(List<Zone> zoneList) {
-        try (DatagramSocket guiSocket = new DatagramSocket()) {
-            byte[] data = serializeObject(zoneList);
 
-            DatagramPacket packet = new DatagramPacket(
-                    data, data.length,
-                    InetAddress.getLocalHost(), 8000
-            );
-            guiSocket.send(packet);
+    /**
+     * Forgets the confirmation batches the reliable link reports acknowledged by the fire incident subsystem.
+     */
+    private void handleConfirmationAcks() {
+        if (fisLink == null) {
+            return;
         }
-        catch (IOException e) {
-            e.printStackTrace();
+        long acknowledgedFrames = fisLink.getAcknowledgedFrames();
+        while (!unacknowledgedConfirmations.isEmpty() && unacknowledgedConfirmations.peek().lastFrame < acknowledgedFrames) {
+            acknowledgeConfirmations(unacknowledgedConfirmations.poll());
         }
     }
 
-    private void sendEventToGUI(InputEvent event){
-        try (DatagramSocket guiSocket = new DatagramSocket()) {
-            byte[] data = serializeObject(event);
-            DatagramPacket packet = new DatagramPacket(
-                    data, data.length,
-                    InetAddress.getLocalHost(), 8000
-            );
-            guiSocket.send(packet);
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Logs that a batch of confirmations reached the fire incident subsystem, so a restart does not send it again,
+     * and forgets the events merged into its events.
+     * @param sent the confirmations of the batch.
+     */
+    private void acknowledgeConfirmations(SentConfirmations sent) {
+        int[] eventIDs = new int[sent.confirmations.size()];
+        for (int i = 0; i < eventIDs.length; i++) {
+            eventIDs[i] = sent.confirmations.get(i).getEvent().getEventID();
+            coalescedEvents.remove(eventIDs[i]);
+        }
+        appendToLog(LOG_CONFIRMS_SENT, encodeIDs(eventIDs));
+    }
+
+    /**
+     * Takes every queued confirmation, along with the confirmations of the events merged into them. The merged events
+     * are kept until the batch is acknowledged.
+     * @return the confirmations, in one batch.
+     */
+    private ConfirmationBatch takeConfirmationBatch() {
+        List<Integer> completed = new ArrayList<>();
+        List<Integer> faulted = new ArrayList<>();
+        for (RelayPackage confirmation : confirmationPackages) {
+            boolean isFault = "FAULT_CONFIRMATION".equals(confirmation.getRelayPackageID());
+            (isFault ? faulted : completed).add(confirmation.getEvent().getEventID());
+            for (InputEvent merged : coalescedEvents.getOrDefault(confirmation.getEvent().getEventID(), List.of())) {
+                (isFault ? faulted : completed).add(merged.getEventID()); // Every event merged into the mission is confirmed with it
+            }
         }
+        confirmationPackages.clear();
+        return new ConfirmationBatch(toArray(completed), toArray(faulted));
     }
 
+    /**
+     * Gets the time until the queued confirmations are due to be sent, so that the first one does not wait for
+     * others for long.
+     * @return the time in milliseconds, 0 if they are due now or -1 if no confirmation is queued.
+     */
+    private long getTimeUntilConfirmationFlush() {
+        if (confirmationPackages.isEmpty()) {
+            return -1;
+        }
+        if (confirmationPackages.size() >= CONFIRMATION_BATCH_SIZE) {
+            return 0;
+        }
+        return Math.max(0, firstConfirmationTime + CONFIRMATION_FLUSH_DELAY - System.currentTimeMillis());
+    }
 
-    private byte[] serializeObject(Object obj) throws IOException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        try (ObjectOutputStream objectStream = new ObjectOutputStream(byteStream)) {
-            objectStream.writeObject(obj);
-            objectStream.flush();
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
         }
-        return byteStream.toByteArray();
+        return array;
+    }
+
+    /**
+     * Queues the zones to be sent to the GUI by the telemetry publisher.
+     * @param zoneList the zones to display.
+     */
+    private void sendZoneInfoToGUI(List<Zone> zoneList) {
+        guiPublisher.publishZones(zoneList);
+    }
+
+    /**
+     * Queues the current state of an event to be sent to the GUI by the telemetry publisher.
+     * @param event the event to display.
+     */
+    private void sendEventToGUI(InputEvent event){
+        guiPublisher.publishEvent(event);
     }
 
 
     /**
      * The run method is executed when the thread starts.
-     * It reads events from the RelayBuffer, prioritizes them, and sends them to the DroneSubsystem.
-     * It also handles confirmation messages from the DroneSubsystem and sends them back to the FireIncidentSubsystem.
+     * It starts a receiver thread for the FIS port and one for the DSS port, which handle each message as it arrives,
+     * and becomes the dispatcher: whenever a receiver or a timeout wakes it up, it sends as many queued events as the
+     * DroneSubsystem has credit for in priority order, batched into as few messages as possible, and sends the queued
+     * confirmations back to the FireIncidentSubsystem in one batch once 32 are queued or the oldest has waited 50 ms.
+     * Events the DroneSubsystem does not acknowledge in time are queued again. The three threads share the scheduling
+     * state under the lock of the Scheduler, which is held only to change the state and log it, never while waiting,
+     * receiving or sending: messages to the FIS and the DSS are handed over under the lock and sent in order once it is
+     * released, so one thread sends while the others receive and dispatch.
      */
     @Override
     public void run() {
 
         System.out.println("["+this.name + "] subsystem started..."); // Prints out a message that the FIS has started
 
-        // Loop to Read Input Events from FireIncidentSubsystem, sends Event to DroneSubsystem, and handles confirmation messages passing
-        while (true) {
-            switch (currentState) {
-                // Check for ReplayPackage that was sent from the FIS
-                case RECEIVE_FROM_FIS:
-                    handleReceiveFromFIS();
-                    break;
-                //Send the highest-priority event to the DroneSubsystem
-                case SEND_TO_DSS:
-                    handleSendToDSS();
-                    break;
-                //Check if there is any event back from the Drone
-                case CHECK_DSS_RESPONSE:
+        synchronized (this) {
+            receivers.add(new Thread(() -> receiveLoop(transport), name + "-FIS-receiver"));
+            receivers.add(new Thread(() -> receiveLoop(dssTransport), name + "-DSS-receiver"));
+            for (Thread receiver : receivers) {
+                receiver.setDaemon(true);
+                receiver.start();
+            }
+        }
+
+        while (running) {
+            synchronized (this) {
+                long retransmitTimeout = fisLink == null ? -1 : fisLink.getTimeUntilNextRetransmit(); // Also wakes up when an unacknowledged confirmation is due to be resent
+                long eventAckTimeout = getTimeUntilEventAckTimeout(); // Also wakes up when an unacknowledged event is due to be queued again
+                if (eventAckTimeout >= 0) {
+                    retransmitTimeout = retransmitTimeout < 0 ? eventAckTimeout : Math.min(retransmitTimeout, eventAckTimeout);
+                }
+                long confirmationTimeout = getTimeUntilConfirmationFlush(); // Also wakes up when queued confirmations are due to be sent
+                if (confirmationTimeout >= 0) {
+                    retransmitTimeout = retransmitTimeout < 0 ? confirmationTimeout : Math.min(retransmitTimeout, confirmationTimeout);
+                }
+                if (isAwaitingZoneRegistryAck()) { // Also wakes up when the zone registry is due to be resent
+                    long registryTimeout = Math.max(0, lastZoneRegistrySendTime + DSS_TIMEOUT - System.currentTimeMillis());
+                    retransmitTimeout = retransmitTimeout < 0 ? registryTimeout : Math.min(retransmitTimeout, registryTimeout);
+                }
+
+                // Wait for a receiver to hand over a message, unless events can be sent or something is due now
+                boolean canSend = !inputEvents.isEmpty() && getDssCredits() > 0 && !isAwaitingZoneRegistryAck();
+                if (!canSend && retransmitTimeout != 0) {
+                    currentState = SchedulerState.RECEIVE_FROM_FIS;
                     try {
-                        Thread.sleep(2000);
+                        wait(Math.max(0, retransmitTimeout)); // 0 waits until notified
                     } catch (InterruptedException e) {
-                        throw new RuntimeException(e);
+                        return;
+                    }
+                }
+
+                // Hand over as many queued events as the DroneSubsystem has credit for in batches, highest priority first, once it holds the zone registry
+                currentState = SchedulerState.SEND_TO_DSS;
+                requeueUnacknowledgedEvents(System.currentTimeMillis());
+                if (isAwaitingZoneRegistryAck()) {
+                    if (System.currentTimeMillis() - lastZoneRegistrySendTime >= DSS_TIMEOUT) {
+                        sendZoneRegistryToDSS();
                     }
-                    handleCheckDSSResponse();
-                    break;
-                //Send confirmation packages back to the FireIncidentSubsystem
-                case SEND_CONFIRMATION:
-                    handleSendConfirmation();
-                    break;
+                } else {
+                    while (!inputEvents.isEmpty() && getDssCredits() > 0) {
+                        dispatchEventBatch();
+                    }
+                }
+
+                // Hand over the queued confirmations for the FireIncidentSubsystem in one batch, once enough are queued or the oldest has waited long enough
+                currentState = SchedulerState.SEND_CONFIRMATION;
+                if (getTimeUntilConfirmationFlush() == 0) {
+                    dispatchConfirmations();
+                }
+
+                // Take a checkpoint now and then, which also keeps the write-ahead log bounded, or compact the log once it has filled enough segments
+                if (isCheckpointDue()) {
+                    startCheckpoint();
+                } else if (log != null && checkpointInterval <= 0 && log.needsCompaction()) {
+                    compactLog();
+                }
+            }
+
+            // Send what was handed over and resend the unacknowledged confirmations that are due, without the lock
+            flushOutbox();
+            if (fisLink != null) {
+                try {
+                    fisLink.poll();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return;
+                }
             }
         }
     }
@@ -389,7 +1326,10 @@ public class Scheduler implements Runnable {
      *  Main method to run the thread.
      */
     public static void main(String[] args) {
-        Scheduler scheduler = new Scheduler("Scdlr");
+        int shard = ShardMap.getLocalShard();
+        Scheduler scheduler = new Scheduler(shard == 0 ? "Scdlr" : "Scdlr" + shard); // Each shard schedules the zones it owns, on ports of its own
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print("[" + scheduler.name + "] Input event queue by severity:\n"
+                + scheduler.inputEvents.report()), "Scheduler queue dump")); // Queue depths, promotions, wait times and deadline misses of each severity
         Thread scheduler_t1 = new Thread(scheduler);
         scheduler_t1.start();
     }
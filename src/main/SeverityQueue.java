@@ -0,0 +1,276 @@
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * The SeverityQueue class holds the input events waiting in the Scheduler, highest severity first. It keeps one FIFO
+ * deque per severity level, so adding and taking an event is constant time and events of the same severity leave in
+ * the order they arrived.
+ *
+ * So that Low events are not starved by a steady stream of High events, an event that waited longer than the aging
+ * threshold in its level is moved to the tail of the level above, and again after another threshold, until it reaches
+ * the top level. Each deque is ordered by the time its events entered the level, so only the head of each deque has to
+ * be checked. Aging moves events between the queue levels only; the severity of the event itself is never changed.
+ *
+ * The queue counts, for each severity, how many events are waiting, how many were added, taken and promoted, how
+ * long the events taken had waited and how many missed their response deadline. It is not thread-safe, like the rest
+ * of the Scheduler state.
+ */
+public class SeverityQueue extends AbstractQueue<InputEvent> implements EventQueue {
+
+    public static final long DEFAULT_AGING_THRESHOLD = 10000; // Milliseconds an event waits in a level before it is promoted, unless "scheduler.agingMillis" is set
+    private static final Severity[] LEVELS = {Severity.High, Severity.Moderate, Severity.Low}; // Queue levels, highest first
+
+    private final List<ArrayDeque<Entry>> levels = new ArrayList<>(); // One FIFO deque per level, in the order of LEVELS
+    private final long agingThresholdNanos;                            // 0 or less turns aging off
+    private final LongSupplier clock;                                  // Current time in nanoseconds
+    private final QueueStats[] stats = new QueueStats[LEVELS.length];  // Stats of each severity, in the order of LEVELS
+    private final Map<InputEvent, Long> firstQueued = new WeakHashMap<>(); // When each event still held by the Scheduler was first queued
+    private int size = 0;
+
+    /**
+     * An event waiting in the queue, with the times it was added and entered its current level, and its deadline.
+     */
+    private static class Entry {
+        private final InputEvent event;
+        private final long addedTime;
+        private long levelTime;
+        private long deadline;
+
+        private Entry(InputEvent event, long now, long deadline) {
+            this.event = event;
+            this.addedTime = now;
+            this.levelTime = now;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Constructs a SeverityQueue with the aging threshold given by the "scheduler.agingMillis" system property, or
+     * {@link #DEFAULT_AGING_THRESHOLD}.
+     */
+    public SeverityQueue() {
+        this(Long.getLong("scheduler.agingMillis", DEFAULT_AGING_THRESHOLD));
+    }
+
+    /**
+     * Constructs a SeverityQueue.
+     *
+     * @param agingThreshold Milliseconds an event waits in a level before it is moved up one, or 0 to turn aging off.
+     */
+    public SeverityQueue(long agingThreshold) {
+        this(agingThreshold, System::nanoTime);
+    }
+
+    /**
+     * Constructs a SeverityQueue with its own clock. FOR TESTING PURPOSES.
+     *
+     * @param agingThreshold Milliseconds an event waits in a level before it is moved up one, or 0 to turn aging off.
+     * @param clock          The current time in nanoseconds.
+     */
+    SeverityQueue(long agingThreshold, LongSupplier clock) {
+        this.agingThresholdNanos = agingThreshold * 1_000_000;
+        this.clock = clock;
+        for (int i = 0; i < LEVELS.length; i++) {
+            levels.add(new ArrayDeque<>());
+            stats[i] = new QueueStats();
+        }
+    }
+
+    @Override
+    public boolean offer(InputEvent event) {
+        Objects.requireNonNull(event);
+        int level = levelOf(event.getSeverity());
+        long now = clock.getAsLong();
+        long reported = firstQueued.computeIfAbsent(event, queued -> now); // An event queued again keeps the deadline of its first report
+        levels.get(level).addLast(new Entry(event, now, deadlineOf(reported, event.getSeverity())));
+        size++;
+        stats[level].recordAdded();
+        return true;
+    }
+
+    @Override
+    public InputEvent poll() {
+        Entry entry = head(true);
+        if (entry == null) {
+            return null;
+        }
+        size--;
+        long now = clock.getAsLong();
+        stats[levelOf(entry.event.getSeverity())].recordTaken(now - entry.addedTime, now > entry.deadline);
+        return entry.event;
+    }
+
+    @Override
+    public InputEvent peek() {
+        Entry entry = head(false);
+        return entry == null ? null : entry.event;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Iterates over the waiting events in the order they would be taken if no event were promoted in the meantime.
+     * Removing an event through the iterator is not supported.
+     */
+    @Override
+    public Iterator<InputEvent> iterator() {
+        List<InputEvent> events = new ArrayList<>(size);
+        for (ArrayDeque<Entry> level : levels) {
+            for (Entry entry : level) {
+                events.add(entry.event);
+            }
+        }
+        return Collections.unmodifiableList(events).iterator();
+    }
+
+    @Override
+    public void clear() {
+        for (ArrayDeque<Entry> level : levels) {
+            for (Entry entry : level) {
+                stats[levelOf(entry.event.getSeverity())].recordCleared();
+            }
+            level.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * Removes a waiting event, wherever aging has moved it. The event counts as dropped, not taken.
+     */
+    @Override
+    public boolean remove(Object event) {
+        for (ArrayDeque<Entry> level : levels) {
+            Iterator<Entry> entries = level.iterator();
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (entry.event == event) {
+                    entries.remove();
+                    size--;
+                    stats[levelOf(entry.event.getSeverity())].recordCleared();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Raises the severity of a waiting event. The event moves to the tail of the level of its new severity, unless
+     * aging already moved it to that level or above, where it keeps its place. Its wait time still counts from when it
+     * was added, and its deadline is brought forward to the budget of the new severity.
+     */
+    @Override
+    public boolean raiseSeverity(InputEvent event, Severity severity) {
+        int from = levelOf(event.getSeverity());
+        int to = levelOf(severity);
+        if (to >= from) {
+            return false;
+        }
+        for (int i = 0; i < LEVELS.length; i++) {
+            Iterator<Entry> entries = levels.get(i).iterator();
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (entry.event != event) {
+                    continue;
+                }
+                if (i > to) {
+                    entries.remove();
+                    entry.levelTime = clock.getAsLong();
+                    levels.get(to).addLast(entry);
+                }
+                event.setSeverity(severity);
+                entry.deadline = Math.min(entry.deadline, deadlineOf(firstQueued.getOrDefault(event, entry.addedTime), severity));
+                stats[from].moveTo(stats[to]);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public QueueStats getStats(Severity severity) {
+        return stats[levelOf(severity)];
+    }
+
+    /**
+     * Gets the number of events waiting in a level of the queue, which includes the events promoted into it.
+     *
+     * @param level the level, named by the severity it holds.
+     * @return the number of events waiting in the level.
+     */
+    public int getLevelSize(Severity level) {
+        return levels.get(levelOf(level)).size();
+    }
+
+    /**
+     * Gets the aging threshold.
+     *
+     * @return milliseconds an event waits in a level before it is moved up one, or 0 if aging is off.
+     */
+    public long getAgingThreshold() {
+        return Math.max(0, agingThresholdNanos / 1_000_000);
+    }
+
+    @Override
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < LEVELS.length; i++) {
+            report.append("  ").append(LEVELS[i]).append(": ").append(stats[i]).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Promotes the events that waited too long, then finds the event to take next.
+     *
+     * @param remove whether to take the event out of its level.
+     */
+    private Entry head(boolean remove) {
+        if (size == 0) {
+            return null;
+        }
+        promoteAged();
+        for (ArrayDeque<Entry> level : levels) {
+            if (!level.isEmpty()) {
+                return remove ? level.pollFirst() : level.peekFirst();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the events that waited at least the aging threshold in their level to the tail of the level above. Lower
+     * levels go first, so an event moves up at most one level per call.
+     */
+    private void promoteAged() {
+        if (agingThresholdNanos <= 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        for (int i = LEVELS.length - 1; i > 0; i--) {
+            ArrayDeque<Entry> level = levels.get(i);
+            while (!level.isEmpty() && now - level.peekFirst().levelTime >= agingThresholdNanos) {
+                Entry entry = level.pollFirst();
+                entry.levelTime = now;
+                levels.get(i - 1).addLast(entry);
+                stats[levelOf(entry.event.getSeverity())].recordPromoted();
+            }
+        }
+    }
+
+    private static long deadlineOf(long reported, Severity severity) {
+        return reported + EventQueue.getResponseBudget(severity) * 1_000_000;
+    }
+
+    private static int levelOf(Severity severity) {
+        switch (severity) {
+            case High: return 0;
+            case Moderate: return 1;
+            case Low: return 2;
+            default: throw new IllegalArgumentException("Unknown priority level");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.*;
+
+/**
+ * The ShardMap class splits the zones between several Scheduler shards, so a large region can be scheduled by more
+ * than one process. Each shard runs its own Scheduler, DroneSubsystem and drones on the ports of its shard (see
+ * {@link Endpoints}), and the FireIncidentSubsystem sends the zones and events of each zone to the shard that owns it.
+ *
+ * Zones are placed with consistent hashing: every shard owns many points of a hash ring, and a zone belongs to the
+ * shard of the first point at or after the hash of its ID. Adding a shard only moves the zones that the new shard takes
+ * over, and the zones are spread evenly whatever their IDs.
+ *
+ * The number of shards is set with the "scheduler.shards" system property, 1 by default, and must be the same in
+ * every process. A Scheduler, DroneSubsystem or drone process tells which shard it runs with "scheduler.shard",
+ * counted from 0.
+ */
+public class ShardMap {
+
+    public static final int MAX_SHARDS = 10;     // Limited by the ports kept for each shard
+    private static final int POINTS_PER_SHARD = 64; // Points of each shard on the hash ring, which evens out the zones per shard
+
+    private static ShardMap configured = null; // Loaded on first use
+
+    private final int shards;
+    private final NavigableMap<Integer, Integer> ring = new TreeMap<>(); // Shard owning each point of the ring
+
+    /**
+     * Constructs a ShardMap.
+     *
+     * @param shards The number of shards, from 1 to {@link #MAX_SHARDS}.
+     * @throws IllegalArgumentException If the number of shards is out of range.
+     */
+    public ShardMap(int shards) {
+        if (shards < 1 || shards > MAX_SHARDS) {
+            throw new IllegalArgumentException("Number of shards must be between 1 and " + MAX_SHARDS + ": " + shards);
+        }
+        this.shards = shards;
+        for (int shard = 0; shard < shards; shard++) {
+            for (int point = 0; point < POINTS_PER_SHARD; point++) {
+                ring.putIfAbsent(hash(shard * POINTS_PER_SHARD + point + 0x5bd1e995), shard);
+            }
+        }
+    }
+
+    /**
+     * Gets the shards of this process, as set by the "scheduler.shards" system property.
+     *
+     * @return the shard map.
+     */
+    public static synchronized ShardMap get() {
+        if (configured == null) {
+            configured = new ShardMap(Integer.getInteger("scheduler.shards", 1));
+        }
+        return configured;
+    }
+
+    /**
+     * Gets the shard this process runs, as set by the "scheduler.shard" system property.
+     *
+     * @return the shard, 0 if the property is not set.
+     * @throws IllegalArgumentException If the shard is not one of the configured shards.
+     */
+    public static int getLocalShard() {
+        int shard = Integer.getInteger("scheduler.shard", 0);
+        if (shard < 0 || shard >= get().getShardCount()) {
+            throw new IllegalArgumentException("Shard " + shard + " is not one of the " + get().getShardCount() + " shards");
+        }
+        return shard;
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return the number of shards.
+     */
+    public int getShardCount() {
+        return shards;
+    }
+
+    /**
+     * Gets the shard that owns a zone.
+     *
+     * @param zoneID the ID of the zone.
+     * @return the shard, counted from 0.
+     */
+    public int getShard(int zoneID) {
+        if (shards == 1) {
+            return 0;
+        }
+        Map.Entry<Integer, Integer> point = ring.ceilingEntry(hash(zoneID));
+        return point != null ? point.getValue() : ring.firstEntry().getValue(); // Past the last point, the ring wraps around
+    }
+
+    /**
+     * Splits zones between the shards that own them.
+     *
+     * @param zones the zones.
+     * @return the zones of each shard, indexed by shard. A shard that owns none of the zones gets an empty list.
+     */
+    public List<ArrayList<Zone>> partition(Collection<Zone> zones) {
+        List<ArrayList<Zone>> partitions = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Zone zone : zones) {
+            partitions.get(getShard(zone.getZoneID())).add(zone);
+        }
+        return partitions;
+    }
+
+    /**
+     * Mixes the bits of a value, so consecutive zone IDs land far apart on the ring.
+     */
+    private static int hash(int value) {
+        value ^= value >>> 16;
+        value *= 0x85ebca6b;
+        value ^= value >>> 13;
+        value *= 0xc2b2ae35;
+        value ^= value >>> 16;
+        return value;
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The SharedMemoryRing class is a single-producer, single-consumer queue of messages held in a memory-mapped file, so
+ * that two processes on the same host can exchange messages without a system call per message. The producer and the
+ * consumer each map the file; the producer only moves the write index and the consumer only moves the read index,
+ * and each index is published with release semantics and read with acquire semantics, so no lock is needed.
+ *
+ * The file starts with a header holding the capacity, the two indexes on cache lines of their own and two flags telling
+ * that the producer or the consumer went away. The data area that follows holds records made of a length and the
+ * message bytes, padded to 8 bytes. A record that does not fit before the end of the data area is written at its start,
+ * after a padding marker.
+ */
+public class SharedMemoryRing {
+
+    private static final int MAGIC = 0x52494e47;        // "RING", written last when the file is created
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int WRITE_INDEX_OFFSET = 64;   // Moved by the producer only
+    private static final int READ_INDEX_OFFSET = 128;   // Moved by the consumer only
+    private static final int PRODUCER_CLOSED_OFFSET = 192;
+    private static final int CONSUMER_CLOSED_OFFSET = 196;
+    private static final int HEADER_SIZE = 256;
+    private static final int LENGTH_SIZE = 4;
+    private static final int PADDING = -1;              // Length marking the unused end of the data area
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private long writeIndex;      // The producer's own write index, or the last one seen by the consumer
+    private long readIndex;       // The consumer's own read index, or the last one seen by the producer
+
+    private SharedMemoryRing(Path file, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.writeIndex = (long) LONGS.getAcquire(buffer, WRITE_INDEX_OFFSET);
+        this.readIndex = (long) LONGS.getAcquire(buffer, READ_INDEX_OFFSET);
+    }
+
+    /**
+     * Creates the file of a new ring, for the producer. The file is written under a temporary name and renamed, so a
+     * consumer never maps it half-initialized.
+     *
+     * @param file     the file of the ring, which must not exist yet.
+     * @param capacity the size of the data area in bytes, a power of two.
+     * @return the ring.
+     * @throws IOException if the file could not be created or mapped.
+     */
+    public static SharedMemoryRing create(Path file, int capacity) throws IOException {
+        if (capacity < 64 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two of at least 64 bytes: " + capacity);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        INTS.setRelease(buffer, 0, MAGIC);
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        return new SharedMemoryRing(file, buffer, capacity);
+    }
+
+    /**
+     * Maps the file of an existing ring, for the consumer.
+     *
+     * @param file the file of the ring.
+     * @return the ring.
+     * @throws IOException if the file could not be mapped or is not a ring.
+     */
+    public static SharedMemoryRing open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a ring: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+        if ((int) INTS.getAcquire(buffer, 0) != MAGIC || Integer.bitCount(capacity) != 1 || HEADER_SIZE + capacity != buffer.capacity()) {
+            throw new IOException("Not a ring: " + file);
+        }
+        return new SharedMemoryRing(file, buffer, capacity);
+    }
+
+    /**
+     * Writes a message at the end of the ring, if there is room for it. Called by the producer only.
+     *
+     * @param message the message bytes.
+     * @return true if the message was written, false if the ring is too full.
+     */
+    public boolean offer(byte[] message) {
+        if (message.length > getMaxMessageSize()) {
+            throw new IllegalArgumentException("Message of " + message.length + " bytes is larger than the ring allows");
+        }
+        int recordSize = align(LENGTH_SIZE + message.length);
+        int offset = (int) (writeIndex & mask);
+        int skipped = offset + recordSize > capacity ? capacity - offset : 0;
+        if (!hasRoom(skipped + recordSize)) {
+            return false;
+        }
+        if (skipped > 0) {
+            buffer.putInt(HEADER_SIZE + offset, PADDING);
+            offset = 0;
+        }
+        buffer.putInt(HEADER_SIZE + offset, message.length);
+        buffer.put(HEADER_SIZE + offset + LENGTH_SIZE, message);
+        writeIndex += skipped + recordSize;
+        LONGS.setRelease(buffer, WRITE_INDEX_OFFSET, writeIndex); // Publishes the record to the consumer
+        return true;
+    }
+
+    /**
+     * Takes the oldest message from the ring. Called by the consumer only.
+     *
+     * @return the message bytes, or null if the ring is empty.
+     */
+    public byte[] poll() {
+        while (true) {
+            if (readIndex == writeIndex) {
+                writeIndex = (long) LONGS.getAcquire(buffer, WRITE_INDEX_OFFSET);
+                if (readIndex == writeIndex) {
+                    return null;
+                }
+            }
+            int offset = (int) (readIndex & mask);
+            int length = buffer.getInt(HEADER_SIZE + offset);
+            if (length == PADDING) {
+                readIndex += capacity - offset;
+                continue;
+            }
+            byte[] message = new byte[length];
+            buffer.get(HEADER_SIZE + offset + LENGTH_SIZE, message);
+            readIndex += align(LENGTH_SIZE + length);
+            LONGS.setRelease(buffer, READ_INDEX_OFFSET, readIndex); // Gives the space back to the producer
+            return message;
+        }
+    }
+
+    /**
+     * Checks if the ring holds no message. Called by the consumer only.
+     *
+     * @return true if every message written was taken.
+     */
+    public boolean isEmpty() {
+        return readIndex == (long) LONGS.getAcquire(buffer, WRITE_INDEX_OFFSET);
+    }
+
+    /**
+     * Gets the largest message the ring accepts, which is half of the data area so a message always fits once the
+     * ring is empty, wherever the indexes are.
+     *
+     * @return the maximum message size in bytes.
+     */
+    public int getMaxMessageSize() {
+        return capacity / 2 - LENGTH_SIZE;
+    }
+
+    /**
+     * Gets the size of the data area.
+     *
+     * @return the capacity in bytes.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the file of the ring.
+     *
+     * @return the path of the file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Tells the consumer that the producer went away and will write no more messages.
+     */
+    public void closeProducer() {
+        INTS.setRelease(buffer, PRODUCER_CLOSED_OFFSET, 1);
+    }
+
+    /**
+     * Checks if the producer went away.
+     *
+     * @return true if {@link #closeProducer()} was called on either side.
+     */
+    public boolean isProducerClosed() {
+        return (int) INTS.getAcquire(buffer, PRODUCER_CLOSED_OFFSET) != 0;
+    }
+
+    /**
+     * Tells the producer that the consumer went away and will read no more messages.
+     */
+    public void closeConsumer() {
+        INTS.setRelease(buffer, CONSUMER_CLOSED_OFFSET, 1);
+    }
+
+    /**
+     * Checks if the consumer went away.
+     *
+     * @return true if {@link #closeConsumer()} was called on either side.
+     */
+    public boolean isConsumerClosed() {
+        return (int) INTS.getAcquire(buffer, CONSUMER_CLOSED_OFFSET) != 0;
+    }
+
+    /**
+     * Checks if the producer has room for a number of bytes, reading the consumer's index again only if the last one
+     * seen is not enough.
+     */
+    private boolean hasRoom(int bytes) {
+        if (capacity - (writeIndex - readIndex) >= bytes) {
+            return true;
+        }
+        readIndex = (long) LONGS.getAcquire(buffer, READ_INDEX_OFFSET);
+        return capacity - (writeIndex - readIndex) >= bytes;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
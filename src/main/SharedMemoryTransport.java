@@ -0,0 +1,376 @@
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.BindException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The SharedMemoryTransport class hands messages between processes on the same host through memory-mapped files,
+ * so subsystems that run as separate JVMs on one machine exchange messages without a system call per message.
+ * Messages are encoded with the {@link WireCodec} as for UDP, and byte arrays are passed through as they are.
+ *
+ * Every bound port is a directory holding one {@link SharedMemoryRing} per sender, so each ring has exactly one
+ * producer and one consumer. A sender creates its ring the first time it sends to a port, and the receiver picks up new
+ * rings by scanning the directory every few milliseconds while it waits. Nothing wakes a waiting receiver up: it spins
+ * for a short while, then yields, then parks for growing periods of up to a millisecond, so a message sent to a busy
+ * receiver is picked up within microseconds while an idle receiver costs almost no CPU.
+ *
+ * A port is bound by holding a lock on its ".bound" file, so only one process receives from it. A message sent to a
+ * port nobody bound is lost, like a datagram. So is a message sent while the receiver's ring stays full, or sent just
+ * before the receiver restarts, so the transport does not claim to be reliable. The files live under the "shm.dir"
+ * system property, /dev/shm by default when it exists, and the data area of each ring is set by "shm.ringSize"
+ * (1 MB by default). The transport is picked with "-Dtransport=shm".
+ */
+public class SharedMemoryTransport implements Transport {
+
+    public static final int DEFAULT_RING_SIZE = 1 << 20;  // Size of the data area of each ring in bytes
+    private static final String BOUND_FILE = ".bound";    // Locked by the process bound to a port
+    private static final String RING_SUFFIX = ".ring";
+    private static final long SCAN_INTERVAL = TimeUnit.MILLISECONDS.toNanos(20); // Time between scans for new senders
+    private static final long FULL_WAIT = TimeUnit.MILLISECONDS.toNanos(50);     // Time a sender waits for room in a full ring
+    private static final int SPIN_TRIES = 100;            // Attempts spent spinning before yielding
+    private static final int YIELD_TRIES = 100;           // Attempts spent yielding before parking
+    private static final long MIN_PARK = 1_000;           // First park in nanoseconds, doubled up to MAX_PARK
+    private static final long MAX_PARK = 1_000_000;
+    private static final AtomicInteger NEXT_SENDER = new AtomicInteger();
+
+    /**
+     * A bound port: the lock that owns it and the rings of its senders.
+     */
+    private static class Port {
+        private final int port;
+        private final Path directory;
+        private final FileChannel lockChannel;
+        private final FileLock lock;
+        private final Map<Path, SharedMemoryRing> rings = new LinkedHashMap<>(); // Ring of each sender by file
+
+        private Port(int port, Path directory, FileChannel lockChannel, FileLock lock) {
+            this.port = port;
+            this.directory = directory;
+            this.lockChannel = lockChannel;
+            this.lock = lock;
+        }
+    }
+
+    private final String name;
+    private final Path directory;
+    private final int ringSize;
+    private final String senderID;                                           // Prefix of the files of the rings this transport writes
+    private final List<Port> ports = new ArrayList<>();
+    private final Map<Integer, SharedMemoryRing> outgoing = new HashMap<>(); // Ring written for each destination port
+    private final Set<Integer> droppingPorts = new HashSet<>();             // Destinations whose ring stayed full
+    private long nextScan = 0;
+    private int nextPort = 0;                                                // Port polled first, so no port starves the others
+    private AtomicReference<ZoneRegistry> zoneRegistry = new AtomicReference<>(); // Shared with the transports opened by newTransport
+
+    /**
+     * Constructs a SharedMemoryTransport that is not bound to any port yet, using the directory and ring size set by
+     * the system properties.
+     *
+     * @param name The name of the transport, used when printing.
+     */
+    public SharedMemoryTransport(String name) {
+        this(name, getDefaultDirectory(), Integer.getInteger("shm.ringSize", DEFAULT_RING_SIZE));
+    }
+
+    /**
+     * Constructs a SharedMemoryTransport that is not bound to any port yet.
+     *
+     * @param name      The name of the transport, used when printing.
+     * @param directory The directory holding the files of every port.
+     * @param ringSize  The size of the data area of the rings this transport writes, a power of two.
+     */
+    public SharedMemoryTransport(String name, Path directory, int ringSize) {
+        this.name = name;
+        this.directory = directory;
+        this.ringSize = ringSize;
+        this.senderID = name.replaceAll("[^A-Za-z0-9]", "_") + "-" + ProcessHandle.current().pid() + "-" + NEXT_SENDER.incrementAndGet();
+    }
+
+    /**
+     * Gets the directory picked by the "shm.dir" system property, or /dev/shm if it exists, or the temporary
+     * directory otherwise.
+     *
+     * @return the directory holding the files of every port.
+     */
+    public static Path getDefaultDirectory() {
+        String configured = System.getProperty("shm.dir");
+        if (configured != null && !configured.isEmpty()) {
+            return Paths.get(configured);
+        }
+        Path shm = Paths.get("/dev/shm");
+        Path base = Files.isDirectory(shm) ? shm : Paths.get(System.getProperty("java.io.tmpdir"));
+        return base.resolve("drone-transport");
+    }
+
+    @Override
+    public void bind(int port) throws IOException {
+        Path portDirectory = directory.resolve(Integer.toString(port));
+        Files.createDirectories(portDirectory);
+        FileChannel lockChannel = FileChannel.open(portDirectory.resolve(BOUND_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // Held by another transport of this process
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new BindException("[" + name + "] Port " + port + " is already bound");
+        }
+
+        // Rings left by senders to a receiver that went away hold stale messages, so their senders are told to start over
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(portDirectory, "*" + RING_SUFFIX)) {
+            for (Path file : stale) {
+                try {
+                    SharedMemoryRing.open(file).closeConsumer();
+                } catch (IOException e) {
+                    // Not a ring, it is deleted all the same
+                }
+                Files.deleteIfExists(file);
+            }
+        }
+        ports.add(new Port(port, portDirectory, lockChannel, lock));
+        nextScan = 0;
+    }
+
+    @Override
+    public synchronized void send(Object message, int port) throws IOException {
+        ChannelStats stats = ChannelStats.forPort(port);
+        byte[] encoded;
+        if (message instanceof byte[]) {
+            encoded = (byte[]) message;
+        } else {
+            long start = System.nanoTime();
+            encoded = WireCodec.encodeMessage(message, zoneRegistry.get());
+            stats.recordEncodeTime(System.nanoTime() - start);
+        }
+
+        SharedMemoryRing ring = getOutgoingRing(port);
+        if (ring == null) {
+            return; // Nobody is bound to the port, just like a datagram sent to a closed port
+        }
+        if (encoded.length > ring.getMaxMessageSize()) {
+            throw new IOException("[" + name + "] Message of " + encoded.length + " bytes is larger than the rings allow");
+        }
+        long deadline = System.nanoTime() + FULL_WAIT;
+        for (int attempt = 0; !ring.offer(encoded); attempt++) {
+            if (ring.isConsumerClosed() || System.nanoTime() >= deadline) {
+                if (droppingPorts.add(port)) {
+                    System.out.println("[" + name + "] PORT " + port + " IS NOT KEEPING UP, DROPPING MESSAGES");
+                }
+                return;
+            }
+            idle(attempt, deadline - System.nanoTime());
+        }
+        if (droppingPorts.remove(port)) {
+            System.out.println("[" + name + "] PORT " + port + " IS KEEPING UP AGAIN");
+        }
+        stats.recordSent(encoded.length);
+    }
+
+    @Override
+    public Delivery receive(long timeout) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (int attempt = 0; ; attempt++) {
+            long now = System.nanoTime();
+            if (now - nextScan >= 0) {
+                scan();
+                nextScan = now + SCAN_INTERVAL;
+            }
+            Delivery delivery = poll();
+            if (delivery != null) {
+                return delivery;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (timeout == 0) {
+                return null;
+            }
+            if (timeout > 0 && remaining <= 0) {
+                for (Port port : ports) {
+                    ChannelStats.forPort(port.port).recordTimeout();
+                }
+                return null;
+            }
+            idle(attempt, timeout < 0 ? MAX_PARK : remaining);
+        }
+    }
+
+    @Override
+    public boolean isReliable() {
+        return false;
+    }
+
+    @Override
+    public void setZoneRegistry(ZoneRegistry registry) {
+        zoneRegistry.set(registry);
+    }
+
+    @Override
+    public Transport newTransport(String name) {
+        SharedMemoryTransport transport = new SharedMemoryTransport(name, directory, ringSize);
+        transport.zoneRegistry = zoneRegistry;
+        return transport;
+    }
+
+    /**
+     * Tells the receivers this transport sends to that it went away, tells the senders of every bound port to start
+     * over, and releases the ports.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            for (SharedMemoryRing ring : outgoing.values()) {
+                ring.closeProducer();
+            }
+            outgoing.clear();
+        }
+        for (Port port : ports) {
+            for (SharedMemoryRing ring : port.rings.values()) {
+                ring.closeConsumer();
+                Files.deleteIfExists(ring.getFile());
+            }
+            Files.deleteIfExists(port.directory.resolve(BOUND_FILE));
+            port.lock.release();
+            port.lockChannel.close();
+        }
+        ports.clear();
+    }
+
+    /**
+     * Gets the ring written for a destination port, creating it if the port is bound. A ring whose receiver went away
+     * is replaced.
+     *
+     * @return the ring, or null if nobody is bound to the port.
+     */
+    private SharedMemoryRing getOutgoingRing(int port) throws IOException {
+        SharedMemoryRing ring = outgoing.get(port);
+        if (ring != null && !ring.isConsumerClosed()) {
+            return ring;
+        }
+        outgoing.remove(port);
+        Path portDirectory = directory.resolve(Integer.toString(port));
+        if (!Files.exists(portDirectory.resolve(BOUND_FILE))) {
+            return null;
+        }
+        Path file = portDirectory.resolve(senderID + "-" + System.nanoTime() + RING_SUFFIX);
+        try {
+            ring = SharedMemoryRing.create(file, ringSize);
+        } catch (NoSuchFileException e) {
+            return null; // The receiver went away meanwhile
+        }
+        outgoing.put(port, ring);
+        return ring;
+    }
+
+    /**
+     * Maps the rings of senders that appeared since the last scan, and removes the rings of senders that went away
+     * once they are empty.
+     */
+    private void scan() throws IOException {
+        for (Port port : ports) {
+            Iterator<SharedMemoryRing> rings = port.rings.values().iterator();
+            while (rings.hasNext()) {
+                SharedMemoryRing ring = rings.next();
+                if (ring.isProducerClosed() && ring.isEmpty()) {
+                    rings.remove();
+                    Files.deleteIfExists(ring.getFile());
+                }
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(port.directory, "*" + RING_SUFFIX)) {
+                for (Path file : files) {
+                    if (!port.rings.containsKey(file)) {
+                        try {
+                            port.rings.put(file, SharedMemoryRing.open(file));
+                        } catch (NoSuchFileException e) {
+                            // The sender went away meanwhile
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes one message from the rings of the bound ports, starting with a different port every time.
+     *
+     * @return the delivery, or null if every ring is empty.
+     */
+    private Delivery poll() {
+        for (int i = 0; i < ports.size(); i++) {
+            Port port = ports.get((nextPort + i) % ports.size());
+            for (Map.Entry<Path, SharedMemoryRing> entry : port.rings.entrySet()) {
+                byte[] frame = entry.getValue().poll();
+                if (frame == null) {
+                    continue;
+                }
+                nextPort = (nextPort + i + 1) % ports.size();
+                ChannelStats stats = ChannelStats.forPort(port.port);
+                stats.recordReceived(frame.length);
+                Object message = decode(frame, stats);
+                if (message != null) {
+                    return new Delivery(port.port, entry.getKey().getFileName().toString(), message);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a frame, which is a codec frame or a raw datagram.
+     *
+     * @return the message, or null if the frame was empty or malformed.
+     */
+    private Object decode(byte[] frame, ChannelStats stats) {
+        if (frame.length == 0) {
+            return null;
+        }
+        if (frame[0] != WireCodec.VERSION) {
+            return frame;
+        }
+        long start = System.nanoTime();
+        try {
+            Object decoded = WireCodec.decode(frame, 0, frame.length, zoneRegistry.get());
+            stats.recordDecodeTime(System.nanoTime() - start);
+            return decoded;
+        } catch (StreamCorruptedException e) {
+            stats.recordDecodeFailure();
+            System.out.println("[" + name + "] DROPPED MALFORMED FRAME: " + e.getMessage());
+            return null;
+        } catch (IOException e) {
+            stats.recordDecodeFailure();
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Waits without any system call at first, then gives the processor up for growing periods.
+     *
+     * @param attempt  the number of attempts that found nothing so far.
+     * @param maxNanos the longest the wait may last.
+     */
+    private static void idle(int attempt, long maxNanos) {
+        if (attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            int doublings = Math.min(attempt - SPIN_TRIES - YIELD_TRIES, 10);
+            LockSupport.parkNanos(Math.max(0, Math.min(Math.min(MIN_PARK << doublings, MAX_PARK), maxNanos)));
+        }
+    }
+}
@@ -0,0 +1,482 @@
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The TcpTransport class sends messages over persistent TCP connections to ports on the hosts set by the
+ * {@link Endpoints}. Every message is encoded with the {@link WireCodec} and written as one frame prefixed with its
+ * length. A message of any size, such as the zone map sent at startup, therefore arrives whole and is never
+ * fragmented. A receiver that falls behind slows its senders down through TCP flow control instead of losing
+ * datagrams. The transport is picked with "-Dtransport=tcp" for links that carry large or frequent messages.
+ *
+ * Each destination port has one outgoing connection, which is opened on the first send. Nagle's algorithm is turned
+ * off (TCP_NODELAY), so a lone message leaves straight away. Messages are queued and written by a sender thread,
+ * which sends every frame that queued up meanwhile in one gathering write. When a connection fails, it is closed and
+ * opened again after a growing delay, and the frames not yet written are sent once it is back. Frames the kernel had
+ * already taken may still be lost with a broken connection. The transport therefore does not claim to be reliable,
+ * and the subsystems keep their own acknowledgements on top of it.
+ *
+ * Each bound port is a listening socket. A single selector accepts the connections and reads the frames of all of
+ * them. The frames of each connection are handed back in the order they were sent.
+ */
+public class TcpTransport implements Transport {
+
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024; // A longer length means the stream is garbled
+    private static final int LENGTH_SIZE = 4;                  // Length prefix in front of every frame
+    private static final int READ_BUFFER_SIZE = 64 * 1024;     // Initial read buffer of each accepted connection
+    private static final int MAX_QUEUED_FRAMES = 4096;         // Frames kept for a destination while it cannot be reached
+    private static final int CONNECT_TIMEOUT = 1000;           // Maximum time to open a connection in milliseconds
+    private static final long MIN_RECONNECT_DELAY = 50;        // Delay before the first reconnect in milliseconds
+    private static final long MAX_RECONNECT_DELAY = 2000;      // Upper bound of the reconnect delay in milliseconds
+    private static final long CLOSE_LINGER = 1000;             // Time allowed on close to write the frames still queued
+
+    /**
+     * The outgoing connection to one destination port and the frames waiting to be written to it.
+     */
+    private static class Connection {
+        private final int port;
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>(); // Frames waiting for the sender thread
+        private final List<ByteBuffer> writing = new ArrayList<>();      // Frames taken by the sender thread
+        private SocketChannel channel = null;                            // Open connection, null while disconnected
+        private long reconnectDelay = 0;                                 // 0 while the destination is reachable
+        private long nextAttempt = 0;                                    // Time of the next connection attempt
+        private boolean dropping = false;                                // Whether queued frames are being dropped
+
+        private Connection(int port) {
+            this.port = port;
+        }
+    }
+
+    /**
+     * An accepted connection and the bytes read from it that do not make a whole frame yet.
+     */
+    private static class Inbound {
+        private final int port;
+        private final SocketAddress source;
+        private ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        private Inbound(int port, SocketAddress source) {
+            this.port = port;
+            this.source = source;
+        }
+    }
+
+    private final String name;
+    private final Selector selector;
+    private final Map<Integer, ServerSocketChannel> listeners = new LinkedHashMap<>(); // Listening socket of each bound port
+    private final ArrayDeque<Delivery> arrived = new ArrayDeque<>();                   // Messages read but not yet received
+    private final Map<Integer, Connection> connections = new LinkedHashMap<>();        // Outgoing connection of each destination port, also the lock of the sender
+    private volatile boolean running = true;
+    private AtomicReference<ZoneRegistry> zoneRegistry = new AtomicReference<>(); // Shared with the transports opened by newTransport
+    private Thread sender = null;
+
+    /**
+     * Constructs a TcpTransport that is not bound to any port yet.
+     *
+     * @param name The name of the transport, used when printing.
+     * @throws IOException If the selector could not be opened.
+     */
+    public TcpTransport(String name) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+    }
+
+    @Override
+    public void bind(int port) throws IOException {
+        ServerSocketChannel listener = ServerSocketChannel.open();
+        try {
+            listener.setOption(StandardSocketOptions.SO_REUSEADDR, true); // A restarted subsystem gets its port back straight away
+            listener.bind(new InetSocketAddress(port));
+            listener.configureBlocking(false);
+            listener.register(selector, SelectionKey.OP_ACCEPT, port);
+        } catch (IOException e) {
+            listener.close();
+            throw e;
+        }
+        listeners.put(port, listener);
+    }
+
+    @Override
+    public void send(Object message, int port) throws IOException {
+        ChannelStats stats = ChannelStats.forPort(port);
+        byte[] encoded;
+        if (message instanceof byte[]) {
+            encoded = (byte[]) message;
+        } else {
+            long start = System.nanoTime();
+            encoded = WireCodec.encodeMessage(message, zoneRegistry.get());
+            stats.recordEncodeTime(System.nanoTime() - start);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(LENGTH_SIZE + encoded.length);
+        frame.putInt(encoded.length).put(encoded).flip();
+
+        synchronized (connections) {
+            if (!running) {
+                throw new IOException("[" + name + "] Transport is closed");
+            }
+            Connection connection = connections.computeIfAbsent(port, Connection::new);
+            if (connection.queue.size() >= MAX_QUEUED_FRAMES) {
+                connection.queue.poll();
+                if (!connection.dropping) {
+                    connection.dropping = true;
+                    System.out.println("[" + name + "] PORT " + port + " IS UNREACHABLE, DROPPING THE OLDEST QUEUED MESSAGES");
+                }
+            }
+            connection.queue.add(frame);
+            if (sender == null) {
+                sender = new Thread(this::sendQueued, name + "-Sender");
+                sender.setDaemon(true);
+                sender.start();
+            }
+            connections.notifyAll();
+        }
+    }
+
+    @Override
+    public Delivery receive(long timeout) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            if (arrived.isEmpty()) {
+                selector.selectNow();
+                readSelected();
+            }
+            Delivery delivery = arrived.poll();
+            if (delivery != null) {
+                return delivery;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (timeout == 0) {
+                return null;
+            }
+            if (timeout > 0 && remaining <= 0) {
+                for (int port : listeners.keySet()) {
+                    ChannelStats.forPort(port).recordTimeout();
+                }
+                return null;
+            }
+            selector.select(timeout < 0 ? 0 : remaining);
+            readSelected();
+        }
+    }
+
+    @Override
+    public boolean isReliable() {
+        return false;
+    }
+
+    @Override
+    public void setZoneRegistry(ZoneRegistry registry) {
+        zoneRegistry.set(registry);
+    }
+
+    @Override
+    public Transport newTransport(String name) throws IOException {
+        TcpTransport transport = new TcpTransport(name);
+        transport.zoneRegistry = zoneRegistry;
+        return transport;
+    }
+
+    /**
+     * Gets the number of frames waiting to be written to a destination port.
+     *
+     * @param port the destination port.
+     * @return the number of queued frames, including those being written.
+     */
+    public int getQueuedCount(int port) {
+        synchronized (connections) {
+            Connection connection = connections.get(port);
+            return connection == null ? 0 : connection.queue.size() + connection.writing.size();
+        }
+    }
+
+    /**
+     * Waits briefly for the frames still queued to reachable destinations to be written, then closes every connection,
+     * every listening socket and the selector.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (connections) {
+            long deadline = System.currentTimeMillis() + CLOSE_LINGER;
+            long remaining = CLOSE_LINGER;
+            while (running && hasFramesToWrite() && remaining > 0) {
+                try {
+                    connections.wait(remaining);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            running = false;
+            connections.notifyAll();
+            for (Connection connection : connections.values()) {
+                closeQuietly(connection.channel);
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        for (ServerSocketChannel listener : listeners.values()) {
+            listener.close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Checks if frames are still waiting to be written to a destination that can be reached. Called with the lock of
+     * the connections held.
+     */
+    private boolean hasFramesToWrite() {
+        for (Connection connection : connections.values()) {
+            if (connection.reconnectDelay == 0 && (!connection.queue.isEmpty() || !connection.writing.isEmpty())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs on the sender thread. Waits for queued frames and writes all the frames queued for each destination in one
+     * gathering write, skipping destinations that are waiting to reconnect.
+     */
+    private void sendQueued() {
+        List<Connection> ready = new ArrayList<>();
+        while (true) {
+            synchronized (connections) {
+                while (running && ready.isEmpty()) {
+                    long now = System.currentTimeMillis();
+                    long wait = 0; // Forever, unless a destination is waiting to reconnect
+                    for (Connection connection : connections.values()) {
+                        if (connection.queue.isEmpty()) {
+                            continue;
+                        }
+                        if (connection.nextAttempt <= now) {
+                            connection.writing.addAll(connection.queue);
+                            connection.queue.clear();
+                            ready.add(connection);
+                        } else if (wait == 0 || connection.nextAttempt - now < wait) {
+                            wait = connection.nextAttempt - now;
+                        }
+                    }
+                    if (ready.isEmpty()) {
+                        try {
+                            connections.wait(wait);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+            }
+
+            for (Connection connection : ready) {
+                write(connection);
+            }
+            ready.clear();
+            synchronized (connections) {
+                connections.notifyAll(); // Wakes up a close waiting for the queues to empty
+            }
+        }
+    }
+
+    /**
+     * Writes the frames taken by the sender thread to a destination, connecting first if needed. If the connection
+     * fails, the frames that were not written completely are queued again in front of the newer ones and a reconnect
+     * is scheduled.
+     */
+    private void write(Connection connection) {
+        ByteBuffer[] frames = connection.writing.toArray(new ByteBuffer[0]);
+        try {
+            if (connection.channel == null) {
+                connection.channel = connect(connection.port);
+            }
+            long remaining = 0;
+            for (ByteBuffer frame : frames) {
+                remaining += frame.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= connection.channel.write(frames); // Blocks while the receiver's window is full
+            }
+            ChannelStats stats = ChannelStats.forPort(connection.port);
+            for (ByteBuffer frame : frames) {
+                stats.recordSent(frame.limit());
+            }
+            synchronized (connections) {
+                connection.writing.clear();
+                if (connection.reconnectDelay > 0) {
+                    System.out.println("[" + name + "] CONNECTED TO PORT " + connection.port);
+                }
+                connection.reconnectDelay = 0;
+                connection.dropping = false;
+            }
+        } catch (IOException e) {
+            closeQuietly(connection.channel);
+            connection.channel = null;
+            synchronized (connections) {
+                for (int i = frames.length - 1; i >= 0; i--) {
+                    if (frames[i].hasRemaining()) {
+                        frames[i].rewind(); // The receiver drops the part of a frame that was cut off
+                        connection.queue.addFirst(frames[i]);
+                    }
+                }
+                connection.writing.clear();
+                if (connection.reconnectDelay == 0) {
+                    System.out.println("[" + name + "] CANNOT REACH PORT " + connection.port + ", RECONNECTING: " + e.getMessage());
+                    connection.reconnectDelay = MIN_RECONNECT_DELAY;
+                } else {
+                    connection.reconnectDelay = Math.min(connection.reconnectDelay * 2, MAX_RECONNECT_DELAY);
+                }
+                connection.nextAttempt = System.currentTimeMillis() + connection.reconnectDelay;
+            }
+        }
+    }
+
+    /**
+     * Opens a blocking connection to a port on its host, with Nagle's algorithm turned off.
+     */
+    private SocketChannel connect(int port) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            channel.socket().connect(Endpoints.getAddress(port), CONNECT_TIMEOUT);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Accepts the pending connections and reads the frames of the readable connections picked by the last select.
+     */
+    private void readSelected() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                accept((ServerSocketChannel) key.channel(), (Integer) key.attachment());
+            } else if (key.isReadable()) {
+                read(key);
+            }
+        }
+    }
+
+    /**
+     * Accepts every pending connection of a listening socket and starts reading from it.
+     */
+    private void accept(ServerSocketChannel listener, int port) throws IOException {
+        SocketChannel channel;
+        while ((channel = listener.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.register(selector, SelectionKey.OP_READ, new Inbound(port, channel.getRemoteAddress()));
+        }
+    }
+
+    /**
+     * Reads what is waiting on a connection and turns every whole frame into a delivery. A connection that was closed
+     * by its peer, or whose stream is garbled, is closed along with any partial frame.
+     */
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Inbound inbound = (Inbound) key.attachment();
+        ChannelStats stats = ChannelStats.forPort(inbound.port);
+        ByteBuffer buffer = inbound.buffer;
+        try {
+            if (channel.read(buffer) < 0) {
+                closeQuietly(channel);
+                return;
+            }
+        } catch (IOException e) {
+            closeQuietly(channel); // Reset by the peer
+            return;
+        }
+
+        buffer.flip();
+        int needed = 0;
+        while (buffer.remaining() >= LENGTH_SIZE) {
+            int length = buffer.getInt(buffer.position());
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                stats.recordDecodeFailure();
+                System.out.println("[" + name + "] DROPPED CONNECTION WITH A GARBLED FRAME LENGTH " + length + " ON PORT " + inbound.port);
+                closeQuietly(channel);
+                return;
+            }
+            if (buffer.remaining() < LENGTH_SIZE + length) {
+                needed = LENGTH_SIZE + length;
+                break;
+            }
+            ByteBuffer frame = buffer.slice(buffer.position() + LENGTH_SIZE, length);
+            buffer.position(buffer.position() + LENGTH_SIZE + length);
+            stats.recordReceived(LENGTH_SIZE + length);
+            Object message = decode(frame, stats);
+            if (message != null) {
+                arrived.add(new Delivery(inbound.port, inbound.source, message));
+            }
+        }
+        buffer.compact();
+
+        if (needed > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(needed); // Holds a frame larger than any before
+            buffer.flip();
+            larger.put(buffer);
+            inbound.buffer = larger;
+        } else if (buffer.position() == 0 && buffer.capacity() > READ_BUFFER_SIZE) {
+            inbound.buffer = ByteBuffer.allocate(READ_BUFFER_SIZE); // Gives back the memory of a large frame
+        }
+    }
+
+    /**
+     * Decodes a frame, which is a codec frame or a raw datagram.
+     *
+     * @return the message, or null if the frame was empty or malformed.
+     */
+    private Object decode(ByteBuffer frame, ChannelStats stats) {
+        if (!frame.hasRemaining()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            if (frame.get(frame.position()) == WireCodec.VERSION) {
+                Object decoded = WireCodec.decode(frame, zoneRegistry.get());
+                stats.recordDecodeTime(System.nanoTime() - start);
+                return decoded;
+            }
+            byte[] raw = new byte[frame.remaining()];
+            frame.get(raw);
+            return raw;
+        } catch (StreamCorruptedException e) {
+            stats.recordDecodeFailure();
+            System.out.println("[" + name + "] DROPPED MALFORMED FRAME: " + e.getMessage());
+            return null;
+        } catch (IOException e) {
+            stats.recordDecodeFailure();
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.net.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.*;
+
+/**
+ * The TelemetryPublisher class sends updates to the GUI from its own thread over one long-lived, connected datagram
+ * channel, so that the scheduling threads never open sockets or resolve addresses. Producers encode each update into
+ * a pooled buffer and queue it under a key. An update that is still queued when a newer one with the same key
+ * arrives is replaced by it, so a busy system only sends the latest zones, drone statuses, metrics and state of
+ * each event. Drone telemetry frames are the exception and are always sent. Updates larger than one datagram are
+ * split by a {@link Fragmenter}.
+ *
+ * When the target is a multicast group, every update is sent once to the group and any number of consumers (the GUI,
+ * a {@link TelemetryRecorder}, ...) can subscribe to it with a {@link TelemetrySubscriber}. Multicast is turned on by
+ * setting the "telemetry.group" system property to a group address, for example 239.255.42.99. The "telemetry.port"
+ * property changes the port (the port of the GUI {@link Endpoints endpoint} by default) and "telemetry.interface" the
+ * network interface (loopback by default).
+ */
+public class TelemetryPublisher implements Runnable {
+
+    private static final int BUFFER_SIZE = 4096;  // Size of the pooled buffers, matching the GUI receive buffer
+    private static final int MAX_IDLE_BUFFERS = 32;
+    private static final int MULTICAST_TTL = 1;        // Keeps multicast telemetry on the local network
+
+    private final String name;
+    private final DatagramChannel channel;                                  // Channel connected to the GUI
+    private final Fragmenter fragmenter = new Fragmenter();                 // Splits updates larger than one datagram, such as a large zone map
+    private final BufferPool bufferPool = new BufferPool(BUFFER_SIZE, MAX_IDLE_BUFFERS);
+    private final LinkedHashMap<Object, ByteBuffer> pending = new LinkedHashMap<>(); // Queued frames by key, oldest first
+    private final List<ByteBuffer> sending = new ArrayList<>();              // Frames taken from the queue by the sender thread
+    private final ChannelStats stats;                                       // Traffic of the telemetry port
+    private volatile boolean running = true;
+    private Thread thread;
+
+    /**
+     * Writes a frame into a buffer.
+     */
+    private interface Encoder {
+        void encode(ByteBuffer target);
+    }
+
+    /**
+     * Constructs a TelemetryPublisher and connects its channel to the GUI.
+     *
+     * @param name   The name of the publisher, used for its thread.
+     * @param target The address of the GUI.
+     * @throws IOException If the channel could not be opened.
+     */
+    public TelemetryPublisher(String name, InetSocketAddress target) throws IOException {
+        this.name = name;
+        this.stats = ChannelStats.forPort(target.getPort());
+        if (target.getAddress().isMulticastAddress()) {
+            this.channel = DatagramChannel.open(target.getAddress() instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+            this.channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, getMulticastInterface());
+            this.channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true); // Subscribers on this host receive the updates too
+            this.channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, MULTICAST_TTL);
+        } else {
+            this.channel = DatagramChannel.open();
+        }
+        this.channel.connect(target);
+    }
+
+    /**
+     * Gets the address telemetry is sent to, which is the multicast group set by the "telemetry.group" system
+     * property, or the GUI endpoint if it is not set.
+     *
+     * @return the telemetry address.
+     * @throws UnknownHostException if the group or the local host could not be resolved.
+     */
+    public static InetSocketAddress getDefaultTarget() throws UnknownHostException {
+        int port = Integer.getInteger("telemetry.port", Endpoints.getPort(Endpoints.GUI));
+        String group = System.getProperty("telemetry.group");
+        if (group == null || group.isEmpty()) {
+            return new InetSocketAddress(Endpoints.getAddress(Endpoints.getPort(Endpoints.GUI)).getAddress(), port);
+        }
+        return new InetSocketAddress(InetAddress.getByName(group), port);
+    }
+
+    /**
+     * Gets the network interface multicast telemetry is sent and received on, set by the "telemetry.interface"
+     * system property. The loopback interface is used by default, since every subsystem runs on the same host.
+     *
+     * @return the network interface.
+     * @throws SocketException if the interface could not be found.
+     */
+    public static NetworkInterface getMulticastInterface() throws SocketException {
+        String name = System.getProperty("telemetry.interface");
+        NetworkInterface networkInterface = name == null
+                ? NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress())
+                : NetworkInterface.getByName(name);
+        if (networkInterface == null) {
+            throw new SocketException("No network interface for telemetry: " + name);
+        }
+        return networkInterface;
+    }
+
+    /**
+     * Starts the thread that sends the queued updates.
+     */
+    public void start() {
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the sender thread and closes the channel.
+     */
+    public void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Queues the current state of an event. Replaces any queued update for the same event.
+     *
+     * @param event the event being published.
+     */
+    public void publishEvent(InputEvent event) {
+        enqueue(event.getEventID(), target -> WireCodec.encodeEvent(event, target));
+    }
+
+    /**
+     * Queues the list of zones. Replaces any queued list of zones.
+     *
+     * @param zones the zones being published.
+     */
+    public void publishZones(List<Zone> zones) {
+        enqueue(MessageType.ZONE_LIST, target -> WireCodec.encodeZones(zones, target));
+    }
+
+    /**
+     * Queues the statuses of the drones. Replaces any queued drone statuses.
+     *
+     * @param statuses the drone statuses being published.
+     */
+    public void publishDroneStatuses(List<DroneStatus> statuses) {
+        enqueue(MessageType.DRONE_STATUS_LIST, target -> WireCodec.encodeDroneStatuses(statuses, target));
+    }
+
+    /**
+     * Queues a frame of the drone telemetry stream. Telemetry frames are never replaced, since a delta frame only
+     * holds the drones that changed.
+     *
+     * @param frame the telemetry frame being published.
+     */
+    public void publishDroneTelemetry(DroneTelemetryFrame frame) {
+        enqueue(frame, target -> WireCodec.encodeDroneTelemetry(frame, target));
+    }
+
+    /**
+     * Queues the metrics. Replaces any queued metrics.
+     *
+     * @param metrics the metrics being published.
+     */
+    public void publishMetrics(Map<String, Object> metrics) {
+        enqueue(MessageType.METRICS, target -> WireCodec.encodeMetrics(metrics, target));
+    }
+
+    /**
+     * Gets the number of updates waiting to be sent.
+     *
+     * @return the number of queued updates.
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Encodes an update on the calling thread and queues it under the given key.
+     */
+    private void enqueue(Object key, Encoder encoder) {
+        long start = System.nanoTime();
+        ByteBuffer frame = bufferPool.acquire();
+        try {
+            encoder.encode(frame);
+        } catch (BufferOverflowException e) {
+            bufferPool.release(frame);
+            frame = ByteBuffer.allocate(BUFFER_SIZE * 2); // Rare frame that is larger than a pooled buffer
+            while (true) {
+                try {
+                    encoder.encode(frame);
+                    break;
+                } catch (BufferOverflowException tooSmall) {
+                    frame = ByteBuffer.allocate(frame.capacity() * 2);
+                }
+            }
+        }
+        frame.flip();
+        stats.recordEncodeTime(System.nanoTime() - start);
+
+        synchronized (pending) {
+            ByteBuffer replaced = pending.put(key, frame);
+            bufferPool.release(replaced); // The older update was never sent
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for queued updates and sends them to the GUI, oldest first.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            synchronized (pending) {
+                while (pending.isEmpty() && running) {
+                    try {
+                        pending.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                sending.addAll(pending.values());
+                pending.clear();
+            }
+
+            for (ByteBuffer frame : sending) {
+                try {
+                    if (frame.remaining() <= Fragmenter.DEFAULT_MAX_DATAGRAM) {
+                        stats.recordSent(channel.write(frame));
+                    } else {
+                        byte[] message = new byte[frame.remaining()];
+                        frame.get(message);
+                        for (byte[] fragment : fragmenter.fragment(message)) {
+                            stats.recordSent(channel.write(ByteBuffer.wrap(fragment)));
+                        }
+                    }
+                } catch (PortUnreachableException e) {
+                    // The GUI is not running, so the update is dropped
+                } catch (IOException e) {
+                    if (running) {
+                        e.printStackTrace();
+                    }
+                } finally {
+                    bufferPool.release(frame);
+                }
+            }
+            sending.clear();
+        }
+    }
+}
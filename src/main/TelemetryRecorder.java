@@ -0,0 +1,93 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.AsynchronousCloseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The TelemetryRecorder class subscribes to the telemetry of the subsystems and writes one line per update, with the
+ * time it was received. It is meant to run next to the GUI while telemetry is multicast, as described in
+ * {@link TelemetryPublisher}, to keep a record of a run.
+ */
+public class TelemetryRecorder implements Runnable {
+
+    private final TelemetrySubscriber subscriber;
+    private final PrintStream out;
+    private final DroneTelemetryDecoder telemetryDecoder = new DroneTelemetryDecoder(); // Rebuilds drone statuses from keyframes and deltas
+    private long recordedCount = 0;
+
+    /**
+     * Constructs a TelemetryRecorder.
+     *
+     * @param subscriber The subscriber the updates are received from.
+     * @param out        The stream the updates are written to.
+     */
+    public TelemetryRecorder(TelemetrySubscriber subscriber, PrintStream out) {
+        this.subscriber = subscriber;
+        this.out = out;
+    }
+
+    /**
+     * Records updates until the subscriber is closed.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                record(subscriber.receive());
+            } catch (AsynchronousCloseException e) {
+                return; // The recorder was stopped
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes a line describing an update.
+     *
+     * @param update the update that was received.
+     */
+    public void record(Object update) {
+        String line;
+        if (update instanceof DroneTelemetryFrame) {
+            List<DroneStatus> statuses = telemetryDecoder.apply((DroneTelemetryFrame) update);
+            if (statuses == null) {
+                return; // Stale frame, or a delta before the first keyframe
+            }
+            line = "DRONES " + statuses;
+        } else if (update instanceof InputEvent) {
+            line = "EVENT " + update;
+        } else if (update instanceof List) {
+            line = "LIST " + update;
+        } else if (update instanceof Map) {
+            line = "METRICS " + update;
+        } else {
+            line = "UPDATE " + update;
+        }
+        out.println(System.currentTimeMillis() + " " + line);
+        recordedCount++;
+    }
+
+    /**
+     * Gets the number of updates written so far.
+     *
+     * @return the number of recorded updates.
+     */
+    public long getRecordedCount() {
+        return recordedCount;
+    }
+
+    /**
+     * Main method to run the recorder. Writes to the file given as the first argument, or to the console.
+     */
+    public static void main(String[] args) {
+        try {
+            PrintStream out = args.length > 0 ? new PrintStream(new FileOutputStream(args[0], true), true) : System.out;
+            new Thread(new TelemetryRecorder(new TelemetrySubscriber("Recorder"), out)).start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * The TelemetrySubscriber class receives the updates sent by the {@link TelemetryPublisher}s. When telemetry is sent
+ * to a multicast group, the subscriber joins the group on a port shared with the other subscribers of the host, so
+ * the GUI, a recorder and any other consumer can all attach at once while the producers still send every update
+ * only once. Otherwise the subscriber binds the port on its own, as the GUI always did.
+ */
+public class TelemetrySubscriber implements Closeable {
+
+    private final DatagramChannel channel;
+    private final Reassembler reassembler; // Puts back together updates that were split, such as a large zone map
+    private final ChannelStats stats;      // Traffic of the telemetry port
+    private final String name;
+
+    /**
+     * Constructs a TelemetrySubscriber for the address picked by the system properties, as described in
+     * {@link TelemetryPublisher}.
+     *
+     * @param name The name of the subscriber, used when printing.
+     * @throws IOException If the channel could not be opened, bound or could not join the group.
+     */
+    public TelemetrySubscriber(String name) throws IOException {
+        this(name, TelemetryPublisher.getDefaultTarget());
+    }
+
+    /**
+     * Constructs a TelemetrySubscriber.
+     *
+     * @param name    The name of the subscriber, used when printing.
+     * @param target  The address the updates are sent to. Its port is bound, and it is joined if it is a multicast group.
+     * @throws IOException If the channel could not be opened, bound or could not join the group.
+     */
+    public TelemetrySubscriber(String name, InetSocketAddress target) throws IOException {
+        this.name = name;
+        this.reassembler = new Reassembler(name);
+        this.stats = ChannelStats.forPort(target.getPort());
+        InetAddress group = target.getAddress();
+        if (group.isMulticastAddress()) {
+            this.channel = DatagramChannel.open(group instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+            this.channel.setOption(StandardSocketOptions.SO_REUSEADDR, true); // Every subscriber of the host binds the same port
+            this.channel.bind(new InetSocketAddress(target.getPort()));
+            this.channel.join(group, TelemetryPublisher.getMulticastInterface());
+        } else {
+            this.channel = DatagramChannel.open();
+            this.channel.bind(new InetSocketAddress(target.getPort()));
+        }
+    }
+
+    /**
+     * Waits for the next update and decodes it. Updates that were split are returned once every fragment arrived.
+     *
+     * @return the update, which is any message that {@link WireCodec#decode(ByteBuffer)} returns.
+     * @throws java.nio.channels.AsynchronousCloseException if the subscriber is closed while waiting.
+     * @throws StreamCorruptedException if the update is malformed.
+     * @throws IOException if the update could not be received.
+     */
+    public Object receive() throws IOException {
+        while (true) {
+            ByteBuffer buffer = BufferPool.RECEIVE.acquire();
+            try {
+                SocketAddress sender = channel.receive(buffer); // blocks until a packet is received
+                if (!buffer.hasRemaining()) { // A datagram as large as the buffer may have lost its end
+                    stats.recordTruncated();
+                    System.out.println("[" + name + "] DROPPED TRUNCATED TELEMETRY DATAGRAM");
+                    continue;
+                }
+                buffer.flip();
+                stats.recordReceived(buffer.remaining());
+                long start = System.nanoTime();
+                Object update;
+                try {
+                    if (Fragmenter.isFragment(buffer)) {
+                        byte[] data = reassembler.accept(sender, buffer);
+                        if (data == null) {
+                            continue;
+                        }
+                        update = WireCodec.decode(data, 0, data.length);
+                    } else {
+                        update = WireCodec.decode(buffer);
+                    }
+                } catch (StreamCorruptedException e) {
+                    stats.recordDecodeFailure();
+                    throw e;
+                }
+                stats.recordDecodeTime(System.nanoTime() - start);
+                return update;
+            } finally {
+                BufferPool.RECEIVE.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Gets the port the subscriber receives updates on.
+     *
+     * @return the local port.
+     */
+    public int getLocalPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    /**
+     * Closes the channel, which also leaves the multicast group.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
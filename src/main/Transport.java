@@ -0,0 +1,161 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The Transport interface is how the subsystems exchange messages with each other. An endpoint is identified by a
+ * port number. A transport receives the messages sent to each port it is bound to and can send messages to any port.
+ *
+ * Messages are the objects understood by the {@link WireCodec} (events, relay packages, zone registries and so on),
+ * or byte arrays holding a raw datagram such as the ones of a {@link ReliableChannel}. Every transport encodes or
+ * copies the events a message carries on send, so the sender may go on changing them; other messages belong to the
+ * receiver once sent and must not be changed by the sender.
+ *
+ * Four kinds of transport exist: {@link UdpTransport}, used when the subsystems run in separate processes,
+ * {@link TcpTransport}, which carries the same messages over persistent connections for large or busy links,
+ * {@link SharedMemoryTransport}, which passes them through memory-mapped rings between processes of the same host, and
+ * {@link InProcessTransport}, which hands messages between threads of one process without serializing them. The
+ * kind used by default is picked with the "transport" system property ("udp", "tcp", "shm" or "inprocess").
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * A message received by a transport.
+     */
+    class Delivery {
+        private final int port;
+        private final Object source;
+        private final Object message;
+
+        /**
+         * Constructs a Delivery.
+         *
+         * @param port    The local port the message was sent to.
+         * @param source  The sender of the message, used to tell senders apart.
+         * @param message The message.
+         */
+        public Delivery(int port, Object source, Object message) {
+            this.port = port;
+            this.source = source;
+            this.message = message;
+        }
+
+        /**
+         * Returns the local port the message was sent to.
+         *
+         * @return The port.
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Returns the sender of the message.
+         *
+         * @return The sender.
+         */
+        public Object getSource() {
+            return source;
+        }
+
+        /**
+         * Returns the message.
+         *
+         * @return The message.
+         */
+        public Object getMessage() {
+            return message;
+        }
+
+        /**
+         * Returns the message as the type its receiver expects.
+         *
+         * @param type The type of the message.
+         * @param <T>  The type of the message.
+         * @return The message.
+         * @throws ClassCastException if the message is of another type.
+         */
+        public <T> T getMessage(Class<T> type) {
+            return type.cast(message);
+        }
+    }
+
+    /**
+     * Starts receiving the messages sent to a port.
+     *
+     * @param port the port to bind.
+     * @throws IOException if the port is already bound.
+     */
+    void bind(int port) throws IOException;
+
+    /**
+     * Sends a message to a port. Like a datagram, a message sent to a port nobody is bound to is lost.
+     *
+     * @param message the message to send.
+     * @param port    the destination port.
+     */
+    void send(Object message, int port) throws IOException;
+
+    /**
+     * Receives the next message sent to any bound port. Only one thread may receive from a transport.
+     *
+     * @param timeout the maximum time to wait in milliseconds, 0 to return straight away or a negative value to
+     *                wait forever.
+     * @return the message, or null if none arrived in time.
+     */
+    Delivery receive(long timeout) throws IOException;
+
+    /**
+     * Checks if messages can be lost or reordered, in which case the owner adds its own reliability on top.
+     *
+     * @return true if every message sent is delivered once and in order.
+     */
+    boolean isReliable();
+
+    /**
+     * Sets the zone registry the events sent are encoded against and the events received are resolved from, so
+     * events only carry their zone ID. The transports opened with {@link #newTransport} share the registry, so every
+     * endpoint of a subsystem resolves zones alike. Transports that do not encode messages ignore it.
+     *
+     * @param registry the registry the subsystem holds, or null to write zones in full.
+     */
+    default void setZoneRegistry(ZoneRegistry registry) {
+    }
+
+    /**
+     * Damages the next message sent on purpose, to simulate a message corrupted on the way, if the transport can. The
+     * receiver detects it and gets the intact copy sent again. Transports that do not check their messages cannot.
+     *
+     * @return true if the next message will be damaged, false if the fault has to be simulated another way.
+     */
+    default boolean corruptNextMessage() {
+        return false;
+    }
+
+    /**
+     * Opens a new transport of the same kind, for another endpoint of this process.
+     *
+     * @param name the name of the new transport, used when printing.
+     * @return the new transport.
+     */
+    Transport newTransport(String name) throws IOException;
+
+    /**
+     * Opens a transport of the kind selected by the "transport" system property, which is UDP by default.
+     *
+     * @param name the name of the transport, used when printing.
+     * @return the new transport.
+     */
+    static Transport open(String name) throws IOException {
+        String kind = System.getProperty("transport", "udp");
+        if ("inprocess".equalsIgnoreCase(kind)) {
+            return new InProcessTransport(name);
+        }
+        if ("tcp".equalsIgnoreCase(kind)) {
+            return new TcpTransport(name);
+        }
+        if ("shm".equalsIgnoreCase(kind)) {
+            return new SharedMemoryTransport(name);
+        }
+        return new UdpTransport(name);
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The UdpTransport class sends messages as datagrams to ports on the hosts set by the {@link Endpoints}. Each bound port has its own
+ * non-blocking datagram channel, and a single selector waits on all of them. Messages are encoded with the
+ * {@link WireCodec}, and those larger than one datagram are split by a {@link Fragmenter} and put back together on
+ * receipt. Byte arrays are sent as they are, and received datagrams that are neither a codec frame nor a fragment
+ * are handed back as byte arrays, which is how a {@link ReliableChannel} runs on top of this transport.
+ *
+ * Every datagram is sealed by a {@link FrameGuard} with a sequence number and a CRC32C. A datagram that arrives
+ * corrupted is answered with a NACK from the receiving port and retransmitted from the sender's retention buffer as
+ * soon as the sender next receives, which takes milliseconds for the subsystems that keep receiving. Datagrams that
+ * were not sealed are passed through unchecked.
+ */
+public class UdpTransport implements Transport {
+
+    private final String name;
+    private final Selector selector;
+    private final Map<Integer, DatagramChannel> channels = new LinkedHashMap<>();     // Channel of each bound port
+    private final Map<Integer, InetSocketAddress> addresses = new HashMap<>();        // Resolved address of each destination port
+    private final Fragmenter fragmenter = new Fragmenter();
+    private final Reassembler reassembler;
+    private final FrameGuard guard;
+    private DatagramChannel sendChannel = null; // Channel used to send before any port is bound
+    private AtomicReference<ZoneRegistry> zoneRegistry = new AtomicReference<>(); // Shared with the transports opened by newTransport
+
+    /**
+     * Constructs a UdpTransport that is not bound to any port yet.
+     *
+     * @param name The name of the transport, used when printing.
+     * @throws IOException If the selector could not be opened.
+     */
+    public UdpTransport(String name) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+        this.reassembler = new Reassembler(name);
+        this.guard = new FrameGuard(name);
+    }
+
+    @Override
+    public void bind(int port) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        channels.put(port, channel);
+    }
+
+    @Override
+    public void send(Object message, int port) throws IOException {
+        InetSocketAddress destination = addresses.get(port);
+        if (destination == null) {
+            destination = Endpoints.getAddress(port);
+            addresses.put(port, destination);
+        }
+        DatagramChannel channel = getSendChannel();
+        ChannelStats stats = ChannelStats.forPort(port);
+        if (message instanceof byte[]) {
+            stats.recordSent(channel.send(ByteBuffer.wrap(guard.seal((byte[]) message)), destination));
+            return;
+        }
+        long start = System.nanoTime();
+        byte[] encoded = WireCodec.encodeMessage(message, zoneRegistry.get());
+        stats.recordEncodeTime(System.nanoTime() - start);
+        for (byte[] datagram : fragmenter.fragment(encoded)) {
+            stats.recordSent(channel.send(ByteBuffer.wrap(guard.seal(datagram)), destination));
+        }
+    }
+
+    @Override
+    public Delivery receive(long timeout) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            for (Map.Entry<Integer, DatagramChannel> entry : channels.entrySet()) {
+                Delivery delivery = receiveFrom(entry.getKey(), entry.getValue());
+                if (delivery != null) {
+                    return delivery;
+                }
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (timeout == 0) {
+                return null;
+            }
+            if (timeout > 0 && remaining <= 0) {
+                for (int port : channels.keySet()) {
+                    ChannelStats.forPort(port).recordTimeout();
+                }
+                return null;
+            }
+            awaitReadable(timeout < 0 ? 0 : remaining);
+        }
+    }
+
+    @Override
+    public boolean isReliable() {
+        return false;
+    }
+
+    @Override
+    public void setZoneRegistry(ZoneRegistry registry) {
+        zoneRegistry.set(registry);
+    }
+
+    @Override
+    public Transport newTransport(String name) throws IOException {
+        UdpTransport transport = new UdpTransport(name);
+        transport.zoneRegistry = zoneRegistry;
+        return transport;
+    }
+
+    /**
+     * Gets the socket of a bound port, for code that still needs the socket itself.
+     *
+     * @param port the bound port.
+     * @return the socket of the port, or null if the port is not bound.
+     */
+    public DatagramSocket getSocket(int port) {
+        DatagramChannel channel = channels.get(port);
+        return channel == null ? null : channel.socket();
+    }
+
+    @Override
+    public boolean corruptNextMessage() {
+        guard.corruptNext(); // The receiver detects the damaged datagram and gets the intact copy retransmitted
+        return true;
+    }
+
+    /**
+     * Closes the channels of every bound port and the selector.
+     */
+    @Override
+    public void close() throws IOException {
+        for (DatagramChannel channel : channels.values()) {
+            channel.close();
+        }
+        if (sendChannel != null) {
+            sendChannel.close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Waits until any open channel is readable. The channels are only registered with the selector while waiting,
+     * because a registered channel keeps its port until the selector runs again, and a socket returned by
+     * {@link #getSocket} may be closed while nobody is receiving. Messages that are already waiting never get here.
+     *
+     * @param timeout the maximum time to wait in milliseconds, 0 to wait forever.
+     */
+    private void awaitReadable(long timeout) throws IOException {
+        for (DatagramChannel channel : channels.values()) {
+            if (channel.isOpen()) {
+                channel.register(selector, SelectionKey.OP_READ);
+            }
+        }
+        selector.select(timeout);
+        for (SelectionKey key : selector.keys()) {
+            key.cancel();
+        }
+        selector.selectNow(); // Deregisters the cancelled keys
+    }
+
+    /**
+     * Receives one datagram from a channel without blocking and turns it into a delivery.
+     *
+     * @return the delivery, or null if no datagram was waiting or the datagram did not complete a message.
+     */
+    private Delivery receiveFrom(int port, DatagramChannel channel) throws IOException {
+        while (true) {
+            ByteBuffer buffer = BufferPool.RECEIVE.acquire();
+            try {
+                SocketAddress source = channel.receive(buffer);
+                if (source == null) {
+                    return null;
+                }
+                ChannelStats stats = ChannelStats.forPort(port);
+                if (!buffer.hasRemaining()) { // A datagram as large as the buffer may have lost its end
+                    stats.recordTruncated();
+                    System.out.println("[" + name + "] DROPPED TRUNCATED DATAGRAM ON PORT " + port);
+                    continue;
+                }
+                buffer.flip();
+                stats.recordReceived(buffer.remaining());
+                if (FrameGuard.isNack(buffer)) {
+                    retransmit(channel, source, buffer);
+                    continue;
+                }
+                if (FrameGuard.isSealed(buffer)) {
+                    FrameGuard.Verdict verdict = guard.open(source, buffer);
+                    if (verdict == FrameGuard.Verdict.CORRUPT) {
+                        stats.recordChecksumFailure();
+                        requestRetransmit(channel, source, buffer);
+                        continue;
+                    }
+                    if (verdict == FrameGuard.Verdict.DUPLICATE) {
+                        continue;
+                    }
+                }
+                Object message = decode(source, buffer, stats);
+                if (message != null) {
+                    return new Delivery(port, source, message);
+                }
+            } finally {
+                BufferPool.RECEIVE.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Answers a corrupted datagram with a NACK, so the sender retransmits it.
+     */
+    private void requestRetransmit(DatagramChannel channel, SocketAddress source, ByteBuffer datagram) throws IOException {
+        byte[] nack = guard.createNack(source, datagram);
+        if (nack != null) {
+            System.out.println("[" + name + "] DATAGRAM FAILED ITS CHECKSUM, REQUESTING RETRANSMIT FROM: " + source);
+            channel.send(ByteBuffer.wrap(nack), source);
+        }
+    }
+
+    /**
+     * Sends the retained copy of a datagram again to the receiver that NACKed it.
+     */
+    private void retransmit(DatagramChannel channel, SocketAddress receiver, ByteBuffer nack) throws IOException {
+        byte[] datagram = guard.retransmit(nack);
+        if (datagram != null) {
+            channel.send(ByteBuffer.wrap(datagram), receiver);
+            ChannelStats.forPort(((InetSocketAddress) receiver).getPort()).recordRetransmit();
+        }
+    }
+
+    /**
+     * Decodes a datagram, which is a codec frame, a fragment or a raw datagram.
+     *
+     * @return the message, or null if the datagram was a fragment that did not complete a message or was malformed.
+     */
+    private Object decode(SocketAddress source, ByteBuffer datagram, ChannelStats stats) {
+        if (!datagram.hasRemaining()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            byte first = datagram.get(datagram.position());
+            if (first == Fragmenter.FRAGMENT) {
+                byte[] message = reassembler.accept(source, datagram);
+                if (message == null) {
+                    return null;
+                }
+                Object decoded = WireCodec.decode(message, 0, message.length, zoneRegistry.get());
+                stats.recordDecodeTime(System.nanoTime() - start);
+                return decoded;
+            }
+            if (first == WireCodec.VERSION) {
+                Object decoded = WireCodec.decode(datagram, zoneRegistry.get());
+                stats.recordDecodeTime(System.nanoTime() - start);
+                return decoded;
+            }
+            byte[] raw = new byte[datagram.remaining()];
+            datagram.get(raw);
+            return raw;
+        } catch (StreamCorruptedException e) {
+            stats.recordDecodeFailure();
+            System.out.println("[" + name + "] DROPPED MALFORMED DATAGRAM: " + e.getMessage());
+            return null;
+        } catch (IOException e) {
+            stats.recordDecodeFailure();
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private DatagramChannel getSendChannel() throws IOException {
+        if (!channels.isEmpty()) {
+            return channels.values().iterator().next();
+        }
+        if (sendChannel == null) {
+            sendChannel = DatagramChannel.open();
+        }
+        return sendChannel;
+    }
+}
@@ -0,0 +1,891 @@
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * The WireCodec class is a compact, versioned binary codec used for every message sent between the subsystems.
+ * Each frame starts with a fixed header (version, message type, event ID, zone ID, severity, fault and remaining
+ * agent) followed by a body that depends on the message type. Unlike Java object serialization, no class
+ * descriptors are written and no new object stream is created for every message.
+ *
+ * The zone of an event is not written when it is held by the {@link ZoneRegistry} the frame is encoded against. Only
+ * the registry hash is written, and the receiver resolves the zone from the zone ID in the header using the registry
+ * it decodes against, if that registry has the same hash. Without a registry, zones are written in full.
+ */
+public final class WireCodec {
+
+    public static final byte VERSION = 2;      // Version of the frame layout, bumped whenever the layout changes
+    public static final int HEADER_SIZE = 16;  // Size in bytes of the fixed frame header
+    private static final byte NONE = -1;       // Written in place of an enum ordinal or string that is null
+    private static final int MAX_RANGE_IDS = 1 << 16; // Most IDs a list of ID ranges may expand to
+    private static final int MAX_STRING_BYTES = 0xFFFE; // Longest string in UTF-8 bytes, as an unsigned short length that is not NONE
+    private static final int ZONE_SIZE = 4 + 4 * 8;     // Zone ID and two corners
+
+    // How the zone of an event is carried
+    private static final byte ZONE_ABSENT = 0;    // The event has no zone
+    private static final byte ZONE_INLINE = 1;    // The zone coordinates follow
+    private static final byte ZONE_REFERENCE = 2; // Only the hash of the registry holding the zone follows
+
+    // Scratch buffer reused by each thread when encoding, so that encoding does not allocate a new stream per message
+    private static final ThreadLocal<ByteBuffer> SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(8192));
+
+    /**
+     * Writes the body of a frame after the header.
+     */
+    private interface BodyWriter {
+        void write(ByteBuffer buffer);
+    }
+
+    private WireCodec() {
+    }
+
+    /**
+     * Encodes an input event into a frame.
+     *
+     * @param event the input event being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeEvent(InputEvent event) {
+        return encodeEvent(event, (ZoneRegistry) null);
+    }
+
+    /**
+     * Encodes an input event into a frame, writing its zone as a reference when the registry holds it.
+     *
+     * @param event    the input event being encoded.
+     * @param registry the zone registry the receiver shares, or null to write the zone in full.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeEvent(InputEvent event, ZoneRegistry registry) {
+        return encode(MessageType.INPUT_EVENT, event, buffer -> writeEventBody(buffer, event, registry));
+    }
+
+    /**
+     * Encodes a relay package into a frame. The event of the package (if any) is carried in the frame header.
+     *
+     * @param relayPackage the relay package being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeRelayPackage(RelayPackage relayPackage) {
+        return encodeRelayPackage(relayPackage, null);
+    }
+
+    /**
+     * Encodes a relay package into a frame, writing the zone of its event as a reference when the registry holds it.
+     *
+     * @param relayPackage the relay package being encoded.
+     * @param registry     the zone registry the receiver shares, or null to write the zone in full.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeRelayPackage(RelayPackage relayPackage, ZoneRegistry registry) {
+        return encode(MessageType.RELAY_PACKAGE, relayPackage.getEvent(), buffer -> {
+            writeString(buffer, relayPackage.getRelayPackageID());
+            writeEnum(buffer, relayPackage.getReceiverSystem());
+            buffer.put((byte) (relayPackage.getEvent() == null ? 0 : 1));
+            if (relayPackage.getEvent() != null) {
+                writeEventBody(buffer, relayPackage.getEvent(), registry);
+            }
+            writeZones(buffer, relayPackage.getZone());
+        });
+    }
+
+    /**
+     * Encodes a list of zones into a frame.
+     *
+     * @param zones the zones being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeZones(List<Zone> zones) {
+        return encode(MessageType.ZONE_LIST, null, buffer -> writeZones(buffer, zones));
+    }
+
+    /**
+     * Encodes a list of drone statuses into a frame.
+     *
+     * @param statuses the drone statuses being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeDroneStatuses(List<DroneStatus> statuses) {
+        return encode(MessageType.DRONE_STATUS_LIST, null, buffer -> writeDroneStatuses(buffer, statuses));
+    }
+
+    /**
+     * Encodes the metrics map sent to the GUI into a frame.
+     *
+     * @param metrics the metrics keyed by name, with the drone utilizations stored under "utilizations".
+     * @return the encoded frame.
+     */
+    public static byte[] encodeMetrics(Map<String, Object> metrics) {
+        return encode(MessageType.METRICS, null, buffer -> writeMetrics(buffer, metrics));
+    }
+
+    /**
+     * Encodes a frame of the drone telemetry stream. Drone names are only written for keyframes, and positions are
+     * written as floats.
+     *
+     * @param frame the telemetry frame being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeDroneTelemetry(DroneTelemetryFrame frame) {
+        return encode(MessageType.DRONE_TELEMETRY, null, buffer -> writeDroneTelemetry(buffer, frame));
+    }
+
+    /**
+     * Encodes a zone registry into a frame, used to hand the registry to another subsystem.
+     *
+     * @param registry the zone registry being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeZoneRegistry(ZoneRegistry registry) {
+        return encode(MessageType.ZONE_REGISTRY, null, buffer -> {
+            buffer.putInt(registry.getHash());
+            writeZones(buffer, registry.getZones());
+        });
+    }
+
+    /**
+     * Encodes the acknowledgement that a zone registry was installed into a frame.
+     *
+     * @param hash the hash of the installed registry.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeZoneRegistryAck(int hash) {
+        return encode(MessageType.ZONE_REGISTRY_ACK, null, buffer -> buffer.putInt(hash));
+    }
+
+    /**
+     * Encodes a credit grant from the drone subsystem into a frame.
+     *
+     * @param grant the credit grant being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeCreditGrant(CreditGrant grant) {
+        return encode(MessageType.CREDIT_GRANT, null, buffer -> buffer.putInt(grant.getSession()).putLong(grant.getLimit()));
+    }
+
+    /**
+     * Encodes a batch of events into a frame. Each event is written with the header fields it would have in a frame
+     * of its own, followed by its body.
+     *
+     * @param batch the event batch being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeEventBatch(EventBatch batch) {
+        return encodeEventBatch(batch, null);
+    }
+
+    /**
+     * Encodes a batch of events into a frame, writing the zone of each event as a reference when the registry holds it.
+     *
+     * @param batch    the event batch being encoded.
+     * @param registry the zone registry the receiver shares, or null to write the zones in full.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeEventBatch(EventBatch batch, ZoneRegistry registry) {
+        return encode(MessageType.EVENT_BATCH, null, buffer -> {
+            buffer.putInt(batch.getBatchID());
+            buffer.putInt(batch.getEvents().size());
+            for (InputEvent event : batch.getEvents()) {
+                writeEventFields(buffer, event);
+                writeEventBody(buffer, event, registry);
+            }
+        });
+    }
+
+    /**
+     * Encodes the acknowledgement of the events of a batch into a frame.
+     *
+     * @param ack the acknowledgement being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeEventBatchAck(EventBatch.Ack ack) {
+        return encode(MessageType.EVENT_BATCH_ACK, null, buffer -> {
+            buffer.putInt(ack.getBatchID());
+            buffer.putInt(ack.getEventIDs().length);
+            for (int eventID : ack.getEventIDs()) {
+                buffer.putInt(eventID);
+            }
+        });
+    }
+
+    /**
+     * Encodes a batch of confirmations into a frame. The completed and the faulted event IDs are each written as a
+     * count of ranges followed by the first ID and the length of every range.
+     *
+     * @param batch the confirmations being encoded.
+     * @return the encoded frame.
+     */
+    public static byte[] encodeConfirmationBatch(ConfirmationBatch batch) {
+        return encode(MessageType.CONFIRMATION_BATCH, null, buffer -> {
+            writeIdRanges(buffer, batch.getCompletedIDs());
+            writeIdRanges(buffer, batch.getFaultedIDs());
+        });
+    }
+
+    /**
+     * Encodes any message that {@link #decode(ByteBuffer)} can return, picking the frame type from its class.
+     *
+     * @param message the message being encoded.
+     * @return the encoded frame.
+     * @throws IllegalArgumentException if the message has no frame type.
+     */
+    public static byte[] encodeMessage(Object message) {
+        return encodeMessage(message, null);
+    }
+
+    /**
+     * Encodes any message that {@link #decode(ByteBuffer)} can return, picking the frame type from its class, and
+     * writing the zones of its events as references when the registry holds them.
+     *
+     * @param message  the message being encoded.
+     * @param registry the zone registry the receiver shares, or null to write zones in full.
+     * @return the encoded frame.
+     * @throws IllegalArgumentException if the message has no frame type.
+     */
+    @SuppressWarnings("unchecked")
+    public static byte[] encodeMessage(Object message, ZoneRegistry registry) {
+        if (message instanceof InputEvent) {
+            return encodeEvent((InputEvent) message, registry);
+        } else if (message instanceof RelayPackage) {
+            return encodeRelayPackage((RelayPackage) message, registry);
+        } else if (message instanceof ZoneRegistry) {
+            return encodeZoneRegistry((ZoneRegistry) message);
+        } else if (message instanceof ZoneRegistry.Ack) {
+            return encodeZoneRegistryAck(((ZoneRegistry.Ack) message).getHash());
+        } else if (message instanceof CreditGrant) {
+            return encodeCreditGrant((CreditGrant) message);
+        } else if (message instanceof EventBatch) {
+            return encodeEventBatch((EventBatch) message, registry);
+        } else if (message instanceof EventBatch.Ack) {
+            return encodeEventBatchAck((EventBatch.Ack) message);
+        } else if (message instanceof ConfirmationBatch) {
+            return encodeConfirmationBatch((ConfirmationBatch) message);
+        } else if (message instanceof DroneTelemetryFrame) {
+            return encodeDroneTelemetry((DroneTelemetryFrame) message);
+        } else if (message instanceof Map) {
+            return encodeMetrics((Map<String, Object>) message);
+        } else if (message instanceof List) {
+            List<?> list = (List<?>) message;
+            if (list.isEmpty() || list.get(0) instanceof Zone) {
+                return encodeZones((List<Zone>) list);
+            } else if (list.get(0) instanceof DroneStatus) {
+                return encodeDroneStatuses((List<DroneStatus>) list);
+            }
+        }
+        throw new IllegalArgumentException("No frame type for " + (message == null ? "null" : message.getClass().getSimpleName()));
+    }
+
+    /**
+     * Encodes an input event into a frame written at the position of the given buffer.
+     *
+     * @param event  the input event being encoded.
+     * @param target the buffer the frame is written into.
+     * @throws BufferOverflowException if the frame does not fit in the buffer.
+     */
+    public static void encodeEvent(InputEvent event, ByteBuffer target) {
+        encodeInto(target, MessageType.INPUT_EVENT, event, buffer -> writeEventBody(buffer, event, null));
+    }
+
+    /**
+     * Encodes a list of zones into a frame written at the position of the given buffer.
+     *
+     * @param zones  the zones being encoded.
+     * @param target the buffer the frame is written into.
+     * @throws BufferOverflowException if the frame does not fit in the buffer.
+     */
+    public static void encodeZones(List<Zone> zones, ByteBuffer target) {
+        encodeInto(target, MessageType.ZONE_LIST, null, buffer -> writeZones(buffer, zones));
+    }
+
+    /**
+     * Encodes a list of drone statuses into a frame written at the position of the given buffer.
+     *
+     * @param statuses the drone statuses being encoded.
+     * @param target   the buffer the frame is written into.
+     * @throws BufferOverflowException if the frame does not fit in the buffer.
+     */
+    public static void encodeDroneStatuses(List<DroneStatus> statuses, ByteBuffer target) {
+        encodeInto(target, MessageType.DRONE_STATUS_LIST, null, buffer -> writeDroneStatuses(buffer, statuses));
+    }
+
+    /**
+     * Encodes the metrics map into a frame written at the position of the given buffer.
+     *
+     * @param metrics the metrics keyed by name, with the drone utilizations stored under "utilizations".
+     * @param target  the buffer the frame is written into.
+     * @throws BufferOverflowException if the frame does not fit in the buffer.
+     */
+    public static void encodeMetrics(Map<String, Object> metrics, ByteBuffer target) {
+        encodeInto(target, MessageType.METRICS, null, buffer -> writeMetrics(buffer, metrics));
+    }
+
+    /**
+     * Encodes a frame of the drone telemetry stream at the position of the given buffer.
+     *
+     * @param frame  the telemetry frame being encoded.
+     * @param target the buffer the frame is written into.
+     * @throws BufferOverflowException if the frame does not fit in the buffer.
+     */
+    public static void encodeDroneTelemetry(DroneTelemetryFrame frame, ByteBuffer target) {
+        encodeInto(target, MessageType.DRONE_TELEMETRY, null, buffer -> writeDroneTelemetry(buffer, frame));
+    }
+
+    /**
+     * Decodes a frame that is expected to hold an input event.
+     *
+     * @param data   the array holding the frame.
+     * @param offset the offset of the frame in the array.
+     * @param length the length of the frame.
+     * @return the decoded input event.
+     * @throws IOException if the frame is malformed or does not hold an input event.
+     */
+    public static InputEvent decodeEvent(byte[] data, int offset, int length) throws IOException {
+        return expect(decode(data, offset, length), InputEvent.class);
+    }
+
+    /**
+     * Decodes a frame that is expected to hold a relay package.
+     *
+     * @param data   the array holding the frame.
+     * @param offset the offset of the frame in the array.
+     * @param length the length of the frame.
+     * @return the decoded relay package.
+     * @throws IOException if the frame is malformed or does not hold a relay package.
+     */
+    public static RelayPackage decodeRelayPackage(byte[] data, int offset, int length) throws IOException {
+        return decodeRelayPackage(data, offset, length, null);
+    }
+
+    /**
+     * Decodes a frame that is expected to hold a relay package, resolving a zone written as a reference from the
+     * registry.
+     *
+     * @param data     the array holding the frame.
+     * @param offset   the offset of the frame in the array.
+     * @param length   the length of the frame.
+     * @param registry the zone registry to resolve zones from, or null.
+     * @return the decoded relay package.
+     * @throws IOException if the frame is malformed or does not hold a relay package.
+     */
+    public static RelayPackage decodeRelayPackage(byte[] data, int offset, int length, ZoneRegistry registry) throws IOException {
+        return expect(decode(data, offset, length, registry), RelayPackage.class);
+    }
+
+    /**
+     * Decodes a frame that is expected to hold an input event from the current position of a buffer.
+     *
+     * @param buffer the buffer holding the frame.
+     * @return the decoded input event.
+     * @throws IOException if the frame is malformed or does not hold an input event.
+     */
+    public static InputEvent decodeEvent(ByteBuffer buffer) throws IOException {
+        return decodeEvent(buffer, null);
+    }
+
+    /**
+     * Decodes a frame that is expected to hold an input event from the current position of a buffer, resolving a
+     * zone written as a reference from the registry.
+     *
+     * @param buffer   the buffer holding the frame.
+     * @param registry the zone registry to resolve zones from, or null.
+     * @return the decoded input event.
+     * @throws IOException if the frame is malformed or does not hold an input event.
+     */
+    public static InputEvent decodeEvent(ByteBuffer buffer, ZoneRegistry registry) throws IOException {
+        return expect(decode(buffer, registry), InputEvent.class);
+    }
+
+    /**
+     * Decodes a frame that is expected to hold a relay package from the current position of a buffer.
+     *
+     * @param buffer the buffer holding the frame.
+     * @return the decoded relay package.
+     * @throws IOException if the frame is malformed or does not hold a relay package.
+     */
+    public static RelayPackage decodeRelayPackage(ByteBuffer buffer) throws IOException {
+        return expect(decode(buffer), RelayPackage.class);
+    }
+
+    /**
+     * Decodes any frame.
+     *
+     * @param data   the array holding the frame.
+     * @param offset the offset of the frame in the array.
+     * @param length the length of the frame.
+     * @return the decoded message, which is an InputEvent, RelayPackage, List of Zone, List of DroneStatus,
+     *         metrics Map, DroneTelemetryFrame, ZoneRegistry, ZoneRegistry.Ack, CreditGrant, EventBatch,
+     *         EventBatch.Ack or ConfirmationBatch.
+     * @throws IOException if the frame is malformed.
+     */
+    public static Object decode(byte[] data, int offset, int length) throws IOException {
+        return decode(data, offset, length, (ZoneRegistry) null);
+    }
+
+    /**
+     * Decodes any frame, resolving the zones written as references from the registry.
+     *
+     * @param data     the array holding the frame.
+     * @param offset   the offset of the frame in the array.
+     * @param length   the length of the frame.
+     * @param registry the zone registry to resolve zones from, or null.
+     * @return the decoded message, as {@link #decode(byte[], int, int)} returns it.
+     * @throws IOException if the frame is malformed.
+     */
+    public static Object decode(byte[] data, int offset, int length, ZoneRegistry registry) throws IOException {
+        return decode(ByteBuffer.wrap(data, offset, length), registry);
+    }
+
+    /**
+     * Decodes any frame from the current position of a buffer.
+     *
+     * @param buffer the buffer holding the frame.
+     * @return the decoded message, which is an InputEvent, RelayPackage, List of Zone, List of DroneStatus,
+     *         metrics Map, DroneTelemetryFrame, ZoneRegistry, ZoneRegistry.Ack, CreditGrant, EventBatch,
+     *         EventBatch.Ack or ConfirmationBatch.
+     * @throws IOException if the frame is malformed.
+     */
+    public static Object decode(ByteBuffer buffer) throws IOException {
+        return decode(buffer, (ZoneRegistry) null);
+    }
+
+    /**
+     * Decodes a frame that holds a message of the given type.
+     *
+     * @param data   the array holding the frame.
+     * @param offset the offset of the frame in the array.
+     * @param length the length of the frame.
+     * @param type   the type of message the frame has to hold.
+     * @param <T>    the type of message.
+     * @return the decoded message.
+     * @throws IOException if the frame is malformed or holds another type of message.
+     */
+    public static <T> T decode(byte[] data, int offset, int length, Class<T> type) throws IOException {
+        return expect(decode(data, offset, length), type);
+    }
+
+    /**
+     * Decodes a frame that holds a message of the given type from the current position of a buffer.
+     *
+     * @param buffer the buffer holding the frame.
+     * @param type   the type of message the frame has to hold.
+     * @param <T>    the type of message.
+     * @return the decoded message.
+     * @throws IOException if the frame is malformed or holds another type of message.
+     */
+    public static <T> T decode(ByteBuffer buffer, Class<T> type) throws IOException {
+        return expect(decode(buffer), type);
+    }
+
+    /**
+     * Decodes any frame from the current position of a buffer, resolving the zones written as references from the
+     * registry. A zone referenced from another registry is left unresolved.
+     *
+     * @param buffer   the buffer holding the frame.
+     * @param registry the zone registry to resolve zones from, or null.
+     * @return the decoded message, as {@link #decode(ByteBuffer)} returns it.
+     * @throws IOException if the frame is malformed.
+     */
+    public static Object decode(ByteBuffer buffer, ZoneRegistry registry) throws IOException {
+        try {
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new StreamCorruptedException("Unsupported frame version: " + version);
+            }
+            MessageType type = readEnum(buffer, MessageType.values());
+            if (type == null) {
+                throw new StreamCorruptedException("Missing message type");
+            }
+
+            // Fixed header fields
+            int eventID = buffer.getInt();
+            int zoneId = buffer.getInt();
+            Severity severity = readEnum(buffer, Severity.values());
+            FaultType faultType = readEnum(buffer, FaultType.values());
+            int remainingAgentNeeded = buffer.getInt();
+
+            switch (type) {
+                case INPUT_EVENT:
+                    return readEventBody(buffer, eventID, zoneId, severity, faultType, remainingAgentNeeded, registry);
+                case RELAY_PACKAGE:
+                    String relayPackageID = readString(buffer);
+                    Systems receiverSystem = readEnum(buffer, Systems.values());
+                    InputEvent event = null;
+                    if (buffer.get() != 0) {
+                        event = readEventBody(buffer, eventID, zoneId, severity, faultType, remainingAgentNeeded, registry);
+                    }
+                    return new RelayPackage(relayPackageID, receiverSystem, event, readZones(buffer));
+                case ZONE_LIST:
+                    return readZones(buffer);
+                case DRONE_STATUS_LIST:
+                    int count = readCount(buffer, 2 + 2 + 2 * 8); // Two strings and a position
+                    List<DroneStatus> statuses = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        statuses.add(new DroneStatus(readString(buffer), readString(buffer), buffer.getDouble(), buffer.getDouble()));
+                    }
+                    return statuses;
+                case METRICS:
+                    Map<String, Object> metrics = new HashMap<>();
+                    metrics.put("droneResponseTime", buffer.getDouble());
+                    metrics.put("fireExtinguishedResponseTime", buffer.getDouble());
+                    metrics.put("throughput", buffer.getDouble());
+                    int droneCount = readCount(buffer, 2 + 8); // A name and a utilization
+                    Map<String, Double> utilizations = new HashMap<>();
+                    for (int i = 0; i < droneCount; i++) {
+                        utilizations.put(readString(buffer), buffer.getDouble());
+                    }
+                    metrics.put("utilizations", utilizations);
+                    return metrics;
+                case DRONE_TELEMETRY:
+                    return readDroneTelemetry(buffer);
+                case ZONE_REGISTRY:
+                    int hash = buffer.getInt();
+                    ZoneRegistry received = new ZoneRegistry(readZones(buffer));
+                    if (received.getHash() != hash) {
+                        throw new StreamCorruptedException("Zone registry does not match its hash");
+                    }
+                    return received;
+                case ZONE_REGISTRY_ACK:
+                    return new ZoneRegistry.Ack(buffer.getInt());
+                case CREDIT_GRANT:
+                    return new CreditGrant(buffer.getInt(), buffer.getLong());
+                case EVENT_BATCH:
+                    int batchID = buffer.getInt();
+                    int eventCount = readCount(buffer, HEADER_SIZE); // Every event takes at least as many bytes as a frame header
+                    List<InputEvent> events = new ArrayList<>(eventCount);
+                    for (int i = 0; i < eventCount; i++) {
+                        int batchEventID = buffer.getInt();
+                        int batchZoneId = buffer.getInt();
+                        Severity batchSeverity = readEnum(buffer, Severity.values());
+                        FaultType batchFaultType = readEnum(buffer, FaultType.values());
+                        events.add(readEventBody(buffer, batchEventID, batchZoneId, batchSeverity, batchFaultType, buffer.getInt(), registry));
+                    }
+                    return new EventBatch(batchID, events);
+                case EVENT_BATCH_ACK:
+                    int ackedBatchID = buffer.getInt();
+                    int[] eventIDs = new int[readCount(buffer, 4)];
+                    for (int i = 0; i < eventIDs.length; i++) {
+                        eventIDs[i] = buffer.getInt();
+                    }
+                    return new EventBatch.Ack(ackedBatchID, eventIDs);
+                case CONFIRMATION_BATCH:
+                    int[] completedIDs = readIdRanges(buffer);
+                    return new ConfirmationBatch(completedIDs, readIdRanges(buffer));
+                default:
+                    throw new StreamCorruptedException("Unknown message type: " + type);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new StreamCorruptedException("Truncated or malformed frame: " + e);
+        }
+    }
+
+    /**
+     * Writes the header and body of a frame into the thread's scratch buffer and copies out the frame.
+     * The scratch buffer is doubled whenever a frame does not fit.
+     */
+    private static byte[] encode(MessageType type, InputEvent headerEvent, BodyWriter body) {
+        ByteBuffer buffer = SCRATCH.get();
+        while (true) {
+            try {
+                buffer.clear();
+                encodeInto(buffer, type, headerEvent, body);
+                buffer.flip();
+                byte[] frame = new byte[buffer.remaining()];
+                buffer.get(frame);
+                return frame;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                SCRATCH.set(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes the header and body of a frame at the position of the given buffer. If the frame does not fit or cannot
+     * be written, the position of the buffer is left where it was.
+     */
+    private static void encodeInto(ByteBuffer buffer, MessageType type, InputEvent headerEvent, BodyWriter body) {
+        int start = buffer.position();
+        try {
+            writeHeader(buffer, type, headerEvent);
+            body.write(buffer);
+        } catch (BufferOverflowException | IllegalArgumentException e) {
+            buffer.position(start);
+            throw e;
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buffer, MessageType type, InputEvent event) {
+        buffer.put(VERSION);
+        writeEnum(buffer, type);
+        if (event != null) {
+            writeEventFields(buffer, event);
+        } else {
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.put(NONE);
+            buffer.put(NONE);
+            buffer.putInt(0);
+        }
+    }
+
+    private static void writeEventFields(ByteBuffer buffer, InputEvent event) {
+        buffer.putInt(event.getEventID());
+        buffer.putInt(event.getZoneId());
+        writeEnum(buffer, event.getSeverity());
+        writeEnum(buffer, event.getFaultType());
+        buffer.putInt(event.getRemainingAgentNeeded());
+    }
+
+    private static void writeEventBody(ByteBuffer buffer, InputEvent event, ZoneRegistry registry) {
+        writeEnum(buffer, event.getEventType());
+        writeEnum(buffer, event.getStatus());
+        buffer.putLong(event.getTime() == null ? -1 : event.getTime().toNanoOfDay());
+        buffer.putShort((short) event.getInitialSeverity());
+        writeString(buffer, event.getHandlingDrone());
+
+        Zone zone = event.getZone();
+        if (zone == null) {
+            buffer.put(ZONE_ABSENT);
+        } else if (registry != null && zone.getZoneID() == event.getZoneId() && registry.contains(zone)) {
+            buffer.put(ZONE_REFERENCE);
+            buffer.putInt(registry.getHash());
+        } else {
+            buffer.put(ZONE_INLINE);
+            writeZone(buffer, zone);
+        }
+    }
+
+    private static InputEvent readEventBody(ByteBuffer buffer, int eventID, int zoneId, Severity severity,
+                                            FaultType faultType, int remainingAgentNeeded, ZoneRegistry registry) {
+        EventType eventType = readEnum(buffer, EventType.values());
+        Status status = readEnum(buffer, Status.values());
+        long nanoOfDay = buffer.getLong();
+        int initialSeverity = buffer.getShort();
+        String handlingDrone = readString(buffer);
+
+        Zone zone = null;
+        byte zoneFormat = buffer.get();
+        if (zoneFormat == ZONE_INLINE) {
+            zone = readZone(buffer);
+        } else if (zoneFormat == ZONE_REFERENCE) {
+            int registryHash = buffer.getInt();
+            if (registry != null && registry.getHash() == registryHash) {
+                zone = registry.getZone(zoneId);
+            } // Otherwise the receiver resolves the zone by ID once it holds the matching registry
+        }
+
+        InputEvent event = new InputEvent(eventID, nanoOfDay < 0 ? null : LocalTime.ofNanoOfDay(nanoOfDay), zoneId,
+                eventType, severity, initialSeverity, status, faultType);
+        event.setRemainingAgentNeeded(remainingAgentNeeded);
+        event.setHandlingDrone(handlingDrone);
+        event.setZone(zone);
+        return event;
+    }
+
+    private static void writeDroneStatuses(ByteBuffer buffer, List<DroneStatus> statuses) {
+        buffer.putInt(statuses.size());
+        for (DroneStatus status : statuses) {
+            writeString(buffer, status.getDroneName());
+            writeString(buffer, status.getState());
+            buffer.putDouble(status.getX());
+            buffer.putDouble(status.getY());
+        }
+    }
+
+    private static void writeDroneTelemetry(ByteBuffer buffer, DroneTelemetryFrame frame) {
+        buffer.putInt(frame.getStreamId());
+        buffer.putInt(frame.getSequence());
+        buffer.put((byte) (frame.getShard() << 1 | (frame.isKeyframe() ? 1 : 0))); // Flags: keyframe bit, then the shard
+        buffer.putShort((short) frame.getEntries().size());
+        for (DroneTelemetryFrame.Entry entry : frame.getEntries()) {
+            buffer.putShort((short) entry.getIndex());
+            if (frame.isKeyframe()) {
+                writeString(buffer, entry.getDroneName());
+            }
+            writeEnum(buffer, entry.getState());
+            buffer.putFloat(entry.getX());
+            buffer.putFloat(entry.getY());
+        }
+    }
+
+    private static DroneTelemetryFrame readDroneTelemetry(ByteBuffer buffer) {
+        int streamId = buffer.getInt();
+        int sequence = buffer.getInt();
+        int flags = buffer.get();
+        boolean keyframe = (flags & 1) != 0;
+        int count = buffer.getShort() & 0xFFFF;
+        List<DroneTelemetryFrame.Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = buffer.getShort() & 0xFFFF;
+            String droneName = keyframe ? readString(buffer) : null;
+            DroneStateType state = readEnum(buffer, DroneStateType.values());
+            entries.add(new DroneTelemetryFrame.Entry(index, droneName, state, buffer.getFloat(), buffer.getFloat()));
+        }
+        return new DroneTelemetryFrame(flags >>> 1, streamId, sequence, keyframe, entries);
+    }
+
+    private static void writeMetrics(ByteBuffer buffer, Map<String, Object> metrics) {
+        buffer.putDouble(((Number) metrics.get("droneResponseTime")).doubleValue());
+        buffer.putDouble(((Number) metrics.get("fireExtinguishedResponseTime")).doubleValue());
+        buffer.putDouble(((Number) metrics.get("throughput")).doubleValue());
+        Map<?, ?> utilizations = (Map<?, ?>) metrics.get("utilizations");
+        buffer.putInt(utilizations.size());
+        for (Map.Entry<?, ?> entry : utilizations.entrySet()) {
+            writeString(buffer, (String) entry.getKey());
+            buffer.putDouble(((Number) entry.getValue()).doubleValue());
+        }
+    }
+
+    private static void writeZones(ByteBuffer buffer, List<Zone> zones) {
+        if (zones == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(zones.size());
+        for (Zone zone : zones) {
+            writeZone(buffer, zone);
+        }
+    }
+
+    /**
+     * Reads the number of entries that follow, each taking at least the given number of bytes, and checks that they
+     * can fit in what is left of the frame, so a damaged count never allocates a huge array.
+     */
+    private static int readCount(ByteBuffer buffer, int minEntrySize) {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * minEntrySize > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    /**
+     * Writes sorted IDs as a count of ranges followed by the first ID and the length of every range of consecutive
+     * IDs.
+     */
+    private static void writeIdRanges(ByteBuffer buffer, int[] ids) {
+        int countPosition = buffer.position();
+        buffer.putInt(0);
+        int ranges = 0;
+        for (int i = 0; i < ids.length; ) {
+            int start = i;
+            while (i + 1 < ids.length && ids[i + 1] == ids[i] + 1) {
+                i++;
+            }
+            buffer.putInt(ids[start]).putInt(++i - start);
+            ranges++;
+        }
+        buffer.putInt(countPosition, ranges);
+    }
+
+    /**
+     * Reads IDs written by {@link #writeIdRanges}. The ranges may not add up to more than {@link #MAX_RANGE_IDS} IDs,
+     * so a damaged length never allocates a huge array.
+     */
+    private static int[] readIdRanges(ByteBuffer buffer) {
+        int ranges = readCount(buffer, 8);
+        int[] starts = new int[ranges];
+        int[] lengths = new int[ranges];
+        long total = 0;
+        for (int i = 0; i < ranges; i++) {
+            starts[i] = buffer.getInt();
+            lengths[i] = buffer.getInt();
+            total += lengths[i];
+            if (lengths[i] <= 0 || total > MAX_RANGE_IDS) {
+                throw new IllegalArgumentException("Bad range of " + lengths[i] + " IDs");
+            }
+        }
+        int[] ids = new int[(int) total];
+        int next = 0;
+        for (int i = 0; i < ranges; i++) {
+            for (int j = 0; j < lengths[i]; j++) {
+                ids[next++] = starts[i] + j;
+            }
+        }
+        return ids;
+    }
+
+    private static ArrayList<Zone> readZones(ByteBuffer buffer) {
+        if (buffer.getInt(buffer.position()) < 0) {
+            buffer.getInt(); // Written for a null list
+            return null;
+        }
+        int count = readCount(buffer, ZONE_SIZE);
+        ArrayList<Zone> zones = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            zones.add(readZone(buffer));
+        }
+        return zones;
+    }
+
+    private static void writeZone(ByteBuffer buffer, Zone zone) {
+        buffer.putInt(zone.getZoneID());
+        buffer.putDouble(zone.getZoneStart().getX());
+        buffer.putDouble(zone.getZoneStart().getY());
+        buffer.putDouble(zone.getZoneEnd().getX());
+        buffer.putDouble(zone.getZoneEnd().getY());
+    }
+
+    private static Zone readZone(ByteBuffer buffer) {
+        int zoneID = buffer.getInt();
+        Coordinate zoneStart = new Coordinate(buffer.getDouble(), buffer.getDouble());
+        Coordinate zoneEnd = new Coordinate(buffer.getDouble(), buffer.getDouble());
+        return new Zone(zoneID, zoneStart, zoneEnd);
+    }
+
+    /**
+     * Writes a string as its length in UTF-8 bytes, an unsigned short, followed by the bytes.
+     *
+     * @throws IllegalArgumentException if the string is longer than {@link #MAX_STRING_BYTES} bytes.
+     */
+    private static void writeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort(NONE);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is longer than the " + MAX_STRING_BYTES + " a frame can hold");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == (NONE & 0xFFFF)) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeEnum(ByteBuffer buffer, Enum<?> value) {
+        buffer.put(value == null ? NONE : (byte) value.ordinal());
+    }
+
+    private static <E extends Enum<E>> E readEnum(ByteBuffer buffer, E[] values) {
+        int ordinal = buffer.get();
+        if (ordinal == NONE) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException("Unknown ordinal " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static <T> T expect(Object message, Class<T> type) throws IOException {
+        if (!type.isInstance(message)) {
+            throw new StreamCorruptedException("Expected " + type.getSimpleName() + " but received "
+                    + (message == null ? "null" : message.getClass().getSimpleName()));
+        }
+        return type.cast(message);
+    }
+}
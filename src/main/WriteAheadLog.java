@@ -0,0 +1,617 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The WriteAheadLog class is an append-only log of records kept in memory-mapped segment files, so that a process can
+ * rebuild its state after a restart by replaying what it logged. Appending a record only copies it into the mapped
+ * segment; a flusher thread forces the segment to disk behind the writers, and every force covers all the records
+ * appended while the previous one ran (group commit). A record is safe from a crash of the process as soon as it is
+ * appended, since the mapped pages belong to the operating system, and safe from a crash of the host once it is forced,
+ * which {@link #sync} waits for.
+ *
+ * Each segment starts with a header holding its sequence number and whether it is a base segment, followed by
+ * records made of a length, a CRC32C and a type byte, then the payload. A zero length marks the end of the records; a
+ * record torn by a crash fails its checksum and is dropped along with anything after it. When a segment is full the
+ * log moves on to a new one. Once there are too many segments, the owner compacts the log: it writes its live state
+ * into a new base segment, and the segments before it are deleted once the whole state is forced. A compaction cut
+ * short by a crash is ignored on the next start, so the older segments are replayed instead.
+ *
+ * An owner that saves its state elsewhere, such as in a {@link CheckpointStore}, can instead note the
+ * {@link #getPosition position} of the log when it takes the state, replay only the records after that position on
+ * the next start, and {@link #truncate} the segments before it once the state is saved.
+ *
+ * A mapping is only released when the garbage collector gets to its buffer, and Windows refuses to delete a file that
+ * is still mapped, so the log drops the mapping of a segment itself before deleting its file. On a JDK that does not
+ * allow it, a segment file that cannot be deleted yet is renamed out of the log, and its deletion is tried again on
+ * the next one, when the log is closed and when it is opened again.
+ */
+public class WriteAheadLog {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4 << 20; // Default size of a segment file in bytes
+    public static final int DEFAULT_MAX_SEGMENTS = 4;       // Default number of segments before the log asks to be compacted
+
+    private static final int MAGIC = 0x574c4f47;            // "WLOG"
+    private static final int FLAGS_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_HEADER_SIZE = 9;        // length + CRC32C + type
+    private static final int BASE = 1;                      // Flag of a segment that starts with the whole state of the owner
+    private static final byte COMPACTED = -1;               // Type of the record closing the state written by a compaction
+    private static final String SUFFIX = ".wal";
+    private static final String DELETED = ".deleted";       // Added to the name of a segment file that could not be deleted yet
+    private static final MethodHandle UNMAP = findUnmap();  // Drops the mapping of a buffer, or null if the JDK does not allow it
+
+    /**
+     * Handles a record read back from the log.
+     */
+    public interface RecordHandler {
+        void accept(byte type, ByteBuffer payload) throws IOException;
+    }
+
+    /**
+     * Writes the live state of the owner of the log into it, as records of its own types.
+     */
+    public interface Snapshot {
+        void writeTo(WriteAheadLog log) throws IOException;
+    }
+
+    /**
+     * A segment file and its mapping.
+     */
+    private static class Segment {
+        private final long sequence;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long sequence, Path file, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private boolean isBase() {
+            return (buffer.getInt(FLAGS_OFFSET) & BASE) != 0;
+        }
+    }
+
+    private final String name;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final CRC32C crc = new CRC32C();
+    private final List<Segment> segments = new ArrayList<>(); // Live segments, oldest first; the last one is appended to
+    private final List<Path> undeleted = new ArrayList<>();   // Files of dropped segments that could not be deleted yet
+    private final Thread flusher;
+    private int writeOffset;          // Where the next record goes in the last segment
+    private int forcedOffset;         // End of the part of the last segment known to be on disk
+    private long appended = 0;        // Records appended since the log was opened
+    private long durable = 0;         // Records appended since the log was opened that are on disk
+    private long forces = 0;          // Number of times the log was forced to disk
+    private boolean closed = false;
+    private MappedByteBuffer forcing; // Buffer the flusher thread is forcing outside the lock, which must stay mapped
+
+    /**
+     * Opens the log kept in a directory, creating the directory if needed. Segments left behind by a compaction that
+     * did not finish, and segments made obsolete by the last one that did, are deleted.
+     *
+     * @param name        The name of the log, used for the flusher thread.
+     * @param directory   The directory holding the segment files.
+     * @param segmentSize The size of a segment file in bytes.
+     * @param maxSegments The number of segments past which {@link #needsCompaction} returns true.
+     * @throws IOException If the directory or a segment could not be opened.
+     */
+    public WriteAheadLog(String name, Path directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("Segment size must be at least 4096 bytes: " + segmentSize);
+        }
+        this.name = name;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(1, maxSegments);
+        Files.createDirectories(directory);
+        openSegments();
+        if (segments.isEmpty()) {
+            startSegment(0, false);
+        } else {
+            Segment last = segments.get(segments.size() - 1);
+            writeOffset = scan(last, HEADER_SIZE, null);
+            for (int offset = writeOffset; offset < last.buffer.capacity(); offset++) {
+                if (last.buffer.get(offset) != 0) {
+                    last.buffer.put(offset, (byte) 0); // Wipes a torn record, so no stale bytes follow the next one
+                }
+            }
+            forcedOffset = writeOffset;
+        }
+        this.flusher = new Thread(this::flushLoop, name + "-WAL-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Reads every record of the log back, oldest first. It is meant to be called once, before the first append.
+     *
+     * @param handler handles each record, with its payload between the position and the limit of the buffer.
+     * @return the number of records read.
+     * @throws IOException if the handler failed.
+     */
+    public long replay(RecordHandler handler) throws IOException {
+        return replay(0, handler);
+    }
+
+    /**
+     * Reads the records of the log from a position on, oldest first. It is meant to be called once, before the first
+     * append.
+     *
+     * @param position the position of the first record to read, as returned by {@link #getPosition}.
+     * @param handler  handles each record, with its payload between the position and the limit of the buffer.
+     * @return the number of records read.
+     * @throws IOException if the handler failed.
+     */
+    public synchronized long replay(long position, RecordHandler handler) throws IOException {
+        long[] count = {0};
+        for (Segment segment : segments) {
+            if (segment.sequence < position >>> 32) {
+                continue;
+            }
+            int from = segment.sequence == position >>> 32 ? Math.max(HEADER_SIZE, (int) position) : HEADER_SIZE;
+            scan(segment, from, (type, payload) -> {
+                if (type != COMPACTED) {
+                    handler.accept(type, payload);
+                    count[0]++;
+                }
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Appends a record to the log. The record is written to the mapped segment straight away, and forced to disk by
+     * the flusher thread along with the records appended around it.
+     *
+     * @param type    the type of the record, from 0 to 127.
+     * @param payload the payload of the record.
+     * @return the number of records appended since the log was opened, which {@link #sync} can wait for.
+     * @throws IOException if a new segment could not be started.
+     */
+    public synchronized long append(byte type, byte[] payload) throws IOException {
+        if (type < 0) {
+            throw new IllegalArgumentException("Record types are from 0 to 127: " + type);
+        }
+        return write(type, payload);
+    }
+
+    /**
+     * Waits until every record appended so far is on disk, sharing the force with the other records appended since the
+     * last one.
+     *
+     * @throws InterruptedIOException if the thread was interrupted while waiting.
+     */
+    public synchronized void sync() throws InterruptedIOException {
+        long target = appended;
+        notifyAll();
+        while (durable < target && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while syncing " + name);
+            }
+        }
+    }
+
+    /**
+     * Gets the position of the next record appended to the log, which only grows.
+     *
+     * @return the sequence number of the last segment in the high 32 bits, and the offset in it in the low 32 bits.
+     */
+    public synchronized long getPosition() {
+        return segments.get(segments.size() - 1).sequence << 32 | writeOffset;
+    }
+
+    /**
+     * Checks if the log still holds every record from a position on, so it can be replayed from there.
+     *
+     * @param position the position, as returned by {@link #getPosition}.
+     * @return true if no segment from the position on was deleted by {@link #truncate} or {@link #compact}.
+     */
+    public synchronized boolean holds(long position) {
+        return segments.get(0).sequence <= position >>> 32 && position <= getPosition();
+    }
+
+    /**
+     * Checks if the log holds every record since it was started or last compacted, so replaying it whole rebuilds the
+     * state of the owner. A log truncated after a checkpoint does not.
+     *
+     * @return true if the first segment is the first one ever written or a base segment.
+     */
+    public synchronized boolean holdsEverything() {
+        Segment first = segments.get(0);
+        return first.sequence == 0 || first.isBase();
+    }
+
+    /**
+     * Deletes the segments that only hold records before a position, once the owner saved its state as of that
+     * position elsewhere. The last segment is always kept.
+     *
+     * @param position the position the state was saved at, as returned by {@link #getPosition}.
+     * @throws InterruptedIOException if the thread was interrupted while waiting for a segment to be forced.
+     */
+    public synchronized void truncate(long position) throws InterruptedIOException {
+        Iterator<Segment> oldestFirst = segments.iterator();
+        while (oldestFirst.hasNext()) {
+            Segment segment = oldestFirst.next();
+            if (segment.sequence >= position >>> 32 || segment == segments.get(segments.size() - 1)) {
+                break;
+            }
+            oldestFirst.remove();
+            delete(segment);
+        }
+    }
+
+    /**
+     * Checks if the log has more segments than it should keep.
+     *
+     * @return true if the owner should call {@link #compact}.
+     */
+    public synchronized boolean needsCompaction() {
+        return segments.size() > maxSegments;
+    }
+
+    /**
+     * Compacts the log: starts a base segment, has the snapshot write the live state into it, forces it and deletes
+     * the segments before it. The owner must not change its state while the snapshot is written.
+     *
+     * @param snapshot writes the live state of the owner.
+     * @throws IOException if the state could not be written or forced.
+     */
+    public synchronized void compact(Snapshot snapshot) throws IOException {
+        List<Segment> obsolete = new ArrayList<>(segments);
+        long sequence = segments.get(segments.size() - 1).sequence + 1;
+        startSegment(sequence, true);
+        try {
+            snapshot.writeTo(this);
+            write(COMPACTED, new byte[0]);
+        } catch (IOException | RuntimeException e) {
+            // Drop the unfinished state and go on appending after the segments it was meant to replace
+            List<Segment> unfinished = segments.subList(obsolete.size(), segments.size());
+            List<Segment> dropped = new ArrayList<>(unfinished);
+            sequence = dropped.get(dropped.size() - 1).sequence + 1;
+            unfinished.clear();
+            for (Segment segment : dropped) {
+                delete(segment);
+            }
+            forcedOffset = writeOffset; // The segment written to is gone, and the one before it was forced when it was left
+            startSegment(sequence, false);
+            throw e;
+        }
+        force();
+        for (Segment segment : obsolete) {
+            segments.remove(segment);
+            delete(segment);
+        }
+    }
+
+    /**
+     * Gets the number of segment files of the log.
+     *
+     * @return the number of segments.
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Gets the number of times the log was forced to disk, which is much lower than the number of records appended
+     * when records are appended faster than a force takes.
+     *
+     * @return the number of forces.
+     */
+    public synchronized long getForceCount() {
+        return forces;
+    }
+
+    /**
+     * Gets the directory of the log.
+     *
+     * @return the directory holding the segment files.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Forces the records appended so far to disk and stops the flusher thread. The log cannot be appended to after.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        force();
+        closed = true;
+        notifyAll();
+        deleteUndeleted();
+    }
+
+    /**
+     * Maps the segment files found in the directory, and keeps the ones from the last complete base segment on.
+     */
+    private void openSegments() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(file -> file.getFileName().toString().endsWith(DELETED)).forEach(undeleted::add);
+        }
+        deleteUndeleted();
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().matches("\\d{20}\\" + SUFFIX)).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                System.out.println("[" + name + "] IGNORED " + file.getFileName() + ", NOT A LOG SEGMENT");
+                unmap(buffer);
+                continue;
+            }
+            segments.add(new Segment(buffer.getLong(SEQUENCE_OFFSET), file, buffer));
+        }
+
+        // Find the last base segment whose state was written in full; what follows an unfinished one was never used
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            if (!segments.get(i).isBase()) {
+                continue;
+            }
+            boolean[] complete = {false};
+            for (Segment segment : segments.subList(i, segments.size())) {
+                scan(segment, HEADER_SIZE, (type, payload) -> complete[0] |= type == COMPACTED);
+            }
+            List<Segment> dropped = complete[0] ? segments.subList(0, i) : segments.subList(i, segments.size());
+            for (Segment segment : dropped) {
+                delete(segment);
+            }
+            dropped.clear();
+            if (complete[0]) {
+                break;
+            }
+            i = segments.size(); // Look again for an older base segment
+        }
+    }
+
+    /**
+     * Drops the mapping of a segment that was taken out of the log and deletes its file, once the flusher thread is
+     * done forcing it. A file that cannot be deleted yet is renamed, so it is not taken for a segment on the next
+     * start, and deleted later.
+     *
+     * @throws InterruptedIOException if the thread was interrupted while waiting for the flusher thread.
+     */
+    private void delete(Segment segment) throws InterruptedIOException {
+        while (forcing == segment.buffer) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while deleting a segment of " + name);
+            }
+        }
+        unmap(segment.buffer);
+        deleteUndeleted();
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            Path renamed = segment.file.resolveSibling(segment.file.getFileName() + DELETED);
+            try {
+                Files.move(segment.file, renamed, StandardCopyOption.REPLACE_EXISTING);
+                undeleted.add(renamed);
+            } catch (IOException notRenamed) {
+                System.out.println("[" + name + "] COULD NOT DELETE " + segment.file.getFileName() + ", WILL RETRY");
+                undeleted.add(segment.file);
+            }
+        }
+    }
+
+    /**
+     * Deletes the files of dropped segments that could not be deleted so far.
+     */
+    private void deleteUndeleted() {
+        Iterator<Path> files = undeleted.iterator();
+        while (files.hasNext()) {
+            try {
+                Files.deleteIfExists(files.next());
+                files.remove();
+            } catch (IOException e) {
+                // Still mapped, which only the garbage collector can undo on this JDK
+            }
+        }
+    }
+
+    /**
+     * Drops the mapping of a buffer straight away, if the JDK allows it. The buffer must not be used after.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (UNMAP == null) {
+            return;
+        }
+        try {
+            UNMAP.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Looks up Unsafe.invokeCleaner, the only way to drop a mapping before the garbage collector does.
+     *
+     * @return a handle taking the buffer to unmap, or null if it is not available.
+     */
+    private static MethodHandle findUnmap() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // Mappings are then released by the garbage collector, and deletions retried until they are
+        }
+    }
+
+    /**
+     * Reads the records of a segment from an offset up to the first one that is missing or torn.
+     *
+     * @param from    the offset of the first record to read.
+     * @param handler handles each record, or null to only find the end of the records.
+     * @return the offset after the last good record.
+     */
+    private int scan(Segment segment, int from, RecordHandler handler) throws IOException {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int offset = from;
+        while (offset + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE - 1 + length > buffer.capacity()
+                    || checksum(buffer, offset + RECORD_HEADER_SIZE - 1, length) != buffer.getInt(offset + 4)) {
+                break;
+            }
+            if (handler != null) {
+                buffer.limit(offset + RECORD_HEADER_SIZE - 1 + length).position(offset + RECORD_HEADER_SIZE);
+                handler.accept(buffer.get(offset + RECORD_HEADER_SIZE - 1), buffer.slice().asReadOnlyBuffer());
+                buffer.clear();
+            }
+            offset += RECORD_HEADER_SIZE - 1 + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Writes a record at the end of the last segment, starting a new segment if it does not fit. The length is written
+     * last, so a record is never seen before the rest of it is in place.
+     */
+    private long write(byte type, byte[] payload) throws IOException {
+        if (closed) {
+            throw new IOException("Log " + name + " is closed");
+        }
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes is larger than a segment allows");
+        }
+        Segment segment = segments.get(segments.size() - 1);
+        if (writeOffset + recordSize > segment.buffer.capacity()) {
+            startSegment(segment.sequence + 1, false);
+            segment = segments.get(segments.size() - 1);
+        }
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.put(writeOffset + RECORD_HEADER_SIZE - 1, type);
+        buffer.put(writeOffset + RECORD_HEADER_SIZE, payload);
+        buffer.putInt(writeOffset + 4, checksum(buffer, writeOffset + RECORD_HEADER_SIZE - 1, payload.length + 1));
+        buffer.putInt(writeOffset, payload.length + 1);
+        writeOffset += recordSize;
+        if (appended++ == durable) {
+            notifyAll(); // Wakes up the flusher, which otherwise finds this record when its current force is done
+        }
+        return appended;
+    }
+
+    /**
+     * Forces the last segment and starts a new one after it. The segment is written under a temporary name and
+     * renamed, so a crash never leaves a segment without its header.
+     */
+    private void startSegment(long sequence, boolean base) throws IOException {
+        if (!segments.isEmpty()) {
+            force();
+        }
+        Path file = directory.resolve(String.format("%020d", sequence) + SUFFIX);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        buffer.putInt(FLAGS_OFFSET, base ? BASE : 0);
+        buffer.putLong(SEQUENCE_OFFSET, sequence);
+        buffer.putInt(0, MAGIC);
+        buffer.force(0, HEADER_SIZE);
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        segments.add(new Segment(sequence, file, buffer));
+        writeOffset = HEADER_SIZE;
+        forcedOffset = HEADER_SIZE;
+    }
+
+    /**
+     * Forces what was appended to the last segment to disk, from the calling thread.
+     */
+    private void force() {
+        MappedByteBuffer buffer = segments.get(segments.size() - 1).buffer;
+        if (writeOffset > forcedOffset) {
+            buffer.force(forcedOffset, writeOffset - forcedOffset);
+            forces++;
+        }
+        forcedOffset = writeOffset;
+        durable = appended;
+        notifyAll();
+    }
+
+    /**
+     * Forces the records appended since the last force whenever there are some, until the log is closed. The lock is
+     * not held while forcing, so writers go on appending and their records are forced together the next time around.
+     */
+    private void flushLoop() {
+        while (true) {
+            MappedByteBuffer buffer;
+            int from;
+            int to;
+            long upTo;
+            synchronized (this) {
+                while (!closed && durable == appended) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                buffer = segments.get(segments.size() - 1).buffer;
+                from = forcedOffset;
+                to = writeOffset;
+                upTo = appended;
+                forcing = buffer;
+            }
+            try {
+                buffer.force(from, to - from);
+            } finally {
+                synchronized (this) {
+                    forcing = null; // Lets a segment dropped meanwhile be unmapped
+                    notifyAll();
+                }
+            }
+            synchronized (this) {
+                forces++;
+                if (buffer == segments.get(segments.size() - 1).buffer) {
+                    forcedOffset = Math.max(forcedOffset, to);
+                }
+                durable = Math.max(durable, upTo);
+                notifyAll();
+            }
+        }
+    }
+
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        crc.reset();
+        crc.update(buffer.duplicate().limit(offset + length).position(offset));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,119 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * The ZoneRegistry class holds the zones of the system in a dense array indexed by zone ID, so that a zone can be
+ * looked up without a map. Every registry is identified by a hash of its contents, which acts as its version: two
+ * processes holding registries with the same hash hold the same zones. Once a registry is shared, events only carry
+ * their zone ID and the registry hash on the wire, and each process resolves the zone from its own registry.
+ *
+ * Each subsystem holds the registry it is currently using and hands it to its transports with
+ * {@link Transport#setZoneRegistry}, so several subsystems, or several scheduler shards, can share one process without
+ * resolving each other's zones.
+ */
+public class ZoneRegistry {
+
+    /**
+     * Acknowledges that a subsystem installed the registry with the given hash.
+     */
+    public static class Ack {
+        private final int hash;
+
+        /**
+         * Constructs an Ack.
+         *
+         * @param hash The hash of the registry that was installed.
+         */
+        public Ack(int hash) {
+            this.hash = hash;
+        }
+
+        /**
+         * Returns the hash of the registry that was installed.
+         *
+         * @return The registry hash.
+         */
+        public int getHash() {
+            return hash;
+        }
+    }
+
+    private final List<Zone> zones;  // Zones ordered by ID
+    private final Zone[] zonesById;  // Zones indexed by ID, with gaps left null
+    private final int hash;          // CRC32 of the zones, identifying this version of the registry
+
+    /**
+     * Constructs a ZoneRegistry holding the given zones.
+     *
+     * @param zones The zones of the system. Zone IDs must not be negative.
+     */
+    public ZoneRegistry(Collection<Zone> zones) {
+        List<Zone> sorted = new ArrayList<>(zones);
+        sorted.sort(Comparator.comparingInt(Zone::getZoneID));
+        int maxId = sorted.isEmpty() ? -1 : sorted.get(sorted.size() - 1).getZoneID();
+        if (!sorted.isEmpty() && sorted.get(0).getZoneID() < 0) {
+            throw new IllegalArgumentException("Zone IDs must not be negative");
+        }
+
+        this.zones = Collections.unmodifiableList(sorted);
+        this.zonesById = new Zone[maxId + 1];
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(36);
+        for (Zone zone : sorted) {
+            zonesById[zone.getZoneID()] = zone;
+            buffer.clear();
+            buffer.putInt(zone.getZoneID());
+            buffer.putDouble(zone.getZoneStart().getX()).putDouble(zone.getZoneStart().getY());
+            buffer.putDouble(zone.getZoneEnd().getX()).putDouble(zone.getZoneEnd().getY());
+            crc.update(buffer.array(), 0, buffer.position());
+        }
+        this.hash = (int) crc.getValue();
+    }
+
+    /**
+     * Looks up a zone by its ID.
+     *
+     * @param zoneId the ID of the zone.
+     * @return the zone, or null if the registry does not hold it.
+     */
+    public Zone getZone(int zoneId) {
+        return zoneId >= 0 && zoneId < zonesById.length ? zonesById[zoneId] : null;
+    }
+
+    /**
+     * Checks if the registry holds a zone with the same ID and coordinates as the given zone.
+     *
+     * @param zone the zone to check.
+     * @return true if the zone can be resolved from this registry.
+     */
+    public boolean contains(Zone zone) {
+        Zone held = getZone(zone.getZoneID());
+        if (held == zone) {
+            return true;
+        }
+        return held != null
+                && held.getZoneStart().getX() == zone.getZoneStart().getX()
+                && held.getZoneStart().getY() == zone.getZoneStart().getY()
+                && held.getZoneEnd().getX() == zone.getZoneEnd().getX()
+                && held.getZoneEnd().getY() == zone.getZoneEnd().getY();
+    }
+
+    /**
+     * Gets the zones held by the registry.
+     *
+     * @return the zones ordered by ID.
+     */
+    public List<Zone> getZones() {
+        return zones;
+    }
+
+    /**
+     * Gets the hash that identifies this version of the registry.
+     *
+     * @return the registry hash.
+     */
+    public int getHash() {
+        return hash;
+    }
+}
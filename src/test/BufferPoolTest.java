@@ -0,0 +1,45 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the BufferPool class.
+ */
+class BufferPoolTest {
+
+    /**
+     * Tests that a released buffer is handed out again, cleared.
+     */
+    @Test
+    void releasedBufferIsReused() {
+        BufferPool pool = new BufferPool(64, 2);
+        ByteBuffer buffer = pool.acquire();
+        assertTrue(buffer.isDirect());
+        buffer.putInt(42).flip();
+
+        pool.release(buffer);
+        ByteBuffer reused = pool.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(64, reused.limit());
+    }
+
+    /**
+     * Tests that buffers of the wrong kind are not taken and that at most the maximum number of idle buffers is kept.
+     */
+    @Test
+    void onlyMatchingBuffersAreKept() {
+        BufferPool pool = new BufferPool(64, 2, false);
+        pool.release(ByteBuffer.allocateDirect(64)); // Wrong kind
+        pool.release(ByteBuffer.allocate(32));       // Wrong size
+        assertEquals(0, pool.getIdleCount());
+
+        for (int i = 0; i < 3; i++) {
+            pool.release(ByteBuffer.allocate(64));
+        }
+        assertEquals(2, pool.getIdleCount());
+        assertTrue(pool.acquire().hasArray());
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the ChannelStats and LatencyHistogram classes, using a UdpTransport over the
+ * loopback interface to produce the traffic being counted.
+ */
+class ChannelStatsTest {
+
+    private UdpTransport receiver;
+    private UdpTransport sender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        receiver = new UdpTransport("Receiver");
+        receiver.bind(9210);
+        sender = new UdpTransport("Sender");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        receiver.close();
+        sender.close();
+    }
+
+    /**
+     * Tests that the histogram reports the count, the mean and percentiles within a factor of two.
+     */
+    @Test
+    void histogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(10990, histogram.getMeanNanos(), 0.001);
+        assertTrue(histogram.getPercentileNanos(50) >= 1000 && histogram.getPercentileNanos(50) < 2000);
+        assertTrue(histogram.getPercentileNanos(99) < 2000);
+        assertTrue(histogram.getPercentileNanos(100) >= 1_000_000 && histogram.getPercentileNanos(100) < 2_000_000);
+    }
+
+    /**
+     * Tests that the transport counts the packets and bytes it sends and receives, and the time spent encoding and
+     * decoding them.
+     */
+    @Test
+    void transportCountsTraffic() throws IOException {
+        ChannelStats stats = ChannelStats.forPort(9210);
+        long sent = stats.getPacketsSent();
+        long received = stats.getPacketsReceived();
+        long bytesReceived = stats.getBytesReceived();
+
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, FaultType.JAMMED);
+        sender.send(event, 9210);
+        assertNotNull(receiver.receive(2000));
+
+        assertSame(stats, ChannelStats.forPort(9210));
+        assertEquals(sent + 1, stats.getPacketsSent());
+        assertEquals(received + 1, stats.getPacketsReceived());
+        assertEquals(FrameGuard.HEADER_SIZE + WireCodec.encodeMessage(event).length, stats.getBytesReceived() - bytesReceived);
+        assertTrue(stats.getEncodeTimes().getCount() > 0);
+        assertTrue(stats.getDecodeTimes().getCount() > 0);
+        assertTrue(ChannelStats.report().contains("Port 9210"));
+    }
+
+    /**
+     * Tests that malformed and truncated datagrams and timed out receives are counted and do not stop the transport.
+     */
+    @Test
+    void transportCountsErrors() throws IOException {
+        ChannelStats stats = ChannelStats.forPort(9210);
+        long failures = stats.getDecodeFailures();
+        long truncated = stats.getTruncatedDatagrams();
+        long timeouts = stats.getReceiveTimeouts();
+
+        sender.send(new byte[]{WireCodec.VERSION, 99}, 9210);     // Too short to hold a header
+        sender.send(new byte[BufferPool.DATAGRAM_SIZE], 9210);   // Fills the whole receive buffer
+        assertNull(receiver.receive(200));
+
+        assertEquals(failures + 1, stats.getDecodeFailures());
+        assertEquals(truncated + 1, stats.getTruncatedDatagrams());
+        assertEquals(timeouts + 1, stats.getReceiveTimeouts());
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the CheckpointStore class, loading checkpoints from a new store as a restarted
+ * process would.
+ */
+class CheckpointStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that the records of the latest checkpoint come back in order with its log position, and that only the
+     * checkpoint before it is kept.
+     */
+    @Test
+    void latestCheckpointIsLoaded() throws IOException {
+        CheckpointStore store = new CheckpointStore("Test", directory);
+        assertEquals(0, store.load(position -> true, (type, payload) -> fail("There is no checkpoint yet")));
+
+        assertEquals(100, store.save(100, checkpoint(1, 2)));
+        assertEquals(100, store.save(200, checkpoint(3, 4)), "The previous checkpoint should be kept");
+        assertEquals(200, store.save(300, checkpoint(5, 6, 7)));
+        assertEquals(2, countCheckpoints());
+
+        assertEquals(List.of(5, 6, 7), load(300, position -> true));
+    }
+
+    /**
+     * Tests that a damaged checkpoint is ignored in favour of the one before it, and that the whole log has to be
+     * replayed once none is left.
+     */
+    @Test
+    void damagedCheckpointFallsBackToThePreviousOne() throws IOException {
+        CheckpointStore store = new CheckpointStore("Test", directory);
+        store.save(100, checkpoint(1, 2));
+        damage(100);
+        assertEquals(0, new CheckpointStore("Test", directory).load(position -> true, (type, payload) -> fail("The checkpoint is damaged")));
+
+        store.save(200, checkpoint(3, 4));
+        store.save(300, checkpoint(5, 6));
+        damage(300);
+        assertEquals(List.of(3, 4), load(200, position -> true));
+    }
+
+    /**
+     * Tests that a checkpoint the log no longer goes on from is ignored in favour of the one before it.
+     */
+    @Test
+    void checkpointAheadOfTheLogIsIgnored() throws IOException {
+        CheckpointStore store = new CheckpointStore("Test", directory);
+        store.save(100, checkpoint(1, 2));
+        store.save(200, checkpoint(3, 4));
+        assertEquals(List.of(1, 2), load(100, position -> position < 200));
+    }
+
+    private static CheckpointStore.Builder checkpoint(int... values) {
+        CheckpointStore.Builder builder = new CheckpointStore.Builder();
+        for (int value : values) {
+            builder.add((byte) 7, ByteBuffer.allocate(4).putInt(value).array());
+        }
+        assertEquals(values.length, builder.getRecordCount());
+        return builder;
+    }
+
+    /**
+     * Loads the checkpoints of the directory as a restarted process would, and checks the log position it got.
+     */
+    private List<Integer> load(long expectedPosition, LongPredicate usable) throws IOException {
+        List<Integer> values = new ArrayList<>();
+        assertEquals(expectedPosition, new CheckpointStore("Test", directory).load(usable, (type, payload) -> {
+            assertEquals(7, type);
+            values.add(payload.getInt());
+        }));
+        return values;
+    }
+
+    private void damage(long position) throws IOException {
+        Path file = directory.resolve(String.format("%020d.ckpt", position));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), 30); // A byte of the first record
+        }
+    }
+
+    private long countCheckpoints() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
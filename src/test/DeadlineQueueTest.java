@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the DeadlineQueue class, using a clock the tests move by hand and the default
+ * response budgets.
+ */
+class DeadlineQueueTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    private static InputEvent event(String severity) {
+        return new InputEvent("14:00:00", 1, "FIRE_DETECTED", severity, Status.UNRESOLVED, null);
+    }
+
+    /**
+     * Tests that events reported at the same time leave in severity order, and equal deadlines in arrival order.
+     */
+    @Test
+    void sameReportTimeFollowsSeverity() {
+        DeadlineQueue queue = new DeadlineQueue(now::get);
+        InputEvent low = event("Low");
+        InputEvent high1 = event("High");
+        InputEvent moderate = event("Moderate");
+        InputEvent high2 = event("High");
+        queue.add(low);
+        queue.add(high1);
+        queue.add(moderate);
+        queue.add(high2);
+
+        assertSame(high1, queue.poll());
+        assertSame(high2, queue.poll());
+        assertSame(moderate, queue.poll());
+        assertSame(low, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Tests that an old Moderate event goes ahead of a new High event once its deadline is earlier, and that events
+     * taken after their deadline are counted as misses.
+     */
+    @Test
+    void oldEventGoesAheadAndMissesAreCounted() {
+        DeadlineQueue queue = new DeadlineQueue(now::get);
+        InputEvent moderate = event("Moderate");
+        queue.add(moderate); // Deadline at 15 s
+
+        now.set(12_000 * MILLIS);
+        InputEvent high = event("High"); // Deadline at 17 s
+        queue.add(high);
+        assertSame(moderate, queue.poll());
+        assertEquals(0, queue.getStats(Severity.Moderate).getMissed());
+
+        now.set(18_000 * MILLIS);
+        assertSame(high, queue.poll());
+        assertEquals(1, queue.getStats(Severity.High).getMissed());
+        assertEquals(1, queue.getStats(Severity.High).getTaken());
+    }
+
+    /**
+     * Tests that an event queued again keeps the deadline of its first report, and that raising the severity of a
+     * waiting event brings its deadline forward.
+     */
+    @Test
+    void deadlinesSurviveRequeueAndFollowSeverity() {
+        DeadlineQueue queue = new DeadlineQueue(now::get);
+        InputEvent low = event("Low");
+        queue.add(low);
+        assertSame(low, queue.poll());
+
+        now.set(20_000 * MILLIS);
+        InputEvent moderate = event("Moderate"); // Deadline at 35 s, after the 30 s of the first report of the Low event
+        queue.add(moderate);
+        queue.add(low);
+        assertSame(low, queue.poll());
+
+        queue.add(low);
+        InputEvent other = event("Low");
+        queue.add(other);
+        assertTrue(queue.raiseSeverity(other, Severity.High)); // Deadline at 25 s
+        assertEquals(Severity.High, other.getSeverity());
+        assertEquals(1, queue.getStats(Severity.High).getDepth());
+        assertSame(other, queue.poll());
+        assertFalse(queue.raiseSeverity(moderate, Severity.Low), "Only a higher severity can be given");
+    }
+}
@@ -37,22 +37,8 @@ public class DroneSubsystemTest {
 
     @AfterEach
     void tearDown() {
-        try {
-            if (subsystem != null) {
-                closeSocket("schedulerSocket");
-                closeSocket("droneSocket");
-            }
-        } catch (Exception e) {
-            System.err.println("Error closing sockets: " + e.getMessage());
-        }
-    }
-
-    private void closeSocket(String fieldName) throws Exception {
-        Field field = DroneSubsystem.class.getDeclaredField(fieldName);
-        field.setAccessible(true);
-        DatagramSocket socket = (DatagramSocket) field.get(subsystem);
-        if (socket != null && !socket.isClosed()) {
-            socket.close();
+        if (subsystem != null) {
+            subsystem.close();
         }
     }
 
@@ -125,6 +111,45 @@ public class DroneSubsystemTest {
         }
     }
 
+    @Nested
+    class CreditTests {
+        @Test
+        void capacityExcludesPendingEvents() throws Exception {
+            assertEquals(3, subsystem.getCapacity());
+
+            pendingEventsField.set(subsystem, new CopyOnWriteArrayList<>(List.of(createTestEvent())));
+            assertEquals(2, subsystem.getCapacity());
+        }
+    }
+
+    @Nested
+    class BatchTests {
+        @Test
+        void batchIsTakenWholeAndAcknowledged() throws Exception {
+            UdpTransport scheduler = new UdpTransport("TestScheduler");
+            try {
+                scheduler.bind(5001);
+                InputEvent first = createTestEvent();
+                InputEvent second = createTestEvent();
+                scheduler.send(new EventBatch(7, List.of(first, second)), 6000);
+                subsystem.handleWaitingState();
+                assertEquals(2, ((List<?>) pendingEventsField.get(subsystem)).size());
+
+                Transport.Delivery delivery = scheduler.receive(2000);
+                EventBatch.Ack ack = delivery.getMessage(EventBatch.Ack.class);
+                assertEquals(7, ack.getBatchID());
+                assertArrayEquals(new int[]{first.getEventID(), second.getEventID()}, ack.getEventIDs());
+
+                scheduler.send(new EventBatch(8, List.of(first)), 6000); // Sent again after a lost acknowledgement
+                subsystem.handleWaitingState();
+                assertEquals(2, ((List<?>) pendingEventsField.get(subsystem)).size());
+                assertEquals(8, scheduler.receive(2000).getMessage(EventBatch.Ack.class).getBatchID());
+            } finally {
+                scheduler.close();
+            }
+        }
+    }
+
     @Nested
     class AlgorithmTests {
         @Test
@@ -144,6 +169,30 @@ public class DroneSubsystemTest {
             assertEquals(drones.get(1).getName(), selected.getName());
         }
 
+        @Test
+        void skipsDronesAlreadyChosenThisPass() throws Exception {
+            List<Drone> drones = (List<Drone>) dronesField.get(subsystem);
+            InputEvent event = createTestEvent();
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (((DroneModel) droneModelField().get(subsystem)).getAvailableDrones().size() < drones.size()
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10); // The drone threads become available once they start
+            }
+
+            Drone first = subsystem.chooseDroneAlgorithm(event);
+            Drone second = subsystem.chooseDroneAlgorithm(event, Set.of(first));
+            assertNotNull(second);
+            assertNotEquals(first.getName(), second.getName());
+            assertNull(subsystem.chooseDroneAlgorithm(event, new HashSet<>(drones)));
+        }
+
+        private Field droneModelField() throws Exception {
+            Field field = DroneSubsystem.class.getDeclaredField("droneModel");
+            field.setAccessible(true);
+            return field;
+        }
+
         private void setDroneCoordinates(Drone drone, int x, int y) throws Exception {
             Field coordField = Drone.class.getDeclaredField("currentCoordinates");
             coordField.setAccessible(true);
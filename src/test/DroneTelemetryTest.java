@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the drone telemetry stream by passing the frames of a DroneTelemetryEncoder
+ * through the WireCodec into a DroneTelemetryDecoder.
+ */
+class DroneTelemetryTest {
+
+    private DroneTelemetryEncoder encoder;
+    private DroneTelemetryDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        encoder = new DroneTelemetryEncoder(60000);
+        decoder = new DroneTelemetryDecoder();
+    }
+
+    /**
+     * Sends the frames through the codec and applies them to the decoder.
+     */
+    private List<DroneStatus> transfer(List<DroneTelemetryFrame> frames) throws IOException {
+        List<DroneStatus> result = null;
+        for (DroneTelemetryFrame frame : frames) {
+            byte[] data = WireCodec.encodeDroneTelemetry(frame);
+            result = decoder.apply(WireCodec.decode(data, 0, data.length, DroneTelemetryFrame.class));
+        }
+        return result;
+    }
+
+    /**
+     * Tests that the first update is a keyframe and later updates only carry the drones that changed.
+     */
+    @Test
+    void deltaOnlyCarriesChangedDrones() throws IOException {
+        List<DroneStatus> statuses = new ArrayList<>();
+        statuses.add(new DroneStatus("Drone1", "AvailableState", 0, 0));
+        statuses.add(new DroneStatus("Drone2", "AvailableState", 0, 0));
+
+        List<DroneTelemetryFrame> keyframe = encoder.update(statuses);
+        assertTrue(keyframe.get(0).isKeyframe());
+        assertEquals(statuses.toString(), transfer(keyframe).toString());
+
+        assertTrue(encoder.update(statuses).isEmpty()); // Nothing changed
+        assertFalse(encoder.hasMovingDrones());
+
+        statuses.set(1, new DroneStatus("Drone2", "CruisingState", 50, 25));
+        List<DroneTelemetryFrame> delta = encoder.update(statuses);
+        assertFalse(delta.get(0).isKeyframe());
+        assertEquals(1, delta.get(0).getEntries().size());
+        assertTrue(encoder.hasMovingDrones());
+
+        List<DroneStatus> decoded = transfer(delta);
+        assertEquals(statuses.toString(), decoded.toString());
+        assertEquals("CruisingState", decoded.get(1).getState());
+    }
+
+    /**
+     * Tests that a stale frame and a delta received before any keyframe are dropped.
+     */
+    @Test
+    void staleFramesAreDropped() throws IOException {
+        List<DroneStatus> statuses = new ArrayList<>();
+        statuses.add(new DroneStatus("Drone1", "AvailableState", 0, 0));
+        List<DroneTelemetryFrame> keyframe = encoder.update(statuses);
+
+        statuses.set(0, new DroneStatus("Drone1", "CruisingState", 10, 10));
+        List<DroneTelemetryFrame> older = encoder.update(statuses);
+        statuses.set(0, new DroneStatus("Drone1", "CruisingState", 20, 20));
+        List<DroneTelemetryFrame> newer = encoder.update(statuses);
+
+        assertNull(transfer(older)); // No keyframe received yet
+        transfer(keyframe);
+        assertEquals(20.0, transfer(newer).get(0).getX());
+        assertNull(transfer(older)); // Arrived after a newer frame
+        assertEquals(2, decoder.getDroppedFrames());
+    }
+
+    /**
+     * Tests that the streams of two shards are followed side by side, with drones of the same index kept apart, and
+     * that a restart of one shard does not drop the drones of the other.
+     */
+    @Test
+    void streamsOfShardsAreKeptApart() throws IOException {
+        DroneTelemetryEncoder shard1 = new DroneTelemetryEncoder(1, 60000);
+        List<DroneStatus> statuses0 = List.of(new DroneStatus("Drone1", "AvailableState", 0, 0));
+        List<DroneStatus> statuses1 = List.of(new DroneStatus("Drone1-S1", "CruisingState", 5, 5));
+
+        List<DroneTelemetryFrame> keyframe1 = shard1.update(statuses1);
+        assertEquals(1, keyframe1.get(0).getShard());
+        transfer(encoder.update(statuses0));
+        assertEquals(List.of("Drone1", "Drone1-S1"), names(transfer(keyframe1)));
+
+        List<DroneStatus> moved0 = List.of(new DroneStatus("Drone1", "CruisingState", 10, 10));
+        assertEquals(List.of("Drone1", "Drone1-S1"), names(transfer(encoder.update(moved0)))); // A delta of shard 0 after a keyframe of shard 1
+
+        DroneTelemetryEncoder restarted1 = new DroneTelemetryEncoder(1, 60000);
+        List<DroneStatus> decoded = transfer(restarted1.update(List.of(new DroneStatus("Drone2-S1", "AvailableState", 0, 0))));
+        assertEquals(List.of("Drone1", "Drone2-S1"), names(decoded));
+        assertEquals(10.0, decoded.get(0).getX());
+        assertEquals(0, decoder.getDroppedFrames());
+    }
+
+    private static List<String> names(List<DroneStatus> statuses) {
+        List<String> names = new ArrayList<>();
+        for (DroneStatus status : statuses) {
+            names.add(status.getDroneName());
+        }
+        return names;
+    }
+
+    /**
+     * Tests that a keyframe for a large fleet is split into frames that fit in a GUI datagram.
+     */
+    @Test
+    void largeKeyframeIsSplit() throws IOException {
+        List<DroneStatus> statuses = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            statuses.add(new DroneStatus("Drone" + i, "AvailableState", i, i));
+        }
+        List<DroneTelemetryFrame> frames = encoder.update(statuses);
+        assertTrue(frames.size() > 1);
+        for (DroneTelemetryFrame frame : frames) {
+            assertTrue(WireCodec.encodeDroneTelemetry(frame).length <= DroneTelemetryEncoder.MAX_FRAME_SIZE);
+        }
+        assertEquals(500, transfer(frames).size());
+    }
+}
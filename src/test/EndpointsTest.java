@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the Endpoints class.
+ */
+class EndpointsTest {
+
+    /**
+     * Tests that the default endpoints are the ports the subsystems always used.
+     */
+    @Test
+    void defaultsMatchTheOriginalPorts() {
+        Endpoints endpoints = new Endpoints(new HashMap<>());
+        assertEquals(5000, endpoints.getEndpoint(Endpoints.SCHEDULER_FIS).getPort());
+        assertEquals(5001, endpoints.getEndpoint(Endpoints.SCHEDULER_DSS).getPort());
+        assertEquals(6000, endpoints.getEndpoint(Endpoints.DSS_SCHEDULER).getPort());
+        assertEquals(6001, endpoints.getEndpoint(Endpoints.DSS_DRONES).getPort());
+        assertEquals(7000, endpoints.getEndpoint(Endpoints.FIS).getPort());
+        assertEquals(8000, endpoints.getEndpoint(Endpoints.GUI).getPort());
+        assertEquals(8002, endpoints.getDronePortOf(1));
+        assertEquals(8011, endpoints.getDronePortOf(10));
+        assertThrows(IllegalArgumentException.class, () -> endpoints.getDronePortOf(Endpoints.MAX_DRONES + 1));
+    }
+
+    /**
+     * Tests that configured endpoints are resolved to their host, and that other ports go to the local host.
+     */
+    @Test
+    void portsResolveToTheirHost() throws UnknownHostException {
+        Map<String, String> addresses = new HashMap<>();
+        addresses.put(Endpoints.FIS, "127.0.0.2:7100");
+        addresses.put(Endpoints.DRONES, "127.0.0.3:9000");
+        addresses.put(Endpoints.GUI, "8500");
+        Endpoints endpoints = new Endpoints(addresses);
+
+        assertEquals(InetAddress.getByName("127.0.0.2"), endpoints.resolve(7100).getAddress());
+        assertEquals(InetAddress.getByName("127.0.0.3"), endpoints.resolve(endpoints.getDronePortOf(5)).getAddress());
+        assertEquals(InetAddress.getLocalHost(), endpoints.resolve(8500).getAddress());
+        assertEquals(InetAddress.getLocalHost(), endpoints.resolve(5000).getAddress());
+        assertEquals(InetAddress.getLocalHost(), endpoints.resolve(12345).getAddress());
+        assertEquals(12345, endpoints.resolve(12345).getPort());
+    }
+
+    /**
+     * Tests that shared ports, ports inside the drone range, unknown names and malformed addresses are rejected.
+     */
+    @Test
+    void badConfigurationsAreRejected() {
+        Map<String, String> shared = new HashMap<>();
+        shared.put(Endpoints.FIS, "hostA:5000");
+        assertThrows(IllegalArgumentException.class, () -> new Endpoints(shared));
+
+        Map<String, String> dronesOverGui = new HashMap<>();
+        dronesOverGui.put(Endpoints.DRONES, "localhost:7990");
+        assertThrows(IllegalArgumentException.class, () -> new Endpoints(dronesOverGui));
+
+        Map<String, String> unknown = new HashMap<>();
+        unknown.put("scheduler", "localhost:5000");
+        assertThrows(IllegalArgumentException.class, () -> new Endpoints(unknown));
+
+        Map<String, String> malformed = new HashMap<>();
+        malformed.put(Endpoints.GUI, "localhost:gui");
+        assertThrows(IllegalArgumentException.class, () -> new Endpoints(malformed));
+        malformed.put(Endpoints.GUI, "localhost:70000");
+        assertThrows(IllegalArgumentException.class, () -> new Endpoints(malformed));
+    }
+
+    /**
+     * Tests that every shard gets its own ports next to the ones of shard 0, that the endpoints of a shard can be
+     * placed on another host, and that the GUI is shared.
+     */
+    @Test
+    void shardsHavePortsOfTheirOwn() throws UnknownHostException {
+        Map<String, String> addresses = new HashMap<>();
+        addresses.put(Endpoints.SCHEDULER_FIS + ".2", "127.0.0.2:5900");
+        Endpoints endpoints = new Endpoints(addresses, 3);
+
+        assertEquals(5010, endpoints.getEndpoint(Endpoints.SCHEDULER_FIS, 1).getPort());
+        assertEquals(6011, endpoints.getEndpoint(Endpoints.DSS_DRONES, 1).getPort());
+        assertEquals(7020, endpoints.getEndpoint(Endpoints.FIS, 2).getPort());
+        assertEquals(8000, endpoints.getEndpoint(Endpoints.GUI, 2).getPort());
+        assertEquals(5900, endpoints.getEndpoint(Endpoints.SCHEDULER_FIS, 2).getPort());
+        assertEquals(8002 + 2 * Endpoints.MAX_DRONES, endpoints.getDronePortOf(1, 2));
+        assertEquals(InetAddress.getByName("127.0.0.2"), endpoints.resolve(5900).getAddress());
+        assertThrows(IllegalArgumentException.class, () -> endpoints.getEndpoint(Endpoints.FIS, 3));
+
+        Map<String, String> unknownShard = new HashMap<>();
+        unknownShard.put(Endpoints.FIS + ".3", "localhost:7300");
+        assertThrows(IllegalArgumentException.class, () -> new Endpoints(unknownShard, 3));
+
+        Map<String, String> sharedAcrossShards = new HashMap<>();
+        sharedAcrossShards.put(Endpoints.FIS + ".1", "localhost:5000");
+        assertThrows(IllegalArgumentException.class, () -> new Endpoints(sharedAcrossShards, 2));
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the Fragmenter and Reassembler classes by splitting messages and putting them
+ * back together.
+ */
+class FragmenterTest {
+
+    /**
+     * Tests that a zone map too large for one datagram is split and reassembled from fragments arriving out of order.
+     */
+    @Test
+    void largeZoneMapIsReassembled() throws IOException {
+        ArrayList<Zone> zones = new ArrayList<>();
+        for (int i = 1; i <= 5000; i++) {
+            zones.add(new Zone(i, new Coordinate(i, 0), new Coordinate(i + 10, 10)));
+        }
+        byte[] message = WireCodec.encodeRelayPackage(new RelayPackage("ZONE_PKG_1", Systems.Scheduler, null, zones));
+
+        List<byte[]> fragments = new ArrayList<>(new Fragmenter().fragment(message));
+        assertTrue(fragments.size() > 1);
+        for (byte[] fragment : fragments) {
+            assertTrue(fragment.length <= Fragmenter.DEFAULT_MAX_DATAGRAM);
+        }
+        Collections.shuffle(fragments, new Random(1));
+
+        Reassembler reassembler = new Reassembler("Test");
+        byte[] result = null;
+        for (byte[] fragment : fragments) {
+            assertNull(result); // Nothing is delivered before the last fragment
+            result = reassembler.accept("FIS", ByteBuffer.wrap(fragment));
+        }
+        assertNotNull(result);
+        assertEquals(zones.toString(), WireCodec.decodeRelayPackage(result, 0, result.length).getZone().toString());
+        assertEquals(0, reassembler.getPendingCount());
+    }
+
+    /**
+     * Tests that a message that fits in one datagram is not fragmented.
+     */
+    @Test
+    void smallMessageIsNotFragmented() {
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+        byte[] message = WireCodec.encodeEvent(event);
+        List<byte[]> fragments = new Fragmenter().fragment(message);
+
+        assertEquals(1, fragments.size());
+        assertSame(message, fragments.get(0));
+        assertFalse(Fragmenter.isFragment(message));
+    }
+
+    /**
+     * Tests that a message missing a fragment is discarded once the reassembly timeout passes.
+     */
+    @Test
+    void incompleteMessageExpires() {
+        List<byte[]> fragments = new Fragmenter(100).fragment(new byte[500]);
+        Reassembler reassembler = new Reassembler("Test", 0);
+
+        assertNull(reassembler.accept("DSS", ByteBuffer.wrap(fragments.get(0))));
+        assertEquals(1, reassembler.getPendingCount());
+
+        // The next fragment arrives after the timeout, so the message is started over and never completes
+        for (int i = 1; i < fragments.size(); i++) {
+            assertNull(reassembler.accept("DSS", ByteBuffer.wrap(fragments.get(i))));
+        }
+        assertTrue(reassembler.getExpiredCount() > 0);
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the FrameGuard class by passing sealed datagrams and NACKs between two guards by
+ * hand, which lets the tests damage and duplicate them.
+ */
+class FrameGuardTest {
+
+    private static final SocketAddress SENDER = new InetSocketAddress("localhost", 9220);
+
+    private FrameGuard sender;
+    private FrameGuard receiver;
+
+    @BeforeEach
+    void setUp() {
+        sender = new FrameGuard("Sender", 4);
+        receiver = new FrameGuard("Receiver");
+    }
+
+    /**
+     * Tests that an intact datagram is opened to its payload.
+     */
+    @Test
+    void intactDatagramIsOpened() {
+        ByteBuffer datagram = ByteBuffer.wrap(sender.seal(new byte[]{1, 2, 3}));
+        assertTrue(FrameGuard.isSealed(datagram));
+        assertEquals(FrameGuard.Verdict.INTACT, receiver.open(SENDER, datagram));
+        assertEquals(3, datagram.remaining());
+        assertEquals(1, datagram.get());
+    }
+
+    /**
+     * Tests that a corrupted datagram is caught, NACKed and retransmitted intact from the retention buffer.
+     */
+    @Test
+    void corruptedDatagramIsRetransmitted() {
+        sender.corruptNext();
+        ByteBuffer damaged = ByteBuffer.wrap(sender.seal(new byte[]{1, 2, 3}));
+        assertEquals(FrameGuard.Verdict.CORRUPT, receiver.open(SENDER, damaged));
+
+        byte[] nack = receiver.createNack(SENDER, damaged);
+        assertNotNull(nack);
+        assertTrue(FrameGuard.isNack(ByteBuffer.wrap(nack)));
+
+        ByteBuffer resent = ByteBuffer.wrap(sender.retransmit(ByteBuffer.wrap(nack)));
+        assertEquals(FrameGuard.Verdict.INTACT, receiver.open(SENDER, resent));
+        assertEquals(3, resent.get(resent.limit() - 1));
+    }
+
+    /**
+     * Tests that a datagram delivered twice is only opened once, and that a duplicate is not NACKed.
+     */
+    @Test
+    void duplicateIsDropped() {
+        byte[] sealed = sender.seal(new byte[]{42});
+        assertEquals(FrameGuard.Verdict.INTACT, receiver.open(SENDER, ByteBuffer.wrap(sealed)));
+        assertEquals(FrameGuard.Verdict.DUPLICATE, receiver.open(SENDER, ByteBuffer.wrap(sealed)));
+        assertNull(receiver.createNack(SENDER, ByteBuffer.wrap(sealed)));
+    }
+
+    /**
+     * Tests that a NACK for a datagram that left the retention buffer, or a damaged NACK, retransmits nothing.
+     */
+    @Test
+    void oldOrDamagedNackIsIgnored() {
+        sender.corruptNext();
+        ByteBuffer first = ByteBuffer.wrap(sender.seal(new byte[]{0}));
+        byte[] nack = receiver.createNack(SENDER, first);
+        for (int i = 0; i < 4; i++) {
+            sender.seal(new byte[]{(byte) i}); // Pushes the first datagram out of the retention buffer
+        }
+        assertNull(sender.retransmit(ByteBuffer.wrap(nack)));
+
+        byte[] recent = receiver.createNack(SENDER, ByteBuffer.wrap(sender.seal(new byte[]{9})));
+        recent[2] ^= 0x01;
+        assertNull(sender.retransmit(ByteBuffer.wrap(recent)));
+    }
+
+    /**
+     * Tests that a restarted sender, which starts from a new sequence number, is not taken for a duplicate.
+     */
+    @Test
+    void restartedSenderIsAccepted() {
+        assertEquals(FrameGuard.Verdict.INTACT, receiver.open(SENDER, ByteBuffer.wrap(sender.seal(new byte[]{1}))));
+        FrameGuard restarted = new FrameGuard("Restarted");
+        assertEquals(FrameGuard.Verdict.INTACT, receiver.open(SENDER, ByteBuffer.wrap(restarted.seal(new byte[]{2}))));
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the InProcessTransport class and the lock-free queue behind it.
+ */
+class InProcessTransportTest {
+
+    private InProcessTransport receiver;
+    private InProcessTransport sender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        receiver = new InProcessTransport("Receiver");
+        receiver.bind(9100);
+        sender = new InProcessTransport("Sender");
+    }
+
+    @AfterEach
+    void tearDown() {
+        receiver.close();
+        sender.close();
+    }
+
+    /**
+     * Tests that a message is handed over along with the port it was sent to and its sender, and that an event is
+     * copied on send, so changing it afterwards does not change what the receiver got.
+     */
+    @Test
+    void eventIsCopiedOnSend() throws IOException {
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+        sender.send(event, 9100);
+        sender.send(new EventBatch(7, List.of(event)), 9100);
+        event.setStatus(Status.COMPLETE); // The sender goes on changing the event it kept
+        event.setRemainingAgentNeeded(0);
+
+        Transport.Delivery delivery = receiver.receive(1000);
+        InputEvent received = delivery.getMessage(InputEvent.class);
+        assertNotSame(event, received);
+        assertEquals(event.getEventID(), received.getEventID());
+        assertEquals(Status.UNRESOLVED, received.getStatus());
+        assertEquals(Severity.High.getValue(), received.getRemainingAgentNeeded());
+        assertEquals(9100, delivery.getPort());
+        assertSame(sender, delivery.getSource());
+        assertTrue(receiver.isReliable());
+        assertFalse(receiver.corruptNextMessage(), "Messages are not checked, so the drones play out a corrupt fault");
+
+        InputEvent batched = receiver.receive(1000).getMessage(EventBatch.class).getEvents().get(0);
+        assertNotSame(event, batched);
+        assertEquals(Status.UNRESOLVED, batched.getStatus());
+    }
+
+    /**
+     * Tests that receiving times out when nothing was sent, and that a message to an unbound port is dropped.
+     */
+    @Test
+    void receiveTimesOutAndUnboundPortDrops() throws IOException {
+        assertNull(receiver.receive(0));
+        long start = System.currentTimeMillis();
+        assertNull(receiver.receive(50));
+        assertTrue(System.currentTimeMillis() - start >= 45);
+
+        sender.send("lost", 9101); // Nobody is bound to this port
+        assertNull(receiver.receive(0));
+    }
+
+    /**
+     * Tests that a port can only be bound once, and can be bound again after its transport is closed.
+     */
+    @Test
+    void portCanOnlyBeBoundOnce() throws IOException {
+        InProcessTransport other = new InProcessTransport("Other");
+        assertThrows(BindException.class, () -> other.bind(9100));
+
+        receiver.close();
+        other.bind(9100);
+        other.close();
+    }
+
+    /**
+     * Tests that a parked receiver is woken up by a sender, and that messages from many senders all arrive, each
+     * sender's in the order they were sent.
+     */
+    @Test
+    void manySendersKeepTheirOrder() throws Exception {
+        int senders = 4;
+        int perSender = 10000;
+        List<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < senders; s++) {
+            int id = s;
+            Thread thread = new Thread(() -> {
+                InProcessTransport transport = new InProcessTransport("Sender" + id);
+                for (int i = 0; i < perSender; i++) {
+                    transport.send(new int[]{id, i}, 9100);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        int[] next = new int[senders];
+        for (int received = 0; received < senders * perSender; received++) {
+            Transport.Delivery delivery = receiver.receive(5000);
+            assertNotNull(delivery);
+            int[] message = delivery.getMessage(int[].class);
+            assertEquals(next[message[0]]++, message[1]);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(receiver.receive(0));
+    }
+}
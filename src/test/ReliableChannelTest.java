@@ -0,0 +1,163 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the ReliableChannel class by passing datagrams between two channels by hand,
+ * which lets the tests drop, duplicate and reorder them.
+ */
+class ReliableChannelTest {
+
+    private List<byte[]> senderOut;   // Datagrams transmitted by the sender
+    private List<byte[]> receiverOut; // Datagrams transmitted by the receiver
+    private ReliableChannel sender;
+    private ReliableChannel receiver;
+
+    @BeforeEach
+    void setUp() {
+        senderOut = new ArrayList<>();
+        receiverOut = new ArrayList<>();
+        sender = new ReliableChannel("Sender", 8, senderOut::add);
+        receiver = new ReliableChannel("Receiver", 8, receiverOut::add);
+    }
+
+    /**
+     * Tests that a lost frame is resent once later frames are acknowledged and that frames are delivered in order.
+     */
+    @Test
+    void lostFrameIsRetransmittedAndDeliveredInOrder() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            sender.send(new byte[]{(byte) i});
+        }
+        assertEquals(5, senderOut.size());
+
+        List<byte[]> delivered = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            if (i != 1) { // The second frame is lost
+                delivered.addAll(receiver.receive(ByteBuffer.wrap(senderOut.get(i))));
+            }
+        }
+        assertEquals(1, delivered.size()); // Only the frame before the gap can be delivered
+
+        for (byte[] ack : receiverOut) {
+            sender.receive(ByteBuffer.wrap(ack));
+        }
+        assertEquals(6, senderOut.size()); // The lost frame was resent without waiting for the timeout
+
+        delivered.addAll(receiver.receive(ByteBuffer.wrap(senderOut.get(5))));
+        assertEquals(5, delivered.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, delivered.get(i)[0]);
+        }
+
+        sender.receive(ByteBuffer.wrap(receiverOut.get(receiverOut.size() - 1)));
+        assertTrue(sender.isIdle());
+    }
+
+    /**
+     * Tests that the acknowledged frames only count up to the first frame still missing, even when later frames were
+     * acknowledged selectively.
+     */
+    @Test
+    void acknowledgedFramesStopAtTheFirstGap() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, sender.send(new byte[]{(byte) i}));
+        }
+        receiver.receive(ByteBuffer.wrap(senderOut.get(0)));
+        receiver.receive(ByteBuffer.wrap(senderOut.get(2))); // The second frame is lost
+        for (byte[] ack : receiverOut) {
+            sender.receive(ByteBuffer.wrap(ack));
+        }
+        assertEquals(1, sender.getAcknowledgedFrames());
+
+        receiver.receive(ByteBuffer.wrap(senderOut.get(1))); // Arrives late
+        sender.receive(ByteBuffer.wrap(receiverOut.get(receiverOut.size() - 1)));
+        assertEquals(3, sender.getAcknowledgedFrames());
+    }
+
+    /**
+     * Tests that a frame too far ahead for the selective bitmap to acknowledge is dropped rather than held, so the
+     * sender resends it once the bitmap reaches it instead of never hearing of it.
+     */
+    @Test
+    void frameBeyondTheSelectiveBitmapIsDropped() throws IOException {
+        sender.send(new byte[]{1});
+        sender.send(new byte[]{2});
+        byte[] farAhead = senderOut.get(1).clone();
+        ByteBuffer.wrap(farAhead).putInt(5, 64); // 64 frames past the expected one
+        byte[] lastInBitmap = senderOut.get(1).clone();
+        ByteBuffer.wrap(lastInBitmap).putInt(5, 63);
+
+        assertEquals(0, receiver.receive(ByteBuffer.wrap(farAhead)).size());
+        assertEquals(0, receiver.receive(ByteBuffer.wrap(lastInBitmap)).size());
+        assertEquals(1L << 63, ByteBuffer.wrap(receiverOut.get(1)).getLong(13)); // Only the frame the bitmap can hold
+
+        assertEquals(1, receiver.receive(ByteBuffer.wrap(senderOut.get(0))).size());
+        assertEquals(1L << 62, ByteBuffer.wrap(receiverOut.get(2)).getLong(13)); // The dropped frame is not acknowledged
+    }
+
+    /**
+     * Tests that a duplicated frame is only delivered once.
+     */
+    @Test
+    void duplicateFrameIsDropped() throws IOException {
+        sender.send(new byte[]{42});
+        assertEquals(1, receiver.receive(ByteBuffer.wrap(senderOut.get(0))).size());
+        assertEquals(0, receiver.receive(ByteBuffer.wrap(senderOut.get(0))).size());
+        assertEquals(2, receiverOut.size()); // The duplicate is still acknowledged
+    }
+
+    /**
+     * Tests that frames beyond the window are held back until earlier frames are acknowledged.
+     */
+    @Test
+    void windowLimitsFramesInFlight() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            sender.send(new byte[]{(byte) i});
+        }
+        assertEquals(8, senderOut.size());
+        assertFalse(sender.hasWindowSpace());
+
+        receiver.receive(ByteBuffer.wrap(senderOut.get(0)));
+        sender.receive(ByteBuffer.wrap(receiverOut.get(0)));
+        assertEquals(9, senderOut.size()); // One acknowledgement frees room for one more frame
+        assertFalse(sender.isIdle());
+        assertTrue(sender.getTimeUntilNextRetransmit() >= 0);
+    }
+
+    /**
+     * Tests that a receiver that restarted gets the frames it had not acknowledged, once the sender sees its new
+     * acknowledgements, and that frames sent before that are dropped.
+     */
+    @Test
+    void restartedReceiverGetsUnacknowledgedFrames() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            sender.send(new byte[]{(byte) i});
+        }
+        receiver.receive(ByteBuffer.wrap(senderOut.get(0)));
+        sender.receive(ByteBuffer.wrap(receiverOut.get(0))); // Frame 0 acknowledged, frames 1 and 2 not
+
+        List<byte[]> restartedOut = new ArrayList<>();
+        ReliableChannel restarted = new ReliableChannel("Restarted", 8, restartedOut::add);
+        assertTrue(restarted.receive(ByteBuffer.wrap(senderOut.get(2))).isEmpty(), "The restarted receiver expects sequence 0");
+        sender.receive(ByteBuffer.wrap(restartedOut.get(0)));
+        assertEquals(5, senderOut.size(), "Frames 1 and 2 should be sent again under a new session");
+
+        List<byte[]> delivered = new ArrayList<>();
+        delivered.addAll(restarted.receive(ByteBuffer.wrap(senderOut.get(3))));
+        assertTrue(restarted.receive(ByteBuffer.wrap(senderOut.get(2))).isEmpty(), "A late frame of the old session is dropped");
+        delivered.addAll(restarted.receive(ByteBuffer.wrap(senderOut.get(4))));
+        assertEquals(2, delivered.size());
+        assertEquals(1, delivered.get(0)[0]);
+        assertEquals(2, delivered.get(1)[0]);
+
+        sender.receive(ByteBuffer.wrap(restartedOut.get(restartedOut.size() - 1)));
+        assertTrue(sender.isIdle());
+    }
+}
@@ -1,7 +1,20 @@
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,6 +31,11 @@ class SchedulerTest {
         scheduler = new Scheduler("TestScheduler");
     }
 
+    @AfterEach
+    public void tearDown() {
+        scheduler.close();
+    }
+
     /**
      * Test that immediately after construction, the zones map is empty.
      */
@@ -71,4 +89,544 @@ class SchedulerTest {
         assertEquals(zone1, zones.get(1), "Zone with ID 1 should be present and match zone1");
         assertEquals(zone2, zones.get(2), "Zone with ID 2 should be present and match zone2");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that the scheduler only counts the credit granted by the drone subsystem, and starts counting again when
+     * the drone subsystem restarts.
+     */
+    @Test
+    public void testCreditGrantLimitsEvents() throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        InProcessTransport transport = new InProcessTransport("TestScheduler");
+        Scheduler creditScheduler = new Scheduler("CreditScheduler", ReliableChannel.DEFAULT_WINDOW, transport);
+        try {
+            dss.bind(6000);
+            assertEquals(0, creditScheduler.getDssCredits(), "No events should be sent before a grant");
+
+            dss.send(new CreditGrant(1, 2), 5001);
+            creditScheduler.handleCheckDSSResponse();
+            assertEquals(2, creditScheduler.getDssCredits());
+
+            creditScheduler.getInputEvent().add(new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null));
+            creditScheduler.handleSendToDSS();
+            assertEquals(1, creditScheduler.getDssCredits());
+            assertNotNull(dss.receive(0), "The event should have reached the drone subsystem");
+
+            dss.send(new CreditGrant(1, 1), 5001); // The drone subsystem took the event and has no room left
+            creditScheduler.handleCheckDSSResponse();
+            assertEquals(0, creditScheduler.getDssCredits());
+
+            dss.send(new CreditGrant(2, 3), 5001); // Restarted drone subsystem
+            creditScheduler.handleCheckDSSResponse();
+            assertEquals(3, creditScheduler.getDssCredits());
+        } finally {
+            dss.close();
+            creditScheduler.close(); // Also closes the transport
+        }
+    }
+
+    /**
+     * Test that the scheduler sends nothing to the drone subsystem once its credit is used up.
+     */
+    @Test
+    public void testNothingIsSentWithoutCredit() throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        Scheduler creditScheduler = new Scheduler("CreditScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"));
+        try {
+            dss.bind(6000);
+            creditScheduler.getInputEvent().add(new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null));
+            creditScheduler.handleSendToDSS();
+            assertNull(dss.receive(0), "No event should be sent before a grant");
+            assertEquals(1, creditScheduler.getInputEvent().size());
+
+            dss.send(new CreditGrant(1, 1), 5001); // Handled by the next send step, since the scheduler has no credit
+            creditScheduler.getInputEvent().add(new InputEvent("14:00:20", 2, "FIRE_DETECTED", "High", Status.UNRESOLVED, null));
+            creditScheduler.handleSendToDSS();
+            assertEquals(1, dss.receive(0).getMessage(EventBatch.class).getEvents().size());
+            creditScheduler.handleSendToDSS();
+            assertNull(dss.receive(0), "No event should be sent once the credit is used up");
+            assertEquals(1, creditScheduler.getInputEvent().size());
+        } finally {
+            dss.close();
+            creditScheduler.close();
+        }
+    }
+
+    /**
+     * Test that the scheduler sends the queued events in one batch in priority order, and queues the events the
+     * drone subsystem did not acknowledge again when the drone subsystem restarts.
+     */
+    @Test
+    public void testEventsAreBatchedAndAcknowledged() throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        InProcessTransport transport = new InProcessTransport("TestScheduler");
+        Scheduler batchScheduler = new Scheduler("BatchScheduler", ReliableChannel.DEFAULT_WINDOW, transport);
+        try {
+            dss.bind(6000);
+            dss.send(new CreditGrant(1, 5), 5001);
+            batchScheduler.handleCheckDSSResponse();
+
+            InputEvent low = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "Low", Status.UNRESOLVED, null);
+            InputEvent high = new InputEvent("14:00:20", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+            InputEvent moderate = new InputEvent("14:00:25", 1, "FIRE_DETECTED", "Moderate", Status.UNRESOLVED, null);
+            batchScheduler.getInputEvent().addAll(List.of(low, high, moderate));
+            batchScheduler.handleSendToDSS();
+            assertTrue(batchScheduler.getInputEvent().isEmpty(), "Every event should fit in one batch");
+            assertEquals(2, batchScheduler.getDssCredits());
+
+            EventBatch batch = dss.receive(0).getMessage(EventBatch.class);
+            assertNull(dss.receive(0), "The events should have been sent in a single message");
+            assertEquals(high.getEventID(), batch.getEvents().get(0).getEventID());
+            assertEquals(moderate.getEventID(), batch.getEvents().get(1).getEventID());
+            assertEquals(low.getEventID(), batch.getEvents().get(2).getEventID());
+
+            dss.send(new EventBatch.Ack(batch.getBatchID(), new int[]{high.getEventID(), moderate.getEventID()}), 5001);
+            batchScheduler.handleCheckDSSResponse();
+            dss.send(new CreditGrant(2, 5), 5001); // Restarted drone subsystem, which lost the unacknowledged event
+            batchScheduler.handleCheckDSSResponse();
+            assertEquals(1, batchScheduler.getInputEvent().size());
+            assertEquals(low.getEventID(), batchScheduler.getInputEvent().peek().getEventID());
+        } finally {
+            dss.close();
+            batchScheduler.close(); // Also closes the transport
+        }
+    }
+
+    /**
+     * Test that the confirmation of an event whose acknowledgement was lost acknowledges it, so the event is not
+     * queued again and flown twice.
+     */
+    @Test
+    public void testConfirmationAcknowledgesEvent() throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        Scheduler ackScheduler = new Scheduler("AckScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"));
+        try {
+            dss.bind(6000);
+            dss.send(new CreditGrant(1, 5), 5001);
+            ackScheduler.handleCheckDSSResponse();
+            InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+            ackScheduler.getInputEvent().add(event);
+            ackScheduler.handleSendToDSS();
+            EventBatch batch = dss.receive(0).getMessage(EventBatch.class);
+
+            dss.send(batch.getEvents().get(0), 5001); // Completed by the drones, the acknowledgement of its batch was lost
+            ackScheduler.handleCheckDSSResponse();
+            dss.send(new CreditGrant(2, 5), 5001); // Queues every unacknowledged event again
+            ackScheduler.handleCheckDSSResponse();
+            assertTrue(ackScheduler.getInputEvent().isEmpty(), "The completed event should not be sent again");
+            assertEquals(1, ackScheduler.getConfirmationPackage().size());
+        } finally {
+            dss.close();
+            ackScheduler.close();
+        }
+    }
+
+    /**
+     * Test that the confirmations received from the drone subsystem are sent back to the fire incident subsystem as
+     * the IDs of one batch, split into completed and faulted events.
+     */
+    @Test
+    public void testConfirmationsAreBatched() throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        InProcessTransport fis = new InProcessTransport("TestFIS");
+        InProcessTransport transport = new InProcessTransport("TestScheduler");
+        Scheduler confirmationScheduler = new Scheduler("ConfirmationScheduler", ReliableChannel.DEFAULT_WINDOW, transport);
+        try {
+            fis.bind(7000);
+            InputEvent completed = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+            InputEvent faulted = new InputEvent("14:00:20", 2, "FIRE_DETECTED", "Low", Status.UNRESOLVED, FaultType.STUCK);
+            dss.send(completed, 5001);
+            dss.send(faulted, 5001);
+            confirmationScheduler.handleCheckDSSResponse();
+            confirmationScheduler.handleCheckDSSResponse();
+            assertEquals(2, confirmationScheduler.getConfirmationPackage().size());
+
+            confirmationScheduler.handleSendConfirmation();
+            assertTrue(confirmationScheduler.getConfirmationPackage().isEmpty());
+            ConfirmationBatch batch = fis.receive(0).getMessage(ConfirmationBatch.class);
+            assertNull(fis.receive(0), "The confirmations should have been sent in a single message");
+            assertArrayEquals(new int[]{completed.getEventID()}, batch.getCompletedIDs());
+            assertArrayEquals(new int[]{faulted.getEventID()}, batch.getFaultedIDs());
+        } finally {
+            dss.close();
+            fis.close();
+            confirmationScheduler.close(); // Also closes the transport
+        }
+    }
+
+    /**
+     * Test that the events of a zone still waiting in the queue are merged into one mission with the highest severity
+     * and the agent of both, and that the confirmation of the mission confirms every merged event.
+     */
+    @Test
+    public void testEventsOfAZoneAreCoalesced() throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        InProcessTransport fis = new InProcessTransport("TestFIS");
+        Scheduler coalescingScheduler = new Scheduler("CoalescingScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"));
+        try {
+            dss.bind(6000);
+            fis.bind(7000);
+            InputEvent request = new InputEvent("14:00:15", 3, "DRONE_REQUEST", "Low", Status.UNRESOLVED, null);
+            InputEvent detected = new InputEvent("14:00:20", 3, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+            InputEvent other = new InputEvent("14:00:25", 4, "FIRE_DETECTED", "Moderate", Status.UNRESOLVED, null);
+            for (InputEvent event : List.of(request, detected, other)) {
+                fis.send(new RelayPackage("INPUT_EVENT_" + event.getEventID(), Systems.Scheduler, event, null), 5000);
+                coalescingScheduler.handleReceiveFromFIS();
+            }
+            assertEquals(2, coalescingScheduler.getInputEvent().size(), "The events of zone 3 should wait as one mission");
+
+            dss.send(new CreditGrant(1, 5), 5001);
+            coalescingScheduler.handleCheckDSSResponse();
+            coalescingScheduler.handleSendToDSS();
+            EventBatch batch = dss.receive(0).getMessage(EventBatch.class);
+            assertEquals(2, batch.getEvents().size());
+            InputEvent mission = batch.getEvents().get(0);
+            assertEquals(request.getEventID(), mission.getEventID());
+            assertEquals(Severity.High, mission.getSeverity());
+            assertEquals(Severity.Low.getValue() + Severity.High.getValue(), mission.getRemainingAgentNeeded());
+            assertEquals(other.getEventID(), batch.getEvents().get(1).getEventID());
+
+            dss.send(mission, 5001); // Completed by the drones
+            coalescingScheduler.handleCheckDSSResponse();
+            coalescingScheduler.handleSendConfirmation();
+            ConfirmationBatch confirmations = fis.receive(0).getMessage(ConfirmationBatch.class);
+            assertArrayEquals(new int[]{request.getEventID(), detected.getEventID()}, confirmations.getCompletedIDs());
+        } finally {
+            dss.close();
+            fis.close();
+            coalescingScheduler.close();
+        }
+    }
+
+    /**
+     * Test that a scheduler restarted on the same write-ahead log gets back its queue and its unsent confirmations,
+     * with the event the drone subsystem never acknowledged queued again.
+     */
+    @Test
+    public void testRestartReplaysTheLog(@TempDir Path logDirectory) throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        InProcessTransport fis = new InProcessTransport("TestFIS");
+        InputEvent high = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+        InputEvent moderate = new InputEvent("14:00:20", 2, "FIRE_DETECTED", "Moderate", Status.UNRESOLVED, null);
+        InputEvent low = new InputEvent("14:00:25", 3, "FIRE_DETECTED", "Low", Status.UNRESOLVED, null);
+        try {
+            dss.bind(6000);
+            fis.bind(7000);
+            Scheduler loggingScheduler = new Scheduler("LoggingScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"), logDirectory);
+            try {
+                for (InputEvent event : List.of(high, moderate, low)) {
+                    fis.send(new RelayPackage("INPUT_EVENT_" + event.getEventID(), Systems.Scheduler, event, null), 5000);
+                    loggingScheduler.handleReceiveFromFIS();
+                }
+                dss.send(new CreditGrant(1, 2), 5001);
+                loggingScheduler.handleCheckDSSResponse();
+                loggingScheduler.handleSendToDSS();
+                EventBatch batch = dss.receive(0).getMessage(EventBatch.class);
+                assertEquals(2, batch.getEvents().size());
+                dss.send(new EventBatch.Ack(batch.getBatchID(), new int[]{high.getEventID()}), 5001);
+                loggingScheduler.handleCheckDSSResponse();
+                dss.send(batch.getEvents().get(0), 5001); // Completed by the drones, not yet confirmed to the FIS
+                loggingScheduler.handleCheckDSSResponse();
+            } finally {
+                loggingScheduler.close();
+            }
+
+            Scheduler restartedScheduler = new Scheduler("LoggingScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"), logDirectory);
+            try {
+                assertEquals(1, restartedScheduler.getConfirmationPackage().size());
+                assertEquals(high.getEventID(), restartedScheduler.getConfirmationPackage().peek().getEvent().getEventID());
+                assertEquals(2, restartedScheduler.getInputEvent().size(), "The unacknowledged event should be queued again");
+                assertEquals(moderate.getEventID(), restartedScheduler.getInputEvent().poll().getEventID());
+                assertEquals(low.getEventID(), restartedScheduler.getInputEvent().poll().getEventID());
+
+                restartedScheduler.handleSendConfirmation();
+                ConfirmationBatch confirmations = fis.receive(0).getMessage(ConfirmationBatch.class);
+                assertArrayEquals(new int[]{high.getEventID()}, confirmations.getCompletedIDs());
+            } finally {
+                restartedScheduler.close();
+            }
+        } finally {
+            dss.close();
+            fis.close();
+        }
+    }
+
+    /**
+     * Test that confirmations sent over the reliable link are sent again by a restarted scheduler until the fire
+     * incident subsystem acknowledges them.
+     */
+    @Test
+    public void testRestartResendsUnacknowledgedConfirmations(@TempDir Path logDirectory) throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        InProcessTransport fis = new InProcessTransport("TestFIS");
+        ReliableChannel fisLink = new ReliableChannel("TestFIS", ReliableChannel.DEFAULT_WINDOW, datagram -> fis.send(datagram, 5000));
+        InputEvent completed = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+        try {
+            fis.bind(7000);
+            Scheduler crashedScheduler = new Scheduler("LinkScheduler", ReliableChannel.DEFAULT_WINDOW, new UnreliableTransport("TestScheduler"), logDirectory);
+            try {
+                dss.send(completed, 5001);
+                crashedScheduler.handleCheckDSSResponse();
+                crashedScheduler.handleSendConfirmation();
+                assertNotNull(fis.receive(0), "The confirmations should have been sent"); // Lost along with its acknowledgement
+            } finally {
+                crashedScheduler.close();
+            }
+
+            Scheduler restartedScheduler = new Scheduler("LinkScheduler", ReliableChannel.DEFAULT_WINDOW, new UnreliableTransport("TestScheduler"), logDirectory);
+            try {
+                assertEquals(1, restartedScheduler.getConfirmationPackage().size(), "The unacknowledged confirmation should be sent again");
+                restartedScheduler.handleSendConfirmation();
+                List<byte[]> frames = fisLink.receive(ByteBuffer.wrap(fis.receive(0).getMessage(byte[].class))); // Acknowledged to the scheduler
+                ConfirmationBatch confirmations = WireCodec.decode(frames.get(0), 0, frames.get(0).length, ConfirmationBatch.class);
+                assertArrayEquals(new int[]{completed.getEventID()}, confirmations.getCompletedIDs());
+                restartedScheduler.handleReceiveFromFIS();
+            } finally {
+                restartedScheduler.close();
+            }
+
+            Scheduler acknowledgedScheduler = new Scheduler("LinkScheduler", ReliableChannel.DEFAULT_WINDOW, new UnreliableTransport("TestScheduler"), logDirectory);
+            try {
+                assertTrue(acknowledgedScheduler.getConfirmationPackage().isEmpty(), "The acknowledged confirmation should not be sent again");
+            } finally {
+                acknowledgedScheduler.close();
+            }
+        } finally {
+            dss.close();
+            fis.close();
+        }
+    }
+
+    /**
+     * An in-process transport that claims to be unreliable, so the scheduler talks to the FIS over its reliable link.
+     */
+    private static class UnreliableTransport extends InProcessTransport {
+        UnreliableTransport(String name) {
+            super(name);
+        }
+
+        @Override
+        public boolean isReliable() {
+            return false;
+        }
+    }
+
+    /**
+     * Test that a restarted scheduler loads its last checkpoint and replays only the events logged after it.
+     */
+    @Test
+    public void testRestartLoadsCheckpointAndLogTail(@TempDir Path logDirectory) throws Exception {
+        InProcessTransport fis = new InProcessTransport("TestFIS");
+        InputEvent low = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "Low", Status.UNRESOLVED, null);
+        InputEvent high = new InputEvent("14:00:20", 2, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+        InputEvent moderate = new InputEvent("14:00:25", 3, "FIRE_DETECTED", "Moderate", Status.UNRESOLVED, null);
+        Scheduler checkpointedScheduler = new Scheduler("CheckpointedScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"), logDirectory);
+        try {
+            fis.bind(7000);
+            for (InputEvent event : List.of(low, high, moderate)) {
+                fis.send(new RelayPackage("INPUT_EVENT_" + event.getEventID(), Systems.Scheduler, event, null), 5000);
+                checkpointedScheduler.handleReceiveFromFIS();
+                if (event == high) {
+                    checkpointedScheduler.checkpoint(); // The moderate event is only in the log
+                }
+            }
+        } finally {
+            fis.close();
+            checkpointedScheduler.close();
+        }
+
+        Scheduler restartedScheduler = new Scheduler("CheckpointedScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"), logDirectory);
+        try {
+            assertEquals(3, restartedScheduler.getInputEvent().size());
+            assertEquals(high.getEventID(), restartedScheduler.getInputEvent().poll().getEventID());
+            assertEquals(moderate.getEventID(), restartedScheduler.getInputEvent().poll().getEventID());
+            assertEquals(low.getEventID(), restartedScheduler.getInputEvent().poll().getEventID());
+        } finally {
+            restartedScheduler.close();
+        }
+    }
+
+    /**
+     * Test that a restarted scheduler still loads its checkpoint when checkpoints are turned off, and that it keeps
+     * the whole state across a second restart once the log no longer goes on from that checkpoint.
+     */
+    @Test
+    public void testRestartWithCheckpointsOffLoadsTheCheckpoint(@TempDir Path logDirectory) throws Exception {
+        int events = writeCheckpointedLog("UncheckpointedScheduler", logDirectory);
+
+        System.setProperty("scheduler.checkpointMillis", "0");
+        try {
+            for (int restart = 0; restart < 2; restart++) {
+                Scheduler restartedScheduler = new Scheduler("UncheckpointedScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"), logDirectory);
+                try {
+                    assertEquals(events, restartedScheduler.getInputEvent().size(), "Restart " + restart);
+                } finally {
+                    restartedScheduler.close();
+                }
+            }
+        } finally {
+            System.clearProperty("scheduler.checkpointMillis");
+        }
+    }
+
+    /**
+     * Test that a scheduler whose log was truncated to a checkpoint refuses to start once no checkpoint is usable,
+     * instead of rebuilding part of its state from the log, and that it frees its ports when it does.
+     */
+    @Test
+    public void testRestartWithoutUsableCheckpointFails(@TempDir Path logDirectory) throws Exception {
+        writeCheckpointedLog("TruncatedScheduler", logDirectory);
+        try (Stream<Path> files = Files.list(logDirectory)) {
+            for (Path checkpoint : files.filter(file -> file.toString().endsWith(".ckpt")).collect(Collectors.toList())) {
+                byte[] bytes = Files.readAllBytes(checkpoint);
+                bytes[bytes.length - 1] ^= 1; // Fails the CRC
+                Files.write(checkpoint, bytes);
+            }
+        }
+
+        assertThrows(IllegalStateException.class, () -> new Scheduler("TruncatedScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"), logDirectory));
+
+        Scheduler otherScheduler = new Scheduler("OtherScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"), logDirectory.resolve("other"));
+        otherScheduler.close(); // Binds the same ports
+    }
+
+    /**
+     * Logs events and checkpoints the scheduler after each one until its first log segment is deleted, then logs
+     * another event after the last checkpoint.
+     * @return The number of events logged, each in a zone of its own.
+     */
+    private static int writeCheckpointedLog(String name, Path logDirectory) throws Exception {
+        InProcessTransport fis = new InProcessTransport("TestFIS");
+        System.setProperty("scheduler.wal.segmentSize", "4096"); // The smallest segment, so the log soon rolls over
+        Scheduler scheduler = new Scheduler(name, ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"), logDirectory);
+        int events = 0;
+        try {
+            fis.bind(7000);
+            Path firstSegment = logDirectory.resolve(String.format("%020d.wal", 0));
+            while (Files.exists(firstSegment)) {
+                logEvent(fis, scheduler, ++events);
+                scheduler.checkpoint();
+            }
+            logEvent(fis, scheduler, ++events);
+        } finally {
+            System.clearProperty("scheduler.wal.segmentSize");
+            fis.close();
+            scheduler.close();
+        }
+        return events;
+    }
+
+    private static void logEvent(InProcessTransport fis, Scheduler scheduler, int eventID) throws Exception {
+        InputEvent event = new InputEvent("14:00:15", eventID, "FIRE_DETECTED", "Low", Status.UNRESOLVED, null);
+        fis.send(new RelayPackage("INPUT_EVENT_" + event.getEventID(), Systems.Scheduler, event, null), 5000);
+        scheduler.handleReceiveFromFIS();
+    }
+
+    private static long countFiles(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).count();
+        }
+    }
+
+    /**
+     * Test that the running scheduler goes on receiving events from the FIS while a batch it sends to the drone
+     * subsystem is held up, since messages are sent without the lock of the scheduler.
+     */
+    @Test
+    public void testReceivingGoesOnWhileSending() throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        InProcessTransport fis = new InProcessTransport("TestFIS");
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean sent = new AtomicBoolean();
+        InProcessTransport transport = new InProcessTransport("TestScheduler") {
+            @Override
+            public Transport newTransport(String name) {
+                return new InProcessTransport(name) {
+                    @Override
+                    public void send(Object message, int port) {
+                        if (message instanceof EventBatch) {
+                            sending.countDown();
+                            try {
+                                release.await(5, TimeUnit.SECONDS); // A slow link to the drone subsystem
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        super.send(message, port);
+                        sent.set(message instanceof EventBatch || sent.get());
+                    }
+                };
+            }
+        };
+        Scheduler slowScheduler = new Scheduler("SlowScheduler", ReliableChannel.DEFAULT_WINDOW, transport);
+        Thread dispatcher = new Thread(slowScheduler);
+        try {
+            dss.bind(6000);
+            fis.bind(7000);
+            InputEvent first = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+            InputEvent second = new InputEvent("14:00:20", 2, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+            slowScheduler.getInputEvent().add(first);
+            dispatcher.start();
+            dss.send(new CreditGrant(1, 1), 5001);
+            assertTrue(sending.await(2, TimeUnit.SECONDS), "The batch should be sent once the drone subsystem grants credit");
+
+            fis.send(new RelayPackage("INPUT_EVENT_" + second.getEventID(), Systems.Scheduler, second, null), 5000);
+            long deadline = System.currentTimeMillis() + 2000;
+            int queued = 0;
+            while (queued == 0 && System.currentTimeMillis() < deadline) {
+                synchronized (slowScheduler) {
+                    queued = slowScheduler.getInputEvent().size();
+                }
+                Thread.sleep(10);
+            }
+            assertFalse(sent.get(), "The batch should still be held up");
+            assertEquals(1, queued, "The event should be received while the batch is held up");
+            release.countDown();
+            assertEquals(first.getEventID(), dss.receive(2000).getMessage(EventBatch.class).getEvents().get(0).getEventID());
+        } finally {
+            release.countDown();
+            slowScheduler.close();
+            dispatcher.join(2000);
+            dss.close();
+            fis.close();
+        }
+    }
+
+    /**
+     * Test that the running scheduler receives from the FIS and the DSS on threads of their own, dispatches an event
+     * as soon as the drone subsystem has credit, forwards its confirmation and stops when closed.
+     */
+    @Test
+    public void testRunDispatchesFromReceiverThreads() throws Exception {
+        InProcessTransport dss = new InProcessTransport("TestDSS");
+        InProcessTransport fis = new InProcessTransport("TestFIS");
+        Scheduler runningScheduler = new Scheduler("RunningScheduler", ReliableChannel.DEFAULT_WINDOW, new InProcessTransport("TestScheduler"));
+        Thread dispatcher = new Thread(runningScheduler);
+        try {
+            dss.bind(6000);
+            fis.bind(7000);
+            dispatcher.start();
+
+            InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+            fis.send(new RelayPackage("INPUT_EVENT_" + event.getEventID(), Systems.Scheduler, event, null), 5000);
+            Thread.sleep(100);
+            assertNull(dss.receive(0), "No event should be sent before a grant");
+
+            dss.send(new CreditGrant(1, 1), 5001);
+            EventBatch batch = dss.receive(2000).getMessage(EventBatch.class);
+            assertEquals(event.getEventID(), batch.getEvents().get(0).getEventID());
+
+            dss.send(new EventBatch.Ack(batch.getBatchID(), new int[]{event.getEventID()}), 5001);
+            dss.send(event, 5001);
+            ConfirmationBatch confirmations = fis.receive(2000).getMessage(ConfirmationBatch.class);
+            assertArrayEquals(new int[]{event.getEventID()}, confirmations.getCompletedIDs());
+        } finally {
+            runningScheduler.close();
+            dispatcher.join(2000);
+            dss.close();
+            fis.close();
+        }
+        assertFalse(dispatcher.isAlive(), "The dispatcher should stop once the scheduler is closed");
+    }
+}
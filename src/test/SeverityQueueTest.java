@@ -0,0 +1,129 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the SeverityQueue class, using a clock the tests move by hand.
+ */
+class SeverityQueueTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    private static InputEvent event(String severity) {
+        return new InputEvent("14:00:00", 1, "FIRE_DETECTED", severity, Status.UNRESOLVED, null);
+    }
+
+    /**
+     * Tests that events leave highest severity first, and in arrival order within a severity.
+     */
+    @Test
+    void severityOrderThenFifo() {
+        SeverityQueue queue = new SeverityQueue(0, now::get);
+        InputEvent low1 = event("Low");
+        InputEvent high1 = event("High");
+        InputEvent low2 = event("Low");
+        InputEvent moderate = event("Moderate");
+        InputEvent high2 = event("High");
+        queue.add(low1);
+        queue.add(high1);
+        queue.add(low2);
+        queue.add(moderate);
+        queue.add(high2);
+
+        assertEquals(5, queue.size());
+        assertSame(high1, queue.peek());
+        assertSame(high1, queue.poll());
+        assertSame(high2, queue.poll());
+        assertSame(moderate, queue.poll());
+        assertSame(low1, queue.poll());
+        assertSame(low2, queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Tests that a Low event is not starved by a steady stream of High events once it waited past the threshold,
+     * and that its severity is left untouched.
+     */
+    @Test
+    void agingPromotesWaitingEvents() {
+        SeverityQueue queue = new SeverityQueue(100, now::get);
+        InputEvent low = event("Low");
+        queue.add(low);
+        queue.add(event("High"));
+
+        now.set(100 * MILLIS); // The Low event moves to the Moderate level
+        queue.add(event("High"));
+        assertNotSame(low, queue.poll());
+        assertEquals(1, queue.getLevelSize(Severity.Moderate));
+        assertEquals(0, queue.getLevelSize(Severity.Low));
+
+        now.set(200 * MILLIS); // Then to the High level, behind the High events already waiting
+        queue.add(event("High"));
+        assertNotSame(low, queue.poll());
+        assertEquals(2, queue.getLevelSize(Severity.High));
+        assertNotSame(low, queue.poll());
+        assertSame(low, queue.poll());
+        assertEquals(Severity.Low, low.getSeverity());
+        assertEquals(2, queue.getStats(Severity.Low).getPromoted());
+    }
+
+    /**
+     * Tests that raising the severity of a waiting event moves it to the tail of its new level and its counters to
+     * the new severity.
+     */
+    @Test
+    void raiseSeverityMovesEvent() {
+        SeverityQueue queue = new SeverityQueue(0, now::get);
+        InputEvent high = event("High");
+        InputEvent low = event("Low");
+        queue.add(low);
+        queue.add(high);
+
+        assertFalse(queue.raiseSeverity(high, Severity.Moderate), "Only a higher severity can be given");
+        assertTrue(queue.raiseSeverity(low, Severity.High));
+        assertEquals(Severity.High, low.getSeverity());
+        assertEquals(0, queue.getLevelSize(Severity.Low));
+        assertEquals(2, queue.getStats(Severity.High).getDepth());
+        assertEquals(0, queue.getStats(Severity.Low).getAdded());
+        assertSame(high, queue.poll());
+        assertSame(low, queue.poll());
+        assertFalse(queue.raiseSeverity(event("Low"), Severity.High), "An event that is not waiting cannot be raised");
+    }
+
+    /**
+     * Tests that the queue counts the depth, the events added and taken, and the wait times of each severity.
+     */
+    @Test
+    void statsPerSeverity() {
+        SeverityQueue queue = new SeverityQueue(0, now::get);
+        queue.add(event("High"));
+        queue.add(event("Low"));
+        queue.add(event("Low"));
+        assertEquals(2, queue.getStats(Severity.Low).getDepth());
+        assertEquals(2, queue.getStats(Severity.Low).getMaxDepth());
+
+        now.set(5 * MILLIS);
+        queue.poll();
+        queue.poll();
+        QueueStats high = queue.getStats(Severity.High);
+        QueueStats low = queue.getStats(Severity.Low);
+        assertEquals(0, high.getDepth());
+        assertEquals(1, high.getTaken());
+        assertEquals(1, low.getDepth());
+        assertEquals(2, low.getAdded());
+        assertEquals(1, low.getTaken());
+        assertEquals(5 * MILLIS, low.getWaitTimes().getMeanNanos(), 1);
+        assertEquals(0, low.getMissed());
+        assertEquals(0, queue.getStats(Severity.Moderate).getAdded());
+        assertTrue(queue.report().contains("Low: depth=1"));
+
+        now.set((5 + EventQueue.LOW_RESPONSE_BUDGET) * MILLIS);
+        queue.poll();
+        assertEquals(1, low.getMissed(), "The Low event was taken after its deadline");
+    }
+}
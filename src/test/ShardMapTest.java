@@ -0,0 +1,69 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the ShardMap class.
+ */
+class ShardMapTest {
+
+    /**
+     * Tests that a single shard owns every zone.
+     */
+    @Test
+    void singleShardOwnsEverything() {
+        ShardMap shardMap = new ShardMap(1);
+        for (int zoneID = 0; zoneID < 100; zoneID++) {
+            assertEquals(0, shardMap.getShard(zoneID));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ShardMap(0));
+        assertThrows(IllegalArgumentException.class, () -> new ShardMap(ShardMap.MAX_SHARDS + 1));
+    }
+
+    /**
+     * Tests that consecutive zone IDs are spread over every shard, and that adding a shard only moves zones to the new
+     * shard.
+     */
+    @Test
+    void zonesAreSpreadAndStable() {
+        ShardMap three = new ShardMap(3);
+        ShardMap four = new ShardMap(4);
+        int[] zonesPerShard = new int[3];
+        int moved = 0;
+        for (int zoneID = 0; zoneID < 3000; zoneID++) {
+            int shard = three.getShard(zoneID);
+            zonesPerShard[shard]++;
+            if (four.getShard(zoneID) != shard) {
+                assertEquals(3, four.getShard(zoneID), "A zone should only move to the new shard");
+                moved++;
+            }
+        }
+        for (int count : zonesPerShard) {
+            assertTrue(count > 600, "Every shard should own a fair part of the zones: " + count);
+        }
+        assertTrue(moved > 300 && moved < 1500, "About a quarter of the zones should move: " + moved);
+    }
+
+    /**
+     * Tests that partitioning gives every zone to the shard that owns it.
+     */
+    @Test
+    void partitionFollowsOwnership() {
+        ShardMap shardMap = new ShardMap(2);
+        List<Zone> zones = new ArrayList<>();
+        for (int zoneID = 1; zoneID <= 10; zoneID++) {
+            zones.add(new Zone(zoneID, Zone.parseCoordinates("(0;0)"), Zone.parseCoordinates("(10;10)")));
+        }
+        List<ArrayList<Zone>> partitions = shardMap.partition(zones);
+        assertEquals(2, partitions.size());
+        assertEquals(10, partitions.get(0).size() + partitions.get(1).size());
+        for (int shard = 0; shard < 2; shard++) {
+            for (Zone zone : partitions.get(shard)) {
+                assertEquals(shard, shardMap.getShard(zone.getZoneID()));
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the SharedMemoryRing class, with the producer and the consumer mapping the
+ * same file separately as two processes would.
+ */
+class SharedMemoryRingTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that messages come out in order and whole, including across the end of the data area.
+     */
+    @Test
+    void messagesWrapAroundInOrder() throws IOException {
+        Path file = directory.resolve("test.ring");
+        SharedMemoryRing producer = SharedMemoryRing.create(file, 256);
+        SharedMemoryRing consumer = SharedMemoryRing.open(file);
+        assertNull(consumer.poll());
+        assertEquals(124, producer.getMaxMessageSize());
+
+        for (int i = 0; i < 100; i++) {
+            byte[] message = new byte[i % 50];
+            message = ByteBuffer.allocate(message.length + 4).putInt(i).put(message).array();
+            assertTrue(producer.offer(message));
+            byte[] received = consumer.poll();
+            assertEquals(message.length, received.length);
+            assertEquals(i, ByteBuffer.wrap(received).getInt());
+        }
+        assertTrue(consumer.isEmpty());
+    }
+
+    /**
+     * Tests that a full ring refuses messages until the consumer takes some, and that oversized messages are refused.
+     */
+    @Test
+    void fullRingRefusesMessages() throws IOException {
+        Path file = directory.resolve("full.ring");
+        SharedMemoryRing producer = SharedMemoryRing.create(file, 64);
+        SharedMemoryRing consumer = SharedMemoryRing.open(file);
+
+        assertTrue(producer.offer(new byte[12]));  // 16 bytes each
+        assertTrue(producer.offer(new byte[12]));
+        assertTrue(producer.offer(new byte[12]));
+        assertTrue(producer.offer(new byte[12]));
+        assertFalse(producer.offer(new byte[1]));
+        assertEquals(12, consumer.poll().length);
+        assertTrue(producer.offer(new byte[1]));
+        assertThrows(IllegalArgumentException.class, () -> producer.offer(new byte[29]));
+    }
+
+    /**
+     * Tests that a producer and a consumer running at once pass every message in order.
+     */
+    @Test
+    void concurrentProducerAndConsumer() throws Exception {
+        Path file = directory.resolve("busy.ring");
+        SharedMemoryRing producer = SharedMemoryRing.create(file, 1024);
+        SharedMemoryRing consumer = SharedMemoryRing.open(file);
+        int count = 100_000;
+
+        Thread producerThread = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                byte[] message = ByteBuffer.allocate(4 + i % 20).putInt(i).array();
+                while (!producer.offer(message)) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+        producerThread.start();
+        for (int expected = 0; expected < count; ) {
+            byte[] message = consumer.poll();
+            if (message != null) {
+                assertEquals(expected++, ByteBuffer.wrap(message).getInt());
+            }
+        }
+        producerThread.join();
+        assertTrue(consumer.isEmpty());
+    }
+
+    /**
+     * Tests that each side sees when the other went away, and that files that are not rings are rejected.
+     */
+    @Test
+    void closedFlagsAndBadFiles() throws IOException {
+        Path file = directory.resolve("flags.ring");
+        SharedMemoryRing producer = SharedMemoryRing.create(file, 64);
+        SharedMemoryRing consumer = SharedMemoryRing.open(file);
+        assertFalse(consumer.isProducerClosed());
+        producer.closeProducer();
+        assertTrue(consumer.isProducerClosed());
+        consumer.closeConsumer();
+        assertTrue(producer.isConsumerClosed());
+
+        Path other = directory.resolve("other.ring");
+        Files.write(other, new byte[512]);
+        assertThrows(IOException.class, () -> SharedMemoryRing.open(other));
+        assertThrows(IllegalArgumentException.class, () -> SharedMemoryRing.create(directory.resolve("odd.ring"), 100));
+    }
+}
@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the SharedMemoryTransport class, through rings in a temporary directory.
+ */
+class SharedMemoryTransportTest {
+
+    @TempDir
+    Path directory;
+
+    private SharedMemoryTransport receiver;
+    private SharedMemoryTransport sender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        receiver = new SharedMemoryTransport("Receiver", directory, SharedMemoryTransport.DEFAULT_RING_SIZE);
+        receiver.bind(9230);
+        receiver.bind(9231);
+        sender = (SharedMemoryTransport) receiver.newTransport("Sender");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        receiver.close();
+        sender.close();
+    }
+
+    /**
+     * Tests that messages are decoded, reported with the port they were sent to and kept in order.
+     */
+    @Test
+    void messagesAreDecodedPerPortInOrder() throws IOException {
+        for (int i = 1; i <= 50; i++) {
+            sender.send(new ZoneRegistry.Ack(i), 9230);
+        }
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, FaultType.JAMMED);
+        sender.send(event, 9231);
+
+        int expected = 1;
+        Transport.Delivery eventDelivery = null;
+        while (expected <= 50 || eventDelivery == null) {
+            Transport.Delivery delivery = receiver.receive(2000);
+            assertNotNull(delivery);
+            if (delivery.getPort() == 9231) {
+                eventDelivery = delivery;
+            } else {
+                assertEquals(expected++, delivery.getMessage(ZoneRegistry.Ack.class).getHash());
+            }
+        }
+        assertEquals(event.toString(), eventDelivery.getMessage().toString());
+        assertFalse(receiver.isReliable());
+    }
+
+    /**
+     * Tests that byte arrays are passed through untouched and that a message larger than a datagram arrives whole.
+     */
+    @Test
+    void rawAndLargeMessages() throws IOException {
+        byte[] raw = {0x10, 1, 2, 3};
+        sender.send(raw, 9230);
+        assertArrayEquals(raw, receiver.receive(2000).getMessage(byte[].class));
+
+        List<Zone> zones = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            zones.add(new Zone(i, new Coordinate(i, i), new Coordinate(i + 100, i + 100)));
+        }
+        sender.send(zones, 9231);
+        assertEquals(zones.toString(), receiver.receive(2000).getMessage().toString());
+    }
+
+    /**
+     * Tests that a port can be bound only once, that messages to a port nobody bound are lost, and that receiving
+     * times out when nothing was sent.
+     */
+    @Test
+    void bindingAndUnboundPorts() throws IOException {
+        assertThrows(BindException.class, () -> sender.bind(9230));
+        sender.send(new ZoneRegistry.Ack(1), 9232);
+        assertNull(receiver.receive(0));
+        assertNull(receiver.receive(50));
+    }
+
+    /**
+     * Tests that a sender starts a new ring once the receiver restarts, so later messages reach the new receiver.
+     */
+    @Test
+    void senderFollowsARestartedReceiver() throws IOException {
+        sender.send(new ZoneRegistry.Ack(1), 9230);
+        assertNotNull(receiver.receive(2000));
+        receiver.close();
+
+        receiver = new SharedMemoryTransport("Restarted receiver", directory, SharedMemoryTransport.DEFAULT_RING_SIZE);
+        receiver.bind(9230);
+        receiver.bind(9231);
+        sender.send(new ZoneRegistry.Ack(2), 9230);
+        Transport.Delivery delivery = receiver.receive(2000);
+        assertNotNull(delivery);
+        assertEquals(2, delivery.getMessage(ZoneRegistry.Ack.class).getHash());
+    }
+}
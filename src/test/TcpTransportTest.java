@@ -0,0 +1,130 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the TcpTransport class over the loopback interface.
+ */
+class TcpTransportTest {
+
+    private TcpTransport receiver;
+    private TcpTransport sender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        receiver = new TcpTransport("Receiver");
+        receiver.bind(9220);
+        receiver.bind(9221);
+        sender = new TcpTransport("Sender");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        receiver.close();
+        sender.close();
+    }
+
+    /**
+     * Tests that messages are decoded, reported with the port they were sent to and kept in order.
+     */
+    @Test
+    void messagesAreDecodedPerPortInOrder() throws IOException {
+        for (int i = 1; i <= 50; i++) {
+            sender.send(new ZoneRegistry.Ack(i), 9220);
+        }
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, FaultType.JAMMED);
+        sender.send(event, 9221);
+
+        int expected = 1;
+        Transport.Delivery eventDelivery = null;
+        while (expected <= 50 || eventDelivery == null) {
+            Transport.Delivery delivery = receiver.receive(2000);
+            assertNotNull(delivery);
+            if (delivery.getPort() == 9221) {
+                eventDelivery = delivery;
+            } else {
+                assertEquals(expected++, delivery.getMessage(ZoneRegistry.Ack.class).getHash());
+            }
+        }
+        assertEquals(event.toString(), eventDelivery.getMessage().toString());
+        assertFalse(receiver.isReliable());
+    }
+
+    /**
+     * Tests that byte arrays are passed through untouched, and that a message far larger than a datagram or the
+     * read buffer arrives whole.
+     */
+    @Test
+    void rawAndLargeMessages() throws IOException {
+        byte[] raw = {0x10, 1, 2, 3};
+        sender.send(raw, 9220);
+        assertArrayEquals(raw, receiver.receive(2000).getMessage(byte[].class));
+
+        List<Zone> zones = new ArrayList<>();
+        for (int i = 1; i <= 5000; i++) {
+            zones.add(new Zone(i, new Coordinate(i, i), new Coordinate(i + 100, i + 100)));
+        }
+        assertTrue(WireCodec.encodeZones(zones).length > 64 * 1024);
+        sender.send(zones, 9221);
+        sender.send(raw, 9221);
+        assertEquals(zones.toString(), receiver.receive(2000).getMessage().toString());
+        assertArrayEquals(raw, receiver.receive(2000).getMessage(byte[].class));
+    }
+
+    /**
+     * Tests that messages sent before the receiver is bound are held and delivered once it can be reached.
+     */
+    @Test
+    void messagesWaitForTheReceiver() throws IOException {
+        sender.send(new ZoneRegistry.Ack(7), 9222);
+        assertNull(receiver.receive(200));
+        assertEquals(1, sender.getQueuedCount(9222));
+
+        TcpTransport late = new TcpTransport("Late receiver");
+        try {
+            late.bind(9222);
+            Transport.Delivery delivery = late.receive(5000);
+            assertNotNull(delivery);
+            assertEquals(7, delivery.getMessage(ZoneRegistry.Ack.class).getHash());
+        } finally {
+            late.close();
+        }
+    }
+
+    /**
+     * Tests that the sender reconnects after the receiver restarts. A message written just before the restart may be
+     * lost, so messages are sent until one arrives.
+     */
+    @Test
+    void reconnectsAfterTheReceiverRestarts() throws IOException {
+        sender.send(new ZoneRegistry.Ack(1), 9220);
+        assertNotNull(receiver.receive(2000));
+        receiver.close();
+
+        receiver = new TcpTransport("Restarted receiver");
+        receiver.bind(9220);
+        receiver.bind(9221);
+        Transport.Delivery delivery = null;
+        for (int i = 2; i < 20 && delivery == null; i++) {
+            sender.send(new ZoneRegistry.Ack(i), 9220);
+            delivery = receiver.receive(500);
+        }
+        assertNotNull(delivery);
+    }
+
+    /**
+     * Tests that binding a port twice fails and that receiving times out when nothing was sent.
+     */
+    @Test
+    void bindTwiceAndTimeout() throws IOException {
+        assertThrows(IOException.class, () -> sender.bind(9220));
+        assertNull(receiver.receive(0));
+        assertNull(receiver.receive(50));
+    }
+}
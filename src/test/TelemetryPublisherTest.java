@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the TelemetryPublisher class by sending updates to a channel standing in for
+ * the GUI.
+ */
+class TelemetryPublisherTest {
+
+    /**
+     * Tests that a queued update is replaced by a newer one of the same kind and that only the newest is sent.
+     */
+    @Test
+    void newerUpdateReplacesQueuedUpdate() throws IOException {
+        try (DatagramChannel gui = DatagramChannel.open()) {
+            gui.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            TelemetryPublisher publisher = new TelemetryPublisher("TestPublisher", (InetSocketAddress) gui.getLocalAddress());
+
+            List<Zone> oldZones = new ArrayList<>();
+            oldZones.add(new Zone(1, new Coordinate(0, 0), new Coordinate(700, 600)));
+            List<Zone> newZones = new ArrayList<>(oldZones);
+            newZones.add(new Zone(2, new Coordinate(0, 600), new Coordinate(650, 1500)));
+            InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+
+            publisher.publishZones(oldZones);
+            publisher.publishEvent(event);
+            publisher.publishZones(newZones);
+            assertEquals(2, publisher.getPendingCount()); // The second zone list replaced the first
+
+            publisher.start();
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+            gui.receive(buffer);
+            buffer.flip();
+            assertEquals(newZones.toString(), WireCodec.decode(buffer).toString());
+
+            buffer.clear();
+            gui.receive(buffer);
+            buffer.flip();
+            assertEquals(event.getEventID(), WireCodec.decode(buffer, InputEvent.class).getEventID());
+
+            publisher.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the TelemetrySubscriber class by publishing updates to a multicast group that
+ * several subscribers joined.
+ */
+class TelemetrySubscriberTest {
+
+    /**
+     * Tests that every subscriber of the group receives each update, including one that had to be fragmented, while
+     * the publisher only sends it once.
+     */
+    @Test
+    void everySubscriberReceivesEachUpdate() throws IOException {
+        InetSocketAddress group = new InetSocketAddress(InetAddress.getByName("239.255.42.98"), 9300);
+        try (TelemetrySubscriber gui = new TelemetrySubscriber("TestGUI", group);
+             TelemetrySubscriber recorder = new TelemetrySubscriber("TestRecorder", group)) {
+            TelemetryPublisher publisher = new TelemetryPublisher("TestPublisher", group);
+
+            List<Zone> zones = new ArrayList<>();
+            for (int i = 1; i <= 200; i++) {
+                zones.add(new Zone(i, new Coordinate(i, i), new Coordinate(i + 100, i + 100)));
+            }
+            InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+            publisher.publishZones(zones); // Larger than one datagram
+            publisher.publishEvent(event);
+            publisher.start();
+
+            for (TelemetrySubscriber subscriber : List.of(gui, recorder)) {
+                assertEquals(zones.toString(), subscriber.receive().toString());
+                assertEquals(event.getEventID(), ((InputEvent) subscriber.receive()).getEventID());
+            }
+            publisher.close();
+        }
+    }
+
+    /**
+     * Tests that the recorder writes one line per update and skips telemetry deltas it cannot apply yet.
+     */
+    @Test
+    void recorderWritesOneLinePerUpdate() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TelemetryRecorder recorder = new TelemetryRecorder(null, new PrintStream(output, true));
+
+        List<DroneStatus> statuses = new ArrayList<>();
+        statuses.add(new DroneStatus("Drone1", "AvailableState", 0, 0));
+        DroneTelemetryEncoder encoder = new DroneTelemetryEncoder();
+        List<DroneTelemetryFrame> keyframes = encoder.update(statuses);
+        statuses.set(0, new DroneStatus("Drone1", "CruisingState", 10, 10));
+        List<DroneTelemetryFrame> deltas = encoder.update(statuses);
+
+        recorder.record(deltas.get(0)); // No keyframe yet
+        recorder.record(keyframes.get(0));
+        recorder.record(deltas.get(0));
+        recorder.record(new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null));
+
+        assertEquals(3, recorder.getRecordedCount());
+        String[] lines = output.toString().trim().split("\\R");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].contains("x=10.00"));
+        assertTrue(lines[2].contains("EVENT"));
+    }
+}
@@ -0,0 +1,178 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the UdpTransport class over the loopback interface.
+ */
+class UdpTransportTest {
+
+    private UdpTransport receiver;
+    private UdpTransport sender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        receiver = new UdpTransport("Receiver");
+        receiver.bind(9200);
+        receiver.bind(9201);
+        sender = new UdpTransport("Sender");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        receiver.close();
+        sender.close();
+    }
+
+    /**
+     * Tests that messages are encoded, decoded and reported with the port they were sent to.
+     */
+    @Test
+    void messagesAreDecodedPerPort() throws IOException {
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, FaultType.JAMMED);
+        sender.send(event, 9200);
+        sender.send(new ZoneRegistry.Ack(42), 9201);
+
+        Transport.Delivery first = receiver.receive(2000);
+        Transport.Delivery second = receiver.receive(2000);
+        Transport.Delivery eventDelivery = first.getPort() == 9200 ? first : second;
+        Transport.Delivery ackDelivery = first.getPort() == 9200 ? second : first;
+
+        assertEquals(event.toString(), eventDelivery.getMessage().toString());
+        assertEquals(FaultType.JAMMED, eventDelivery.getMessage(InputEvent.class).getFaultType());
+        assertEquals(42, ackDelivery.getMessage(ZoneRegistry.Ack.class).getHash());
+        assertFalse(receiver.isReliable());
+        assertNotNull(receiver.getSocket(9200));
+    }
+
+    /**
+     * Tests that byte arrays are passed through untouched, and that a message larger than one datagram is put back
+     * together.
+     */
+    @Test
+    void rawAndFragmentedMessages() throws IOException {
+        byte[] raw = {0x10, 1, 2, 3};
+        sender.send(raw, 9200);
+        assertArrayEquals(raw, receiver.receive(2000).getMessage(byte[].class));
+
+        List<Zone> zones = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            zones.add(new Zone(i, new Coordinate(i, i), new Coordinate(i + 100, i + 100)));
+        }
+        assertTrue(WireCodec.encodeZones(zones).length > Fragmenter.DEFAULT_MAX_DATAGRAM);
+        sender.send(zones, 9201);
+        assertEquals(zones.toString(), receiver.receive(2000).getMessage().toString());
+    }
+
+    /**
+     * Tests that a datagram corrupted on the way is NACKed by the receiver and retransmitted intact by the sender.
+     */
+    @Test
+    void corruptedDatagramIsRetransmitted() throws IOException {
+        UdpTransport bound = new UdpTransport("Bound sender");
+        try {
+            bound.bind(9202);
+            ChannelStats stats = ChannelStats.forPort(9200);
+            long failures = stats.getChecksumFailures();
+            long retransmits = stats.getRetransmits();
+
+            InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, FaultType.CORRUPT);
+            assertTrue(bound.corruptNextMessage());
+            bound.send(event, 9200);
+            assertNull(receiver.receive(200)); // The damaged datagram is dropped and NACKed
+            assertNull(bound.receive(200));    // The sender handles the NACK and retransmits
+
+            assertEquals(event.toString(), receiver.receive(2000).getMessage().toString());
+            assertEquals(failures + 1, stats.getChecksumFailures());
+            assertEquals(retransmits + 1, stats.getRetransmits());
+        } finally {
+            bound.close();
+        }
+    }
+
+        /**
+     * Tests that receiving times out when nothing was sent.
+     */
+    @Test
+    void receiveTimesOut() throws IOException {
+        assertNull(receiver.receive(0));
+        assertNull(receiver.receive(50));
+    }
+
+    /**
+     * Tests that datagrams sent to several bound channels are all received, each with its own port, whichever channel
+     * the selector finds readable first.
+     */
+    @Test
+    void datagramsOnSeveralChannelsAreReceived() throws IOException {
+        receiver.bind(9203);
+        int[] ports = {9203, 9201, 9200, 9203, 9201};
+        for (int i = 0; i < ports.length; i++) {
+            sender.send(new ZoneRegistry.Ack(i), ports[i]);
+        }
+
+        int[] received = new int[ports.length];
+        for (int i = 0; i < ports.length; i++) {
+            Transport.Delivery delivery = receiver.receive(2000);
+            assertNotNull(delivery, "Datagram " + i + " was not received");
+            int hash = delivery.getMessage(ZoneRegistry.Ack.class).getHash();
+            assertEquals(ports[hash], delivery.getPort());
+            received[hash]++;
+        }
+        assertArrayEquals(new int[]{1, 1, 1, 1, 1}, received);
+        assertNull(receiver.receive(0));
+    }
+
+    /**
+     * Tests that a receive waiting on the selector wakes up for a datagram that arrives on any bound channel while it
+     * waits, rather than at its timeout.
+     */
+    @Test
+    void waitingReceiveWakesForAnyChannel() throws Exception {
+        Thread late = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+                sender.send(new ZoneRegistry.Ack(7), 9201);
+            } catch (InterruptedException | IOException e) {
+                e.printStackTrace();
+            }
+        });
+        late.start();
+        long start = System.currentTimeMillis();
+        Transport.Delivery delivery = receiver.receive(5000);
+        long waited = System.currentTimeMillis() - start;
+        late.join();
+
+        assertNotNull(delivery);
+        assertEquals(9201, delivery.getPort());
+        assertEquals(7, delivery.getMessage(ZoneRegistry.Ack.class).getHash());
+        assertTrue(waited < 4000, "The receive should wake up when the datagram arrives, not at its timeout: " + waited + " ms");
+    }
+
+    /**
+     * Tests that a receive on the selector waits out its timeout, counts it on every bound port, and leaves the
+     * channels ready for the next receive.
+     */
+    @Test
+    void selectorReceiveTimesOut() throws IOException {
+        long timeouts0 = ChannelStats.forPort(9200).getReceiveTimeouts();
+        long timeouts1 = ChannelStats.forPort(9201).getReceiveTimeouts();
+        long start = System.currentTimeMillis();
+        assertNull(receiver.receive(300));
+        long waited = System.currentTimeMillis() - start;
+        assertTrue(waited >= 290, "The receive returned before its timeout: " + waited + " ms");
+        assertEquals(timeouts0 + 1, ChannelStats.forPort(9200).getReceiveTimeouts());
+        assertEquals(timeouts1 + 1, ChannelStats.forPort(9201).getReceiveTimeouts());
+
+        sender.send(new ZoneRegistry.Ack(3), 9200);
+        Transport.Delivery delivery = receiver.receive(2000);
+        assertNotNull(delivery);
+        assertEquals(3, delivery.getMessage(ZoneRegistry.Ack.class).getHash());
+    }
+}
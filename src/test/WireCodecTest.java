@@ -0,0 +1,181 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the WireCodec class by round-tripping every message type.
+ */
+class WireCodecTest {
+
+    /**
+     * Tests that an input event keeps its ID, header fields and zone after encoding and decoding.
+     */
+    @Test
+    void eventRoundTrip() throws IOException {
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, FaultType.JAMMED); // Creates an event object
+        event.setZone(new Zone(1, new Coordinate(0, 0), new Coordinate(700, 600)));
+        event.setRemainingAgentNeeded(15);
+        event.setHandlingDrone("Drone3");
+
+        byte[] frame = WireCodec.encodeEvent(event);
+        InputEvent decoded = WireCodec.decodeEvent(frame, 0, frame.length);
+
+        assertTrue(frame.length < 100); // Frame should only be tens of bytes
+        assertEquals(event.getEventID(), decoded.getEventID());
+        assertEquals(event.toString(), decoded.toString());
+        assertEquals(FaultType.JAMMED, decoded.getFaultType());
+        assertEquals(Status.UNRESOLVED, decoded.getStatus());
+        assertEquals(15, decoded.getRemainingAgentNeeded());
+        assertEquals(event.getInitialSeverity(), decoded.getInitialSeverity());
+        assertEquals("Drone3", decoded.getHandlingDrone());
+        assertEquals(event.getZone().toString(), decoded.getZone().toString());
+    }
+
+    /**
+     * Tests that a zone package and an event package can both be encoded and decoded.
+     */
+    @Test
+    void relayPackageRoundTrip() throws IOException {
+        ArrayList<Zone> zonesList = new ArrayList<>();
+        zonesList.add(new Zone(1, new Coordinate(0, 0), new Coordinate(700, 600)));
+        zonesList.add(new Zone(2, new Coordinate(0, 600), new Coordinate(650, 1500)));
+
+        byte[] zoneFrame = WireCodec.encodeRelayPackage(new RelayPackage("ZONE_PKG_1", Systems.Scheduler, null, zonesList));
+        RelayPackage zonePackage = WireCodec.decodeRelayPackage(zoneFrame, 0, zoneFrame.length);
+
+        assertEquals("ZONE_PKG_1", zonePackage.getRelayPackageID());
+        assertEquals(Systems.Scheduler, zonePackage.getReceiverSystem());
+        assertNull(zonePackage.getEvent());
+        assertEquals(zonesList.toString(), zonePackage.getZone().toString());
+
+        InputEvent event = new InputEvent("14:10:01", 2, "DRONE_REQUEST", "Moderate", Status.UNRESOLVED, null);
+        byte[] eventFrame = WireCodec.encodeRelayPackage(new RelayPackage("INPUT_EVENT_" + event.getEventID(), Systems.Scheduler, event, null));
+        RelayPackage eventPackage = WireCodec.decodeRelayPackage(eventFrame, 0, eventFrame.length);
+
+        assertEquals(event.getEventID(), eventPackage.getEvent().getEventID());
+        assertEquals(event.toString(), eventPackage.getEvent().toString());
+        assertNull(eventPackage.getEvent().getFaultType());
+        assertNull(eventPackage.getZone());
+    }
+
+    /**
+     * Tests that the GUI messages (drone statuses and metrics) can be decoded through the generic decode method.
+     */
+    @Test
+    void guiMessagesRoundTrip() throws IOException {
+        List<DroneStatus> statuses = new ArrayList<>();
+        statuses.add(new DroneStatus("Drone1", "AvailableState", 0, 0));
+        statuses.add(new DroneStatus("Drone2", "CruisingState", 120.5, 300.25));
+
+        byte[] statusFrame = WireCodec.encodeDroneStatuses(statuses);
+        List<?> decodedStatuses = WireCodec.decode(statusFrame, 0, statusFrame.length, List.class);
+        assertEquals(statuses.toString(), decodedStatuses.toString());
+        assertEquals("CruisingState", ((DroneStatus) decodedStatuses.get(1)).getState());
+
+        Map<String, Double> utilizations = new HashMap<>();
+        utilizations.put("Drone1", 42.0);
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("droneResponseTime", 1.5);
+        metrics.put("fireExtinguishedResponseTime", 30.0);
+        metrics.put("throughput", 2.0);
+        metrics.put("utilizations", utilizations);
+
+        byte[] metricsFrame = WireCodec.encodeMetrics(metrics);
+        assertEquals(metrics, WireCodec.decode(metricsFrame, 0, metricsFrame.length));
+    }
+
+    /**
+     * Tests that a credit grant keeps its session and limit.
+     */
+    @Test
+    void creditGrantRoundTrip() throws IOException {
+        byte[] frame = WireCodec.encodeMessage(new CreditGrant(0xCAFE, 42));
+        CreditGrant decoded = WireCodec.decode(frame, 0, frame.length, CreditGrant.class);
+        assertEquals(0xCAFE, decoded.getSession());
+        assertEquals(42, decoded.getLimit());
+    }
+
+    /**
+     * Tests that a batch of events and its acknowledgement survive a round trip, keeping the order of the events.
+     */
+    @Test
+    void eventBatchRoundTrip() throws IOException {
+        InputEvent high = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, FaultType.STUCK);
+        InputEvent low = new InputEvent("14:01:00", 2, "DRONE_REQUEST", "Low", Status.UNRESOLVED, null);
+        byte[] frame = WireCodec.encodeMessage(new EventBatch(9, List.of(high, low)));
+        EventBatch decoded = WireCodec.decode(frame, 0, frame.length, EventBatch.class);
+        assertEquals(9, decoded.getBatchID());
+        assertEquals(2, decoded.getEvents().size());
+        assertEquals(high.toString(), decoded.getEvents().get(0).toString());
+        assertEquals(FaultType.STUCK, decoded.getEvents().get(0).getFaultType());
+        assertEquals(low.getEventID(), decoded.getEvents().get(1).getEventID());
+
+        byte[] ackFrame = WireCodec.encodeMessage(new EventBatch.Ack(9, new int[]{high.getEventID(), low.getEventID()}));
+        EventBatch.Ack ack = WireCodec.decode(ackFrame, 0, ackFrame.length, EventBatch.Ack.class);
+        assertEquals(9, ack.getBatchID());
+        assertArrayEquals(new int[]{high.getEventID(), low.getEventID()}, ack.getEventIDs());
+
+        frame[WireCodec.HEADER_SIZE + 4] = 0x7F; // An event count far larger than the frame
+        assertThrows(IOException.class, () -> WireCodec.decode(frame, 0, frame.length));
+    }
+
+    /**
+     * Tests that a batch of confirmations survives a round trip, with consecutive IDs written as a single range.
+     */
+    @Test
+    void confirmationBatchRoundTrip() throws IOException {
+        int[] completed = new int[100];
+        for (int i = 0; i < completed.length; i++) {
+            completed[i] = 1000 - i; // Consecutive IDs in any order
+        }
+        byte[] frame = WireCodec.encodeMessage(new ConfirmationBatch(completed, new int[]{7, 3, 4}));
+        assertEquals(WireCodec.HEADER_SIZE + 4 + 8 + 4 + 2 * 8, frame.length); // One range of completed IDs, two of faulted IDs
+        ConfirmationBatch decoded = WireCodec.decode(frame, 0, frame.length, ConfirmationBatch.class);
+        assertEquals(103, decoded.size());
+        assertEquals(901, decoded.getCompletedIDs()[0]);
+        assertEquals(1000, decoded.getCompletedIDs()[99]);
+        assertArrayEquals(new int[]{3, 4, 7}, decoded.getFaultedIDs());
+
+        byte[] empty = WireCodec.encodeMessage(new ConfirmationBatch(new int[0], new int[0]));
+        assertEquals(0, WireCodec.decode(empty, 0, empty.length, ConfirmationBatch.class).size());
+
+        frame[WireCodec.HEADER_SIZE + 8] = 0x7F; // A range far longer than any batch
+        assertThrows(IOException.class, () -> WireCodec.decode(frame, 0, frame.length));
+    }
+
+    /**
+     * Tests that a truncated frame or a frame of the wrong type is rejected.
+     */
+    @Test
+    void malformedFrames() {
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+        byte[] frame = WireCodec.encodeEvent(event);
+
+        assertThrows(IOException.class, () -> WireCodec.decode(frame, 0, WireCodec.HEADER_SIZE));
+        assertThrows(IOException.class, () -> WireCodec.decodeRelayPackage(frame, 0, frame.length));
+
+        byte[] zoneFrame = WireCodec.encodeZones(List.of(new Zone(1, new Coordinate(0, 0), new Coordinate(700, 600))));
+        zoneFrame[WireCodec.HEADER_SIZE] = 0x7F; // A zone count far larger than the frame
+        assertThrows(IOException.class, () -> WireCodec.decode(zoneFrame, 0, zoneFrame.length));
+    }
+
+    /**
+     * Tests that a string longer than a signed short survives a round trip, and that one too long for its length
+     * field is rejected instead of being written corrupt.
+     */
+    @Test
+    void longStrings() throws IOException {
+        String name = "D".repeat(40000);
+        byte[] frame = WireCodec.encodeDroneStatuses(List.of(new DroneStatus(name, "AvailableState", 0, 0)));
+        assertEquals(name, ((DroneStatus) WireCodec.decode(frame, 0, frame.length, List.class).get(0)).getDroneName());
+
+        List<DroneStatus> tooLong = List.of(new DroneStatus("D".repeat(70000), "AvailableState", 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.encodeDroneStatuses(tooLong));
+    }
+}
@@ -0,0 +1,200 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the WriteAheadLog class, reopening the log from its files as a restarted
+ * process would.
+ */
+class WriteAheadLogTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that records come back in the order they were appended, across segments and after reopening the log.
+     */
+    @Test
+    void recordsAreReplayedInOrderAcrossSegments() throws IOException {
+        WriteAheadLog log = new WriteAheadLog("Test", directory, SEGMENT_SIZE, 100);
+        for (int i = 0; i < 50; i++) {
+            log.append((byte) (i % 3), record(i, 200));
+        }
+        assertTrue(log.getSegmentCount() > 1, "The records should not fit in one segment");
+        log.close();
+
+        WriteAheadLog reopened = new WriteAheadLog("Test", directory, SEGMENT_SIZE, 100);
+        List<Integer> replayed = replay(reopened);
+        assertEquals(50, replayed.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, replayed.get(i));
+        }
+        reopened.append((byte) 0, record(50, 10)); // Goes on after the last record
+        reopened.close();
+        assertEquals(51, reopen(SEGMENT_SIZE, 100).size());
+    }
+
+    /**
+     * Tests that a record torn by a crash is dropped and the records after it are appended in its place.
+     */
+    @Test
+    void tornRecordIsDropped() throws IOException {
+        WriteAheadLog log = new WriteAheadLog("Test", directory, SEGMENT_SIZE, 100);
+        log.append((byte) 1, record(0, 8));
+        log.append((byte) 1, record(1, 8));
+        log.append((byte) 1, record(2, 8));
+        log.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), 32 + 2 * 17 + 12); // A byte of the payload of the third record
+        }
+
+        WriteAheadLog reopened = new WriteAheadLog("Test", directory, SEGMENT_SIZE, 100);
+        assertEquals(List.of(0, 1), replay(reopened));
+        reopened.append((byte) 1, record(3, 8));
+        reopened.close();
+        assertEquals(List.of(0, 1, 3), reopen(SEGMENT_SIZE, 100));
+    }
+
+    /**
+     * Tests that compaction replaces the segments with the snapshot, and that a compaction that fails leaves the
+     * records it was meant to replace.
+     */
+    @Test
+    void compactionReplacesSegments() throws IOException {
+        WriteAheadLog log = new WriteAheadLog("Test", directory, SEGMENT_SIZE, 2);
+        for (int i = 0; !log.needsCompaction(); i++) {
+            log.append((byte) 1, record(i, 500));
+        }
+        int appended = reopen(SEGMENT_SIZE, 2).size();
+
+        assertThrows(IOException.class, () -> log.compact(target -> {
+            target.append((byte) 2, record(-1, 8));
+            throw new IOException("Crashed while writing the snapshot");
+        }));
+        log.append((byte) 1, record(appended, 8));
+        assertEquals(appended + 1, reopen(SEGMENT_SIZE, 2).size());
+
+        log.compact(target -> target.append((byte) 2, record(1000, 8)));
+        assertEquals(1, log.getSegmentCount());
+        assertFalse(log.needsCompaction());
+        log.append((byte) 1, record(1001, 8));
+        log.close();
+        assertEquals(List.of(1000, 1001), reopen(SEGMENT_SIZE, 2));
+    }
+
+    /**
+     * Tests that the segments dropped by a truncation or a compaction leave no file behind.
+     */
+    @Test
+    void droppedSegmentsLeaveNoFiles() throws IOException {
+        WriteAheadLog log = new WriteAheadLog("Test", directory, SEGMENT_SIZE, 2);
+        for (int i = 0; i < 30; i++) {
+            log.append((byte) 1, record(i, 200));
+        }
+        log.truncate(log.getPosition());
+        assertEquals(1, countFiles());
+        for (int i = 0; !log.needsCompaction(); i++) {
+            log.append((byte) 1, record(i, 500));
+        }
+        log.compact(target -> target.append((byte) 2, record(1000, 8)));
+        assertEquals(1, countFiles());
+        log.append((byte) 1, record(1001, 8));
+        log.close();
+        assertEquals(List.of(1000, 1001), reopen(SEGMENT_SIZE, 2));
+    }
+
+    /**
+     * Tests that the log can be replayed from a position, and that truncating it drops the segments before that
+     * position only.
+     */
+    @Test
+    void replayFromPositionAfterTruncation() throws IOException {
+        WriteAheadLog log = new WriteAheadLog("Test", directory, SEGMENT_SIZE, 100);
+        for (int i = 0; i < 30; i++) {
+            log.append((byte) 1, record(i, 200));
+        }
+        long position = log.getPosition();
+        for (int i = 30; i < 40; i++) {
+            log.append((byte) 1, record(i, 200));
+        }
+        int segments = log.getSegmentCount();
+        log.truncate(position);
+        assertTrue(log.getSegmentCount() < segments, "The segments before the position should be gone");
+        log.close();
+
+        WriteAheadLog reopened = new WriteAheadLog("Test", directory, SEGMENT_SIZE, 100);
+        List<Integer> tail = new ArrayList<>();
+        reopened.replay(position, (type, payload) -> tail.add(payload.getInt()));
+        reopened.close();
+        assertEquals(10, tail.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(30 + i, tail.get(i));
+        }
+    }
+
+    /**
+     * Tests that records appended faster than the disk can be forced share their forces, and are all on disk once
+     * synced.
+     */
+    @Test
+    void appendsShareForces() throws IOException {
+        WriteAheadLog log = new WriteAheadLog("Test", directory, WriteAheadLog.DEFAULT_SEGMENT_SIZE, 4);
+        int records = 10_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            log.append((byte) 1, record(i, 60));
+        }
+        long appendNanos = (System.nanoTime() - start) / records;
+        log.sync();
+        assertTrue(log.getForceCount() < records, "Forces should be shared between records: " + log.getForceCount());
+        System.out.println("Appended " + records + " records in " + log.getForceCount() + " forces, " + appendNanos + " ns per append");
+        log.close();
+        assertEquals(records, reopen(WriteAheadLog.DEFAULT_SEGMENT_SIZE, 4).size());
+    }
+
+    private static byte[] record(int value, int size) {
+        return ByteBuffer.allocate(Math.max(4, size)).putInt(value).array();
+    }
+
+    private static List<Integer> replay(WriteAheadLog log) throws IOException {
+        List<Integer> values = new ArrayList<>();
+        log.replay((type, payload) -> values.add(payload.getInt()));
+        return values;
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * Opens the log again as a restarted process would, and reads it back.
+     */
+    private List<Integer> reopen(int segmentSize, int maxSegments) throws IOException {
+        WriteAheadLog log = new WriteAheadLog("Reopened", directory, segmentSize, maxSegments);
+        try {
+            return replay(log);
+        } finally {
+            log.close();
+        }
+    }
+}
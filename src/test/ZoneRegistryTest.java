@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class is intended to test out the ZoneRegistry class and how events refer to it on the wire.
+ */
+class ZoneRegistryTest {
+
+    private List<Zone> createZones() {
+        List<Zone> zones = new ArrayList<>();
+        zones.add(new Zone(2, new Coordinate(0, 600), new Coordinate(650, 1500)));
+        zones.add(new Zone(1, new Coordinate(0, 0), new Coordinate(700, 600)));
+        return zones;
+    }
+
+    /**
+     * Tests that zones are looked up by ID and that registries with the same zones have the same hash.
+     */
+    @Test
+    void lookupAndHash() {
+        ZoneRegistry registry = new ZoneRegistry(createZones());
+        assertEquals(1, registry.getZone(1).getZoneID());
+        assertNull(registry.getZone(0));
+        assertNull(registry.getZone(3));
+        assertEquals(1, registry.getZones().get(0).getZoneID()); // Ordered by ID
+
+        assertEquals(registry.getHash(), new ZoneRegistry(createZones()).getHash());
+        List<Zone> moved = createZones();
+        moved.set(0, new Zone(2, new Coordinate(0, 600), new Coordinate(650, 1400)));
+        assertNotEquals(registry.getHash(), new ZoneRegistry(moved).getHash());
+    }
+
+    /**
+     * Tests that an event only carries a reference to a zone held by the registry and that it is only resolved by a
+     * receiver decoding against the same registry.
+     */
+    @Test
+    void eventCarriesZoneReference() throws IOException {
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+        event.setZone(new Zone(1, new Coordinate(0, 0), new Coordinate(700, 600)));
+        byte[] inline = WireCodec.encodeEvent(event);
+        assertEquals(1, WireCodec.decodeEvent(inline, 0, inline.length).getZone().getZoneID());
+
+        ZoneRegistry registry = new ZoneRegistry(createZones());
+        byte[] reference = WireCodec.encodeEvent(event, registry);
+        assertTrue(reference.length < inline.length);
+        assertSame(registry.getZone(1), WireCodec.decodeEvent(ByteBuffer.wrap(reference), registry).getZone());
+
+        // A receiver without the registry, or with another one, leaves the zone to be resolved by ID
+        assertNull(WireCodec.decodeEvent(reference, 0, reference.length).getZone());
+        List<Zone> moved = createZones();
+        moved.set(1, new Zone(1, new Coordinate(0, 0), new Coordinate(500, 600)));
+        assertNull(WireCodec.decodeEvent(ByteBuffer.wrap(reference), new ZoneRegistry(moved)).getZone());
+    }
+
+    /**
+     * Tests that two pairs of transports of one process holding different registries each resolve zones from their
+     * own registry, as two scheduler shards or a FIS and a Scheduler sharing a process would.
+     */
+    @Test
+    void transportsOfOneProcessKeepTheirOwnRegistry() throws IOException {
+        List<Zone> moved = createZones();
+        moved.set(1, new Zone(1, new Coordinate(0, 0), new Coordinate(500, 600)));
+        ZoneRegistry registry = new ZoneRegistry(createZones());
+        ZoneRegistry other = new ZoneRegistry(moved);
+        InputEvent event = new InputEvent("14:00:15", 1, "FIRE_DETECTED", "High", Status.UNRESOLVED, null);
+        event.setZone(registry.getZone(1));
+
+        try (Transport sender = new UdpTransport("TestSender"); Transport receiver = new UdpTransport("TestReceiver");
+             Transport otherReceiver = new UdpTransport("TestOtherReceiver")) {
+            sender.setZoneRegistry(registry);
+            Transport sameRegistry = sender.newTransport("TestSameRegistry"); // Shares the registry of the sender
+            receiver.bind(9240);
+            otherReceiver.bind(9241);
+            receiver.setZoneRegistry(registry);
+            otherReceiver.setZoneRegistry(other);
+
+            sender.send(event, 9240);
+            sameRegistry.send(event, 9241);
+            sameRegistry.close();
+            assertEquals(registry.getZone(1).toString(), receiver.receive(2000).getMessage(InputEvent.class).getZone().toString());
+            assertNull(otherReceiver.receive(2000).getMessage(InputEvent.class).getZone());
+        }
+    }
+
+    /**
+     * Tests that a registry and its acknowledgement can be encoded and decoded.
+     */
+    @Test
+    void registryRoundTrip() throws IOException {
+        ZoneRegistry registry = new ZoneRegistry(createZones());
+        byte[] frame = WireCodec.encodeZoneRegistry(registry);
+        ZoneRegistry decoded = WireCodec.decode(frame, 0, frame.length, ZoneRegistry.class);
+        assertEquals(registry.getHash(), decoded.getHash());
+        assertEquals(registry.getZones().toString(), decoded.getZones().toString());
+
+        byte[] ack = WireCodec.encodeZoneRegistryAck(registry.getHash());
+        assertEquals(registry.getHash(), WireCodec.decode(ack, 0, ack.length, ZoneRegistry.Ack.class).getHash());
+    }
+}